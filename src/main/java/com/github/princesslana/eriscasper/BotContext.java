@@ -3,17 +3,22 @@ package com.github.princesslana.eriscasper;
 import com.github.princesslana.eriscasper.action.Action;
 import com.github.princesslana.eriscasper.action.ActionContext;
 import com.github.princesslana.eriscasper.action.ImmutableActionContext;
+import com.github.princesslana.eriscasper.data.Snowflake;
 import com.github.princesslana.eriscasper.data.event.Event;
 import com.github.princesslana.eriscasper.data.immutable.Wrapper;
+import com.github.princesslana.eriscasper.gateway.EventSubscriptions;
 import com.github.princesslana.eriscasper.gateway.Gateway;
 import com.github.princesslana.eriscasper.repository.RepositoryDefinition;
 import com.github.princesslana.eriscasper.repository.RepositoryManager;
 import com.github.princesslana.eriscasper.rest.Route;
 import com.github.princesslana.eriscasper.rest.Routes;
+import com.github.princesslana.eriscasper.rx.Observables;
 import io.reactivex.Completable;
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
 import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,28 +27,177 @@ public class BotContext {
 
   private static final Logger LOG = LoggerFactory.getLogger(BotContext.class);
 
+  private final Observable<ShardEvent> shardEvents;
+
   private final Observable<Event> events;
 
   private final ActionContext actionContext;
 
   private RepositoryManager repositories;
 
+  private final EventSubscriptions subscriptions;
+
+  private final FairDispatcher fairDispatcher;
+
+  // Handlers with parallel lanes run on this
+  private final Scheduler scheduler;
+
   public BotContext(
       Observable<Event> events, Routes routes, Gateway gateway, RepositoryManager repositories) {
+    this(events, routes, gateway, repositories, new EventSubscriptions());
+  }
+
+  public BotContext(
+      Observable<Event> events,
+      Routes routes,
+      Gateway gateway,
+      RepositoryManager repositories,
+      EventSubscriptions subscriptions) {
+    this.shardEvents = events.<ShardEvent>map(e -> ShardEventTuple.of(0, e));
     this.events = events;
     this.actionContext = ImmutableActionContext.builder().routes(routes).gateway(gateway).build();
     this.repositories = repositories;
+    this.subscriptions = subscriptions;
+    this.fairDispatcher = newFairDispatcher();
+    this.scheduler = Schedulers.computation();
+  }
+
+  /**
+   * A context for the events of all the given shards.
+   *
+   * <p>Actions sent to the gateway are routed to the shard of the guild they are for, or to the
+   * lowest numbered shard if they are not for any one guild.
+   */
+  public BotContext(ShardManager shards, RepositoryManager repositories) {
+    this(
+        shards.getEvents(),
+        ImmutableActionContext.builder()
+            .routes(shards.getRoutes())
+            .gateway(shards.getGateway())
+            .gatewayRouter(shards)
+            .build(),
+        repositories,
+        shards.getSubscriptions(),
+        shards.getFairDispatcher(),
+        shards.getComputeScheduler());
+  }
+
+  BotContext(
+      Observable<ShardEvent> shardEvents,
+      ActionContext actionContext,
+      RepositoryManager repositories,
+      EventSubscriptions subscriptions) {
+    this(
+        shardEvents,
+        actionContext,
+        repositories,
+        subscriptions,
+        newFairDispatcher(),
+        Schedulers.computation());
+  }
+
+  BotContext(
+      Observable<ShardEvent> shardEvents,
+      ActionContext actionContext,
+      RepositoryManager repositories,
+      EventSubscriptions subscriptions,
+      FairDispatcher fairDispatcher,
+      Scheduler scheduler) {
+    this.shardEvents = shardEvents;
+    this.events = shardEvents.map(ShardEvent::getEvent);
+    this.actionContext = actionContext;
+    this.repositories = repositories;
+    this.subscriptions = subscriptions;
+    this.fairDispatcher = fairDispatcher;
+    this.scheduler = scheduler;
   }
 
+  private static FairDispatcher newFairDispatcher() {
+    return new FairDispatcher(FairDispatchConfig.defaults(), Schedulers.computation());
+  }
+
+  /**
+   * All events received from Discord.
+   *
+   * <p>As any event could be used, this means no event will be skipped. Prefer {@link
+   * #ofType(Class)} or {@link #on(Class, Function)} where possible.
+   */
   public Observable<Event> getEvents() {
+    subscriptions.addAll();
     return events;
   }
 
+  /**
+   * All events received from Discord, along with the shard that received them. When not sharded
+   * all events are from shard 0.
+   *
+   * <p>As with {@link #getEvents()}, no event will be skipped.
+   */
+  public Observable<ShardEvent> getShardEvents() {
+    subscriptions.addAll();
+    return shardEvents;
+  }
+
+  /**
+   * Events of the given type, which will be the only types read from the gateway.
+   *
+   * <p>The type is only read from the gateway once the returned {@link Observable} is subscribed
+   * to. Until then, as with any type no one is subscribed to, events of it are skipped.
+   */
+  public <E extends Event> Observable<E> ofType(Class<E> evt) {
+    return events.ofType(evt).doOnSubscribe(d -> subscriptions.add(evt));
+  }
+
   public <D, E extends Event & Wrapper<D>> Completable on(
       Class<E> evt, Function<D, Completable> f) {
     // It would be nice to use a method reference here,
     // but doing so causes an exception at runtime
-    return events.ofType(evt).map(e -> e.unwrap()).flatMapCompletable(f);
+    return ofType(evt).map(e -> e.unwrap()).flatMapCompletable(f);
+  }
+
+  /**
+   * Handle events partitioned by the given key across one lane per processor.
+   *
+   * @see #onPartitioned(Class, PartitionKey, int, Function)
+   */
+  public <D, E extends Event & Wrapper<D>> Completable onPartitioned(
+      Class<E> evt, PartitionKey key, Function<D, Completable> f) {
+    return onPartitioned(evt, key, Runtime.getRuntime().availableProcessors(), f);
+  }
+
+  /**
+   * Handle events partitioned by the given key across a number of lanes. Events with the same key,
+   * such as those for the same guild, are handled one at a time and in order. Events in different
+   * lanes are handled in parallel.
+   */
+  public <D, E extends Event & Wrapper<D>> Completable onPartitioned(
+      Class<E> evt, PartitionKey key, int lanes, Function<D, Completable> f) {
+    return Observables.partitioned(
+        ofType(evt), lanes, e -> keyOf(key, e), e -> f.apply(e.unwrap()), scheduler);
+  }
+
+  /**
+   * Handle events so that each guild gets a fair share of handling time, and a flood of events from
+   * one guild does not hold up the handling of events from others. Events for the same guild may be
+   * handled in parallel, up to a limit, so may complete out of order.
+   *
+   * @see FairDispatcher
+   */
+  public <D, E extends Event & Wrapper<D>> Completable onFair(
+      Class<E> evt, Function<D, Completable> f) {
+    return fairDispatcher.dispatch(
+        ofType(evt), e -> keyOf(PartitionKey.GUILD, e), e -> f.apply(e.unwrap()));
+  }
+
+  private Optional<Snowflake> keyOf(PartitionKey key, Event event) {
+    // without repositories, messages are keyed by their channel rather than their guild
+    return repositories == null
+        ? key.of(event)
+        : key.of(event, getRepository(RepositoryDefinition.CHANNEL));
+  }
+
+  public FairDispatchMetrics getFairDispatchMetrics() {
+    return fairDispatcher.getMetrics();
   }
 
   public Completable doNothing() {
@@ -4,19 +4,24 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.princesslana.eriscasper.data.event.Event;
 import com.github.princesslana.eriscasper.data.gateway.ShardPayload;
 import com.github.princesslana.eriscasper.data.util.Jackson;
-import com.github.princesslana.eriscasper.gateway.Gateway;
-import com.github.princesslana.eriscasper.gateway.Payloads;
+import com.github.princesslana.eriscasper.gateway.EventSubscriptions;
+import com.github.princesslana.eriscasper.gateway.GatewayConfig;
+import com.github.princesslana.eriscasper.gateway.IdentifyCoordinator;
+import com.github.princesslana.eriscasper.gateway.SessionStore;
+import com.github.princesslana.eriscasper.journal.Journal;
 import com.github.princesslana.eriscasper.repository.RepositoryManager;
-import com.github.princesslana.eriscasper.rest.RouteCatalog;
 import com.github.princesslana.eriscasper.rest.Routes;
 import com.github.princesslana.eriscasper.util.OkHttp;
+import com.google.common.collect.ImmutableList;
 import com.ufoscout.properlty.Properlty;
 import com.ufoscout.properlty.reader.EnvironmentVariablesReader;
 import com.ufoscout.properlty.reader.SystemPropertiesReader;
 import com.ufoscout.properlty.reader.decorator.ToLowerCaseAndDotKeyReader;
 import io.reactivex.Observable;
-import io.reactivex.Single;
 import io.reactivex.schedulers.Schedulers;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.Optional;
 import okhttp3.OkHttpClient;
 import org.slf4j.Logger;
@@ -35,42 +40,85 @@ public class ErisCasper {
 
   private final BotToken token;
 
+  private final ThreadPools threads = new ThreadPools(ThreadConfig.fromConfig(CONFIG));
+
   private final OkHttpClient httpClient = OkHttp.newHttpClient();
 
+  private final ObjectMapper jackson = Jackson.newObjectMapper();
+
   private final Routes routes;
-  private final Optional<ShardPayload> shard;
 
-  private final Gateway gateway;
+  private final GatewayConfig gatewayConfig;
+
+  private final EventSubscriptions subscriptions = new EventSubscriptions();
+
+  private final IdentifyCoordinator identifyCoordinator = IdentifyCoordinator.fromConfig(CONFIG);
+
+  private final EventBufferConfig eventBufferConfig = EventBufferConfig.fromConfig(CONFIG);
+
+  private final FairDispatchConfig fairDispatchConfig = FairDispatchConfig.fromConfig(CONFIG);
+
+  private final SessionStore sessionStore = SessionStore.fromConfig(CONFIG);
 
-  private ErisCasper(BotToken token, Optional<ShardPayload> shard) {
+  // empty to use the number of shards recommended by Discord
+  private final Optional<ImmutableList<ShardPayload>> shards;
+
+  private ErisCasper(
+      BotToken token, Optional<ImmutableList<ShardPayload>> shards, GatewayConfig gatewayConfig) {
     this.token = token;
-    this.shard = shard;
-    ObjectMapper jackson = Jackson.newObjectMapper();
-    this.routes = new Routes(token, httpClient, jackson);
-    this.gateway = Gateway.create(httpClient, new Payloads(jackson));
+    // websockets hold on to a call for as long as they are open, so must not share the REST limits
+    OkHttpClient restClient =
+        httpClient.newBuilder().dispatcher(threads.getRestDispatcher()).build();
+
+    this.routes = new Routes(token, restClient, jackson, threads.getRestScheduler());
+    this.gatewayConfig = gatewayConfig;
+    this.shards = shards;
   }
 
-  private Observable<Event> getEvents() {
-    return Single.just(RouteCatalog.getGateway())
-        .observeOn(Schedulers.io())
-        .flatMap(routes::execute)
-        .toObservable()
-        .flatMap(gr -> gateway.connect(gr.getUrl(), token, shard))
-        .observeOn(Schedulers.computation())
-        .share();
+  private ShardManager newShardManager(Optional<Journal> journal) {
+    ImmutableList<ShardPayload> toRun =
+        shards.orElseGet(
+            () -> {
+              ImmutableList<ShardPayload> recommended = Shards.recommended(routes).blockingGet();
+              LOG.info("Using {} shards, as recommended by Discord.", recommended.size());
+              return recommended;
+            });
+
+    return new ShardManager(
+        ImmutableShardManagerOptions.builder()
+            .token(token)
+            .httpClient(httpClient)
+            .jackson(jackson)
+            .routes(routes)
+            .threads(threads)
+            .shards(toRun)
+            .gatewayConfig(gatewayConfig)
+            .subscriptions(subscriptions)
+            .identifyCoordinator(identifyCoordinator)
+            .sessionStore(sessionStore)
+            .eventBufferConfig(eventBufferConfig)
+            .fairDispatchConfig(fairDispatchConfig)
+            .journal(journal)
+            .build());
   }
 
   public void run(Bot bot) {
+    Optional<Journal> journal = openJournal();
+
     try {
-      getEvents()
-          .compose(
-              evts ->
-                  bot.apply(new BotContext(evts, routes, gateway, RepositoryManager.create(evts)))
-                      .toObservable())
+      ShardManager shards = newShardManager(journal);
+
+      Observable<Event> events = shards.getEvents().map(ShardEvent::getEvent);
+
+      bot.apply(new BotContext(shards, RepositoryManager.create(events, subscriptions)))
+          .mergeWith(shards.run())
           .doOnError(t -> LOG.warn("Exception thrown by Bot", t))
+          .toObservable()
           .blockingSubscribe();
     } finally {
+      journal.ifPresent(ErisCasper::closeJournal);
       Schedulers.shutdown();
+      threads.shutdown();
       httpClient.dispatcher().executorService().shutdown();
       httpClient.connectionPool().evictAll();
     }
@@ -78,6 +126,30 @@ public class ErisCasper {
     LOG.trace("ErisCasper#run(Bot) done.");
   }
 
+  /** The journal to record gateway traffic to, if ec.gateway.journal gives a directory for it. */
+  private static Optional<Journal> openJournal() {
+    Optional<String> dir = CONFIG.get("ec.gateway.journal");
+
+    if (!dir.isPresent()) {
+      return Optional.empty();
+    }
+
+    try {
+      LOG.info("Recording gateway traffic to {}.", dir.get());
+      return Optional.of(new Journal(Paths.get(dir.get())));
+    } catch (IOException e) {
+      throw new ErisCasperFatalException("Could not open journal: " + dir.get(), e);
+    }
+  }
+
+  private static void closeJournal(Journal journal) {
+    try {
+      journal.close();
+    } catch (IOException e) {
+      LOG.warn("Error closing journal.", e);
+    }
+  }
+
   public static ErisCasper create() {
     return create(
         CONFIG
@@ -86,13 +158,41 @@ public class ErisCasper {
   }
 
   public static ErisCasper create(String token) {
+    if (Shards.isRecommendedFromConfig(CONFIG)) {
+      return createWithRecommendedShards(token);
+    }
 
-    return new ErisCasper(BotToken.of(token), Shards.fromConfig(CONFIG));
+    return new ErisCasper(
+        BotToken.of(token),
+        Optional.of(Shards.fromConfig(CONFIG).map(ImmutableList::of).orElse(ImmutableList.of())),
+        GatewayConfig.fromConfig(CONFIG));
   }
 
   public static ErisCasper create(String token, int shardNumber, int shardTotal) {
     ShardPayload shard = ShardPayload.of(shardNumber, shardTotal);
     Shards.check(shard);
-    return new ErisCasper(BotToken.of(token), Optional.of(shard));
+    return create(token, ImmutableList.of(shard));
+  }
+
+  /**
+   * Create an instance that runs all of the given shards.
+   *
+   * @see Shards#range(long, long, long)
+   */
+  public static ErisCasper create(String token, Collection<ShardPayload> shards) {
+    shards.forEach(Shards::check);
+    return new ErisCasper(
+        BotToken.of(token),
+        Optional.of(ImmutableList.copyOf(shards)),
+        GatewayConfig.fromConfig(CONFIG));
+  }
+
+  /**
+   * Create an instance that runs all shards, using the number of shards recommended by Discord.
+   *
+   * @see Shards#recommended(Routes)
+   */
+  public static ErisCasper createWithRecommendedShards(String token) {
+    return new ErisCasper(BotToken.of(token), Optional.empty(), GatewayConfig.fromConfig(CONFIG));
   }
 }
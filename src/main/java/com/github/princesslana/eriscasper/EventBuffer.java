@@ -0,0 +1,214 @@
+package com.github.princesslana.eriscasper;
+
+import com.github.princesslana.eriscasper.data.event.Event;
+import com.github.princesslana.eriscasper.gateway.EventSubscriptions;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded buffer between the threads reading from gateway connections and the bots handling the
+ * events they receive.
+ *
+ * <p>When the buffer is full, each event is handled according to the {@link OverflowPolicy} for
+ * its dispatch type. Events are taken from the buffer only as fast as they are requested, so a slow
+ * bot fills the buffer rather than memory.
+ */
+public class EventBuffer {
+
+  private static final Map<Class<?>, String> TYPES = new ConcurrentHashMap<>();
+
+  private final EventBufferConfig config;
+
+  private final EventBufferMetrics metrics = new EventBufferMetrics();
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+
+  private final Deque<Entry> queue = new ArrayDeque<>();
+
+  private boolean done = false;
+  private Optional<Throwable> error = Optional.empty();
+
+  private final Flowable<ShardEvent> events;
+
+  public EventBuffer(EventBufferConfig config) {
+    this(config, Schedulers.newThread());
+  }
+
+  /**
+   * @param scheduler the scheduler events are taken from the buffer on. This waits for events
+   *     while the buffer is empty, so should be dedicated to the buffer.
+   */
+  public EventBuffer(EventBufferConfig config, Scheduler scheduler) {
+    this.config = config;
+    this.events = Flowable.<ShardEvent>generate(this::next).subscribeOn(scheduler).share();
+  }
+
+  /**
+   * The buffered events. These are emitted on a thread dedicated to the buffer, so handlers that
+   * block will fill the buffer.
+   */
+  public Flowable<ShardEvent> getEvents() {
+    return events;
+  }
+
+  public EventBufferMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Add an event to the buffer. If the buffer is full this may block until there is space, or drop
+   * an event, depending upon the overflow policy for the event's dispatch type.
+   */
+  public void offer(ShardEvent event) {
+    String type = typeOf(event.getEvent());
+
+    metrics.received();
+
+    lock.lock();
+    try {
+      if (done) {
+        return;
+      }
+
+      if (queue.size() >= config.getCapacity() && !makeRoom(type, config.getPolicy(type))) {
+        metrics.dropped(type);
+        return;
+      }
+
+      queue.addLast(new Entry(event, type, System.nanoTime()));
+      metrics.buffered();
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Complete the events once those already buffered have been taken. */
+  public void complete() {
+    terminate(Optional.empty());
+  }
+
+  /** Error the events once those already buffered have been taken. */
+  public void error(Throwable t) {
+    terminate(Optional.of(t));
+  }
+
+  private void terminate(Optional<Throwable> t) {
+    lock.lock();
+    try {
+      if (!done) {
+        done = true;
+        error = t;
+        notEmpty.signalAll();
+        notFull.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Called with the lock held. Returns whether there is now space in the buffer.
+  private boolean makeRoom(String type, OverflowPolicy policy) {
+    switch (policy) {
+      case BLOCK:
+        return awaitRoom();
+      case DROP_OLDEST:
+        return evictOldest(type);
+      default:
+        return false;
+    }
+  }
+
+  private boolean awaitRoom() {
+    metrics.blocked();
+
+    try {
+      while (queue.size() >= config.getCapacity() && !done) {
+        notFull.await();
+      }
+      return !done;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private boolean evictOldest(String type) {
+    for (Iterator<Entry> it = queue.iterator(); it.hasNext(); ) {
+      if (it.next().type.equals(type)) {
+        it.remove();
+        metrics.evicted(type);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void next(Emitter<ShardEvent> emitter) {
+    Optional<Entry> entry;
+
+    try {
+      entry = take();
+    } catch (InterruptedException e) {
+      // interrupted because we have been cancelled, so nothing is listening
+      Thread.currentThread().interrupt();
+      emitter.onComplete();
+      return;
+    }
+
+    if (entry.isPresent()) {
+      metrics.delivered(System.nanoTime() - entry.get().receivedAt);
+      emitter.onNext(entry.get().event);
+    } else if (error.isPresent()) {
+      emitter.onError(error.get());
+    } else {
+      emitter.onComplete();
+    }
+  }
+
+  // Empty once the buffer is terminated and there is nothing left to take
+  private Optional<Entry> take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (queue.isEmpty() && !done) {
+        notEmpty.await();
+      }
+
+      Optional<Entry> entry = Optional.ofNullable(queue.pollFirst());
+      entry.ifPresent(e -> notFull.signal());
+      return entry;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static String typeOf(Event event) {
+    return TYPES.computeIfAbsent(
+        event.getClass(),
+        c -> EventSubscriptions.typeOf(event.getClass()).orElse(c.getSimpleName()));
+  }
+
+  private static class Entry {
+    private final ShardEvent event;
+    private final String type;
+    private final long receivedAt;
+
+    private Entry(ShardEvent event, String type, long receivedAt) {
+      this.event = event;
+      this.type = type;
+      this.receivedAt = receivedAt;
+    }
+  }
+}
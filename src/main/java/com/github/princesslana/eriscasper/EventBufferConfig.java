@@ -0,0 +1,77 @@
+package com.github.princesslana.eriscasper;
+
+import com.google.common.base.Ascii;
+import com.google.common.base.Splitter;
+import com.ufoscout.properlty.Properlty;
+import java.util.Map;
+import org.immutables.value.Value;
+
+/** Options controlling the size of the {@link EventBuffer} and what happens when it is full. */
+@Value.Immutable
+public abstract class EventBufferConfig {
+
+  private static final Splitter TYPES = Splitter.on(',').trimResults().omitEmptyStrings();
+
+  /** The number of events that may wait to be handled by bots. */
+  @Value.Default
+  public int getCapacity() {
+    return 8192;
+  }
+
+  /**
+   * The policy for dispatch types that are not given their own.
+   *
+   * <p>With {@link OverflowPolicy#BLOCK} a full buffer stops the gateway reading from its
+   * connection, heartbeat acknowledgements included. The gateway does not treat a missing
+   * acknowledgement as a failed connection while it is blocked for up to a few heartbeats, after
+   * which it reconnects, and Discord will close a connection that is blocked for long enough.
+   * Dispatch types that are frequent and can be lost, such as TYPING_START and PRESENCE_UPDATE,
+   * are better given a dropping policy.
+   */
+  @Value.Default
+  public OverflowPolicy getDefaultPolicy() {
+    return OverflowPolicy.BLOCK;
+  }
+
+  /** Overflow policies by dispatch type (e.g., TYPING_START). */
+  public abstract Map<String, OverflowPolicy> getPolicies();
+
+  public OverflowPolicy getPolicy(String type) {
+    return getPolicies().getOrDefault(type, getDefaultPolicy());
+  }
+
+  @Value.Check
+  protected void check() {
+    if (getCapacity() <= 0) {
+      throw new IllegalStateException("Event buffer capacity must be positive.");
+    }
+  }
+
+  public static EventBufferConfig defaults() {
+    return ImmutableEventBufferConfig.builder().build();
+  }
+
+  /**
+   * Read the config from {@code ec.events.buffer} (the capacity), {@code ec.events.overflow} (the
+   * default policy), and {@code ec.events.overflow.<policy>} (a comma separated list of dispatch
+   * types to use that policy for, e.g., {@code ec.events.overflow.drop=TYPING_START}).
+   */
+  public static EventBufferConfig fromConfig(Properlty config) {
+    ImmutableEventBufferConfig.Builder builder =
+        ImmutableEventBufferConfig.builder()
+            .capacity(config.get("ec.events.buffer").map(Integer::parseInt).orElse(8192))
+            .defaultPolicy(
+                config
+                    .get("ec.events.overflow")
+                    .map(OverflowPolicy::fromName)
+                    .orElse(OverflowPolicy.BLOCK));
+
+    for (OverflowPolicy policy : OverflowPolicy.values()) {
+      for (String type : TYPES.split(config.get("ec.events.overflow." + policy.get()).orElse(""))) {
+        builder.putPolicies(Ascii.toUpperCase(type), policy);
+      }
+    }
+
+    return builder.build();
+  }
+}
@@ -0,0 +1,118 @@
+package com.github.princesslana.eriscasper;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the events passing through an {@link EventBuffer}, for sizing the buffer and
+ * choosing overflow policies.
+ */
+public class EventBufferMetrics {
+
+  private final AtomicInteger depth = new AtomicInteger();
+
+  private final LongAdder received = new LongAdder();
+  private final LongAdder delivered = new LongAdder();
+  private final LongAdder blocked = new LongAdder();
+
+  private final Map<String, LongAdder> dropped = new ConcurrentHashMap<>();
+
+  private final LongAdder lagNanos = new LongAdder();
+  private final LongAccumulator maxLagNanos = new LongAccumulator(Math::max, 0);
+
+  void received() {
+    received.increment();
+  }
+
+  void buffered() {
+    depth.incrementAndGet();
+  }
+
+  void delivered(long lagNanos) {
+    depth.decrementAndGet();
+    delivered.increment();
+    this.lagNanos.add(lagNanos);
+    maxLagNanos.accumulate(lagNanos);
+  }
+
+  void evicted(String type) {
+    depth.decrementAndGet();
+    dropped(type);
+  }
+
+  void dropped(String type) {
+    dropped.computeIfAbsent(type, t -> new LongAdder()).increment();
+  }
+
+  void blocked() {
+    blocked.increment();
+  }
+
+  /** The number of events currently waiting in the buffer. */
+  public int getDepth() {
+    return depth.get();
+  }
+
+  /** The number of events received from the gateway. */
+  public long getReceived() {
+    return received.sum();
+  }
+
+  /** The number of events passed on to bots. */
+  public long getDelivered() {
+    return delivered.sum();
+  }
+
+  /** The number of times the websocket reader had to wait for space in the buffer. */
+  public long getBlocked() {
+    return blocked.sum();
+  }
+
+  /** The number of events dropped because the buffer was full. */
+  public long getDropped() {
+    return dropped.values().stream().mapToLong(LongAdder::sum).sum();
+  }
+
+  /** The number of events of the given dispatch type dropped because the buffer was full. */
+  public long getDropped(String type) {
+    LongAdder count = dropped.get(type);
+    return count == null ? 0 : count.sum();
+  }
+
+  /** The number of dropped events by dispatch type. */
+  public ImmutableMap<String, Long> getDroppedByType() {
+    ImmutableMap.Builder<String, Long> builder = ImmutableMap.builder();
+    dropped.forEach((type, count) -> builder.put(type, count.sum()));
+    return builder.build();
+  }
+
+  /** The mean time between an event being received and it being passed on, or 0 if none have. */
+  public long getMeanLag(TimeUnit unit) {
+    long count = getDelivered();
+    return count == 0 ? 0 : unit.convert(lagNanos.sum() / count, TimeUnit.NANOSECONDS);
+  }
+
+  /** The longest time between any event being received and it being passed on. */
+  public long getMaxLag(TimeUnit unit) {
+    return unit.convert(maxLagNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "EventBufferMetrics{depth=%d, received=%d, delivered=%d, blocked=%d, dropped=%s, "
+            + "meanLagMillis=%d, maxLagMillis=%d}",
+        getDepth(),
+        getReceived(),
+        getDelivered(),
+        getBlocked(),
+        getDroppedByType(),
+        getMeanLag(TimeUnit.MILLISECONDS),
+        getMaxLag(TimeUnit.MILLISECONDS));
+  }
+}
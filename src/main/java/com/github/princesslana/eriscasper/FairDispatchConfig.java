@@ -0,0 +1,105 @@
+package com.github.princesslana.eriscasper;
+
+import com.ufoscout.properlty.Properlty;
+import org.immutables.value.Value;
+
+/** Options controlling how a {@link FairDispatcher} shares handling time between guilds. */
+@Value.Immutable
+public abstract class FairDispatchConfig {
+
+  /** The handling time, in milliseconds, each guild is granted on its turn. */
+  @Value.Default
+  public long getQuantumMillis() {
+    return 5;
+  }
+
+  /**
+   * The number of events for any one guild that may be handled at once. With 1, each guild's events
+   * are handled in the order they were received.
+   */
+  @Value.Default
+  public int getMaxInFlightPerKey() {
+    return 4;
+  }
+
+  /** The number of events, across all guilds, that may be handled at once. */
+  @Value.Default
+  public int getMaxInFlight() {
+    return 64;
+  }
+
+  /**
+   * The number of events for any one guild that may wait to be handled. Once reached, that guild's
+   * events are dropped according to {@link #getOverflowPolicy()}, and other guilds carry on.
+   */
+  @Value.Default
+  public int getMaxQueuedPerKey() {
+    return 1024;
+  }
+
+  /**
+   * What to do with an event for a guild that already has {@link #getMaxQueuedPerKey()} waiting.
+   * This may not be {@link OverflowPolicy#BLOCK}, as blocking the source for one guild would hold
+   * up every other guild too.
+   */
+  @Value.Default
+  public OverflowPolicy getOverflowPolicy() {
+    return OverflowPolicy.DROP_OLDEST;
+  }
+
+  /**
+   * The number of events, across all guilds, that may wait to be handled. Once reached, no more
+   * events are taken from the source until one is started.
+   */
+  @Value.Default
+  public int getMaxQueued() {
+    return 8192;
+  }
+
+  @Value.Check
+  protected void check() {
+    if (getQuantumMillis() <= 0) {
+      throw new IllegalStateException("Fair dispatch quantum must be positive.");
+    }
+    if (getMaxInFlightPerKey() <= 0) {
+      throw new IllegalStateException("Fair dispatch in flight per guild must be positive.");
+    }
+    if (getMaxInFlight() <= 0) {
+      throw new IllegalStateException("Fair dispatch in flight must be positive.");
+    }
+    if (getMaxQueuedPerKey() <= 0) {
+      throw new IllegalStateException("Fair dispatch queued per guild must be positive.");
+    }
+    if (getMaxQueued() <= 0) {
+      throw new IllegalStateException("Fair dispatch queued must be positive.");
+    }
+    if (getOverflowPolicy() == OverflowPolicy.BLOCK) {
+      throw new IllegalStateException("Fair dispatch overflow policy must drop.");
+    }
+  }
+
+  public static FairDispatchConfig defaults() {
+    return ImmutableFairDispatchConfig.builder().build();
+  }
+
+  /**
+   * Read the config from {@code ec.events.fair.quantum} (in milliseconds), {@code
+   * ec.events.fair.inflight} (per guild), {@code ec.events.fair.concurrency} (in total), {@code
+   * ec.events.fair.queued} (per guild), {@code ec.events.fair.queued.max} (in total), and {@code
+   * ec.events.fair.overflow} ({@code drop.oldest} or {@code drop}).
+   */
+  public static FairDispatchConfig fromConfig(Properlty config) {
+    return ImmutableFairDispatchConfig.builder()
+        .quantumMillis(config.get("ec.events.fair.quantum").map(Long::parseLong).orElse(5L))
+        .maxInFlightPerKey(config.get("ec.events.fair.inflight").map(Integer::parseInt).orElse(4))
+        .maxInFlight(config.get("ec.events.fair.concurrency").map(Integer::parseInt).orElse(64))
+        .maxQueuedPerKey(config.get("ec.events.fair.queued").map(Integer::parseInt).orElse(1024))
+        .maxQueued(config.get("ec.events.fair.queued.max").map(Integer::parseInt).orElse(8192))
+        .overflowPolicy(
+            config
+                .get("ec.events.fair.overflow")
+                .map(OverflowPolicy::fromName)
+                .orElse(OverflowPolicy.DROP_OLDEST))
+        .build();
+  }
+}
@@ -0,0 +1,138 @@
+package com.github.princesslana.eriscasper;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per guild counters for the events passing through a {@link FairDispatcher}, for spotting the
+ * guilds that are keeping the handlers busy.
+ *
+ * <p>Guilds are keyed by {@link PartitionKey#GUILD}. Counters are kept for a guild only while it
+ * has events waiting or being handled, so waits are for the events since it was last idle.
+ */
+public class FairDispatchMetrics {
+
+  private final Map<Object, Counters> counters = new ConcurrentHashMap<>();
+
+  private final LongAdder blocked = new LongAdder();
+
+  private final LongAdder dropped = new LongAdder();
+
+  void queued(Object key) {
+    countersOf(key).depth.incrementAndGet();
+  }
+
+  void started(Object key, long waitNanos) {
+    Counters c = countersOf(key);
+    c.depth.decrementAndGet();
+    c.started.increment();
+    c.waitNanos.add(waitNanos);
+    c.maxWaitNanos.accumulate(waitNanos);
+  }
+
+  void discarded(Object key) {
+    countersOf(key).depth.decrementAndGet();
+  }
+
+  void blocked() {
+    blocked.increment();
+  }
+
+  void dropped() {
+    dropped.increment();
+  }
+
+  void evict(Object key) {
+    counters.remove(key);
+  }
+
+  /** The number of times the source was blocked because too many events were waiting in total. */
+  public long getBlocked() {
+    return blocked.sum();
+  }
+
+  /** The number of events dropped because their guild already had too many waiting. */
+  public long getDropped() {
+    return dropped.sum();
+  }
+
+  /** The number of events for the given guild waiting to be handled. */
+  public int getQueueDepth(Object key) {
+    Counters c = counters.get(key);
+    return c == null ? 0 : c.depth.get();
+  }
+
+  /** The number of events waiting to be handled, for each guild that has any waiting. */
+  public ImmutableMap<Object, Integer> getQueueDepths() {
+    ImmutableMap.Builder<Object, Integer> builder = ImmutableMap.builder();
+    counters.forEach(
+        (key, c) -> {
+          int depth = c.depth.get();
+          if (depth > 0) {
+            builder.put(key, depth);
+          }
+        });
+    return builder.build();
+  }
+
+  /** The guilds with the most events waiting to be handled, deepest first. */
+  public ImmutableList<Object> getDeepest(int limit) {
+    return getQueueDepths()
+        .entrySet()
+        .stream()
+        .sorted(Map.Entry.<Object, Integer>comparingByValue(Comparator.reverseOrder()))
+        .limit(limit)
+        .map(Map.Entry::getKey)
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /** The mean time events for the given guild waited before being handled, or 0 if none have. */
+  public long getMeanWait(Object key, TimeUnit unit) {
+    Counters c = counters.get(key);
+    long count = c == null ? 0 : c.started.sum();
+    return count == 0 ? 0 : unit.convert(c.waitNanos.sum() / count, TimeUnit.NANOSECONDS);
+  }
+
+  /** The longest time any event for the given guild waited before being handled. */
+  public long getMaxWait(Object key, TimeUnit unit) {
+    Counters c = counters.get(key);
+    return c == null ? 0 : unit.convert(c.maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  private Counters countersOf(Object key) {
+    return counters.computeIfAbsent(key, k -> new Counters());
+  }
+
+  @Override
+  public String toString() {
+    ImmutableMap.Builder<Object, String> deepest = ImmutableMap.builder();
+    for (Object key : getDeepest(5)) {
+      deepest.put(
+          key,
+          String.format(
+              "{depth=%d, meanWaitMillis=%d, maxWaitMillis=%d}",
+              getQueueDepth(key),
+              getMeanWait(key, TimeUnit.MILLISECONDS),
+              getMaxWait(key, TimeUnit.MILLISECONDS)));
+    }
+    return String.format(
+        "FairDispatchMetrics{blocked=%d, dropped=%d, deepest=%s}",
+        getBlocked(),
+        getDropped(),
+        deepest.build());
+  }
+
+  private static class Counters {
+    private final AtomicInteger depth = new AtomicInteger();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+  }
+}
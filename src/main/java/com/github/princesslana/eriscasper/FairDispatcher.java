@@ -0,0 +1,344 @@
+package com.github.princesslana.eriscasper;
+
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.CompletableSource;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.functions.Function;
+import io.reactivex.observers.DisposableCompletableObserver;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shares the time spent handling events fairly between guilds, so that a flood of events from one
+ * guild does not hold up the handling of events from all the others.
+ *
+ * <p>Each guild has a queue of its own, and the queues take turns in deficit round robin order. On
+ * its turn a queue is granted a quantum of handling time, and may start handling its events while
+ * it has time left. The time each event takes to handle is charged to its queue once it completes,
+ * so a guild whose events are slow to handle has to wait more turns before handling more. No guild
+ * may have more than a configured number of events in flight at once.
+ *
+ * <p>The number of events waiting to be handled is bounded too, both for each guild and in total.
+ * When a guild's queue is full its events are dropped, oldest or newest as set by {@link
+ * FairDispatchConfig#getOverflowPolicy()}, so that one guild can not hold up the source for every
+ * other. When the total bound is reached the thread emitting from the source is blocked until there
+ * is room, in the same way as a full {@link EventBuffer} with {@link OverflowPolicy#BLOCK}, so that
+ * no more events are taken from the source while the handlers catch up.
+ *
+ * <p>The one dispatcher may be shared by many handlers, in which case they share its limits.
+ */
+public class FairDispatcher {
+
+  private final FairDispatchConfig config;
+
+  private final Scheduler scheduler;
+
+  private final FairDispatchMetrics metrics = new FairDispatchMetrics();
+
+  // all guarded by this
+  private final Map<Object, Lane> lanes = new HashMap<>();
+  private final Deque<Lane> active = new ArrayDeque<>();
+  private int inFlight = 0;
+  private int queued = 0;
+
+  /** A dispatcher that handles events on the given scheduler. */
+  public FairDispatcher(FairDispatchConfig config, Scheduler scheduler) {
+    this.config = config;
+    this.scheduler = scheduler;
+  }
+
+  public FairDispatchMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Handle items from the source, sharing handling time fairly between their keys.
+   *
+   * <p>The returned {@link Completable} completes once the source has completed and all its items
+   * have been handled, and errors if the source or any handler does. The source may be blocked
+   * while it emits, so should not emit on a thread that handlers need to make progress.
+   */
+  public <T> Completable dispatch(
+      Observable<T> source,
+      Function<? super T, ?> key,
+      Function<? super T, ? extends CompletableSource> handler) {
+    return Completable.create(
+        em -> {
+          Dispatch dispatch = new Dispatch(em);
+          // wake the source if it is waiting for room, once it is disposed so that it gives up
+          em.setCancellable(
+              () -> {
+                dispatch.handling.dispose();
+                wakeSource();
+              });
+
+          dispatch.handling.add(
+              source.subscribe(
+                  t ->
+                      enqueue(
+                          key.apply(t),
+                          new Work(dispatch, Completable.defer(() -> handler.apply(t)))),
+                  em::onError,
+                  dispatch::sourceComplete));
+        });
+  }
+
+  private void enqueue(Object key, Work work) {
+    Work dropped = null;
+
+    synchronized (this) {
+      if (!awaitRoom(work.dispatch)) {
+        return;
+      }
+
+      Lane lane = lanes.computeIfAbsent(key, Lane::new);
+
+      if (lane.queue.size() >= config.getMaxQueuedPerKey()) {
+        metrics.dropped();
+
+        if (config.getOverflowPolicy() == OverflowPolicy.DROP) {
+          return;
+        }
+
+        dropped = lane.queue.pollFirst();
+        metrics.discarded(key);
+        queued--;
+      }
+
+      work.dispatch.pending.incrementAndGet();
+      metrics.queued(key);
+      queued++;
+
+      lane.queue.addLast(work);
+
+      if (!lane.active) {
+        lane.active = true;
+        active.addLast(lane);
+      }
+    }
+
+    // a dropped event counts as handled, so its dispatch can still complete
+    if (dropped != null) {
+      dropped.dispatch.handled();
+    }
+
+    drain();
+  }
+
+  // Called with the lock held. Returns whether the work should still be queued.
+  private boolean awaitRoom(Dispatch dispatch) {
+    boolean blocked = false;
+
+    try {
+      while (!dispatch.handling.isDisposed() && queued >= config.getMaxQueued()) {
+        if (!blocked) {
+          blocked = true;
+          metrics.blocked();
+        }
+        wait();
+      }
+    } catch (InterruptedException e) {
+      // queue it anyway rather than lose it, going over the bound by one
+      Thread.currentThread().interrupt();
+    }
+
+    return !dispatch.handling.isDisposed();
+  }
+
+  private synchronized void wakeSource() {
+    notifyAll();
+  }
+
+  private void finished(Lane lane, long nanos) {
+    synchronized (this) {
+      lane.inFlight--;
+      inFlight--;
+      lane.deficit -= nanos;
+
+      if (!lane.active && lane.inFlight == 0) {
+        remove(lane);
+      }
+    }
+
+    drain();
+  }
+
+  /** Start as many events as the limits allow, taking turns between the active lanes. */
+  private void drain() {
+    List<Started> toStart = new ArrayList<>();
+
+    synchronized (this) {
+      long quantum = TimeUnit.MILLISECONDS.toNanos(config.getQuantumMillis());
+
+      // the number of lanes in a row that could not start anything
+      int blocked = 0;
+
+      int queuedBefore = queued;
+
+      while (inFlight < config.getMaxInFlight() && blocked < active.size()) {
+        Lane lane = active.peekFirst();
+
+        if (!lane.hasTurn && lane.inFlight >= config.getMaxInFlightPerKey()) {
+          active.addLast(active.pollFirst());
+          blocked++;
+          continue;
+        }
+
+        blocked = 0;
+
+        if (!lane.hasTurn) {
+          lane.hasTurn = true;
+          lane.deficit = Math.min(lane.deficit + quantum, quantum);
+        }
+
+        while (lane.deficit > 0
+            && !lane.queue.isEmpty()
+            && lane.inFlight < config.getMaxInFlightPerKey()
+            && inFlight < config.getMaxInFlight()) {
+          Work work = lane.queue.pollFirst();
+          queued--;
+
+          if (work.dispatch.handling.isDisposed()) {
+            metrics.discarded(lane.key);
+            continue;
+          }
+
+          lane.inFlight++;
+          inFlight++;
+          toStart.add(new Started(lane, work));
+        }
+
+        if (lane.queue.isEmpty()) {
+          // an idle lane may not save up time for later
+          active.pollFirst();
+          lane.active = false;
+          lane.hasTurn = false;
+          lane.deficit = Math.min(lane.deficit, 0);
+
+          if (lane.inFlight == 0) {
+            remove(lane);
+          }
+        } else if (lane.deficit <= 0 || lane.inFlight >= config.getMaxInFlightPerKey()) {
+          active.addLast(active.pollFirst());
+          lane.hasTurn = false;
+        }
+        // otherwise we are out of room in total, and the lane keeps its turn
+      }
+
+      if (queued < queuedBefore) {
+        notifyAll();
+      }
+    }
+
+    toStart.forEach(this::start);
+  }
+
+  // Called with the lock held.
+  private void remove(Lane lane) {
+    lanes.remove(lane.key);
+    metrics.evict(lane.key);
+  }
+
+  private void start(Started started) {
+    Work work = started.work;
+    long now = System.nanoTime();
+
+    metrics.started(started.lane.key, now - work.queuedAt);
+
+    work.task
+        .subscribeOn(scheduler)
+        // also on dispose, so that a disposed handler gives up its place
+        .doFinally(() -> finished(started.lane, System.nanoTime() - now))
+        .subscribe(new Handling(work.dispatch));
+  }
+
+  private static class Handling extends DisposableCompletableObserver {
+    private final Dispatch dispatch;
+
+    private Handling(Dispatch dispatch) {
+      this.dispatch = dispatch;
+      dispatch.handling.add(this);
+    }
+
+    @Override
+    public void onComplete() {
+      dispatch.handling.delete(this);
+      dispatch.handled();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      dispatch.handling.delete(this);
+      dispatch.emitter.onError(t);
+    }
+  }
+
+  private static class Dispatch {
+    private final CompletableEmitter emitter;
+    private final CompositeDisposable handling = new CompositeDisposable();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private volatile boolean sourceDone = false;
+
+    private Dispatch(CompletableEmitter emitter) {
+      this.emitter = emitter;
+    }
+
+    private void handled() {
+      if (pending.decrementAndGet() == 0 && sourceDone) {
+        emitter.onComplete();
+      }
+    }
+
+    private void sourceComplete() {
+      sourceDone = true;
+      if (pending.get() == 0) {
+        emitter.onComplete();
+      }
+    }
+  }
+
+  private static class Work {
+    private final Dispatch dispatch;
+    private final Completable task;
+    private final long queuedAt = System.nanoTime();
+
+    private Work(Dispatch dispatch, Completable task) {
+      this.dispatch = dispatch;
+      this.task = task;
+    }
+  }
+
+  private static class Started {
+    private final Lane lane;
+    private final Work work;
+
+    private Started(Lane lane, Work work) {
+      this.lane = lane;
+      this.work = work;
+    }
+  }
+
+  private static class Lane {
+    private final Object key;
+    private final Deque<Work> queue = new ArrayDeque<>();
+
+    private boolean active = false;
+    private boolean hasTurn = false;
+    private long deficit = 0;
+    private int inFlight = 0;
+
+    private Lane(Object key) {
+      this.key = key;
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package com.github.princesslana.eriscasper;
+
+import java.util.Arrays;
+
+/**
+ * What to do with an event that arrives when the {@link EventBuffer}, or a guild's queue in a
+ * {@link FairDispatcher}, is full.
+ */
+public enum OverflowPolicy {
+  /**
+   * Wait for space in the buffer. This blocks the thread reading from the websocket, so Discord is
+   * slowed down by TCP flow control rather than events being lost. Heartbeat acknowledgements are
+   * not read while blocked, so a missing acknowledgement does not close the connection then.
+   */
+  BLOCK("block"),
+
+  /**
+   * Drop the oldest buffered event of the same type, or for a {@link FairDispatcher} of the same
+   * guild, to make room. If none are buffered the new event is dropped.
+   */
+  DROP_OLDEST("drop.oldest"),
+
+  /** Drop the new event. */
+  DROP("drop");
+
+  private final String name;
+
+  private OverflowPolicy(String name) {
+    this.name = name;
+  }
+
+  public String get() {
+    return name;
+  }
+
+  public static OverflowPolicy fromName(String name) {
+    return Arrays.stream(OverflowPolicy.values())
+        .filter(p -> p.name.equalsIgnoreCase(name) || p.name().equalsIgnoreCase(name))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("Unknown overflow policy: " + name));
+  }
+}
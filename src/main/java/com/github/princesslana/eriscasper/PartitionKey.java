@@ -0,0 +1,122 @@
+package com.github.princesslana.eriscasper;
+
+import com.github.princesslana.eriscasper.data.Snowflake;
+import com.github.princesslana.eriscasper.data.event.ChannelPinsUpdateEventData;
+import com.github.princesslana.eriscasper.data.event.Event;
+import com.github.princesslana.eriscasper.data.event.GuildEmojisUpdateEventData;
+import com.github.princesslana.eriscasper.data.event.GuildMemberRemoveEventData;
+import com.github.princesslana.eriscasper.data.event.GuildMemberUpdateEventData;
+import com.github.princesslana.eriscasper.data.event.GuildMembersChunkEventData;
+import com.github.princesslana.eriscasper.data.event.GuildRoleCreateEventData;
+import com.github.princesslana.eriscasper.data.event.GuildRoleDeleteEventData;
+import com.github.princesslana.eriscasper.data.event.GuildRoleUpdateEventData;
+import com.github.princesslana.eriscasper.data.immutable.Wrapper;
+import com.github.princesslana.eriscasper.data.resource.Channel;
+import com.github.princesslana.eriscasper.data.resource.Guild;
+import com.github.princesslana.eriscasper.data.resource.GuildMemberWithGuildId;
+import com.github.princesslana.eriscasper.data.resource.Message;
+import com.github.princesslana.eriscasper.data.resource.UnavailableGuild;
+import com.github.princesslana.eriscasper.repository.ChannelRepository;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * What events are partitioned by when handled in lanes by {@link BotContext#onPartitioned}.
+ * Events with the same key are handled in order, and events with different keys in parallel.
+ *
+ * <p>Keys are the guild and channel ids of an event's data, for the data types of ErisCasper-Data
+ * that have them: guilds, channels, messages, and guild member, role, emoji, and pin updates.
+ * Events of other types, such as READY, all share the one key.
+ *
+ * <p>Messages and pin updates give only their channel. Given a {@link ChannelRepository} their
+ * guild is looked up from that channel, so that they share the key of the rest of their guild's
+ * events. Otherwise, or for channels the repository does not know, they are keyed by channel.
+ */
+public enum PartitionKey {
+
+  /** By guild, or by channel for events outside of a guild, such as direct messages. */
+  GUILD,
+
+  /** By channel, or by guild for guild events that are not for any one channel. */
+  CHANNEL,
+
+  /** Everything shares the one key, so all events are handled in order. */
+  NONE;
+
+  public Optional<Snowflake> of(Event event) {
+    return of(event, channelId -> Optional.empty());
+  }
+
+  /**
+   * The key of an event, looking up the guild of events that give only a channel. This blocks on
+   * the repository, so it should answer from memory as {@link
+   * com.github.princesslana.eriscasper.repository.event.ChannelsFromEvents} does.
+   */
+  public Optional<Snowflake> of(Event event, ChannelRepository channels) {
+    return of(
+        event,
+        channelId ->
+            Optional.ofNullable(channels.getChannel(channelId).blockingGet())
+                .flatMap(Channel::getGuildId));
+  }
+
+  private Optional<Snowflake> of(
+      Event event, Function<Snowflake, Optional<Snowflake>> guildOfChannel) {
+    if (this == NONE || !(event instanceof Wrapper)) {
+      return Optional.empty();
+    }
+
+    Object data = ((Wrapper<?>) event).unwrap();
+
+    Optional<Snowflake> guildId = guildIdOf(data);
+    Optional<Snowflake> channelId = channelIdOf(data);
+
+    if (this == GUILD && !guildId.isPresent() && channelId.isPresent()) {
+      guildId = guildOfChannel.apply(channelId.get());
+    }
+
+    return this == GUILD
+        ? (guildId.isPresent() ? guildId : channelId)
+        : (channelId.isPresent() ? channelId : guildId);
+  }
+
+  private static Optional<Snowflake> guildIdOf(Object data) {
+    if (data instanceof Guild) {
+      return Optional.of(((Guild) data).getId());
+    } else if (data instanceof UnavailableGuild) {
+      return Optional.of(((UnavailableGuild) data).getId());
+    } else if (data instanceof Channel) {
+      return ((Channel) data).getGuildId();
+    } else if (data instanceof GuildEmojisUpdateEventData) {
+      return Optional.of(((GuildEmojisUpdateEventData) data).getGuildId());
+    } else if (data instanceof GuildMemberWithGuildId) {
+      return Optional.of(((GuildMemberWithGuildId) data).getGuildId());
+    } else if (data instanceof GuildMemberRemoveEventData) {
+      return Optional.of(((GuildMemberRemoveEventData) data).getGuildId());
+    } else if (data instanceof GuildMemberUpdateEventData) {
+      return Optional.of(((GuildMemberUpdateEventData) data).getGuildId());
+    } else if (data instanceof GuildMembersChunkEventData) {
+      return Optional.of(((GuildMembersChunkEventData) data).getGuildId());
+    } else if (data instanceof GuildRoleCreateEventData) {
+      return Optional.of(((GuildRoleCreateEventData) data).getGuildId());
+    } else if (data instanceof GuildRoleUpdateEventData) {
+      return Optional.of(((GuildRoleUpdateEventData) data).getGuildId());
+    } else if (data instanceof GuildRoleDeleteEventData) {
+      return Optional.of(((GuildRoleDeleteEventData) data).getGuildId());
+    }
+
+    return Optional.empty();
+  }
+
+  private static Optional<Snowflake> channelIdOf(Object data) {
+    if (data instanceof Channel) {
+      return Optional.of(((Channel) data).getId());
+    } else if (data instanceof Message) {
+      return Optional.of(((Message) data).getChannelId());
+    } else if (data instanceof ChannelPinsUpdateEventData) {
+      return Optional.of(((ChannelPinsUpdateEventData) data).getChannelId());
+    }
+
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,212 @@
+package com.github.princesslana.eriscasper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.princesslana.eriscasper.action.ImmutableActionContext;
+import com.github.princesslana.eriscasper.data.util.Jackson;
+import com.github.princesslana.eriscasper.gateway.Encoding;
+import com.github.princesslana.eriscasper.gateway.EventSubscriptions;
+import com.github.princesslana.eriscasper.gateway.Gateway;
+import com.github.princesslana.eriscasper.gateway.GatewayConfig;
+import com.github.princesslana.eriscasper.gateway.IdentifyCoordinator;
+import com.github.princesslana.eriscasper.gateway.ImmutableGatewayConfig;
+import com.github.princesslana.eriscasper.gateway.ImmutableGatewayOptions;
+import com.github.princesslana.eriscasper.gateway.Payloads;
+import com.github.princesslana.eriscasper.journal.Journal;
+import com.github.princesslana.eriscasper.journal.JournalReader;
+import com.github.princesslana.eriscasper.journal.JournalRecord;
+import com.github.princesslana.eriscasper.journal.ReplayWebSocket;
+import com.github.princesslana.eriscasper.repository.RepositoryManager;
+import com.github.princesslana.eriscasper.rest.Routes;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a bot against gateway traffic recorded in a {@link Journal}, without connecting to Discord.
+ *
+ * <p>Each recorded shard is replayed through its own {@link Gateway}, so frames are inflated,
+ * decoded, and passed to the bot just as they were when recorded. Anything the bot sends to the
+ * gateway is discarded. REST requests are not replayed. Unless other {@link Routes} are given, each
+ * fails without leaving this process.
+ */
+public class Replay {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Replay.class);
+
+  private static final BotToken TOKEN = BotToken.of("replay");
+
+  private final Path journal;
+
+  private final ReplayWebSocket.Pacing pacing;
+
+  private final Routes routes;
+
+  private final ObjectMapper jackson = Jackson.newObjectMapper();
+
+  private final EventSubscriptions subscriptions = new EventSubscriptions();
+
+  public Replay(Path journal, ReplayWebSocket.Pacing pacing) {
+    this(journal, pacing, new Routes(TOKEN, offlineHttpClient(), Jackson.newObjectMapper()));
+  }
+
+  public Replay(Path journal, ReplayWebSocket.Pacing pacing, Routes routes) {
+    this.journal = journal;
+    this.pacing = pacing;
+    this.routes = routes;
+  }
+
+  /**
+   * Replay the journal to the given bot. Completes once every shard's recording has been replayed
+   * and the bot has completed.
+   */
+  public Completable run(Bot bot) {
+    return Completable.defer(
+        () -> {
+          ListMultimap<Long, JournalRecord> byShard =
+              MultimapBuilder.treeKeys().arrayListValues().build();
+
+          // only the records' headers are held, their data is read from the journal as replayed
+          JournalReader.read(journal).blockingForEach(r -> byShard.put(r.getShardId(), r));
+
+          if (byShard.isEmpty()) {
+            LOG.warn("Nothing to replay in {}.", journal);
+            return Completable.complete();
+          }
+
+          long recordedStart =
+              byShard.values().stream().mapToLong(JournalRecord::getNanos).min().getAsLong();
+          long replayStart = Schedulers.computation().now(TimeUnit.NANOSECONDS);
+
+          EventBuffer buffer = new EventBuffer(EventBufferConfig.defaults());
+          Observable<ShardEvent> events = buffer.getEvents().toObservable().share();
+
+          List<Observable<ShardEvent>> shards = new ArrayList<>();
+          Optional<Gateway> firstGateway = Optional.empty();
+
+          for (long shardId : byShard.keySet()) {
+            List<ImmutableList<JournalRecord>> connections = connections(byShard.get(shardId));
+
+            if (connections.isEmpty()) {
+              LOG.warn("No connections recorded for shard {}.", shardId);
+              continue;
+            }
+
+            ReplayWebSocket ws =
+                new ReplayWebSocket(
+                    connections, pacing, recordedStart, replayStart, Schedulers.computation());
+
+            Gateway gateway =
+                new Gateway(
+                    ws,
+                    new Payloads(jackson, subscriptions),
+                    ImmutableGatewayOptions.builder()
+                        .config(configFor(connections.get(0).get(0)))
+                        .identifyCoordinator(IdentifyCoordinator.NONE)
+                        .build());
+
+            firstGateway = firstGateway.isPresent() ? firstGateway : Optional.of(gateway);
+
+            shards.add(
+                gateway
+                    .connect("", TOKEN, Optional.empty())
+                    .takeUntil(ws.finished().toObservable())
+                    .<ShardEvent>map(e -> ShardEventTuple.of(shardId, e))
+                    .subscribeOn(Schedulers.io()));
+          }
+
+          if (!firstGateway.isPresent()) {
+            return Completable.complete();
+          }
+
+          BotContext ctx =
+              new BotContext(
+                  events,
+                  ImmutableActionContext.builder()
+                      .routes(routes)
+                      .gateway(firstGateway.get())
+                      .build(),
+                  RepositoryManager.create(events.map(ShardEvent::getEvent), subscriptions),
+                  subscriptions);
+
+          // Start replaying only once the bot is listening
+          Completable replaying =
+              Completable.create(
+                  em -> {
+                    Disposable d =
+                        Observable.merge(shards)
+                            .subscribe(buffer::offer, buffer::error, buffer::complete);
+                    em.setDisposable(d);
+                    em.onComplete();
+                  });
+
+          return bot.apply(ctx).mergeWith(events.ignoreElements()).mergeWith(replaying);
+        });
+  }
+
+  /** A client that fails every request, so that replaying never reaches Discord. */
+  private static OkHttpClient offlineHttpClient() {
+    return new OkHttpClient.Builder()
+        .addInterceptor(
+            c -> {
+              LOG.info("Not replaying request: {} {}.", c.request().method(), c.request().url());
+              throw new IOException("REST requests are not made while replaying.");
+            })
+        .build();
+  }
+
+  /** Split a shard's records in to connections, each starting with its open record. */
+  private static List<ImmutableList<JournalRecord>> connections(List<JournalRecord> records) {
+    List<ImmutableList<JournalRecord>> connections = new ArrayList<>();
+    Optional<ImmutableList.Builder<JournalRecord>> connection = Optional.empty();
+
+    for (JournalRecord record : records) {
+      if (record.getKind() == JournalRecord.Kind.OPEN) {
+        connection.ifPresent(c -> connections.add(c.build()));
+        connection = Optional.of(ImmutableList.builder());
+      }
+
+      // records before the first open are from a connection that started before recording
+      connection.ifPresent(c -> c.add(record));
+    }
+
+    connection.ifPresent(c -> connections.add(c.build()));
+    return connections;
+  }
+
+  /**
+   * The config the connection was recorded with, as given by the url it connected to. Reconnects
+   * are immediate, as there is no server to back off from.
+   */
+  private static GatewayConfig configFor(JournalRecord open) {
+    String recorded = open.getData().utf8();
+    HttpUrl url = HttpUrl.parse(recorded.replaceFirst("^ws", "http"));
+
+    if (url == null) {
+      throw new IllegalStateException("Invalid url recorded: " + recorded);
+    }
+
+    return ImmutableGatewayConfig.builder()
+        .encoding(
+            Optional.ofNullable(url.queryParameter("encoding"))
+                .map(Encoding::fromName)
+                .orElse(Encoding.JSON))
+        .useCompression(url.queryParameter("compress") != null)
+        .reconnectDelayMillis(0)
+        .maxReconnectDelayMillis(0)
+        .build();
+  }
+}
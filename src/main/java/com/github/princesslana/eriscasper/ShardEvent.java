@@ -0,0 +1,15 @@
+package com.github.princesslana.eriscasper;
+
+import com.github.princesslana.eriscasper.data.event.Event;
+import com.github.princesslana.eriscasper.immutable.Tuple;
+import org.immutables.value.Value;
+
+/** An {@link Event} along with the id of the shard that received it. */
+@Value.Immutable
+@Tuple
+public interface ShardEvent {
+
+  long getShardId();
+
+  Event getEvent();
+}
@@ -0,0 +1,392 @@
+package com.github.princesslana.eriscasper;
+
+import com.github.princesslana.eriscasper.action.GatewayRouter;
+import com.github.princesslana.eriscasper.data.Snowflake;
+import com.github.princesslana.eriscasper.data.gateway.ShardPayload;
+import com.github.princesslana.eriscasper.gateway.EventSubscriptions;
+import com.github.princesslana.eriscasper.gateway.Gateway;
+import com.github.princesslana.eriscasper.gateway.IdentifyCoordinator;
+import com.github.princesslana.eriscasper.gateway.ImmutableGatewayOptions;
+import com.github.princesslana.eriscasper.gateway.Payloads;
+import com.github.princesslana.eriscasper.journal.RecordingWebSocket;
+import com.github.princesslana.eriscasper.rest.GatewayBotResponse;
+import com.github.princesslana.eriscasper.rest.GatewayResponse;
+import com.github.princesslana.eriscasper.rest.ImmutableSessionStartLimit;
+import com.github.princesslana.eriscasper.rest.RouteCatalog;
+import com.github.princesslana.eriscasper.rest.Routes;
+import com.github.princesslana.eriscasper.rest.SessionStartLimit;
+import com.github.princesslana.eriscasper.rx.websocket.RxWebSocket;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs any number of shards within the one JVM.
+ *
+ * <p>Each shard has its own {@link Gateway} connection, but they all share the one http client,
+ * Jackson mapper and {@link Routes}, so that REST rate limits are shared between them. Events from
+ * all shards are merged into the one stream, each tagged with the id of the shard that received
+ * it.
+ *
+ * <p>Events pass through a bounded {@link EventBuffer} on their way to bots, so a slow bot
+ * slows down the gateway connections rather than using ever more memory. Handlers may also share
+ * a {@link FairDispatcher}, so that a flood of events from one guild does not hold up the others.
+ *
+ * <p>Shards may be started, stopped, and restarted independently of each other.
+ *
+ * @see <a href="https://discordapp.com/developers/docs/topics/gateway#sharding">
+ *     https://discordapp.com/developers/docs/topics/gateway#sharding</a>
+ */
+public class ShardManager implements GatewayRouter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ShardManager.class);
+
+  // Discord allows only one identify every 5 seconds
+  private static final long START_INTERVAL_SECONDS = 5;
+
+  // Used if we can not get the session start limit from Discord
+  private static final SessionStartLimit DEFAULT_SESSION_START_LIMIT =
+      ImmutableSessionStartLimit.builder()
+          .total(Long.MAX_VALUE)
+          .remaining(Long.MAX_VALUE)
+          .resetAfter(0)
+          .maxConcurrency(1)
+          .build();
+
+  private final BotToken token;
+
+  private final Routes routes;
+
+  private final EventSubscriptions subscriptions;
+
+  private final IdentifyCoordinator identifyCoordinator;
+
+  private final ThreadPools threads;
+
+  private final ImmutableSortedMap<Long, Shard> shards;
+
+  private final EventBuffer events;
+
+  private final FairDispatcher fairDispatcher;
+
+  private final Observable<ShardEvent> observedEvents;
+
+  private volatile Optional<String> gatewayUrl = Optional.empty();
+
+  public ShardManager(ShardManagerOptions options) {
+    this(options, shardId -> newGateway(options, shardId));
+  }
+
+  ShardManager(ShardManagerOptions options, LongFunction<Gateway> gateways) {
+    this.token = options.getToken();
+    this.routes = options.getRoutes();
+    this.subscriptions = options.getSubscriptions();
+    this.identifyCoordinator = options.getIdentifyCoordinator();
+    this.threads = options.getThreads();
+    this.events = new EventBuffer(options.getEventBufferConfig(), threads.getEventScheduler());
+    this.observedEvents = events.getEvents().toObservable().share();
+    this.fairDispatcher =
+        new FairDispatcher(options.getFairDispatchConfig(), threads.getComputeScheduler());
+
+    ImmutableSortedMap.Builder<Long, Shard> builder = ImmutableSortedMap.naturalOrder();
+
+    if (options.getShards().isEmpty()) {
+      builder.put(0L, new Shard(Optional.empty(), gateways.apply(0)));
+    }
+
+    for (ShardPayload shard : options.getShards()) {
+      Shards.check(shard);
+      builder.put(
+          shard.getShardId(), new Shard(Optional.of(shard), gateways.apply(shard.getShardId())));
+    }
+
+    this.shards = builder.build();
+  }
+
+  private static Gateway newGateway(ShardManagerOptions options, long shardId) {
+    OkHttpClient httpClient = options.getHttpClient();
+    Scheduler scheduler = options.getThreads().getShardScheduler(shardId);
+
+    RxWebSocket ws =
+        options
+            .getJournal()
+            .<RxWebSocket>map(j -> new RecordingWebSocket(httpClient, scheduler, j, shardId))
+            .orElseGet(() -> new RxWebSocket(httpClient, scheduler));
+
+    return new Gateway(
+        ws,
+        new Payloads(options.getJackson(), options.getSubscriptions()),
+        ImmutableGatewayOptions.builder()
+            .config(options.getGatewayConfig())
+            .identifyCoordinator(options.getIdentifyCoordinator())
+            .sessionStore(options.getSessionStore())
+            .scheduler(scheduler)
+            .decodeScheduler(options.getThreads().getComputeScheduler())
+            .build());
+  }
+
+  /**
+   * Events received by all shards, observed on the thread dedicated to the {@link EventBuffer}.
+   */
+  public Observable<ShardEvent> getEvents() {
+    return observedEvents;
+  }
+
+  /** Events received by all shards, emitted only as fast as they are requested. */
+  public Flowable<ShardEvent> getEventFlowable() {
+    return events.getEvents();
+  }
+
+  public EventBufferMetrics getEventBufferMetrics() {
+    return events.getMetrics();
+  }
+
+  /** The scheduler that handlers with parallel lanes run on. */
+  public Scheduler getComputeScheduler() {
+    return threads.getComputeScheduler();
+  }
+
+  /** The dispatcher shared by all handlers that handle events fairly between guilds. */
+  public FairDispatcher getFairDispatcher() {
+    return fairDispatcher;
+  }
+
+  public Routes getRoutes() {
+    return routes;
+  }
+
+  public EventSubscriptions getSubscriptions() {
+    return subscriptions;
+  }
+
+  public ImmutableSet<Long> getShardIds() {
+    return shards.keySet();
+  }
+
+  /**
+   * The gateway of the lowest numbered shard. This is shard 0 when running all shards, which is the
+   * shard that receives direct messages.
+   */
+  @Override
+  public Gateway getGateway() {
+    return shards.firstEntry().getValue().gateway;
+  }
+
+  public Gateway getGateway(long shardId) {
+    return getShard(shardId).gateway;
+  }
+
+  /** The gateway of the shard that receives the events of the given guild. */
+  @Override
+  public Gateway getGateway(Snowflake guildId) {
+    long total = shards.firstEntry().getValue().payload.map(ShardPayload::getNumShards).orElse(1L);
+    long shardId = Shards.shardOf(guildId, total);
+
+    Shard shard = shards.get(shardId);
+    Preconditions.checkArgument(
+        shard != null, "Guild %s is on shard %s, which is not run here.", guildId, shardId);
+    return shard.gateway;
+  }
+
+  @Override
+  public ImmutableList<Gateway> getGateways() {
+    return shards.values().stream().map(s -> s.gateway).collect(ImmutableList.toImmutableList());
+  }
+
+  public synchronized boolean isRunning(long shardId) {
+    return !getShard(shardId).connection.isDisposed();
+  }
+
+  /** Connect the given shard to the gateway, if it is not already connected. */
+  public synchronized void start(long shardId) {
+    Shard shard = getShard(shardId);
+
+    if (!shard.connection.isDisposed()) {
+      return;
+    }
+
+    LOG.info("Starting shard {}.", shardId);
+
+    shard.started = true;
+    shard.connection =
+        getGatewayUrl()
+            .toObservable()
+            .flatMap(url -> shard.gateway.connect(url, token, shard.payload))
+            .<ShardEvent>map(e -> ShardEventTuple.of(shardId, e))
+            .subscribe(events::offer, t -> onShardError(shardId, t), () -> onShardEnd(shardId));
+  }
+
+  /** Disconnect the given shard from the gateway. */
+  public synchronized void stop(long shardId) {
+    LOG.info("Stopping shard {}.", shardId);
+    getShard(shardId).connection.dispose();
+  }
+
+  public synchronized void restart(long shardId) {
+    stop(shardId);
+    start(shardId);
+  }
+
+  /** Disconnect all shards from the gateway. */
+  public synchronized void stop() {
+    shards.keySet().forEach(this::stop);
+  }
+
+  /**
+   * Start all shards as fast as the session start limit allows.
+   *
+   * <p>Each identify falls in to the bucket {@code shard_id % max_concurrency}, and each bucket is
+   * allowed one identify every 5 seconds. So we start the shards in waves, every 5 seconds, with
+   * each wave containing at most one shard from each bucket. The identifies themselves are still
+   * gated by the {@link IdentifyCoordinator}, which may be shared with other processes. If there
+   * are not enough session starts remaining for all shards we wait for the limit to reset before
+   * starting.
+   *
+   * <p>The returned {@link Completable} completes once every shard has been started and then ended
+   * of its own accord (which only happens when reconnecting is disabled), errors if any shard
+   * fails with an {@link ErisCasperFatalException}, and stops all shards when disposed.
+   */
+  public Completable run() {
+    return Completable.create(
+        em -> {
+          CompositeDisposable disposables = new CompositeDisposable();
+
+          disposables.add(observedEvents.ignoreElements().subscribe(em::onComplete, em::onError));
+
+          disposables.add(
+              getSessionStartLimit()
+                  .flatMapObservable(this::startInWaves)
+                  .subscribe(wave -> wave.forEach(this::start)));
+
+          disposables.add(Disposables.fromAction(this::stop));
+
+          em.setDisposable(disposables);
+        });
+  }
+
+  private Single<SessionStartLimit> getSessionStartLimit() {
+    return Single.just(RouteCatalog.getGatewayBot())
+        .observeOn(threads.getRestScheduler())
+        .flatMap(routes::execute)
+        .doOnSuccess(gb -> gatewayUrl = Optional.of(gb.getUrl()))
+        .map(GatewayBotResponse::getSessionStartLimit)
+        .doOnSuccess(l -> LOG.info("Session start limit: {}.", l))
+        .doOnSuccess(l -> identifyCoordinator.setMaxConcurrency(l.getMaxConcurrency()))
+        .onErrorReturn(
+            t -> {
+              LOG.warn("Could not get session start limit. Starting one shard at a time.", t);
+              return DEFAULT_SESSION_START_LIMIT;
+            });
+  }
+
+  private Observable<ImmutableList<Long>> startInWaves(SessionStartLimit limit) {
+    long delay = 0;
+
+    if (limit.getRemaining() < shards.size()) {
+      LOG.warn(
+          "Only {} session starts remaining for {} shards. Waiting {}ms for reset.",
+          limit.getRemaining(),
+          shards.size(),
+          limit.getResetAfter());
+      delay = limit.getResetAfter();
+    }
+
+    return Observable.fromIterable(waves(shards.keySet(), limit.getMaxConcurrency()))
+        .zipWith(
+            Observable.interval(
+                delay,
+                TimeUnit.SECONDS.toMillis(START_INTERVAL_SECONDS),
+                TimeUnit.MILLISECONDS,
+                threads.getComputeScheduler()),
+            (wave, i) -> wave);
+  }
+
+  /**
+   * Group shards in to waves that may be started at the same time. Each wave contains at most one
+   * shard from each identify bucket.
+   */
+  static ImmutableList<ImmutableList<Long>> waves(Iterable<Long> shardIds, long maxConcurrency) {
+    ListMultimap<Long, Long> buckets = MultimapBuilder.treeKeys().arrayListValues().build();
+    shardIds.forEach(id -> buckets.put(id % maxConcurrency, id));
+
+    ImmutableList.Builder<ImmutableList<Long>> waves = ImmutableList.builder();
+
+    while (!buckets.isEmpty()) {
+      ImmutableList.Builder<Long> wave = ImmutableList.builder();
+      for (Long bucket : ImmutableList.copyOf(buckets.keySet())) {
+        wave.add(buckets.get(bucket).remove(0));
+      }
+      waves.add(wave.build());
+    }
+
+    return waves.build();
+  }
+
+  private synchronized void onShardError(long shardId, Throwable t) {
+    if (t instanceof ErisCasperFatalException) {
+      LOG.error("Shard {} failed.", shardId, t);
+      events.error(t);
+    } else {
+      LOG.warn("Shard {} failed.", shardId, t);
+      onShardEnd(shardId);
+    }
+  }
+
+  private synchronized void onShardEnd(long shardId) {
+    LOG.info("Shard {} ended.", shardId);
+
+    if (shards.values().stream().allMatch(s -> s.started && s.connection.isDisposed())) {
+      events.complete();
+    }
+  }
+
+  private Shard getShard(long shardId) {
+    Shard shard = shards.get(shardId);
+    Preconditions.checkArgument(shard != null, "No such shard: %s", shardId);
+    return shard;
+  }
+
+  private Single<String> getGatewayUrl() {
+    return Single.defer(
+        () ->
+            gatewayUrl
+                .map(Single::just)
+                .orElseGet(
+                    () ->
+                        Single.just(RouteCatalog.getGateway())
+                            .observeOn(threads.getRestScheduler())
+                            .flatMap(routes::execute)
+                            .map(GatewayResponse::getUrl)
+                            .doOnSuccess(url -> gatewayUrl = Optional.of(url))));
+  }
+
+  private static class Shard {
+    private final Optional<ShardPayload> payload;
+    private final Gateway gateway;
+
+    private boolean started = false;
+    private Disposable connection = Disposables.disposed();
+
+    private Shard(Optional<ShardPayload> payload, Gateway gateway) {
+      this.payload = payload;
+      this.gateway = gateway;
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.github.princesslana.eriscasper;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.princesslana.eriscasper.data.gateway.ShardPayload;
+import com.github.princesslana.eriscasper.gateway.EventSubscriptions;
+import com.github.princesslana.eriscasper.gateway.GatewayConfig;
+import com.github.princesslana.eriscasper.gateway.IdentifyCoordinator;
+import com.github.princesslana.eriscasper.gateway.LocalIdentifyCoordinator;
+import com.github.princesslana.eriscasper.gateway.SessionStore;
+import com.github.princesslana.eriscasper.journal.Journal;
+import com.github.princesslana.eriscasper.rest.Routes;
+import java.util.List;
+import java.util.Optional;
+import okhttp3.OkHttpClient;
+import org.immutables.value.Value;
+
+/** What a {@link ShardManager} runs, and what its shards share. */
+@Value.Immutable
+public abstract class ShardManagerOptions {
+
+  public abstract BotToken getToken();
+
+  /** The client gateway connections are made with. */
+  public abstract OkHttpClient getHttpClient();
+
+  public abstract ObjectMapper getJackson();
+
+  public abstract Routes getRoutes();
+
+  public abstract ThreadPools getThreads();
+
+  /**
+   * The shards to run. If no shards are given there will be a single unsharded connection, with a
+   * shard id of 0.
+   */
+  public abstract List<ShardPayload> getShards();
+
+  @Value.Default
+  public GatewayConfig getGatewayConfig() {
+    return GatewayConfig.defaults();
+  }
+
+  @Value.Default
+  public EventSubscriptions getSubscriptions() {
+    return new EventSubscriptions();
+  }
+
+  @Value.Default
+  public IdentifyCoordinator getIdentifyCoordinator() {
+    return new LocalIdentifyCoordinator();
+  }
+
+  @Value.Default
+  public SessionStore getSessionStore() {
+    return SessionStore.NONE;
+  }
+
+  @Value.Default
+  public EventBufferConfig getEventBufferConfig() {
+    return EventBufferConfig.defaults();
+  }
+
+  @Value.Default
+  public FairDispatchConfig getFairDispatchConfig() {
+    return FairDispatchConfig.defaults();
+  }
+
+  /** The journal to record gateway traffic to, if any. */
+  public abstract Optional<Journal> getJournal();
+}
@@ -1,8 +1,14 @@
 package com.github.princesslana.eriscasper;
 
+import com.github.princesslana.eriscasper.data.Snowflake;
 import com.github.princesslana.eriscasper.data.gateway.ShardPayload;
+import com.github.princesslana.eriscasper.rest.GatewayBotResponse;
+import com.github.princesslana.eriscasper.rest.RouteCatalog;
+import com.github.princesslana.eriscasper.rest.Routes;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.ufoscout.properlty.Properlty;
+import io.reactivex.Single;
 import java.util.Optional;
 
 public final class Shards {
@@ -24,6 +30,49 @@ public final class Shards {
         });
   }
 
+  /**
+   * Whether to use the number of shards recommended by Discord, rather than a configured shard id
+   * and total.
+   */
+  public static boolean isRecommendedFromConfig(Properlty config) {
+    boolean recommended = config.get("ec.shard.auto").map(Boolean::parseBoolean).orElse(false);
+    if (recommended && fromConfig(config).isPresent()) {
+      throw new ErisCasperFatalException(
+          "Can not use the recommended shards when a shard id and total are provided.");
+    }
+    return recommended;
+  }
+
+  /**
+   * All shards, using the number of shards recommended by Discord.
+   *
+   * @see <a href="https://discordapp.com/developers/docs/topics/gateway#get-gateway-bot">
+   *     https://discordapp.com/developers/docs/topics/gateway#get-gateway-bot</a>
+   */
+  public static Single<ImmutableList<ShardPayload>> recommended(Routes routes) {
+    return routes
+        .execute(RouteCatalog.getGatewayBot())
+        .map(GatewayBotResponse::getShards)
+        .map(Shards::all);
+  }
+
+  /** The shards from {@code first} up to, but not including, {@code last} of {@code total}. */
+  public static ImmutableList<ShardPayload> range(long first, long last, long total) {
+    Preconditions.checkArgument(first < last, "First shard must be less than the last shard.");
+
+    ImmutableList.Builder<ShardPayload> shards = ImmutableList.builder();
+    for (long shard = first; shard < last; shard++) {
+      check(shard, total);
+      shards.add(ShardPayload.of(shard, total));
+    }
+    return shards.build();
+  }
+
+  /** All of the shards, when there are {@code total} shards. */
+  public static ImmutableList<ShardPayload> all(long total) {
+    return range(0, total, total);
+  }
+
   public static void check(long shard, long total) {
     Preconditions.checkArgument(shard >= 0, "Shard number must be greater than or equal to 0.");
     Preconditions.checkArgument(total >= 1, "Shard total must be greater than or equal to 1.");
@@ -33,4 +82,15 @@ public final class Shards {
   public static void check(ShardPayload payload) {
     check(payload.getShardId(), payload.getNumShards());
   }
+
+  /**
+   * The shard that receives the events of the given guild, when there are {@code total} shards.
+   *
+   * @see <a href="https://discordapp.com/developers/docs/topics/gateway#sharding">
+   *     https://discordapp.com/developers/docs/topics/gateway#sharding</a>
+   */
+  public static long shardOf(Snowflake guildId, long total) {
+    Preconditions.checkArgument(total >= 1, "Shard total must be greater than or equal to 1.");
+    return (guildId.unwrapAsLong() >> 22) % total;
+  }
 }
@@ -0,0 +1,83 @@
+package com.github.princesslana.eriscasper;
+
+import com.ufoscout.properlty.Properlty;
+import org.immutables.value.Value;
+
+/** Options controlling the number of threads in the {@link ThreadPools}. */
+@Value.Immutable
+public abstract class ThreadConfig {
+
+  /**
+   * The number of single threaded event loops shared between shards. With 0, each shard has a loop
+   * of its own.
+   */
+  @Value.Default
+  public int getShardThreads() {
+    return 0;
+  }
+
+  /**
+   * The number of threads REST requests are made on. This is also the most requests that may be in
+   * flight at once, as each uses a thread only while it is in flight.
+   */
+  @Value.Default
+  public int getRestThreads() {
+    return 16;
+  }
+
+  /**
+   * The number of threads for work that is spread across cores, such as decoding payloads in
+   * parallel and handling events in parallel lanes.
+   */
+  @Value.Default
+  public int getComputeThreads() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  /** The most REST requests that may be in flight at once to any one host. */
+  @Value.Default
+  public int getRestRequestsPerHost() {
+    return getRestThreads();
+  }
+
+  @Value.Check
+  protected void check() {
+    if (getShardThreads() < 0) {
+      throw new IllegalStateException("Shard threads must not be negative.");
+    }
+    if (getRestThreads() <= 0) {
+      throw new IllegalStateException("REST threads must be positive.");
+    }
+    if (getComputeThreads() <= 0) {
+      throw new IllegalStateException("Compute threads must be positive.");
+    }
+    if (getRestRequestsPerHost() <= 0) {
+      throw new IllegalStateException("REST requests per host must be positive.");
+    }
+  }
+
+  public static ThreadConfig defaults() {
+    return ImmutableThreadConfig.builder().build();
+  }
+
+  /**
+   * Read the config from {@code ec.threads.shard}, {@code ec.threads.rest}, {@code
+   * ec.threads.rest.host} (the requests per host, which defaults to the number of REST threads),
+   * and {@code ec.threads.compute} (which defaults to the number of processors).
+   */
+  public static ThreadConfig fromConfig(Properlty config) {
+    ImmutableThreadConfig.Builder builder =
+        ImmutableThreadConfig.builder()
+            .shardThreads(config.get("ec.threads.shard").map(Integer::parseInt).orElse(0))
+            .restThreads(config.get("ec.threads.rest").map(Integer::parseInt).orElse(16));
+
+    config.get("ec.threads.compute").map(Integer::parseInt).ifPresent(builder::computeThreads);
+
+    config
+        .get("ec.threads.rest.host")
+        .map(Integer::parseInt)
+        .ifPresent(builder::restRequestsPerHost);
+
+    return builder.build();
+  }
+}
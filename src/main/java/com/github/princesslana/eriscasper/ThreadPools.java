@@ -0,0 +1,107 @@
+package com.github.princesslana.eriscasper;
+
+import com.github.princesslana.eriscasper.rx.HashedWheelTimer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import okhttp3.Dispatcher;
+
+/**
+ * The threads that ErisCasper does its work on, in place of the shared RxJava schedulers.
+ *
+ * <p>Each shard's heartbeats, send queue, and timers run on a single threaded event loop, so that
+ * the work for a shard stays on one thread and does not contend with other shards. REST requests
+ * are made on a bounded pool of their own, with an OkHttp {@link Dispatcher} queueing requests
+ * beyond the pool's size rather than starting more threads. Requests waiting for a rate limit are
+ * resumed on a thread of their own, so that they are not stuck behind requests that fill the pool.
+ * Work that is spread across cores, such as parallel decoding and handlers with parallel lanes,
+ * runs on a bounded compute pool. Events are taken from the {@link EventBuffer} on a thread of
+ * their own.
+ *
+ * <p>Delays on any of these schedulers, such as waiting for a rate limit, are waited on the shared
+ * {@link HashedWheelTimer} rather than by any of the threads.
+ */
+public class ThreadPools {
+
+  private final ThreadConfig config;
+
+  private final List<ExecutorService> executors = new CopyOnWriteArrayList<>();
+
+  private final ConcurrentMap<Long, Scheduler> shardSchedulers = new ConcurrentHashMap<>();
+
+  private final Scheduler restScheduler;
+
+  private final Scheduler computeScheduler;
+
+  private final Scheduler eventScheduler;
+
+  private final Dispatcher restDispatcher;
+
+  public ThreadPools(ThreadConfig config) {
+    this.config = config;
+
+    // not the executor the dispatcher makes requests on, as those may use all of its threads
+    this.restScheduler =
+        HashedWheelTimer.shared().on(Schedulers.from(newExecutor(1, "ec-rest-limits")));
+
+    this.restDispatcher = new Dispatcher(newExecutor(config.getRestThreads(), "ec-rest-%d"));
+    restDispatcher.setMaxRequests(config.getRestThreads());
+    restDispatcher.setMaxRequestsPerHost(config.getRestRequestsPerHost());
+
+    this.computeScheduler =
+        HashedWheelTimer.shared()
+            .on(Schedulers.from(newExecutor(config.getComputeThreads(), "ec-compute-%d")));
+
+    this.eventScheduler = Schedulers.from(newExecutor(1, "ec-events"));
+  }
+
+  /** The event loop for the given shard. Shards share loops when configured with fewer threads. */
+  public Scheduler getShardScheduler(long shardId) {
+    long loop = config.getShardThreads() == 0 ? shardId : shardId % config.getShardThreads();
+
+    return shardSchedulers.computeIfAbsent(
+        loop, l -> HashedWheelTimer.shared().on(Schedulers.from(newExecutor(1, "ec-shard-" + l))));
+  }
+
+  /** The scheduler that REST requests waiting for a rate limit are resumed on. */
+  public Scheduler getRestScheduler() {
+    return restScheduler;
+  }
+
+  /** The scheduler for work spread across cores, in place of the computation scheduler. */
+  public Scheduler getComputeScheduler() {
+    return computeScheduler;
+  }
+
+  /**
+   * The thread that events are taken from the {@link EventBuffer} on, and passed to handlers that
+   * do not have parallel lanes. It waits while the buffer is empty, so is not shared.
+   */
+  public Scheduler getEventScheduler() {
+    return eventScheduler;
+  }
+
+  /** The dispatcher for REST requests, which makes them on the REST threads. */
+  public Dispatcher getRestDispatcher() {
+    return restDispatcher;
+  }
+
+  /** Stop all threads. Work that is already running is allowed to finish. */
+  public void shutdown() {
+    executors.forEach(ExecutorService::shutdown);
+  }
+
+  private ExecutorService newExecutor(int threads, String nameFormat) {
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            threads, new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+    executors.add(executor);
+    return executor;
+  }
+}
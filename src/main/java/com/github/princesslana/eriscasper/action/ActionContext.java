@@ -10,4 +10,10 @@ public interface ActionContext {
   Routes getRoutes();
 
   Gateway getGateway();
+
+  /** Chooses the shard that each {@link GatewayAction} is sent on. */
+  @Value.Default
+  default GatewayRouter getGatewayRouter() {
+    return GatewayRouter.of(getGateway());
+  }
 }
@@ -1,19 +1,69 @@
 package com.github.princesslana.eriscasper.action;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.princesslana.eriscasper.data.Snowflake;
+import com.github.princesslana.eriscasper.data.util.Jackson;
 import com.github.princesslana.eriscasper.gateway.OpCode;
 import io.reactivex.Completable;
+import java.util.Optional;
+import java.util.stream.Collectors;
 import org.immutables.value.Value;
 
+/**
+ * Sends a payload to the gateway.
+ *
+ * <p>Guild member requests and voice state updates are sent on the shard of the guild they are
+ * for, which is taken from the {@code guild_id} of the data unless given. Status updates are sent
+ * on every shard. Anything else is sent on the context's gateway.
+ */
 @Value.Immutable
 public abstract class GatewayAction<I> implements Action {
 
+  private static final ObjectMapper JACKSON = Jackson.newObjectMapper();
+
   public abstract OpCode getCode();
 
   public abstract I getData();
 
+  public abstract Optional<Snowflake> getGuildId();
+
   @Override
   public Completable apply(ActionContext context) {
-    return context.getGateway().execute(getCode(), getData());
+    GatewayRouter router = context.getGatewayRouter();
+
+    switch (getCode()) {
+      case STATUS_UPDATE:
+        return Completable.merge(
+            router
+                .getGateways()
+                .stream()
+                .map(g -> g.execute(getCode(), getData()))
+                .collect(Collectors.toList()));
+
+      case REQUEST_GUILD_MEMBERS:
+      case VOICE_STATE_UPDATE:
+        return Completable.defer(
+            () ->
+                guildId()
+                    .map(router::getGateway)
+                    .orElseGet(router::getGateway)
+                    .execute(getCode(), getData()));
+
+      default:
+        return router.getGateway().execute(getCode(), getData());
+    }
+  }
+
+  private Optional<Snowflake> guildId() {
+    if (getGuildId().isPresent()) {
+      return getGuildId();
+    }
+
+    JsonNode guildId = JACKSON.valueToTree(getData()).path("guild_id");
+    return guildId.isTextual() || guildId.isNumber()
+        ? Optional.of(Snowflake.of(guildId.asText()))
+        : Optional.empty();
   }
 
   static <I> GatewayAction<I> of(OpCode code, I data) {
@@ -0,0 +1,48 @@
+package com.github.princesslana.eriscasper.action;
+
+import com.github.princesslana.eriscasper.data.Snowflake;
+import com.github.princesslana.eriscasper.gateway.Gateway;
+import com.google.common.collect.ImmutableList;
+import java.util.Collection;
+
+/**
+ * Chooses the gateway connection that a {@link GatewayAction} is sent on.
+ *
+ * <p>When sharding, actions about a guild must be sent on the shard that receives the events of
+ * that guild, and status updates must be sent on every shard.
+ */
+public interface GatewayRouter {
+
+  /** The gateway for actions that are not about any one guild. */
+  Gateway getGateway();
+
+  /**
+   * The gateway of the shard that receives the events of the given guild.
+   *
+   * @throws IllegalArgumentException if the guild's shard is not connected through this router
+   */
+  Gateway getGateway(Snowflake guildId);
+
+  /** The gateways of all shards. */
+  Collection<Gateway> getGateways();
+
+  /** Route all actions through the one unsharded gateway. */
+  static GatewayRouter of(Gateway gateway) {
+    return new GatewayRouter() {
+      @Override
+      public Gateway getGateway() {
+        return gateway;
+      }
+
+      @Override
+      public Gateway getGateway(Snowflake guildId) {
+        return gateway;
+      }
+
+      @Override
+      public Collection<Gateway> getGateways() {
+        return ImmutableList.of(gateway);
+      }
+    };
+  }
+}
@@ -130,8 +130,7 @@ public class Robot implements Bot {
   }
 
   private static Observable<Message> messages(BotContext bctx) {
-    return bctx.getEvents()
-        .ofType(MessageCreateEvent.class)
+    return bctx.ofType(MessageCreateEvent.class)
         .map(MessageCreateEvent::unwrap)
         .filter(m -> !Users.isBot(m.getAuthor()));
   }
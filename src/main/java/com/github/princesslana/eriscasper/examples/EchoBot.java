@@ -12,10 +12,8 @@ public class EchoBot implements Bot {
 
   @Override
   public Completable apply(BotContext ctx) {
-    return ctx.getEvents()
-
-        // Same type as PingBot in examples
-        .ofType(MessageCreateEvent.class)
+    // Same type as PingBot in examples
+    return ctx.ofType(MessageCreateEvent.class)
         .map(MessageCreateEvent::unwrap)
 
         // Need to check for bot's own message
@@ -0,0 +1,36 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exponential backoff with jitter.
+ *
+ * <p>Each delay is chosen at random between half and all of the current cap, which doubles with
+ * each attempt up to a maximum. The jitter stops many clients that were disconnected at the same
+ * time from all reconnecting at the same time.
+ */
+public class Backoff {
+
+  private final long initialMillis;
+  private final long maxMillis;
+
+  private int attempts = 0;
+
+  public Backoff(long initial, long max, TimeUnit unit) {
+    this.initialMillis = unit.toMillis(initial);
+    this.maxMillis = unit.toMillis(max);
+  }
+
+  /** The delay, in milliseconds, before the next attempt. */
+  public synchronized long next() {
+    long cap = Math.min(maxMillis, initialMillis << Math.min(attempts, 20));
+    attempts++;
+    return cap / 2 + ThreadLocalRandom.current().nextLong(cap / 2 + 1);
+  }
+
+  /** Start again from the initial delay, as after a successful attempt. */
+  public synchronized void reset() {
+    attempts = 0;
+  }
+}
@@ -0,0 +1,52 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters for the transport compression of a {@link Gateway}. */
+public class CompressionMetrics {
+
+  private final LongAdder payloads = new LongAdder();
+  private final LongAdder compressedBytes = new LongAdder();
+  private final LongAdder inflatedBytes = new LongAdder();
+  private final LongAdder inflateNanos = new LongAdder();
+
+  void inflated(long compressed, long inflated, long nanos) {
+    payloads.increment();
+    compressedBytes.add(compressed);
+    inflatedBytes.add(inflated);
+    inflateNanos.add(nanos);
+  }
+
+  public long getPayloads() {
+    return payloads.sum();
+  }
+
+  public long getCompressedBytes() {
+    return compressedBytes.sum();
+  }
+
+  public long getInflatedBytes() {
+    return inflatedBytes.sum();
+  }
+
+  /** Ratio of inflated to compressed bytes. Higher is better. */
+  public double getCompressionRatio() {
+    long compressed = getCompressedBytes();
+    return compressed == 0 ? 0 : (double) getInflatedBytes() / compressed;
+  }
+
+  public long getInflateTime(TimeUnit unit) {
+    return unit.convert(inflateNanos.sum(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "CompressionMetrics{payloads=%d, compressedBytes=%d, inflatedBytes=%d, inflateMillis=%d}",
+        getPayloads(),
+        getCompressedBytes(),
+        getInflatedBytes(),
+        getInflateTime(TimeUnit.MILLISECONDS));
+  }
+}
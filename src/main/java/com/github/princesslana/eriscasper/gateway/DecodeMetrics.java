@@ -0,0 +1,47 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters for the payloads read by {@link Payloads}. */
+public class DecodeMetrics {
+
+  private final LongAdder frames = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder skippedFrames = new LongAdder();
+  private final LongAdder skippedBytes = new LongAdder();
+
+  void read(long size) {
+    frames.increment();
+    bytes.add(size);
+  }
+
+  void skipped(long size) {
+    skippedFrames.increment();
+    skippedBytes.add(size);
+  }
+
+  public long getFrames() {
+    return frames.sum();
+  }
+
+  /** The size of the payloads read, in bytes, so of their UTF-8 encoding if received as text. */
+  public long getBytes() {
+    return bytes.sum();
+  }
+
+  /** Dispatches whose data was not read as no one is subscribed to their type. */
+  public long getSkippedFrames() {
+    return skippedFrames.sum();
+  }
+
+  public long getSkippedBytes() {
+    return skippedBytes.sum();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "DecodeMetrics{frames=%d, bytes=%d, skippedFrames=%d, skippedBytes=%d}",
+        getFrames(), getBytes(), getSkippedFrames(), getSkippedBytes());
+  }
+}
@@ -0,0 +1,29 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import java.util.Arrays;
+
+/**
+ * @see <a href="https://discordapp.com/developers/docs/topics/gateway#etfjson">
+ *     https://discordapp.com/developers/docs/topics/gateway#etfjson</a>
+ */
+public enum Encoding {
+  JSON("json"),
+  ETF("etf");
+
+  private final String name;
+
+  private Encoding(String name) {
+    this.name = name;
+  }
+
+  public String get() {
+    return name;
+  }
+
+  public static Encoding fromName(String name) {
+    return Arrays.stream(Encoding.values())
+        .filter(e -> e.name.equalsIgnoreCase(name))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("Unknown encoding: " + name));
+  }
+}
@@ -0,0 +1,421 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.base.Charsets;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import okio.Buffer;
+
+/**
+ * Translates between Erlang's External Term Format and Jackson token streams.
+ *
+ * <p>Terms are read into a {@link JsonGenerator} and written from a {@link JsonParser}, which lets
+ * the same Jackson binding be used for both the json and etf gateway encodings. Terms are mapped as
+ * done by Discord's erlpack:
+ *
+ * <ul>
+ *   <li>maps are objects, with atom or binary keys as field names
+ *   <li>lists and tuples are arrays
+ *   <li>binaries are UTF-8 strings
+ *   <li>the atoms <code>nil</code>, <code>true</code>, and <code>false</code> are null and
+ *       booleans. Other atoms are strings
+ * </ul>
+ *
+ * @see <a href="http://erlang.org/doc/apps/erts/erl_ext_dist.html">
+ *     http://erlang.org/doc/apps/erts/erl_ext_dist.html</a>
+ * @see <a href="https://discordapp.com/developers/docs/topics/gateway#etfjson">
+ *     https://discordapp.com/developers/docs/topics/gateway#etfjson</a>
+ */
+public final class Etf {
+
+  private static final int VERSION = 131;
+
+  private static final int NEW_FLOAT_EXT = 70;
+  private static final int COMPRESSED = 80;
+  private static final int SMALL_INTEGER_EXT = 97;
+  private static final int INTEGER_EXT = 98;
+  private static final int FLOAT_EXT = 99;
+  private static final int ATOM_EXT = 100;
+  private static final int SMALL_TUPLE_EXT = 104;
+  private static final int LARGE_TUPLE_EXT = 105;
+  private static final int NIL_EXT = 106;
+  private static final int STRING_EXT = 107;
+  private static final int LIST_EXT = 108;
+  private static final int BINARY_EXT = 109;
+  private static final int SMALL_BIG_EXT = 110;
+  private static final int LARGE_BIG_EXT = 111;
+  private static final int SMALL_ATOM_EXT = 115;
+  private static final int MAP_EXT = 116;
+  private static final int ATOM_UTF8_EXT = 118;
+  private static final int SMALL_ATOM_UTF8_EXT = 119;
+
+  private static final String NIL = "nil";
+  private static final String TRUE = "true";
+  private static final String FALSE = "false";
+
+  private static final BigInteger MIN_LONG = BigInteger.valueOf(Long.MIN_VALUE);
+  private static final BigInteger MAX_LONG = BigInteger.valueOf(Long.MAX_VALUE);
+
+  private Etf() {}
+
+  /**
+   * Reads a single term from the provided bytes and writes it to the generator.
+   *
+   * @throws IOException if the bytes are not a valid term or the generator can not be written to
+   */
+  public static void read(byte[] bytes, JsonGenerator out) throws IOException {
+    ByteBuffer in = ByteBuffer.wrap(bytes);
+
+    try {
+      int version = in.get() & 0xff;
+      if (version != VERSION) {
+        throw new IOException("Unsupported ETF version: " + version);
+      }
+
+      if ((in.get(in.position()) & 0xff) == COMPRESSED) {
+        in.get();
+        in = ByteBuffer.wrap(uncompress(in));
+      }
+
+      readTerm(in, out);
+      out.flush();
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Unexpected end of ETF term", e);
+    }
+  }
+
+  private static byte[] uncompress(ByteBuffer in) throws IOException {
+    int size = in.getInt();
+    byte[] uncompressed = new byte[size];
+
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(in.array(), in.arrayOffset() + in.position(), in.remaining());
+      if (inflater.inflate(uncompressed) != size) {
+        throw new IOException("Compressed ETF term was shorter than expected");
+      }
+    } catch (DataFormatException e) {
+      throw new IOException(e);
+    } finally {
+      inflater.end();
+    }
+
+    return uncompressed;
+  }
+
+  private static void readTerm(ByteBuffer in, JsonGenerator out) throws IOException {
+    int tag = in.get() & 0xff;
+
+    switch (tag) {
+      case SMALL_INTEGER_EXT:
+        out.writeNumber(in.get() & 0xff);
+        break;
+      case INTEGER_EXT:
+        out.writeNumber(in.getInt());
+        break;
+      case NEW_FLOAT_EXT:
+        out.writeNumber(in.getDouble());
+        break;
+      case FLOAT_EXT:
+        out.writeNumber(Double.parseDouble(readString(in, 31).trim()));
+        break;
+      case SMALL_BIG_EXT:
+        readBig(in, in.get() & 0xff, out);
+        break;
+      case LARGE_BIG_EXT:
+        readBig(in, in.getInt(), out);
+        break;
+      case ATOM_EXT:
+      case ATOM_UTF8_EXT:
+        writeAtom(readString(in, in.getShort() & 0xffff), out);
+        break;
+      case SMALL_ATOM_EXT:
+      case SMALL_ATOM_UTF8_EXT:
+        writeAtom(readString(in, in.get() & 0xff), out);
+        break;
+      case BINARY_EXT:
+        out.writeString(readString(in, in.getInt()));
+        break;
+      case STRING_EXT:
+        readCharList(in, out);
+        break;
+      case NIL_EXT:
+        out.writeStartArray();
+        out.writeEndArray();
+        break;
+      case LIST_EXT:
+        readList(in, out);
+        break;
+      case SMALL_TUPLE_EXT:
+        readArray(in, in.get() & 0xff, out);
+        break;
+      case LARGE_TUPLE_EXT:
+        readArray(in, in.getInt(), out);
+        break;
+      case MAP_EXT:
+        readMap(in, out);
+        break;
+      default:
+        throw new IOException("Unsupported ETF tag: " + tag);
+    }
+  }
+
+  private static String readString(ByteBuffer in, int length) {
+    String s = new String(in.array(), in.arrayOffset() + in.position(), length, Charsets.UTF_8);
+    in.position(in.position() + length);
+    return s;
+  }
+
+  private static void writeAtom(String atom, JsonGenerator out) throws IOException {
+    switch (atom) {
+      case NIL:
+        out.writeNull();
+        break;
+      case TRUE:
+        out.writeBoolean(true);
+        break;
+      case FALSE:
+        out.writeBoolean(false);
+        break;
+      default:
+        out.writeString(atom);
+    }
+  }
+
+  private static void readBig(ByteBuffer in, int length, JsonGenerator out) throws IOException {
+    boolean negative = in.get() != 0;
+
+    if (length <= 8) {
+      // little endian magnitude
+      long magnitude = 0;
+      for (int i = 0; i < length; i++) {
+        magnitude |= (long) (in.get() & 0xff) << (8 * i);
+      }
+
+      // Snowflakes, and anything else Discord sends, will fit in a long
+      if (magnitude >= 0) {
+        out.writeNumber(negative ? -magnitude : magnitude);
+      } else {
+        BigInteger value = new BigInteger(Long.toUnsignedString(magnitude));
+        out.writeNumber(negative ? value.negate() : value);
+      }
+      return;
+    }
+
+    byte[] magnitude = new byte[length];
+    for (int i = length - 1; i >= 0; i--) {
+      magnitude[i] = in.get();
+    }
+
+    BigInteger value = new BigInteger(1, magnitude);
+    value = negative ? value.negate() : value;
+
+    if (value.compareTo(MIN_LONG) >= 0 && value.compareTo(MAX_LONG) <= 0) {
+      out.writeNumber(value.longValue());
+    } else {
+      out.writeNumber(value);
+    }
+  }
+
+  private static void readCharList(ByteBuffer in, JsonGenerator out) throws IOException {
+    int length = in.getShort() & 0xffff;
+    out.writeStartArray();
+    for (int i = 0; i < length; i++) {
+      out.writeNumber(in.get() & 0xff);
+    }
+    out.writeEndArray();
+  }
+
+  private static void readList(ByteBuffer in, JsonGenerator out) throws IOException {
+    int length = in.getInt();
+    out.writeStartArray();
+    for (int i = 0; i < length; i++) {
+      readTerm(in, out);
+    }
+    out.writeEndArray();
+
+    // Proper lists end with NIL_EXT as their tail. We have nowhere to put any other tail.
+    if ((in.get() & 0xff) != NIL_EXT) {
+      throw new IOException("Improper lists are not supported");
+    }
+  }
+
+  private static void readArray(ByteBuffer in, int length, JsonGenerator out) throws IOException {
+    out.writeStartArray();
+    for (int i = 0; i < length; i++) {
+      readTerm(in, out);
+    }
+    out.writeEndArray();
+  }
+
+  private static void readMap(ByteBuffer in, JsonGenerator out) throws IOException {
+    int arity = in.getInt();
+    out.writeStartObject();
+    for (int i = 0; i < arity; i++) {
+      out.writeFieldName(readKey(in));
+      readTerm(in, out);
+    }
+    out.writeEndObject();
+  }
+
+  private static String readKey(ByteBuffer in) throws IOException {
+    int tag = in.get() & 0xff;
+    switch (tag) {
+      case ATOM_EXT:
+      case ATOM_UTF8_EXT:
+        return readString(in, in.getShort() & 0xffff);
+      case SMALL_ATOM_EXT:
+      case SMALL_ATOM_UTF8_EXT:
+        return readString(in, in.get() & 0xff);
+      case BINARY_EXT:
+        return readString(in, in.getInt());
+      case SMALL_INTEGER_EXT:
+        return Integer.toString(in.get() & 0xff);
+      case INTEGER_EXT:
+        return Integer.toString(in.getInt());
+      default:
+        throw new IOException("Unsupported ETF map key tag: " + tag);
+    }
+  }
+
+  /**
+   * Writes the next value available from the parser as a term.
+   *
+   * @throws IOException if the parser can not be read from
+   */
+  public static byte[] write(JsonParser in) throws IOException {
+    Buffer out = new Buffer();
+    out.writeByte(VERSION);
+
+    if (in.currentToken() == null) {
+      in.nextToken();
+    }
+    writeTerm(in, out);
+
+    return out.readByteArray();
+  }
+
+  private static void writeTerm(JsonParser in, Buffer out) throws IOException {
+    JsonToken token = in.currentToken();
+
+    if (token == null) {
+      throw new IOException("Unexpected end of input");
+    }
+
+    switch (token) {
+      case START_OBJECT:
+        writeMap(in, out);
+        break;
+      case START_ARRAY:
+        writeList(in, out);
+        break;
+      case VALUE_STRING:
+        writeBinary(in.getText(), out);
+        break;
+      case VALUE_NUMBER_INT:
+        writeInteger(in.getBigIntegerValue(), out);
+        break;
+      case VALUE_NUMBER_FLOAT:
+        out.writeByte(NEW_FLOAT_EXT);
+        out.writeLong(Double.doubleToLongBits(in.getDoubleValue()));
+        break;
+      case VALUE_TRUE:
+        writeAtom(TRUE, out);
+        break;
+      case VALUE_FALSE:
+        writeAtom(FALSE, out);
+        break;
+      case VALUE_NULL:
+        writeAtom(NIL, out);
+        break;
+      case VALUE_EMBEDDED_OBJECT:
+        Object embedded = in.getEmbeddedObject();
+        if (embedded instanceof byte[]) {
+          out.writeByte(BINARY_EXT);
+          out.writeInt(((byte[]) embedded).length);
+          out.write((byte[]) embedded);
+        } else {
+          writeBinary(in.getText(), out);
+        }
+        break;
+      default:
+        throw new IOException("Unexpected token: " + token);
+    }
+  }
+
+  private static void writeMap(JsonParser in, Buffer out) throws IOException {
+    // The arity comes before the entries, so buffer them while we count
+    Buffer entries = new Buffer();
+    int arity = 0;
+
+    while (in.nextToken() == JsonToken.FIELD_NAME) {
+      writeBinary(in.getCurrentName(), entries);
+      in.nextToken();
+      writeTerm(in, entries);
+      arity++;
+    }
+
+    out.writeByte(MAP_EXT);
+    out.writeInt(arity);
+    out.writeAll(entries);
+  }
+
+  private static void writeList(JsonParser in, Buffer out) throws IOException {
+    Buffer elements = new Buffer();
+    int length = 0;
+
+    while (in.nextToken() != JsonToken.END_ARRAY) {
+      writeTerm(in, elements);
+      length++;
+    }
+
+    if (length > 0) {
+      out.writeByte(LIST_EXT);
+      out.writeInt(length);
+      out.writeAll(elements);
+    }
+    out.writeByte(NIL_EXT);
+  }
+
+  private static void writeBinary(String s, Buffer out) {
+    byte[] bytes = s.getBytes(Charsets.UTF_8);
+    out.writeByte(BINARY_EXT);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static void writeAtom(String atom, Buffer out) {
+    out.writeByte(SMALL_ATOM_UTF8_EXT);
+    out.writeByte(atom.length());
+    out.writeUtf8(atom);
+  }
+
+  private static void writeInteger(BigInteger value, Buffer out) {
+    if (value.signum() >= 0 && value.bitLength() <= 8) {
+      out.writeByte(SMALL_INTEGER_EXT);
+      out.writeByte(value.intValue());
+    } else if (value.bitLength() <= 31) {
+      out.writeByte(INTEGER_EXT);
+      out.writeInt(value.intValue());
+    } else {
+      byte[] magnitude = value.abs().toByteArray();
+
+      // toByteArray is big endian and may include a leading zero for the sign bit
+      int start = magnitude[0] == 0 ? 1 : 0;
+      int length = magnitude.length - start;
+
+      out.writeByte(SMALL_BIG_EXT);
+      out.writeByte(length);
+      out.writeByte(value.signum() < 0 ? 1 : 0);
+      for (int i = magnitude.length - 1; i >= start; i--) {
+        out.writeByte(magnitude[i]);
+      }
+    }
+  }
+}
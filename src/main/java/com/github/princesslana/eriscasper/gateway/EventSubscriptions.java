@@ -0,0 +1,82 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.github.princesslana.eriscasper.data.event.Event;
+import com.google.common.base.CaseFormat;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The dispatch event types that something is listening for.
+ *
+ * <p>Dispatches of any other type are skipped by {@link Payloads} without their data being read.
+ * READY and RESUMED are always subscribed to, as they are used by the {@link Gateway} itself.
+ * Subscribing to an event class whose name does not give its dispatch type (e.g., {@link Event}
+ * itself) subscribes to every type.
+ */
+public class EventSubscriptions {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EventSubscriptions.class);
+
+  private static final String IMMUTABLE_PREFIX = "Immutable";
+  private static final String EVENT_SUFFIX = "Event";
+
+  private final Set<String> types = ConcurrentHashMap.newKeySet();
+
+  private volatile boolean all = false;
+
+  public EventSubscriptions() {
+    types.add("READY");
+    types.add("RESUMED");
+  }
+
+  /** Subscribe to the dispatch type of the given event class. */
+  public void add(Class<? extends Event> evt) {
+    Optional<String> type = typeOf(evt);
+
+    if (!type.isPresent()) {
+      LOG.debug("Subscribing to all events for {}", evt);
+      addAll();
+      return;
+    }
+
+    types.add(type.get());
+  }
+
+  /** Subscribe to every dispatch type. */
+  public void addAll() {
+    all = true;
+  }
+
+  public boolean isSubscribed(String type) {
+    return all || types.contains(type);
+  }
+
+  public static EventSubscriptions all() {
+    EventSubscriptions subscriptions = new EventSubscriptions();
+    subscriptions.addAll();
+    return subscriptions;
+  }
+
+  /**
+   * The dispatch type of the given event class (e.g., MESSAGE_CREATE for MessageCreateEvent), or
+   * empty if its name does not give one.
+   */
+  public static Optional<String> typeOf(Class<? extends Event> evt) {
+    String name = evt.getSimpleName();
+
+    if (name.startsWith(IMMUTABLE_PREFIX)) {
+      name = name.substring(IMMUTABLE_PREFIX.length());
+    }
+
+    if (!name.endsWith(EVENT_SUFFIX) || name.equals(EVENT_SUFFIX)) {
+      return Optional.empty();
+    }
+
+    return Optional.of(
+        CaseFormat.UPPER_CAMEL.to(
+            CaseFormat.UPPER_UNDERSCORE, name.substring(0, name.length() - EVENT_SUFFIX.length())));
+  }
+}
@@ -0,0 +1,68 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import io.reactivex.Completable;
+import io.reactivex.schedulers.Schedulers;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Coordinates identifies between all processes on this host that use the same directory.
+ *
+ * <p>Each bucket has a file holding the time of its next free slot. A slot is reserved while
+ * holding an exclusive lock on that file, so only one process may reserve a slot in a bucket at a
+ * time. The lock is not held while waiting for the slot.
+ *
+ * <p>Processes for different bots should use different directories, else they will limit each
+ * other.
+ */
+public class FileLockIdentifyCoordinator extends IdentifyCoordinator {
+
+  // File locks are held by the JVM, so threads within it must also take turns
+  private static final Object JVM_LOCK = new Object();
+
+  private final Path directory;
+
+  public FileLockIdentifyCoordinator(Path directory) {
+    this.directory = directory;
+  }
+
+  @Override
+  public Completable acquire(long shardId) {
+    return super.acquire(shardId).subscribeOn(Schedulers.io());
+  }
+
+  @Override
+  protected long reserve(long bucket) throws IOException {
+    Files.createDirectories(directory);
+
+    Path file = directory.resolve(String.format("identify-%d.lock", bucket));
+
+    synchronized (JVM_LOCK) {
+      try (FileChannel channel =
+              FileChannel.open(
+                  file,
+                  StandardOpenOption.CREATE,
+                  StandardOpenOption.READ,
+                  StandardOpenOption.WRITE);
+          FileLock lock = channel.lock()) {
+
+        ByteBuffer in = ByteBuffer.allocate(Long.BYTES);
+        long next = channel.read(in, 0) == Long.BYTES ? in.getLong(0) : 0;
+
+        long slot = Math.max(System.currentTimeMillis(), next);
+
+        ByteBuffer out = ByteBuffer.allocate(Long.BYTES);
+        out.putLong(0, slot + INTERVAL_MILLIS);
+        channel.write(out, 0);
+        channel.force(false);
+
+        return slot;
+      }
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+import java.util.Properties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps each shard's session in its own file within a directory.
+ *
+ * <p>Files are written to a temporary file and then moved in to place, so a process that dies
+ * while saving leaves the previous session intact. Failing to load or save a session is logged
+ * rather than thrown, as the worst that can happen is that we identify instead of resuming.
+ */
+public class FileSessionStore implements SessionStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FileSessionStore.class);
+
+  private static final String SESSION_ID = "session_id";
+  private static final String SEQ = "seq";
+
+  private final Path directory;
+
+  public FileSessionStore(Path directory) {
+    this.directory = directory;
+  }
+
+  @Override
+  public synchronized Optional<StoredSession> load(long shardId) {
+    Path file = fileFor(shardId);
+
+    if (!Files.exists(file)) {
+      return Optional.empty();
+    }
+
+    try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      Properties props = new Properties();
+      props.load(in);
+
+      String sessionId = props.getProperty(SESSION_ID);
+      String seq = props.getProperty(SEQ);
+
+      if (sessionId == null || seq == null) {
+        LOG.warn("Ignoring incomplete session in {}.", file);
+        return Optional.empty();
+      }
+
+      return Optional.of(
+          StoredSessionTuple.of(SessionId.of(sessionId), SequenceNumber.of(Long.parseLong(seq))));
+    } catch (IOException | NumberFormatException e) {
+      LOG.warn("Could not load session from {}.", file, e);
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public synchronized void save(long shardId, StoredSession session) {
+    Path file = fileFor(shardId);
+
+    try {
+      Files.createDirectories(directory);
+
+      Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+      try {
+        try (Writer out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+          Properties props = new Properties();
+          props.setProperty(SESSION_ID, session.getSessionId().unwrap());
+          props.setProperty(SEQ, session.getSequenceNumber().unwrap().toString());
+          props.store(out, null);
+        }
+
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    } catch (IOException e) {
+      LOG.warn("Could not save session to {}.", file, e);
+    }
+  }
+
+  @Override
+  public synchronized void clear(long shardId) {
+    try {
+      Files.deleteIfExists(fileFor(shardId));
+    } catch (IOException e) {
+      LOG.warn("Could not clear session for shard {}.", shardId, e);
+    }
+  }
+
+  private Path fileFor(long shardId) {
+    return directory.resolve(String.format("session-%d.properties", shardId));
+  }
+}
@@ -1,26 +1,31 @@
 package com.github.princesslana.eriscasper.gateway;
 
 import com.github.princesslana.eriscasper.BotToken;
+import com.github.princesslana.eriscasper.ErisCasperFatalException;
 import com.github.princesslana.eriscasper.data.event.Event;
 import com.github.princesslana.eriscasper.data.event.HelloEventData;
 import com.github.princesslana.eriscasper.data.event.ReadyEvent;
 import com.github.princesslana.eriscasper.data.gateway.ImmutableResumePayload;
 import com.github.princesslana.eriscasper.data.gateway.ShardPayload;
+import com.github.princesslana.eriscasper.rx.Observables;
 import com.github.princesslana.eriscasper.rx.Singles;
 import com.github.princesslana.eriscasper.rx.websocket.RxWebSocket;
 import com.github.princesslana.eriscasper.rx.websocket.RxWebSocketEvent;
-import io.github.resilience4j.ratelimiter.RateLimiter;
-import io.github.resilience4j.ratelimiter.RateLimiterConfig;
-import io.github.resilience4j.ratelimiter.operator.RateLimiterOperator;
+import com.google.common.collect.ImmutableSet;
 import io.reactivex.Completable;
+import io.reactivex.Maybe;
 import io.reactivex.Observable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposables;
 import io.reactivex.functions.Consumer;
-import java.time.Duration;
+import io.reactivex.functions.Predicate;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import okhttp3.OkHttpClient;
+import okio.ByteString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,57 +33,175 @@ public class Gateway {
 
   private static final Logger LOG = LoggerFactory.getLogger(Gateway.class);
 
+  private static final String VERSION = "6";
+  private static final String COMPRESSION = "zlib-stream";
+
   /**
-   * @see <a href="https://discordapp.com/developers/docs/topics/gateway#sending-payloads">
-   *     https://discordapp.com/developers/docs/topics/gateway#sending-payloads</a>
+   * Heartbeats and resumes skip the send queue, so some of the allowance is left for them.
+   *
+   * @see <a href="https://discordapp.com/developers/docs/topics/gateway#rate-limiting">
+   *     https://discordapp.com/developers/docs/topics/gateway#rate-limiting</a>
    */
-  private static final int MAX_MESSAGE_SIZE = 4096;
+  private static final int SEND_LIMIT = 120;
 
-  private static final String VERSION = "6";
-  private static final String ENCODING = "json";
+  private static final int HEARTBEAT_ALLOWANCE = 5;
+
+  /**
+   * Close codes for which reconnecting will not help.
+   *
+   * @see <a href="https://discordapp.com/developers/docs/topics/opcodes-and-status-codes#gateway">
+   *     https://discordapp.com/developers/docs/topics/opcodes-and-status-codes#gateway</a>
+   */
+  private static final ImmutableSet<Integer> FATAL_CLOSE_CODES =
+      ImmutableSet.of(
+          4004, // Authentication failed
+          4010, // Invalid shard
+          4011, // Sharding required
+          4012); // Invalid API version
+
+  /**
+   * @see <a href="https://discordapp.com/developers/docs/topics/gateway#invalid-session">
+   *     https://discordapp.com/developers/docs/topics/gateway#invalid-session</a>
+   */
+  private static final long INVALID_SESSION_MIN_DELAY_MILLIS = 1000;
+
+  private static final long INVALID_SESSION_MAX_DELAY_MILLIS = 5000;
+
+  private static final long CHECKPOINT_INTERVAL_SECONDS = 10;
+
+  // https://tools.ietf.org/html/rfc6455#section-7.4
+  private static final int NORMAL_CLOSURE = 1000;
+
+  // Closing with 1000 or 1001 ends the session, so use a code reserved for applications instead
+  private static final int RESUMABLE_CLOSURE = 4000;
 
   private final RxWebSocket ws;
   private final Payloads payloads;
+  private final GatewayConfig config;
 
-  private Optional<SequenceNumber> lastSeenSequenceNumber = Optional.empty();
+  private final CompressionMetrics compressionMetrics = new CompressionMetrics();
 
-  private Optional<SessionId> sessionId = Optional.empty();
+  private final HeartbeatMetrics heartbeatMetrics = new HeartbeatMetrics();
 
-  /**
-   * @see <a href="https://discordapp.com/developers/docs/topics/gateway#rate-limiting">
-   *     https://discordapp.com/developers/docs/topics/gateway#rate-limiting</a>
-   */
-  private final RateLimiter sendLimit =
-      RateLimiter.of(
-          "Gateway#sendLimit",
-          RateLimiterConfig.custom()
-              .limitRefreshPeriod(Duration.ofSeconds(60))
-              .limitForPeriod(120)
-              .timeoutDuration(Duration.ofSeconds(60))
-              .build());
+  private final SessionMetrics sessionMetrics = new SessionMetrics();
+
+  private final SendMetrics sendMetrics = new SendMetrics();
+
+  private final Backoff backoff;
+
+  private volatile Optional<SequenceNumber> lastSeenSequenceNumber = Optional.empty();
+
+  private volatile Optional<SessionId> sessionId = Optional.empty();
+
+  private volatile Optional<StoredSession> lastCheckpoint = Optional.empty();
+
+  private final SendQueue sendQueue;
 
   /**
    * @see <a href="https://discordapp.com/developers/docs/topics/gateway#identifying">
    *     https://discordapp.com/developers/docs/topics/gateway#identifying</a>
    */
-  private final RateLimiter identifyLimit =
-      RateLimiter.of(
-          "Gateway#identifyLimit",
-          RateLimiterConfig.custom()
-              .limitRefreshPeriod(Duration.ofSeconds(5))
-              .limitForPeriod(1)
-              .timeoutDuration(Duration.ofSeconds(60))
-              .build());
+  private final IdentifyCoordinator identifyCoordinator;
+
+  private final SessionStore sessionStore;
+
+  private final MemberRequests memberRequests;
+
+  private final Scheduler scheduler;
+
+  private final Scheduler decodeScheduler;
 
   public Gateway(RxWebSocket ws, Payloads payloads) {
+    this(ws, payloads, GatewayOptions.defaults());
+  }
+
+  public Gateway(RxWebSocket ws, Payloads payloads, GatewayOptions options) {
     this.ws = ws;
     this.payloads = payloads;
+    this.config = options.getConfig();
+    this.identifyCoordinator = options.getIdentifyCoordinator();
+    this.sessionStore = options.getSessionStore();
+    this.scheduler = options.getScheduler();
+    this.decodeScheduler = options.getDecodeScheduler();
+    this.backoff =
+        new Backoff(
+            config.getReconnectDelayMillis(),
+            config.getMaxReconnectDelayMillis(),
+            TimeUnit.MILLISECONDS);
+    this.sendQueue =
+        new SendQueue(
+            SEND_LIMIT - HEARTBEAT_ALLOWANCE,
+            p -> write(p).blockingGet(),
+            b -> sendWhenQueueBelow(ws, config.getSendWatermark(), b),
+            b -> send(ws, b),
+            sendMetrics,
+            scheduler);
+    this.memberRequests =
+        new MemberRequests(payloads, this::send, config.getMemberQueryTimeoutMillis(), scheduler);
+  }
+
+  public CompressionMetrics getCompressionMetrics() {
+    return compressionMetrics;
+  }
+
+  public DecodeMetrics getDecodeMetrics() {
+    return payloads.getDecodeMetrics();
+  }
+
+  public HeartbeatMetrics getHeartbeatMetrics() {
+    return heartbeatMetrics;
+  }
+
+  public SessionMetrics getSessionMetrics() {
+    return sessionMetrics;
+  }
+
+  public SendMetrics getSendMetrics() {
+    return sendMetrics;
+  }
+
+  /** Requests for the members of guilds on this gateway's connection. */
+  public MemberRequests getMemberRequests() {
+    return memberRequests;
   }
 
   private boolean isResumable() {
     return sessionId.isPresent() && lastSeenSequenceNumber.isPresent();
   }
 
+  private void clearSession(long shardId) {
+    sessionId = Optional.empty();
+    lastSeenSequenceNumber = Optional.empty();
+    lastCheckpoint = Optional.empty();
+    sessionStore.clear(shardId);
+  }
+
+  private void restoreSession(long shardId) {
+    Optional<StoredSession> stored = sessionStore.load(shardId);
+
+    stored.ifPresent(
+        s -> {
+          LOG.info(
+              "Restored session: shard={}, session={}. Repositories start empty.", shardId, s);
+          sessionId = Optional.of(s.getSessionId());
+          lastSeenSequenceNumber = Optional.of(s.getSequenceNumber());
+          lastCheckpoint = stored;
+        });
+  }
+
+  private void checkpoint(long shardId) {
+    if (!isResumable()) {
+      return;
+    }
+
+    StoredSession session = StoredSessionTuple.of(sessionId.get(), lastSeenSequenceNumber.get());
+
+    if (!lastCheckpoint.filter(session::equals).isPresent()) {
+      sessionStore.save(shardId, session);
+      lastCheckpoint = Optional.of(session);
+    }
+  }
+
   private void setSessionId(SessionId sid) {
     this.sessionId = Optional.of(sid);
   }
@@ -95,66 +218,354 @@ public class Gateway {
     };
   }
 
+  private static void failOnFatalClose(RxWebSocketEvent evt) {
+    int code = -1;
+    String reason = null;
+
+    if (evt instanceof RxWebSocketEvent.Closing) {
+      code = ((RxWebSocketEvent.Closing) evt).getCode();
+      reason = ((RxWebSocketEvent.Closing) evt).getReason();
+    } else if (evt instanceof RxWebSocketEvent.Closed) {
+      code = ((RxWebSocketEvent.Closed) evt).getCode();
+      reason = ((RxWebSocketEvent.Closed) evt).getReason();
+    }
+
+    if (FATAL_CLOSE_CODES.contains(code)) {
+      throw new ErisCasperFatalException(
+          String.format("Gateway closed with code %d: %s", code, reason));
+    }
+  }
+
+  private String getConnectUrl(String url) {
+    String connectUrl =
+        String.format("%s?v=%s&encoding=%s", url, VERSION, config.getEncoding().get());
+    return config.useCompression()
+        ? String.format("%s&compress=%s", connectUrl, COMPRESSION)
+        : connectUrl;
+  }
+
+  /**
+   * Decode payloads in the order their messages were received. Decoding is done by the calling
+   * thread, unless {@link GatewayConfig#getDecodeParallelism()} allows more than one at once.
+   */
+  private Observable<Payload> decode(Observable<Maybe<Payload>> messages) {
+    if (config.getDecodeParallelism() == 1) {
+      return messages.flatMapMaybe(m -> m);
+    }
+
+    return messages
+        .map(m -> m.flatMap(p -> payloads.withEvent(p).toMaybe()))
+        .compose(
+            Observables.parallelOrdered(config.getDecodeParallelism(), decodeScheduler));
+  }
+
+  /**
+   * The payload in the given websocket event, if it holds a complete one. Inflating is done
+   * immediately, as each message depends upon those before it, but the returned payload is not
+   * read until subscribed to, unless it is read as it is inflated.
+   */
+  private Maybe<Maybe<Payload>> message(RxWebSocketEvent evt, ZlibStreamInflater inflater) {
+    if (evt instanceof RxWebSocketEvent.StringMessage) {
+      String text = ((RxWebSocketEvent.StringMessage) evt).getText();
+      return Maybe.just(
+          Maybe.just(text)
+              .flatMap(
+                  Singles.<String, Payload>toMaybeAnd(
+                      payloads::read, (s, t) -> LOG.warn("Error reading payload: {}", s, t))));
+    }
+
+    if (evt instanceof RxWebSocketEvent.ByteStringMessage && isStreamed()) {
+      ByteString bytes = ((RxWebSocketEvent.ByteStringMessage) evt).getBytes();
+
+      return inflater
+          .inflate(bytes, in -> payloads.read(in).map(Maybe::just).blockingGet())
+          .doOnError(t -> LOG.warn("Error reading payload: {}", evt, t))
+          .onErrorComplete();
+    }
+
+    if (evt instanceof RxWebSocketEvent.ByteStringMessage) {
+      ByteString bytes = ((RxWebSocketEvent.ByteStringMessage) evt).getBytes();
+
+      Maybe<byte[]> message =
+          config.useCompression()
+              ? inflater
+                  .inflate(bytes)
+                  .doOnError(t -> LOG.warn("Error inflating payload: {}", evt, t))
+                  .onErrorComplete()
+              : Maybe.just(bytes.toByteArray());
+
+      return message.map(
+          b ->
+              Maybe.just(b)
+                  .flatMap(
+                      Singles.<byte[], Payload>toMaybeAnd(
+                          this::read,
+                          (bs, t) -> LOG.warn("Error reading payload: {}", ByteString.of(bs), t))));
+    }
+
+    return Maybe.empty();
+  }
+
+  /**
+   * Compressed JSON payloads are read as they are inflated, so the whole inflated payload is never
+   * held in memory. This is only possible when decoding on the thread that inflates.
+   */
+  private boolean isStreamed() {
+    return config.useCompression()
+        && config.getEncoding() == Encoding.JSON
+        && config.getDecodeParallelism() == 1;
+  }
+
+  private Single<Payload> read(byte[] bytes) {
+    return config.getEncoding() == Encoding.ETF ? payloads.readEtf(bytes) : payloads.read(bytes);
+  }
+
+  private Single<ByteString> write(Payload payload) {
+    return config.getEncoding() == Encoding.ETF
+        ? payloads.writeToEtf(payload)
+        : payloads.writeToString(payload).map(ByteString::encodeUtf8);
+  }
+
+  private Completable send(RxWebSocket ws, ByteString bytes) {
+    return config.getEncoding() == Encoding.ETF ? ws.send(bytes) : ws.send(bytes.utf8());
+  }
+
+  private Completable sendWhenQueueBelow(RxWebSocket ws, long watermark, ByteString bytes) {
+    return config.getEncoding() == Encoding.ETF
+        ? ws.sendWhenQueueBelow(watermark, bytes)
+        : ws.sendWhenQueueBelow(watermark, bytes.utf8());
+  }
+
+  /**
+   * Connect to the gateway.
+   *
+   * <p>Unless disabled by {@link GatewayConfig#shouldReconnect()}, the returned events continue
+   * across connections. When a connection is lost, or Discord requests it, we reconnect after a
+   * backoff, resuming the session if we can. Only close codes that reconnecting can not fix end
+   * the events, with an {@link ErisCasperFatalException}.
+   */
   public Observable<Event> connect(String url, BotToken token, Optional<ShardPayload> shard) {
+    Observable<Event> connection = Observable.defer(() -> connectOnce(url, token, shard));
+
+    if (!config.shouldReconnect()) {
+      return connection;
+    }
+
+    return connection
+        .repeatWhen(closes -> closes.flatMap(c -> reconnect(shard, "connection closed")))
+        .retryWhen(
+            errors ->
+                errors.flatMap(
+                    t ->
+                        t instanceof ErisCasperFatalException
+                            ? Observable.error(t)
+                            : reconnect(shard, t.toString())));
+  }
+
+  private Observable<Long> reconnect(Optional<ShardPayload> shard, String reason) {
+    long delay = backoff.next();
+    LOG.info("Reconnecting in {}ms: shard={}, reason={}.", delay, shard, reason);
+    return Observable.timer(delay, TimeUnit.MILLISECONDS, scheduler);
+  }
+
+  private Observable<Event> connectOnce(String url, BotToken token, Optional<ShardPayload> shard) {
+    long shardId = shardIdOf(shard);
+
+    if (!isResumable()) {
+      restoreSession(shardId);
+    }
+
     CompositeDisposable disposables = new CompositeDisposable();
 
+    ZlibStreamInflater inflater = new ZlibStreamInflater(compressionMetrics);
+    disposables.add(Disposables.fromAction(inflater::close));
+    disposables.add(Disposables.fromAction(sendQueue::pause));
+
+    if (sessionStore != SessionStore.NONE) {
+      disposables.add(
+          Observable.interval(CHECKPOINT_INTERVAL_SECONDS, TimeUnit.SECONDS, scheduler)
+              .subscribe(i -> checkpoint(shardId)));
+      disposables.add(Disposables.fromAction(() -> checkpoint(shardId)));
+    }
+
+    Heartbeat heartbeat = new Heartbeat(heartbeatMetrics);
+
+    sessionMetrics.connected();
+    sendQueue.reset();
+
     Observable<Payload> ps =
-        ws.connect(String.format("%s?v=%s&encoding=%s", url, VERSION, ENCODING))
+        ws.connect(
+                getConnectUrl(url),
+                sessionStore == SessionStore.NONE ? NORMAL_CLOSURE : RESUMABLE_CLOSURE)
             .doOnNext(warnOnClosing(url, shard))
+            .doOnNext(Gateway::failOnFatalClose)
             .doFinally(disposables::dispose)
-            .ofType(RxWebSocketEvent.StringMessage.class)
-            .map(RxWebSocketEvent.StringMessage::getText)
-            .flatMapMaybe(
-                Singles.toMaybeAnd(
-                    payloads::read, (s, t) -> LOG.warn("Error reading payload: {}", s, t)))
+            .flatMapMaybe(evt -> message(evt, inflater))
+            .compose(this::decode)
             .doOnNext(p -> sequenceNumberSeen(p.s()))
             .share();
 
     disposables.add(
         ps.filter(Payload.isOp(OpCode.HELLO))
-            .flatMapCompletable(p -> heartbeat(ws, p))
+            .flatMapCompletable(p -> heartbeat(ws, p, heartbeat))
             .subscribe());
 
+    disposables.add(
+        ps.filter(Payload.isOp(OpCode.HEARTBEAT))
+            .flatMapCompletable(p -> sendHeartbeat(heartbeat))
+            .subscribe());
+
+    disposables.add(
+        ps.filter(Payload.isOp(OpCode.HEARTBEAT_ACK)).subscribe(p -> heartbeat.acked()));
+
     disposables.add(
         ps.filter(Payload.isOp(OpCode.HELLO))
-            .flatMapCompletable(p -> isResumable() ? resume(ws, token) : identify(ws, token, shard))
+            .flatMapCompletable(p -> identifyOrResume(token, shard))
+            .subscribe());
+
+    disposables.add(
+        ps.filter(Payload.isOp(OpCode.RECONNECT))
+            .subscribe(
+                p -> {
+                  LOG.info("Reconnect requested: shard={}.", shard);
+                  sessionMetrics.reconnectRequested();
+                  ws.cancel();
+                }));
+
+    disposables.add(
+        ps.filter(Payload.isOp(OpCode.INVALID_SESSION))
+            .flatMapCompletable(p -> invalidSession(p, token, shard))
+            .subscribe());
+
+    disposables.add(
+        ps.filter(isDispatchOf("RESUMED"))
+            .subscribe(
+                p -> {
+                  sessionMetrics.resumeSucceeded();
+                  backoff.reset();
+                  sendQueue.resume();
+                }));
+
+    disposables.add(
+        ps.filter(isDispatchOf("GUILD_MEMBERS_CHUNK")).subscribe(memberRequests::chunk));
+
+    disposables.add(ps.filter(isDispatchOf("READY")).subscribe(p -> sendQueue.resume()));
+
+    disposables.add(
+        ps.filter(isDispatchOf("READY"))
+            .flatMapCompletable(p -> memberRequests.resend())
             .subscribe());
 
+    if (config.shouldPrefetchMembers()) {
+      disposables.add(
+          ps.filter(isDispatchOf("GUILD_CREATE"))
+              .flatMapMaybe(payloads::summaryOf)
+              .flatMapCompletable(memberRequests::prefetch)
+              .subscribe());
+    }
+
     disposables.add(
         ps.flatMapMaybe(payloads::toEvent)
             .ofType(ReadyEvent.class)
             .map(r -> r.unwrap().getSessionId())
             .doOnNext(s -> setSessionId(SessionId.of(s)))
-            .subscribe());
+            .subscribe(s -> backoff.reset()));
 
-    return ps.flatMapMaybe(payloads::toEvent).doOnNext(e -> LOG.debug("Event: {}.", e));
+    // Delivering may block, e.g., on a full event buffer, and acks can not be read meanwhile
+    return ps.flatMapMaybe(payloads::toEvent)
+        .doOnNext(e -> LOG.debug("Event: {}.", e))
+        .doOnNext(e -> heartbeat.delivering())
+        .doAfterNext(e -> heartbeat.delivered());
   }
 
-  private Completable send(RxWebSocket ws, Payload payload) {
-    return payloads
-        .writeToString(payload)
-        .lift(RateLimiterOperator.of(sendLimit))
-        .filter(s -> s.getBytes().length <= MAX_MESSAGE_SIZE)
-        .doOnComplete(() -> LOG.warn("Payload rejected as too long: {}.", payload))
-        .flatMapCompletable(ws::send)
-        .doOnComplete(() -> LOG.debug("Sent: {}.", payload));
+  private Completable send(Payload payload) {
+    return sendQueue.send(payload).doOnComplete(() -> LOG.debug("Sent: {}.", payload));
+  }
+
+  private Completable sendNow(Payload payload) {
+    return sendQueue.sendNow(payload).doOnComplete(() -> LOG.debug("Sent: {}.", payload));
+  }
+
+  private Completable identifyOrResume(BotToken token, Optional<ShardPayload> shard) {
+    return Completable.defer(() -> isResumable() ? resume(token) : identify(token, shard));
+  }
+
+  private Completable identify(BotToken token, Optional<ShardPayload> shard) {
+    return identifyCoordinator
+        .acquire(shardIdOf(shard))
+        .andThen(
+            Single.fromCallable(() -> payloads.identify(token, shard, config.getLargeThreshold())))
+        .flatMapCompletable(this::send)
+        .doOnComplete(sessionMetrics::identified);
   }
 
-  private Completable identify(RxWebSocket ws, BotToken token, Optional<ShardPayload> shard) {
-    return Single.just(payloads.identify(token, shard))
-        .lift(RateLimiterOperator.of(identifyLimit))
-        .flatMapCompletable(p -> send(ws, p));
+  /**
+   * Our identify or resume was rejected. If Discord tells us the session can not be resumed we
+   * forget it. Either way, we wait a random time between 1 and 5 seconds and try again.
+   */
+  private Completable invalidSession(Payload p, BotToken token, Optional<ShardPayload> shard) {
+    boolean wasResuming = isResumable();
+
+    return payloads
+        .dataAs(p, Boolean.class)
+        .onErrorReturnItem(false)
+        .doOnSuccess(
+            resumable -> {
+              LOG.warn("Invalid session: shard={}, resumable={}.", shard, resumable);
+              sessionMetrics.invalidSession();
+              if (wasResuming) {
+                sessionMetrics.resumeFailed();
+              }
+              if (!resumable) {
+                clearSession(shardIdOf(shard));
+              }
+            })
+        .flatMapCompletable(
+            resumable ->
+                Completable.timer(
+                    ThreadLocalRandom.current()
+                        .nextLong(
+                            INVALID_SESSION_MIN_DELAY_MILLIS, INVALID_SESSION_MAX_DELAY_MILLIS + 1),
+                    TimeUnit.MILLISECONDS,
+                    scheduler))
+        .andThen(identifyOrResume(token, shard));
   }
 
-  private Completable heartbeat(RxWebSocket ws, Payload hello) {
+  private Completable heartbeat(RxWebSocket ws, Payload hello, Heartbeat heartbeat) {
     return payloads
         .dataAs(hello, HelloEventData.class)
         .flatMapObservable(
-            h -> Observable.interval(h.getHeartbeatInterval(), TimeUnit.MILLISECONDS))
-        .flatMapCompletable(l -> send(ws, payloads.heartbeat(lastSeenSequenceNumber)));
+            h -> Observable.interval(h.getHeartbeatInterval(), TimeUnit.MILLISECONDS, scheduler))
+        .flatMapCompletable(
+            l -> heartbeat.isZombie() ? zombie(ws, heartbeat) : sendHeartbeat(heartbeat));
+  }
+
+  /**
+   * Heartbeats skip the send queue so they are never queued behind other payloads. The heartbeat is
+   * recorded as sent before it is written, as its ACK may arrive before the write returns.
+   */
+  private Completable sendHeartbeat(Heartbeat heartbeat) {
+    return Completable.defer(
+        () -> {
+          heartbeat.sent();
+          return sendNow(payloads.heartbeat(lastSeenSequenceNumber));
+        });
+  }
+
+  /**
+   * No acknowledgement was received for the last heartbeat, so close the connection. As this is
+   * not a normal closure, the session can be resumed.
+   */
+  private Completable zombie(RxWebSocket ws, Heartbeat heartbeat) {
+    return Completable.fromAction(
+        () -> {
+          LOG.warn("Heartbeat was not acknowledged, closing connection: {}.", heartbeatMetrics);
+          heartbeat.missed();
+          ws.cancel();
+        });
   }
 
-  private Completable resume(RxWebSocket ws, BotToken token) {
+  private Completable resume(BotToken token) {
     return Single.just(
             ImmutableResumePayload.builder()
                 .token(token.unwrap())
@@ -173,14 +584,27 @@ public class Gateway {
                                     "Can not resume without a sequence number.")))
                 .build())
         .map(payloads::resume)
-        .flatMapCompletable(p -> send(ws, p));
+        .flatMapCompletable(this::sendNow)
+        .doOnComplete(sessionMetrics::resumed);
+  }
+
+  private static Predicate<Payload> isDispatchOf(String type) {
+    return p -> p.t().map(type::equals).orElse(false);
+  }
+
+  private static long shardIdOf(Optional<ShardPayload> shard) {
+    return shard.map(ShardPayload::getShardId).orElse(0L);
   }
 
   public Completable execute(OpCode code, Object object) {
-    return send(ws, payloads.createPayload(code, object));
+    return send(payloads.createPayload(code, object));
   }
 
   public static Gateway create(OkHttpClient client, Payloads payloads) {
-    return new Gateway(new RxWebSocket(client), payloads);
+    return create(client, payloads, GatewayOptions.defaults());
+  }
+
+  public static Gateway create(OkHttpClient client, Payloads payloads, GatewayOptions options) {
+    return new Gateway(new RxWebSocket(client), payloads, options);
   }
 }
@@ -0,0 +1,149 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.ufoscout.properlty.Properlty;
+import org.immutables.value.Value;
+
+/** Options controlling how a {@link Gateway} connects to and talks with Discord. */
+@Value.Immutable
+public abstract class GatewayConfig {
+
+  /**
+   * Whether to request zlib-stream transport compression for the websocket.
+   *
+   * @see <a href="https://discordapp.com/developers/docs/topics/gateway#transport-compression">
+   *     https://discordapp.com/developers/docs/topics/gateway#transport-compression</a>
+   */
+  @Value.Default
+  public boolean useCompression() {
+    return false;
+  }
+
+  /** The encoding Discord should use for payloads sent over the websocket. */
+  @Value.Default
+  public Encoding getEncoding() {
+    return Encoding.JSON;
+  }
+
+  /**
+   * Whether to reconnect, resuming the session where possible, when the connection is lost.
+   *
+   * @see <a href="https://discordapp.com/developers/docs/topics/gateway#resuming">
+   *     https://discordapp.com/developers/docs/topics/gateway#resuming</a>
+   */
+  @Value.Default
+  public boolean shouldReconnect() {
+    return true;
+  }
+
+  /**
+   * The delay, in milliseconds, before the first attempt to reconnect. Each further attempt waits
+   * up to twice as long as the one before, until a connection succeeds. Delays are randomized to
+   * between half and all of this.
+   */
+  @Value.Default
+  public long getReconnectDelayMillis() {
+    return 1000;
+  }
+
+  /** The longest delay, in milliseconds, before an attempt to reconnect. */
+  @Value.Default
+  public long getMaxReconnectDelayMillis() {
+    return 60000;
+  }
+
+  /**
+   * The number of bytes that may be waiting in the websocket's outgoing buffer before queued
+   * payloads are held back. Heartbeats and resumes are always sent immediately.
+   */
+  @Value.Default
+  public long getSendWatermark() {
+    return 1024 * 1024;
+  }
+
+  /**
+   * The number of payloads from the one connection that may be decoded at the same time. With 1,
+   * payloads are decoded by the thread reading from the websocket. With more, they are decoded on
+   * the gateway's decode scheduler, and passed on in the order they were received.
+   */
+  @Value.Default
+  public int getDecodeParallelism() {
+    return 1;
+  }
+
+  /**
+   * The member count above which Discord considers a guild large, and so sends only its online
+   * members when the guild is created. Between 50 and 250.
+   *
+   * @see <a href="https://discordapp.com/developers/docs/topics/gateway#identify">
+   *     https://discordapp.com/developers/docs/topics/gateway#identify</a>
+   */
+  @Value.Default
+  public int getLargeThreshold() {
+    return 50;
+  }
+
+  /**
+   * Whether to request all members of each large guild as it is created, so that the members of
+   * every guild are eventually known. See {@link MemberRequests}.
+   */
+  @Value.Default
+  public boolean shouldPrefetchMembers() {
+    return false;
+  }
+
+  /**
+   * How long, in milliseconds, a query for guild members may wait for its chunks once sent. See
+   * {@link MemberRequests#query}.
+   */
+  @Value.Default
+  public long getMemberQueryTimeoutMillis() {
+    return 30000;
+  }
+
+  @Value.Check
+  protected void check() {
+    if (getReconnectDelayMillis() < 0 || getMaxReconnectDelayMillis() < getReconnectDelayMillis()) {
+      throw new IllegalStateException(
+          "Reconnect delay must not be negative, nor more than the max reconnect delay.");
+    }
+    if (getSendWatermark() <= 0) {
+      throw new IllegalStateException("Send watermark must be positive.");
+    }
+    if (getDecodeParallelism() <= 0) {
+      throw new IllegalStateException("Decode parallelism must be positive.");
+    }
+    if (getLargeThreshold() < 50 || getLargeThreshold() > 250) {
+      throw new IllegalStateException("Large threshold must be between 50 and 250.");
+    }
+    if (getMemberQueryTimeoutMillis() <= 0) {
+      throw new IllegalStateException("Member query timeout must be positive.");
+    }
+  }
+
+  public static GatewayConfig defaults() {
+    return ImmutableGatewayConfig.builder().build();
+  }
+
+  public static GatewayConfig fromConfig(Properlty config) {
+    return ImmutableGatewayConfig.builder()
+        .useCompression(config.get("ec.gateway.compress").map(Boolean::parseBoolean).orElse(false))
+        .encoding(config.get("ec.gateway.encoding").map(Encoding::fromName).orElse(Encoding.JSON))
+        .shouldReconnect(
+            config.get("ec.gateway.reconnect").map(Boolean::parseBoolean).orElse(true))
+        .reconnectDelayMillis(
+            config.get("ec.gateway.reconnect.delay").map(Long::parseLong).orElse(1000L))
+        .maxReconnectDelayMillis(
+            config.get("ec.gateway.reconnect.delay.max").map(Long::parseLong).orElse(60000L))
+        .sendWatermark(
+            config.get("ec.gateway.send.watermark").map(Long::parseLong).orElse(1024L * 1024))
+        .decodeParallelism(
+            config.get("ec.gateway.decode.parallelism").map(Integer::parseInt).orElse(1))
+        .largeThreshold(
+            config.get("ec.gateway.large.threshold").map(Integer::parseInt).orElse(50))
+        .shouldPrefetchMembers(
+            config.get("ec.gateway.members.prefetch").map(Boolean::parseBoolean).orElse(false))
+        .memberQueryTimeoutMillis(
+            config.get("ec.gateway.members.query.timeout").map(Long::parseLong).orElse(30000L))
+        .build();
+  }
+}
@@ -0,0 +1,51 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import org.immutables.value.Value;
+
+/** What a {@link Gateway} is tuned by and shares with other shards. */
+@Value.Immutable
+public abstract class GatewayOptions {
+
+  @Value.Default
+  public GatewayConfig getConfig() {
+    return GatewayConfig.defaults();
+  }
+
+  /**
+   * Allows the gateway to identify. All shards of a bot should share the one coordinator.
+   *
+   * @see <a href="https://discordapp.com/developers/docs/topics/gateway#identifying">
+   *     https://discordapp.com/developers/docs/topics/gateway#identifying</a>
+   */
+  @Value.Default
+  public IdentifyCoordinator getIdentifyCoordinator() {
+    return new LocalIdentifyCoordinator();
+  }
+
+  /**
+   * Where the gateway checkpoints its session, so that a later process can resume it rather than
+   * identifying.
+   */
+  @Value.Default
+  public SessionStore getSessionStore() {
+    return SessionStore.NONE;
+  }
+
+  /** Runs heartbeats, the send queue, and timers. */
+  @Value.Default
+  public Scheduler getScheduler() {
+    return Schedulers.computation();
+  }
+
+  /** Decodes payloads when more than one may be decoded at once. */
+  @Value.Default
+  public Scheduler getDecodeScheduler() {
+    return Schedulers.computation();
+  }
+
+  public static GatewayOptions defaults() {
+    return ImmutableGatewayOptions.builder().build();
+  }
+}
@@ -0,0 +1,85 @@
+package com.github.princesslana.eriscasper.gateway;
+
+/**
+ * Tracks the heartbeats sent on a single connection and whether they have been acknowledged.
+ *
+ * <p>If a heartbeat is due while the previous one is still unacknowledged, the connection should be
+ * treated as failed (a zombie) and closed. That is unless an event is still being delivered, as a
+ * bot slow to take events (e.g., through a full event buffer that blocks) holds up reading the
+ * acknowledgement too. Delivering only holds off closing for a few heartbeats, so that a bot that
+ * is stuck, or a connection that died while it was, is still noticed.
+ *
+ * @see <a href="https://discordapp.com/developers/docs/topics/gateway#heartbeating">
+ *     https://discordapp.com/developers/docs/topics/gateway#heartbeating</a>
+ */
+public class Heartbeat {
+
+  private static final int DEFAULT_GRACE_HEARTBEATS = 3;
+
+  private final HeartbeatMetrics metrics;
+
+  private final int graceHeartbeats;
+
+  private long sentAt = 0;
+  private boolean awaitingAck = false;
+  private boolean delivering = false;
+
+  // Heartbeats sent since the last acknowledgement, beyond the first
+  private int unacked = 0;
+
+  public Heartbeat(HeartbeatMetrics metrics) {
+    this(metrics, DEFAULT_GRACE_HEARTBEATS);
+  }
+
+  /**
+   * @param graceHeartbeats the number of further heartbeats that may go unacknowledged while an
+   *     event is being delivered
+   */
+  public Heartbeat(HeartbeatMetrics metrics, int graceHeartbeats) {
+    this.metrics = metrics;
+    this.graceHeartbeats = graceHeartbeats;
+  }
+
+  /** Whether the most recently sent heartbeat has been acknowledged. */
+  public synchronized boolean isAcked() {
+    return !awaitingAck;
+  }
+
+  /**
+   * Whether the connection should be treated as failed. It is not while an event is being
+   * delivered, as any acknowledgement is waiting to be read behind it, until the grace heartbeats
+   * have also gone unacknowledged.
+   */
+  public synchronized boolean isZombie() {
+    return awaitingAck && (!delivering || unacked >= graceHeartbeats);
+  }
+
+  public synchronized void sent() {
+    metrics.sent();
+    if (awaitingAck) {
+      unacked++;
+    }
+    sentAt = System.nanoTime();
+    awaitingAck = true;
+  }
+
+  public synchronized void acked() {
+    if (awaitingAck) {
+      metrics.acked(System.nanoTime() - sentAt);
+      awaitingAck = false;
+      unacked = 0;
+    }
+  }
+
+  public synchronized void delivering() {
+    delivering = true;
+  }
+
+  public synchronized void delivered() {
+    delivering = false;
+  }
+
+  public void missed() {
+    metrics.missed();
+  }
+}
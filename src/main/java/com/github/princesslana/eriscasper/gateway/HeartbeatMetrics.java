@@ -0,0 +1,96 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for the heartbeats of a {@link Gateway}, and the round trip latency of the most recent
+ * of them.
+ */
+public class HeartbeatMetrics {
+
+  private static final int WINDOW = 128;
+
+  private final LongAdder sent = new LongAdder();
+  private final LongAdder acked = new LongAdder();
+  private final LongAdder missed = new LongAdder();
+
+  private final long[] latencies = new long[WINDOW];
+  private int count = 0;
+  private int next = 0;
+
+  void sent() {
+    sent.increment();
+  }
+
+  synchronized void acked(long nanos) {
+    acked.increment();
+
+    latencies[next] = nanos;
+    next = (next + 1) % WINDOW;
+    count = Math.min(count + 1, WINDOW);
+  }
+
+  void missed() {
+    missed.increment();
+  }
+
+  public long getSent() {
+    return sent.sum();
+  }
+
+  public long getAcked() {
+    return acked.sum();
+  }
+
+  /** The number of times a heartbeat was not acknowledged, causing the connection to be closed. */
+  public long getMissed() {
+    return missed.sum();
+  }
+
+  /** The latency of the most recently acknowledged heartbeat, or -1 if there has been none. */
+  public synchronized long getLatency(TimeUnit unit) {
+    return count == 0 ? -1 : toUnit(latencies[(next + WINDOW - 1) % WINDOW], unit);
+  }
+
+  /**
+   * The latency at the given percentile (0 to 100) of recently acknowledged heartbeats, or -1 if
+   * there have been none.
+   */
+  public long getLatency(double percentile, TimeUnit unit) {
+    long[] sorted = getLatencies(TimeUnit.NANOSECONDS);
+
+    if (sorted.length == 0) {
+      return -1;
+    }
+
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+    return toUnit(sorted[Math.max(0, Math.min(index, sorted.length - 1))], unit);
+  }
+
+  /** The latencies of recently acknowledged heartbeats, oldest first. */
+  public synchronized long[] getLatencies(TimeUnit unit) {
+    long[] result = new long[count];
+    for (int i = 0; i < count; i++) {
+      result[i] = toUnit(latencies[(next - count + i + WINDOW) % WINDOW], unit);
+    }
+    return result;
+  }
+
+  private static long toUnit(long nanos, TimeUnit unit) {
+    return unit.convert(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "HeartbeatMetrics{sent=%d, acked=%d, missed=%d, latencyMillis=%d, p99LatencyMillis=%d}",
+        getSent(),
+        getAcked(),
+        getMissed(),
+        getLatency(TimeUnit.MILLISECONDS),
+        getLatency(99, TimeUnit.MILLISECONDS));
+  }
+}
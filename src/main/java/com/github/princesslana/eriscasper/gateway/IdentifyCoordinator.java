@@ -0,0 +1,75 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.ufoscout.properlty.Properlty;
+import io.reactivex.Completable;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when each shard may identify.
+ *
+ * <p>Identifies are limited per bucket, where the bucket of a shard is {@code shard_id %
+ * max_concurrency}. Each bucket is allowed one identify every 5 seconds. Sharing one coordinator
+ * between all shards of a bot lets them identify as fast as the limit allows, without any two
+ * identifying in the same bucket at once.
+ *
+ * <p>Implementations reserve the next free slot in a bucket, and the identify then waits until that
+ * slot arrives.
+ *
+ * @see <a href="https://discordapp.com/developers/docs/topics/gateway#sharding">
+ *     https://discordapp.com/developers/docs/topics/gateway#sharding</a>
+ */
+public abstract class IdentifyCoordinator {
+
+  /** A coordinator that lets every shard identify at once, for connections not to Discord. */
+  public static final IdentifyCoordinator NONE =
+      new IdentifyCoordinator() {
+        @Override
+        protected long reserve(long bucket) {
+          return 0;
+        }
+      };
+
+  /** The time between identifies in a single bucket. */
+  protected static final long INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+  private volatile long maxConcurrency = 1;
+
+  /** Set the max_concurrency from the session start limit. Until set this is 1. */
+  public void setMaxConcurrency(long maxConcurrency) {
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  public long getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  /** Completes when the given shard may identify. */
+  public Completable acquire(long shardId) {
+    return Completable.defer(
+        () -> {
+          long delay = reserve(shardId % maxConcurrency) - System.currentTimeMillis();
+          return delay > 0
+              ? Completable.timer(delay, TimeUnit.MILLISECONDS)
+              : Completable.complete();
+        });
+  }
+
+  /**
+   * Reserve the next slot in the given bucket.
+   *
+   * @return the time, in milliseconds since the epoch, at which the reserved identify may be sent
+   */
+  protected abstract long reserve(long bucket) throws Exception;
+
+  /**
+   * A coordinator for shards in this JVM only, or, if {@code ec.gateway.identify.lock} is set to a
+   * directory, for all processes on this host using that same directory.
+   */
+  public static IdentifyCoordinator fromConfig(Properlty config) {
+    return config
+        .get("ec.gateway.identify.lock")
+        .<IdentifyCoordinator>map(dir -> new FileLockIdentifyCoordinator(Paths.get(dir)))
+        .orElseGet(LocalIdentifyCoordinator::new);
+  }
+}
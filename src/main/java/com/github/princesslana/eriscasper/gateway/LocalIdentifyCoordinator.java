@@ -0,0 +1,17 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/** Coordinates identifies between the shards running in this JVM. */
+public class LocalIdentifyCoordinator extends IdentifyCoordinator {
+
+  private final Map<Long, Long> nextSlots = new HashMap<>();
+
+  @Override
+  protected synchronized long reserve(long bucket) {
+    long slot = Math.max(System.currentTimeMillis(), nextSlots.getOrDefault(bucket, 0L));
+    nextSlots.put(bucket, slot + INTERVAL_MILLIS);
+    return slot;
+  }
+}
@@ -0,0 +1,307 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.princesslana.eriscasper.data.Snowflake;
+import com.github.princesslana.eriscasper.data.event.GuildMembersChunkEvent;
+import com.github.princesslana.eriscasper.data.resource.GuildMember;
+import com.google.common.collect.ImmutableList;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.CompletableSubject;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.SingleSubject;
+import io.reactivex.subjects.Subject;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Requests for the members of guilds, and tracking of the chunks Discord sends in reply.
+ *
+ * <p>A download requests every member of a guild, and completes once all of its chunks have
+ * arrived. Requests go through the gateway's send queue, so they are paced within its rate limit
+ * and downloads of many guilds share a frame. Requesting a guild that is already being downloaded
+ * shares the one download.
+ *
+ * <p>A query requests only the members whose username starts with a prefix, for when a few members
+ * are needed on demand. Discord does not say which request a chunk answers, so a chunk for a guild
+ * that is not being downloaded answers the oldest query for that guild. A query for a guild that
+ * is being downloaded waits for the download to complete before it is sent, so that neither takes
+ * the other's chunks. A query that is not answered within the query timeout of being sent fails
+ * with a {@link TimeoutException}.
+ *
+ * <p>Anything still waiting for chunks when a new session starts is requested again.
+ *
+ * @see <a href="https://discordapp.com/developers/docs/topics/gateway#request-guild-members">
+ *     https://discordapp.com/developers/docs/topics/gateway#request-guild-members</a>
+ */
+public class MemberRequests {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MemberRequests.class);
+
+  private static final long DEFAULT_QUERY_TIMEOUT_MILLIS = 30000;
+
+  private final Payloads payloads;
+
+  private final Function<Payload, Completable> sender;
+
+  private final long queryTimeoutMillis;
+
+  private final Scheduler scheduler;
+
+  private final Map<Snowflake, Download> downloads = new HashMap<>();
+
+  private final Map<Snowflake, Deque<Query>> queries = new HashMap<>();
+
+  private final Subject<Snowflake> ready = PublishSubject.<Snowflake>create().toSerialized();
+
+  /** @param sender sends a payload through the gateway's send queue */
+  public MemberRequests(Payloads payloads, Function<Payload, Completable> sender) {
+    this(payloads, sender, DEFAULT_QUERY_TIMEOUT_MILLIS, Schedulers.computation());
+  }
+
+  /**
+   * @param sender sends a payload through the gateway's send queue
+   * @param queryTimeoutMillis how long a query may wait for its chunks once sent
+   * @param scheduler the scheduler query timeouts are timed on
+   */
+  public MemberRequests(
+      Payloads payloads,
+      Function<Payload, Completable> sender,
+      long queryTimeoutMillis,
+      Scheduler scheduler) {
+    this.payloads = payloads;
+    this.sender = sender;
+    this.queryTimeoutMillis = queryTimeoutMillis;
+    this.scheduler = scheduler;
+  }
+
+  /**
+   * Ids of guilds as all of their members become known. That is, when a download completes, or,
+   * when prefetching, when a guild that is not large is created.
+   */
+  public Observable<Snowflake> getReady() {
+    return ready;
+  }
+
+  /** Download all members of the guild, completing once they have all been received. */
+  public Completable request(Snowflake guildId) {
+    return Completable.defer(
+        () -> {
+          Download download;
+          boolean isNew;
+
+          synchronized (this) {
+            download = downloads.get(guildId);
+            isNew = download == null;
+
+            if (isNew) {
+              download = new Download(payloads.requestGuildMembers(guildId, "", 0));
+              downloads.put(guildId, download);
+            }
+          }
+
+          return isNew ? send(download.request).andThen(download.done) : download.done;
+        });
+  }
+
+  /**
+   * Request up to {@code limit} members of the guild whose username starts with the prefix. Fails
+   * with a {@link TimeoutException} if not answered within the query timeout of being sent.
+   */
+  public Single<List<GuildMember>> query(Snowflake guildId, String prefix, int limit) {
+    return Single.defer(
+        () -> {
+          Query query;
+
+          synchronized (this) {
+            Download download = downloads.get(guildId);
+
+            if (download != null) {
+              return download.done.andThen(query(guildId, prefix, limit));
+            }
+
+            query = new Query(payloads.requestGuildMembers(guildId, prefix, limit));
+            queries.computeIfAbsent(guildId, g -> new ArrayDeque<>()).add(query);
+          }
+
+          return send(query.request)
+              .andThen(query.result)
+              .timeout(queryTimeoutMillis, TimeUnit.MILLISECONDS, scheduler)
+              .doOnError(t -> LOG.warn("Members query not answered: {}.", query.request, t))
+              .doFinally(() -> forget(guildId, query));
+        });
+  }
+
+  /**
+   * Download the members of a newly created guild if it is large. Other guilds already have all
+   * their members, so are ready immediately.
+   *
+   * @param guild the guild's <code>id</code>, <code>large</code>, and <code>unavailable</code>
+   *     fields
+   */
+  Completable prefetch(JsonNode guild) {
+    Snowflake guildId = Snowflake.of(guild.path("id").asText());
+
+    if (guild.path("unavailable").asBoolean(false)) {
+      return Completable.complete();
+    }
+
+    if (!guild.path("large").asBoolean(false)) {
+      ready.onNext(guildId);
+      return Completable.complete();
+    }
+
+    return request(guildId);
+  }
+
+  /** Record a GUILD_MEMBERS_CHUNK dispatch. */
+  void chunk(Payload p) {
+    if (!p.d().isPresent()) {
+      return;
+    }
+
+    JsonNode d = p.d().get();
+    Snowflake guildId = Snowflake.of(d.path("guild_id").asText());
+    int index = d.path("chunk_index").asInt(0);
+    int count = d.path("chunk_count").asInt(1);
+
+    Optional<Download> completedDownload = Optional.empty();
+    Optional<Query> completedQuery = Optional.empty();
+
+    synchronized (this) {
+      Download download = downloads.get(guildId);
+      Deque<Query> waiting = queries.get(guildId);
+
+      if (download != null) {
+        if (download.received(index, count)) {
+          downloads.remove(guildId);
+          completedDownload = Optional.of(download);
+        }
+      } else if (waiting != null) {
+        Query query = waiting.peek();
+
+        if (query.received(index, count, membersOf(p))) {
+          waiting.poll();
+          completedQuery = Optional.of(query);
+        }
+
+        if (waiting.isEmpty()) {
+          queries.remove(guildId);
+        }
+      } else {
+        LOG.debug("Members chunk not requested: guild={}.", guildId);
+      }
+    }
+
+    completedDownload.ifPresent(
+        download -> {
+          download.done.onComplete();
+          ready.onNext(guildId);
+        });
+
+    completedQuery.ifPresent(Query::answered);
+  }
+
+  /** Request again everything that was waiting for chunks when the previous session ended. */
+  Completable resend() {
+    List<Payload> requests = new ArrayList<>();
+
+    synchronized (this) {
+      for (Download download : downloads.values()) {
+        download.chunks.clear();
+        requests.add(download.request);
+      }
+
+      for (Deque<Query> waiting : queries.values()) {
+        for (Query query : waiting) {
+          query.chunks.clear();
+          query.members.clear();
+          requests.add(query.request);
+        }
+      }
+    }
+
+    if (!requests.isEmpty()) {
+      LOG.info("Requesting members again after new session: requests={}.", requests.size());
+    }
+
+    return Observable.fromIterable(requests).flatMapCompletable(this::send);
+  }
+
+  // Stop a query that timed out or was disposed from taking the chunks of later queries
+  private synchronized void forget(Snowflake guildId, Query query) {
+    Deque<Query> waiting = queries.get(guildId);
+
+    if (waiting != null && waiting.remove(query) && waiting.isEmpty()) {
+      queries.remove(guildId);
+    }
+  }
+
+  /**
+   * Failing to send is not fatal to a request. It is sent again when the next session starts, which
+   * it will need to if the connection was lost.
+   */
+  private Completable send(Payload request) {
+    return Completable.defer(() -> sender.apply(request))
+        .doOnError(t -> LOG.warn("Failed to request members: {}.", request, t))
+        .onErrorComplete();
+  }
+
+  private List<GuildMember> membersOf(Payload p) {
+    return payloads
+        .toEvent(p)
+        .ofType(GuildMembersChunkEvent.class)
+        .<List<GuildMember>>map(e -> e.unwrap().getMembers())
+        .blockingGet(ImmutableList.of());
+  }
+
+  private static class Download {
+    private final Payload request;
+    private final BitSet chunks = new BitSet();
+    private final CompletableSubject done = CompletableSubject.create();
+
+    private Download(Payload request) {
+      this.request = request;
+    }
+
+    private boolean received(int index, int count) {
+      chunks.set(index);
+      return chunks.cardinality() >= count;
+    }
+  }
+
+  private static class Query {
+    private final Payload request;
+    private final BitSet chunks = new BitSet();
+    private final List<GuildMember> members = new ArrayList<>();
+    private final SingleSubject<List<GuildMember>> result = SingleSubject.create();
+
+    private Query(Payload request) {
+      this.request = request;
+    }
+
+    private void answered() {
+      result.onSuccess(ImmutableList.copyOf(members));
+    }
+
+    private boolean received(int index, int count, List<GuildMember> chunk) {
+      chunks.set(index);
+      members.addAll(chunk);
+      return chunks.cardinality() >= count;
+    }
+  }
+}
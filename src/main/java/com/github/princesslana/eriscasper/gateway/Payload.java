@@ -1,8 +1,10 @@
 package com.github.princesslana.eriscasper.gateway;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.github.princesslana.eriscasper.data.event.Event;
 import com.github.princesslana.eriscasper.data.immutable.Wrapped;
 import com.github.princesslana.eriscasper.data.immutable.Wrapper;
 import io.reactivex.Single;
@@ -25,6 +27,17 @@ public abstract class Payload {
 
   public abstract Optional<String> t();
 
+  /** The event of a dispatch, when it has been read directly rather than via {@link #d()}. */
+  @JsonIgnore
+  public abstract Optional<Event> event();
+
+  /**
+   * The few fields of <code>d</code> that are kept when it is read directly into its event, for
+   * dispatch types the gateway itself needs fields of.
+   */
+  @JsonIgnore
+  protected abstract Optional<JsonNode> summary();
+
   public <T> Single<T> d(ObjectMapper jackson, Class<T> clazz) {
     return Single.fromCallable(() -> jackson.readerFor(clazz).readValue(d().get()));
   }
@@ -0,0 +1,300 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.github.princesslana.eriscasper.data.event.Event;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads payloads from a token stream in a single pass.
+ *
+ * <p><code>op</code>, <code>s</code>, and <code>t</code> are read first. If the payload is a
+ * dispatch of an event type that has been seen before, <code>d</code> is then bound into the event
+ * rather than into a {@link JsonNode} that is later converted. Discord sends <code>d</code> last,
+ * but if it does arrive before <code>op</code> or <code>t</code> its tokens are held until they
+ * are known.
+ *
+ * <p>Dispatches of types that are not subscribed to have <code>d</code> skipped over without it
+ * being read at all. The payload is still returned so that its sequence number can be tracked.
+ *
+ * <p>The event class for a type is learned from the first event created for it by the
+ * ErisCasper-Data <code>EventFactory</code>, and only used if binding to it gives an equal event.
+ * Until then, and for other op codes, <code>d</code> is read as a {@link JsonNode}. A learned event
+ * is bound straight from the parser, without its tokens being held. So if binding fails later on
+ * the class is forgotten and, when reading from a {@link Source}, the payload is read again with
+ * its <code>d</code> as a {@link JsonNode}, as are those of all later events of its type. A parser
+ * can not be read again, so reading from one throws a {@link BindingFailedException} instead.
+ *
+ * <p>When a guild create is bound into its event, its <code>id</code>, <code>large</code>, and
+ * <code>unavailable</code> fields are also kept as the payload's summary, as the binder reads past
+ * them, for {@link MemberRequests} to decide whether to download the guild's members.
+ *
+ * <p>Guild member chunks are always read as a {@link JsonNode}, as {@link MemberRequests} needs
+ * fields of them that ErisCasper-Data does not model. They are only sent when requested, so are
+ * never skipped.
+ */
+public class PayloadReader {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PayloadReader.class);
+
+  private static final ImmutableSet<String> TREE_TYPES = ImmutableSet.of("GUILD_MEMBERS_CHUNK");
+
+  private static final ImmutableMap<String, ImmutableSet<String>> SUMMARY_FIELDS =
+      ImmutableMap.of("GUILD_CREATE", ImmutableSet.of("id", "large", "unavailable"));
+
+  private final ObjectMapper jackson;
+
+  private final EventSubscriptions subscriptions;
+
+  private final ConcurrentMap<String, Optional<ObjectReader>> eventReaders =
+      new ConcurrentHashMap<>();
+
+  public PayloadReader(ObjectMapper jackson) {
+    this(jackson, EventSubscriptions.all());
+  }
+
+  public PayloadReader(ObjectMapper jackson, EventSubscriptions subscriptions) {
+    this.jackson = jackson;
+    this.subscriptions = subscriptions;
+  }
+
+  /**
+   * Reads a single payload, opening the source again if its data could not be bound into its
+   * event.
+   */
+  public Payload read(Source source) throws IOException {
+    try {
+      return read(source.open());
+    } catch (BindingFailedException e) {
+      return read(source.open());
+    }
+  }
+
+  /**
+   * Reads a single payload from the parser, closing it once done.
+   *
+   * @throws BindingFailedException if the data could not be bound into its event. Later reads of
+   *     the same event type read the data as a tree.
+   */
+  public Payload read(JsonParser parser) throws IOException {
+    try (JsonParser p = parser) {
+      if (p.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonMappingException(p, "Expected payload to be an object");
+      }
+
+      ImmutablePayload.Builder payload = ImmutablePayload.builder();
+      OpCode op = null;
+      String type = null;
+      TokenBuffer deferred = null;
+
+      while (p.nextToken() == JsonToken.FIELD_NAME) {
+        String field = p.getCurrentName();
+        JsonToken value = p.nextToken();
+
+        if (field.equals("op")) {
+          op = OpCode.fromCode(p.getIntValue());
+        } else if (field.equals("s") && value != JsonToken.VALUE_NULL) {
+          payload.s(SequenceNumber.of(p.getLongValue()));
+        } else if (field.equals("t") && value != JsonToken.VALUE_NULL) {
+          type = p.getText();
+          payload.t(type);
+        } else if (field.equals("d") && (op == null || (op == OpCode.DISPATCH && type == null))) {
+          deferred = new TokenBuffer(p);
+          deferred.copyCurrentStructure(p);
+        } else if (field.equals("d") && isSkipped(op, type)) {
+          p.skipChildren();
+        } else if (field.equals("d")) {
+          readData(p, op, type, payload);
+        } else {
+          p.skipChildren();
+        }
+      }
+
+      if (op == null) {
+        throw new JsonMappingException(p, "Expected payload to have an op code");
+      }
+
+      if (deferred != null && !isSkipped(op, type)) {
+        try {
+          readData(deferred, op, type, payload);
+        } catch (BindingFailedException e) {
+          readData(deferred, op, type, payload);
+        }
+      }
+
+      return payload.op(op).build();
+    }
+  }
+
+  private boolean isSkipped(OpCode op, String type) {
+    return op == OpCode.DISPATCH
+        && type != null
+        && !TREE_TYPES.contains(type)
+        && !subscriptions.isSubscribed(type);
+  }
+
+  /** Whether the data of this payload was skipped due to no one being subscribed to it. */
+  public boolean isSkipped(Payload payload) {
+    return isSkipped(payload.op(), payload.t().orElse(null));
+  }
+
+  private void readData(
+      TokenBuffer tokens, OpCode op, String type, ImmutablePayload.Builder payload)
+      throws IOException {
+    try (JsonParser d = tokens.asParser()) {
+      d.nextToken();
+      readData(d, op, type, payload);
+    }
+  }
+
+  private void readData(JsonParser p, OpCode op, String type, ImmutablePayload.Builder payload)
+      throws IOException {
+    if (p.currentToken() == JsonToken.VALUE_NULL) {
+      return;
+    }
+
+    Optional<ObjectReader> eventReader =
+        op == OpCode.DISPATCH && type != null && !TREE_TYPES.contains(type)
+            ? eventReaders.getOrDefault(type, Optional.empty())
+            : Optional.empty();
+
+    if (!eventReader.isPresent()) {
+      payload.d(jackson.<JsonNode>readTree(p));
+      return;
+    }
+
+    ImmutableSet<String> fields = SUMMARY_FIELDS.get(type);
+    ObjectNode summary = jackson.createObjectNode();
+
+    try {
+      JsonParser d =
+          fields == null || p.currentToken() != JsonToken.START_OBJECT
+              ? p
+              : new SummarizingParser(p, fields, summary);
+
+      payload.event(eventReader.get().<Event>readValue(d));
+    } catch (JsonMappingException e) {
+      LOG.warn("Unable to bind {} event, {} events will now be read via a tree", type, type, e);
+      eventReaders.put(type, Optional.empty());
+      throw new BindingFailedException(p, type, e);
+    }
+
+    if (fields != null) {
+      payload.summary(summary);
+    }
+  }
+
+  /**
+   * Learn the class to bind events of the given type to, based upon an event created from its
+   * tree.
+   */
+  public Event learn(String type, JsonNode d, Event event) {
+    eventReaders.computeIfAbsent(type, t -> readerFor(t, d, event));
+    return event;
+  }
+
+  private static JsonNode scalarOf(JsonParser p) throws IOException {
+    JsonNodeFactory nodes = JsonNodeFactory.instance;
+
+    switch (p.currentToken()) {
+      case VALUE_STRING:
+        return nodes.textNode(p.getText());
+      case VALUE_NUMBER_INT:
+        return nodes.numberNode(p.getLongValue());
+      case VALUE_NUMBER_FLOAT:
+        return nodes.numberNode(p.getDoubleValue());
+      case VALUE_TRUE:
+      case VALUE_FALSE:
+        return nodes.booleanNode(p.getBooleanValue());
+      case VALUE_EMBEDDED_OBJECT:
+        return nodes.pojoNode(p.getEmbeddedObject());
+      default:
+        return nodes.nullNode();
+    }
+  }
+
+  private Optional<ObjectReader> readerFor(String type, JsonNode d, Event event) {
+    ObjectReader reader = jackson.readerFor(event.getClass());
+
+    try {
+      if (event.equals(reader.readValue(d))) {
+        return Optional.of(reader);
+      }
+    } catch (IOException e) {
+      LOG.debug("Unable to bind {} to {}", type, event.getClass(), e);
+    }
+
+    LOG.info("{} events will be read via a tree", type);
+    return Optional.empty();
+  }
+
+  /** Opens a new parser over the same payload each time it is called. */
+  @FunctionalInterface
+  public interface Source {
+    JsonParser open() throws IOException;
+  }
+
+  /**
+   * Thrown when the data of a payload could not be bound into the event class learned for its
+   * type. The class has been forgotten, so reading the payload again reads its data as a tree.
+   */
+  public static class BindingFailedException extends JsonMappingException {
+    private BindingFailedException(JsonParser p, String type, Throwable cause) {
+      super(p, "Unable to bind " + type + " event", cause);
+    }
+  }
+
+  /**
+   * Keeps the top level scalar fields of an object as whoever is reading the parser moves past
+   * them.
+   */
+  private static class SummarizingParser extends JsonParserDelegate {
+    private final ImmutableSet<String> fields;
+    private final ObjectNode summary;
+    private final JsonStreamContext object;
+
+    /** @param p a parser positioned at the start of the object */
+    private SummarizingParser(JsonParser p, ImmutableSet<String> fields, ObjectNode summary) {
+      super(p);
+      this.fields = fields;
+      this.summary = summary;
+      this.object = p.getParsingContext();
+    }
+
+    @Override
+    public JsonToken nextToken() throws IOException {
+      JsonToken token = delegate.nextToken();
+
+      if (token != null
+          && token.isScalarValue()
+          && delegate.getParsingContext() == object
+          && fields.contains(delegate.getCurrentName())) {
+        summary.set(delegate.getCurrentName(), scalarOf(delegate));
+      }
+
+      return token;
+    }
+
+    @Override
+    public JsonToken nextValue() throws IOException {
+      JsonToken token = nextToken();
+      return token == JsonToken.FIELD_NAME ? nextToken() : token;
+    }
+  }
+}
@@ -1,7 +1,11 @@
 package com.github.princesslana.eriscasper.gateway;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.github.princesslana.eriscasper.BotToken;
+import com.github.princesslana.eriscasper.data.Snowflake;
 import com.github.princesslana.eriscasper.data.event.Event;
 import com.github.princesslana.eriscasper.data.event.EventFactory;
 import com.github.princesslana.eriscasper.data.gateway.ConnectionPropertiesPayload;
@@ -13,9 +17,13 @@ import com.github.princesslana.eriscasper.data.gateway.ShardPayload;
 import com.github.princesslana.eriscasper.data.immutable.Wrapped;
 import com.github.princesslana.eriscasper.data.immutable.Wrapper;
 import com.github.princesslana.eriscasper.rx.Maybes;
+import com.google.common.base.Utf8;
+import com.google.common.io.CountingInputStream;
 import io.reactivex.Maybe;
 import io.reactivex.Single;
+import java.io.InputStream;
 import java.util.Optional;
+import okio.ByteString;
 import org.immutables.value.Value;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,8 +34,21 @@ public class Payloads {
 
   private ObjectMapper jackson;
 
+  private PayloadReader reader;
+
+  private final DecodeMetrics decodeMetrics = new DecodeMetrics();
+
   public Payloads(ObjectMapper jackson) {
+    this(jackson, EventSubscriptions.all());
+  }
+
+  public Payloads(ObjectMapper jackson, EventSubscriptions subscriptions) {
     this.jackson = jackson;
+    this.reader = new PayloadReader(jackson, subscriptions);
+  }
+
+  public DecodeMetrics getDecodeMetrics() {
+    return decodeMetrics;
   }
 
   public <T> Single<T> dataAs(Payload p, Class<T> clazz) {
@@ -39,18 +60,43 @@ public class Payloads {
   }
 
   public Payload identify(BotToken token, Optional<ShardPayload> shard) {
-    return identify(
-        ImmutableIdentifyPayload.builder()
-            .token(token.unwrap())
-            .shard(shard)
-            .properties(getDefaultConnectionProperties())
-            .build());
+    return identify(identifyPayload(token, shard));
   }
 
   public Payload identify(IdentifyPayload id) {
     return createPayload(OpCode.IDENTIFY, id);
   }
 
+  /**
+   * An identify that also sets <code>large_threshold</code>, which ErisCasper-Data does not model.
+   */
+  public Payload identify(BotToken token, Optional<ShardPayload> shard, int largeThreshold) {
+    ObjectNode d = jackson.valueToTree(identifyPayload(token, shard));
+    d.put("large_threshold", largeThreshold);
+    return ImmutablePayload.builder().op(OpCode.IDENTIFY).d(d).build();
+  }
+
+  private IdentifyPayload identifyPayload(BotToken token, Optional<ShardPayload> shard) {
+    return ImmutableIdentifyPayload.builder()
+        .token(token.unwrap())
+        .shard(shard)
+        .properties(getDefaultConnectionProperties())
+        .build();
+  }
+
+  /**
+   * Request members of a guild whose username starts with the query. An empty query with a limit
+   * of 0 requests all members.
+   *
+   * @see <a href="https://discordapp.com/developers/docs/topics/gateway#request-guild-members">
+   *     https://discordapp.com/developers/docs/topics/gateway#request-guild-members</a>
+   */
+  public Payload requestGuildMembers(Snowflake guildId, String query, int limit) {
+    ObjectNode d = jackson.createObjectNode();
+    d.put("guild_id", guildId.unwrap()).put("query", query).put("limit", limit);
+    return ImmutablePayload.builder().op(OpCode.REQUEST_GUILD_MEMBERS).d(d).build();
+  }
+
   public ConnectionPropertiesPayload getDefaultConnectionProperties() {
     return ImmutableConnectionPropertiesPayload.builder()
         .browser("ErisCasper.java")
@@ -60,7 +106,41 @@ public class Payloads {
   }
 
   public Single<Payload> read(String text) {
-    return Single.fromCallable(() -> jackson.readValue(text, Payload.class));
+    return Single.fromCallable(() -> reader.read(() -> jackson.getFactory().createParser(text)))
+        .doOnSuccess(p -> count(p, Utf8.encodedLength(text)));
+  }
+
+  public Single<Payload> read(byte[] bytes) {
+    return Single.fromCallable(() -> reader.read(() -> jackson.getFactory().createParser(bytes)))
+        .doOnSuccess(p -> count(p, bytes.length));
+  }
+
+  /**
+   * Read a payload from a stream, without first reading the whole of it in to memory. As the
+   * stream can not be read again, this fails if the payload's data could not be bound into its
+   * event.
+   */
+  public Single<Payload> read(InputStream in) {
+    CountingInputStream counting = new CountingInputStream(in);
+    return Single.fromCallable(() -> reader.read(jackson.getFactory().createParser(counting)))
+        .doOnSuccess(p -> count(p, counting.getCount()));
+  }
+
+  public Single<Payload> readEtf(byte[] bytes) {
+    return Single.fromCallable(
+            () -> {
+              TokenBuffer tokens = new TokenBuffer(jackson, false);
+              Etf.read(bytes, tokens);
+              return reader.read(tokens::asParser);
+            })
+        .doOnSuccess(p -> count(p, bytes.length));
+  }
+
+  private void count(Payload p, long size) {
+    if (reader.isSkipped(p)) {
+      decodeMetrics.skipped(size);
+    }
+    decodeMetrics.read(size);
   }
 
   public Payload resume(ResumePayload r) {
@@ -72,18 +152,61 @@ public class Payloads {
   }
 
   public Maybe<Event> toEvent(Payload payload) {
+    if (payload.event().isPresent()) {
+      return Maybe.just(payload.event().get());
+    }
+
+    if (!payload.d().isPresent() && reader.isSkipped(payload)) {
+      return Maybe.empty();
+    }
+
     return Single.just(payload)
         .filter(Payload.isOp(OpCode.DISPATCH))
         .flatMap(p -> Maybes.fromOptional(p.t()))
-        .map(et -> EventFactory.forType(et).create(payload.d().get()))
+        .map(et -> reader.learn(et, payload.d().get(), createEvent(et, payload.d().get())))
         .doOnError(t -> LOG.warn("Unable to convert payload to event: {}", payload, t))
         .onErrorComplete();
   }
 
+  /**
+   * The data of the payload as a tree, or, if it was bound directly into its event, the fields of
+   * it that {@link PayloadReader} keeps.
+   */
+  public Maybe<JsonNode> summaryOf(Payload payload) {
+    return Maybes.fromOptional(payload.d().isPresent() ? payload.d() : payload.summary());
+  }
+
+  /**
+   * The payload with its event already created, so that creating it is done by the thread that
+   * calls this rather than the thread that later calls {@link #toEvent(Payload)}.
+   */
+  public Single<Payload> withEvent(Payload payload) {
+    if (payload.event().isPresent()) {
+      return Single.just(payload);
+    }
+
+    return toEvent(payload)
+        .<Payload>map(e -> ImmutablePayload.copyOf(payload).withEvent(e))
+        .toSingle(payload);
+  }
+
+  private static Event createEvent(String type, JsonNode d) throws Exception {
+    return EventFactory.forType(type).create(d);
+  }
+
   public Single<String> writeToString(Payload p) {
     return Single.fromCallable(() -> jackson.writeValueAsString(p));
   }
 
+  public Single<ByteString> writeToEtf(Payload p) {
+    return Single.fromCallable(
+        () -> {
+          TokenBuffer tokens = new TokenBuffer(jackson, false);
+          jackson.writeValue(tokens, p);
+          return ByteString.of(Etf.write(tokens.asParser()));
+        });
+  }
+
   @Value.Immutable
   @Wrapped
   public interface SessionIdWrapper extends Wrapper<String> {}
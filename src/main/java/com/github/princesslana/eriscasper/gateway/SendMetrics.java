@@ -0,0 +1,115 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters for the payloads sent by a {@link Gateway}, and how long they waited to be sent. */
+public class SendMetrics {
+
+  private final AtomicInteger depth = new AtomicInteger();
+
+  private final LongAdder frames = new LongAdder();
+  private final LongAdder queued = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+  private final LongAdder batched = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+
+  private final LongAdder waitNanos = new LongAdder();
+  private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+  void enqueued() {
+    queued.increment();
+    depth.incrementAndGet();
+  }
+
+  void dequeued(long waitedNanos) {
+    depth.decrementAndGet();
+    waitNanos.add(waitedNanos);
+    maxWaitNanos.accumulate(waitedNanos);
+  }
+
+  void sent() {
+    frames.increment();
+  }
+
+  void coalesced() {
+    coalesced.increment();
+  }
+
+  void batched() {
+    batched.increment();
+  }
+
+  void rejected() {
+    rejected.increment();
+  }
+
+  void failed() {
+    failed.increment();
+  }
+
+  /** The number of payloads currently waiting to be sent. */
+  public int getDepth() {
+    return depth.get();
+  }
+
+  /** The number of frames sent, including those that skipped the queue. */
+  public long getFrames() {
+    return frames.sum();
+  }
+
+  /** The number of payloads that went through the queue. */
+  public long getQueued() {
+    return queued.sum();
+  }
+
+  /** Status updates that were replaced by a later update before being sent. */
+  public long getCoalesced() {
+    return coalesced.sum();
+  }
+
+  /** Guild member requests that were sent in the same frame as another request. */
+  public long getBatched() {
+    return batched.sum();
+  }
+
+  /** Payloads that were not sent, as they were too large. */
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  /** Frames that the websocket refused to send, as it was closing or its buffer was full. */
+  public long getFailed() {
+    return failed.sum();
+  }
+
+  /** The mean time payloads have waited in the queue, or 0 if none have. */
+  public long getMeanWait(TimeUnit unit) {
+    long count = getQueued() - getDepth();
+    return count <= 0 ? 0 : unit.convert(waitNanos.sum() / count, TimeUnit.NANOSECONDS);
+  }
+
+  /** The longest time any payload has waited in the queue. */
+  public long getMaxWait(TimeUnit unit) {
+    return unit.convert(maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "SendMetrics{depth=%d, frames=%d, queued=%d, coalesced=%d, batched=%d, rejected=%d, "
+            + "failed=%d, meanWaitMillis=%d, maxWaitMillis=%d}",
+        getDepth(),
+        getFrames(),
+        getQueued(),
+        getCoalesced(),
+        getBatched(),
+        getRejected(),
+        getFailed(),
+        getMeanWait(TimeUnit.MILLISECONDS),
+        getMaxWait(TimeUnit.MILLISECONDS));
+  }
+}
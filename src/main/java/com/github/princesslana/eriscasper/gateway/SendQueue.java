@@ -0,0 +1,418 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.princesslana.eriscasper.rx.ScheduledDrain;
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Function;
+import io.reactivex.subjects.CompletableSubject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import okio.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Payloads waiting to be sent on a gateway connection, sent as fast as the rate limit allows.
+ *
+ * <p>Sending never blocks. Payloads are queued until the limit allows them to be sent, with
+ * identifies ahead of all other payloads. Heartbeats and resumes skip the queue entirely, as
+ * delaying them would risk losing the connection or session.
+ *
+ * <p>Queued payloads are sent one at a time, each once the previous has been handed to the
+ * websocket, so a sender that waits for the websocket's own buffer to drain holds back the whole
+ * queue rather than reordering it.
+ *
+ * <p>Nothing is sent while paused, as between losing a connection and reconnecting. Once reset for
+ * a new connection only identifies are sent until it is ready or resumed. Everything else stays
+ * queued rather than being sent to a connection that is gone or not yet identified. Payloads that
+ * fail to send because their connection was lost meanwhile are queued again for the next.
+ *
+ * <p>While queued, a status update is replaced by any later status update, as only the latest
+ * matters. Guild member requests that differ only in their guild are batched into as few frames as
+ * fit within the maximum message size.
+ *
+ * @see <a href="https://discordapp.com/developers/docs/topics/gateway#rate-limiting">
+ *     https://discordapp.com/developers/docs/topics/gateway#rate-limiting</a>
+ */
+public class SendQueue {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SendQueue.class);
+
+  /**
+   * @see <a href="https://discordapp.com/developers/docs/topics/gateway#sending-payloads">
+   *     https://discordapp.com/developers/docs/topics/gateway#sending-payloads</a>
+   */
+  static final int MAX_MESSAGE_SIZE = 4096;
+
+  private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+  private static final String GUILD_ID = "guild_id";
+
+  private final int limit;
+
+  private final Function<Payload, ByteString> encoder;
+  private final Function<ByteString, Completable> sender;
+  private final Function<ByteString, Completable> urgentSender;
+
+  private final SendMetrics metrics;
+
+  private final Scheduler scheduler;
+
+  private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+
+  private Optional<Entry> queuedStatusUpdate = Optional.empty();
+
+  private long sequence = 0;
+
+  private long windowStart;
+  private int sentInWindow = 0;
+
+  private final ScheduledDrain scheduledDrain;
+
+  private boolean draining = false;
+  private boolean sending = false;
+  private boolean connected = true;
+  private boolean ready = true;
+
+  // Counts lost and new connections, so we know whether a send failed because of one
+  private long connection = 0;
+
+  /**
+   * @param limit the number of payloads that may be sent each 60 seconds
+   * @param encoder writes a payload ready to be sent
+   * @param sender sends an encoded payload
+   */
+  public SendQueue(
+      int limit,
+      Function<Payload, ByteString> encoder,
+      Function<ByteString, Completable> sender,
+      SendMetrics metrics,
+      Scheduler scheduler) {
+    this(limit, encoder, sender, sender, metrics, scheduler);
+  }
+
+  /**
+   * @param limit the number of payloads that may be sent each 60 seconds
+   * @param encoder writes a payload ready to be sent
+   * @param sender sends an encoded payload from the queue
+   * @param urgentSender sends an encoded payload that skips the queue
+   */
+  public SendQueue(
+      int limit,
+      Function<Payload, ByteString> encoder,
+      Function<ByteString, Completable> sender,
+      Function<ByteString, Completable> urgentSender,
+      SendMetrics metrics,
+      Scheduler scheduler) {
+    this.limit = limit;
+    this.encoder = encoder;
+    this.sender = sender;
+    this.urgentSender = urgentSender;
+    this.metrics = metrics;
+    this.scheduler = scheduler;
+    this.windowStart = now() - WINDOW_NANOS;
+    this.scheduledDrain = new ScheduledDrain(this::drain, scheduler);
+  }
+
+  /** Queue the payload, completing once it is sent. */
+  public Completable send(Payload payload) {
+    return Completable.defer(
+        () -> {
+          CompletableSubject sent = CompletableSubject.create();
+          enqueue(payload, sent);
+          return sent;
+        });
+  }
+
+  /**
+   * Send the payload immediately, skipping the queue. It still counts against the limit, so this
+   * should only be used for the few payloads the limit leaves an allowance for.
+   */
+  public Completable sendNow(Payload payload) {
+    return Completable.defer(
+        () -> {
+          ByteString bytes = encoder.apply(payload);
+          synchronized (this) {
+            startWindowIfElapsed();
+            sentInWindow++;
+          }
+          metrics.sent();
+          return urgentSender.apply(bytes).doOnError(t -> metrics.failed());
+        });
+  }
+
+  /**
+   * Start a new rate limit window for a new connection, sending only identifies until {@link
+   * #resume()}. Identifies queued for an earlier connection are dropped, as the new connection
+   * identifies itself.
+   */
+  public synchronized void reset() {
+    windowStart = now() - WINDOW_NANOS;
+    sentInWindow = 0;
+    connected = true;
+    ready = false;
+    connection++;
+
+    List<Entry> identifies =
+        queue.stream().filter(e -> e.priority() == 0).collect(Collectors.toList());
+    queue.removeAll(identifies);
+    identifies.forEach(
+        e -> e.error(new IllegalStateException("Connection reset before identify was sent.")));
+
+    drain();
+  }
+
+  /** Hold back everything until {@link #reset()}, as for a lost connection. */
+  public synchronized void pause() {
+    connected = false;
+    ready = false;
+    connection++;
+  }
+
+  /** Send everything queued, as for a connection that is ready or resumed. */
+  public synchronized void resume() {
+    connected = true;
+    ready = true;
+    drain();
+  }
+
+  private synchronized void enqueue(Payload payload, CompletableSubject sent) {
+    if (payload.op() == OpCode.STATUS_UPDATE && queuedStatusUpdate.isPresent()) {
+      Entry queued = queuedStatusUpdate.get();
+      queued.payload = payload;
+      queued.waiting.add(sent);
+      metrics.coalesced();
+      return;
+    }
+
+    Entry entry = new Entry(payload, sent, sequence++, now());
+
+    if (payload.op() == OpCode.STATUS_UPDATE) {
+      queuedStatusUpdate = Optional.of(entry);
+    }
+
+    queue.add(entry);
+    metrics.enqueued();
+
+    drain();
+  }
+
+  private synchronized void drain() {
+    // Sends that complete immediately call back in to here. The loop below will continue for them.
+    if (draining) {
+      return;
+    }
+
+    draining = true;
+    try {
+      drainQueue();
+    } finally {
+      draining = false;
+    }
+  }
+
+  private void drainQueue() {
+    while (!queue.isEmpty() && !sending) {
+      if (!connected || (!ready && queue.peek().priority() != 0)) {
+        return;
+      }
+
+      startWindowIfElapsed();
+
+      if (sentInWindow >= limit) {
+        scheduledDrain.schedule(windowStart + WINDOW_NANOS - now(), TimeUnit.NANOSECONDS);
+        return;
+      }
+
+      List<Entry> entries = new ArrayList<>();
+      entries.add(poll());
+
+      try {
+        Payload payload = entries.get(0).payload;
+
+        if (payload.op() == OpCode.REQUEST_GUILD_MEMBERS) {
+          payload = batch(payload, entries);
+        }
+
+        ByteString bytes = encoder.apply(payload);
+
+        if (bytes.size() > MAX_MESSAGE_SIZE) {
+          LOG.warn("Payload rejected as too long: {}.", payload);
+          metrics.rejected();
+          IllegalArgumentException tooLong =
+              new IllegalArgumentException(
+                  String.format(
+                      "Payload of %d bytes is over the maximum of %d bytes.",
+                      bytes.size(), MAX_MESSAGE_SIZE));
+          entries.forEach(en -> en.error(tooLong));
+          continue;
+        }
+
+        sentInWindow++;
+        metrics.sent();
+
+        sending = true;
+        long sentOn = connection;
+        sender
+            .apply(bytes)
+            .subscribe(
+                () -> sent(entries, sentOn, Optional.empty()),
+                t -> sent(entries, sentOn, Optional.of(t)));
+      } catch (Exception e) {
+        sending = false;
+        entries.forEach(en -> en.error(e));
+      }
+    }
+  }
+
+  private synchronized void sent(List<Entry> entries, long sentOn, Optional<Throwable> error) {
+    sending = false;
+
+    if (error.isPresent() && sentOn != connection) {
+      LOG.debug("Connection lost while sending payload, queueing it again.", error.get());
+      metrics.failed();
+      entries.forEach(this::requeue);
+    } else if (error.isPresent()) {
+      LOG.warn("Failed to send payload.", error.get());
+      metrics.failed();
+      entries.forEach(e -> e.error(error.get()));
+    } else {
+      entries.forEach(Entry::complete);
+    }
+
+    drain();
+  }
+
+  /**
+   * Add any queued guild member requests that can share a frame with the given request to {@code
+   * entries}, returning the payload for them all.
+   */
+  private Payload batch(Payload first, List<Entry> entries) throws Exception {
+    if (!first.d().filter(JsonNode::isObject).isPresent()) {
+      return first;
+    }
+
+    ObjectNode request = withoutGuildId(first.d().get());
+    ArrayNode guildIds = guildIdsOf(first.d().get());
+    Payload batch = first;
+
+    List<Entry> candidates =
+        queue
+            .stream()
+            .filter(e -> e.payload.op() == OpCode.REQUEST_GUILD_MEMBERS)
+            .filter(e -> e.payload.d().filter(JsonNode::isObject).isPresent())
+            .filter(e -> withoutGuildId(e.payload.d().get()).equals(request))
+            .sorted()
+            .collect(Collectors.toList());
+
+    for (Entry candidate : candidates) {
+      ArrayNode ids = guildIds.deepCopy().addAll(guildIdsOf(candidate.payload.d().get()));
+      Payload payload = guildMemberRequest(request, ids);
+
+      if (encoder.apply(payload).size() > MAX_MESSAGE_SIZE) {
+        break;
+      }
+
+      queue.remove(candidate);
+      metrics.dequeued(now() - candidate.queuedAt);
+      metrics.batched();
+      entries.add(candidate);
+
+      guildIds = ids;
+      batch = payload;
+    }
+
+    return batch;
+  }
+
+  private static Payload guildMemberRequest(ObjectNode request, ArrayNode guildIds) {
+    ObjectNode d = request.deepCopy();
+    d.set(GUILD_ID, guildIds);
+    return ImmutablePayload.builder().op(OpCode.REQUEST_GUILD_MEMBERS).d(d).build();
+  }
+
+  private static ObjectNode withoutGuildId(JsonNode d) {
+    ObjectNode copy = ((ObjectNode) d).deepCopy();
+    copy.remove(GUILD_ID);
+    return copy;
+  }
+
+  private static ArrayNode guildIdsOf(JsonNode d) {
+    JsonNode id = d.path(GUILD_ID);
+    ArrayNode ids = JsonNodeFactory.instance.arrayNode();
+    return id.isArray() ? ids.addAll((ArrayNode) id) : ids.add(id);
+  }
+
+  private void requeue(Entry entry) {
+    if (entry.payload.op() == OpCode.STATUS_UPDATE && !queuedStatusUpdate.isPresent()) {
+      queuedStatusUpdate = Optional.of(entry);
+    }
+
+    queue.add(entry);
+    metrics.enqueued();
+  }
+
+  private Entry poll() {
+    Entry entry = queue.poll();
+
+    if (queuedStatusUpdate.filter(entry::equals).isPresent()) {
+      queuedStatusUpdate = Optional.empty();
+    }
+
+    metrics.dequeued(now() - entry.queuedAt);
+    return entry;
+  }
+
+  private void startWindowIfElapsed() {
+    long now = now();
+    if (now - windowStart >= WINDOW_NANOS) {
+      windowStart = now;
+      sentInWindow = 0;
+    }
+  }
+
+  private long now() {
+    return scheduler.now(TimeUnit.NANOSECONDS);
+  }
+
+  private static class Entry implements Comparable<Entry> {
+    private Payload payload;
+    private final List<CompletableSubject> waiting = new ArrayList<>();
+    private final long sequence;
+    private final long queuedAt;
+
+    private Entry(Payload payload, CompletableSubject sent, long sequence, long queuedAt) {
+      this.payload = payload;
+      this.waiting.add(sent);
+      this.sequence = sequence;
+      this.queuedAt = queuedAt;
+    }
+
+    // Identifies go before everything else, otherwise first in first out
+    private int priority() {
+      return payload.op() == OpCode.IDENTIFY ? 0 : 1;
+    }
+
+    private void complete() {
+      waiting.forEach(CompletableSubject::onComplete);
+    }
+
+    private void error(Throwable t) {
+      waiting.forEach(s -> s.onError(t));
+    }
+
+    @Override
+    public int compareTo(Entry that) {
+      int byPriority = Integer.compare(priority(), that.priority());
+      return byPriority != 0 ? byPriority : Long.compare(sequence, that.sequence);
+    }
+  }
+}
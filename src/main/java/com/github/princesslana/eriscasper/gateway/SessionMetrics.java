@@ -0,0 +1,88 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters for the connections and sessions of a {@link Gateway}. */
+public class SessionMetrics {
+
+  private final LongAdder connects = new LongAdder();
+  private final LongAdder identifies = new LongAdder();
+  private final LongAdder resumes = new LongAdder();
+  private final LongAdder resumeSuccesses = new LongAdder();
+  private final LongAdder resumeFailures = new LongAdder();
+  private final LongAdder reconnectRequests = new LongAdder();
+  private final LongAdder invalidSessions = new LongAdder();
+
+  void connected() {
+    connects.increment();
+  }
+
+  void identified() {
+    identifies.increment();
+  }
+
+  void resumed() {
+    resumes.increment();
+  }
+
+  void resumeSucceeded() {
+    resumeSuccesses.increment();
+  }
+
+  void resumeFailed() {
+    resumeFailures.increment();
+  }
+
+  void reconnectRequested() {
+    reconnectRequests.increment();
+  }
+
+  void invalidSession() {
+    invalidSessions.increment();
+  }
+
+  public long getConnects() {
+    return connects.sum();
+  }
+
+  public long getIdentifies() {
+    return identifies.sum();
+  }
+
+  /** The number of times a resume was attempted. */
+  public long getResumes() {
+    return resumes.sum();
+  }
+
+  public long getResumeSuccesses() {
+    return resumeSuccesses.sum();
+  }
+
+  /** The number of resumes that were answered with an invalid session. */
+  public long getResumeFailures() {
+    return resumeFailures.sum();
+  }
+
+  /** The number of times Discord asked for us to reconnect. */
+  public long getReconnectRequests() {
+    return reconnectRequests.sum();
+  }
+
+  public long getInvalidSessions() {
+    return invalidSessions.sum();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "SessionMetrics{connects=%d, identifies=%d, resumes=%d, resumeSuccesses=%d, "
+            + "resumeFailures=%d, reconnectRequests=%d, invalidSessions=%d}",
+        getConnects(),
+        getIdentifies(),
+        getResumes(),
+        getResumeSuccesses(),
+        getResumeFailures(),
+        getReconnectRequests(),
+        getInvalidSessions());
+  }
+}
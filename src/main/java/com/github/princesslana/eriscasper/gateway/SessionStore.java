@@ -0,0 +1,67 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.ufoscout.properlty.Properlty;
+import java.nio.file.Paths;
+import java.util.Optional;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps gateway sessions so that they can be resumed by a later process, such as after a restart.
+ * Resuming avoids identifying again and being sent the state of every guild.
+ *
+ * <p>That state is also what fills the repositories, and they are not kept across restarts. A bot
+ * that resumes after a restart starts with empty caches: guilds, channels and members it already
+ * knew about are only seen again as events mention them. Only use a store if the bot can work
+ * that way, for example by fetching what it needs through the REST routes.
+ *
+ * @see <a href="https://discordapp.com/developers/docs/topics/gateway#resuming">
+ *     https://discordapp.com/developers/docs/topics/gateway#resuming</a>
+ */
+public interface SessionStore {
+
+  /** A store that keeps nothing, so that each process identifies. */
+  SessionStore NONE =
+      new SessionStore() {
+        @Override
+        public Optional<StoredSession> load(long shardId) {
+          return Optional.empty();
+        }
+
+        @Override
+        public void save(long shardId, StoredSession session) {}
+
+        @Override
+        public void clear(long shardId) {}
+      };
+
+  Optional<StoredSession> load(long shardId);
+
+  void save(long shardId, StoredSession session);
+
+  /** Forget the session of the given shard, as it can no longer be resumed. */
+  void clear(long shardId);
+
+  /**
+   * A file backed store if {@code ec.gateway.session.store} gives a directory for it, and {@code
+   * ec.gateway.session.store.empty_caches} is true to accept that repositories start empty after a
+   * restart.
+   */
+  static SessionStore fromConfig(Properlty config) {
+    Optional<String> dir = config.get("ec.gateway.session.store");
+    boolean emptyCaches =
+        config
+            .get("ec.gateway.session.store.empty_caches")
+            .map(Boolean::parseBoolean)
+            .orElse(false);
+
+    if (dir.isPresent() && !emptyCaches) {
+      LoggerFactory.getLogger(SessionStore.class)
+          .warn(
+              "Not resuming sessions after a restart, as repositories would start empty. "
+                  + "Set ec.gateway.session.store.empty_caches=true to resume anyway.");
+      return NONE;
+    }
+
+    return dir.<SessionStore>map(d -> new FileSessionStore(Paths.get(d))).orElse(NONE);
+  }
+}
@@ -0,0 +1,14 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.github.princesslana.eriscasper.immutable.Tuple;
+import org.immutables.value.Value;
+
+/** What is needed to resume a gateway session. */
+@Value.Immutable
+@Tuple
+public interface StoredSession {
+
+  SessionId getSessionId();
+
+  SequenceNumber getSequenceNumber();
+}
@@ -0,0 +1,182 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import io.reactivex.Maybe;
+import io.reactivex.functions.Function;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import okio.ByteString;
+
+/**
+ * Inflates a zlib-stream compressed gateway connection.
+ *
+ * <p>The whole connection shares a single zlib context, so one instance must be used per
+ * connection and messages must be passed to it in the order they were received. A payload may be
+ * split across several websocket messages. It is only complete once a message ending with the
+ * Z_SYNC_FLUSH suffix (<code>00 00 ff ff</code>) has been received.
+ *
+ * <p>A complete payload can either be inflated in to a copy, or read from a stream that inflates
+ * it as it is read. The stream avoids ever holding the whole inflated payload, which for a large
+ * guild can be many times the size of what was received.
+ *
+ * @see <a href="https://discordapp.com/developers/docs/topics/gateway#transport-compression">
+ *     https://discordapp.com/developers/docs/topics/gateway#transport-compression</a>
+ */
+public class ZlibStreamInflater implements AutoCloseable {
+
+  private static final ByteString ZLIB_SUFFIX = ByteString.decodeHex("0000ffff");
+
+  private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+  private final Inflater inflater = new Inflater();
+
+  private final CompressionMetrics metrics;
+
+  private byte[] input = new byte[INITIAL_BUFFER_SIZE];
+  private int inputLength = 0;
+
+  private byte[] output = new byte[INITIAL_BUFFER_SIZE];
+
+  public ZlibStreamInflater(CompressionMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Accept the next message received from the websocket.
+   *
+   * @return the inflated payload if this message completes one, otherwise empty
+   */
+  public Maybe<byte[]> inflate(ByteString bytes) {
+    return Maybe.fromCallable(() -> append(bytes));
+  }
+
+  /**
+   * Accept the next message received from the websocket. If it completes a payload, the payload is
+   * passed to {@code reader} as a stream, which must be read before {@code reader} returns.
+   *
+   * @return the result of {@code reader} if this message completes a payload, otherwise empty
+   */
+  public <T> Maybe<T> inflate(ByteString bytes, Function<InputStream, T> reader) {
+    return Maybe.fromCallable(() -> append(bytes, reader));
+  }
+
+  private synchronized byte[] append(ByteString bytes) throws DataFormatException {
+    if (!appendInput(bytes)) {
+      return null;
+    }
+
+    try {
+      return inflateInput();
+    } finally {
+      inputLength = 0;
+    }
+  }
+
+  private synchronized <T> T append(ByteString bytes, Function<InputStream, T> reader)
+      throws Exception {
+    if (!appendInput(bytes)) {
+      return null;
+    }
+
+    InflatingStream in = new InflatingStream();
+    inflater.setInput(input, 0, inputLength);
+
+    try {
+      return reader.apply(in);
+    } finally {
+      // Whatever the reader left must still be inflated to keep the zlib context in step
+      in.skipToEnd();
+      metrics.inflated(inputLength, in.inflated, in.nanos);
+      inputLength = 0;
+    }
+  }
+
+  /** @return true if the input now holds a complete payload */
+  private boolean appendInput(ByteString bytes) {
+    ensureInputCapacity(inputLength + bytes.size());
+    bytes.asByteBuffer().get(input, inputLength, bytes.size());
+    inputLength += bytes.size();
+
+    return bytes.endsWith(ZLIB_SUFFIX);
+  }
+
+  private byte[] inflateInput() throws DataFormatException {
+    long start = System.nanoTime();
+
+    inflater.setInput(input, 0, inputLength);
+
+    // A full output buffer may mean there is still output pending inside the inflater, so we
+    // only stop once it has both consumed all our input and had space left over
+    int outputLength = 0;
+    do {
+      if (outputLength == output.length) {
+        output = Arrays.copyOf(output, output.length * 2);
+      }
+      outputLength += inflater.inflate(output, outputLength, output.length - outputLength);
+    } while (!inflater.finished()
+        && (outputLength == output.length || !inflater.needsInput()));
+
+    metrics.inflated(inputLength, outputLength, System.nanoTime() - start);
+
+    return Arrays.copyOf(output, outputLength);
+  }
+
+  private void ensureInputCapacity(int required) {
+    if (required > input.length) {
+      input = Arrays.copyOf(input, Math.max(required, input.length * 2));
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    inflater.end();
+  }
+
+  /**
+   * Reads the input most recently given to the inflater. As the input ends with a sync flush, the
+   * payload ends once the inflater has consumed it all and has nothing left to output.
+   */
+  private class InflatingStream extends InputStream {
+    private long inflated = 0;
+    private long nanos = 0;
+
+    @Override
+    public int read() throws IOException {
+      byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+
+      long start = System.nanoTime();
+      try {
+        // Output may still be pending once all input is consumed, so always try to inflate
+        int n;
+        do {
+          n = inflater.inflate(b, off, len);
+        } while (n == 0
+            && !inflater.finished()
+            && !inflater.needsInput()
+            && !inflater.needsDictionary());
+        inflated += n;
+        return n == 0 ? -1 : n;
+      } catch (DataFormatException e) {
+        throw new IOException(e);
+      } finally {
+        nanos += System.nanoTime() - start;
+      }
+    }
+
+    private void skipToEnd() throws IOException {
+      while (read(output, 0, output.length) != -1) {
+        // Discard
+      }
+    }
+  }
+}
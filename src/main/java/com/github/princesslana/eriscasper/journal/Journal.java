@@ -0,0 +1,123 @@
+package com.github.princesslana.eriscasper.journal;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An append only record of the raw frames received from the gateway, for replaying later.
+ *
+ * <p>Records are written to memory mapped segment files in a directory. When a record does not fit
+ * in the current segment a new one is started. Each record is written as its kind (1 byte), shard
+ * id (8 bytes), arrival time (8 bytes), data length (4 bytes), and then the data. The unused end of
+ * a segment is left as zeros, which is never a valid kind.
+ *
+ * <p>Opening a journal on a directory that already has segments adds new segments after them.
+ *
+ * @see JournalReader
+ */
+public class Journal implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Journal.class);
+
+  static final String SEGMENT_SUFFIX = ".journal";
+
+  static final int HEADER_SIZE = 1 + 8 + 8 + 4;
+
+  public static final long DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  private final Path directory;
+
+  private final long segmentSize;
+
+  private long nextSegment;
+
+  private Optional<FileChannel> channel = Optional.empty();
+  private Optional<MappedByteBuffer> buffer = Optional.empty();
+
+  public Journal(Path directory) throws IOException {
+    this(directory, DEFAULT_SEGMENT_SIZE);
+  }
+
+  public Journal(Path directory, long segmentSize) throws IOException {
+    Preconditions.checkArgument(
+        segmentSize > HEADER_SIZE && segmentSize <= Integer.MAX_VALUE,
+        "Invalid segment size: %s",
+        segmentSize);
+
+    this.directory = Files.createDirectories(directory);
+    this.segmentSize = segmentSize;
+    this.nextSegment = segments(directory).size();
+  }
+
+  public synchronized void append(JournalRecord record) throws IOException {
+    int length = record.getData().size();
+
+    if (!buffer.isPresent() || buffer.get().remaining() < HEADER_SIZE + length) {
+      roll(HEADER_SIZE + length);
+    }
+
+    buffer
+        .get()
+        .put(record.getKind().getCode())
+        .putLong(record.getShardId())
+        .putLong(record.getNanos())
+        .putInt(length)
+        .put(record.getData().asByteBuffer());
+  }
+
+  private void roll(int required) throws IOException {
+    close();
+
+    Path segment = directory.resolve(String.format("%08d%s", nextSegment++, SEGMENT_SUFFIX));
+    LOG.debug("Starting journal segment {}.", segment);
+
+    FileChannel fc =
+        FileChannel.open(
+            segment,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+
+    channel = Optional.of(fc);
+    buffer =
+        Optional.of(fc.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, required)));
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    buffer.ifPresent(MappedByteBuffer::force);
+    buffer = Optional.empty();
+
+    if (channel.isPresent()) {
+      channel.get().close();
+      channel = Optional.empty();
+    }
+  }
+
+  /** The segment files in the given directory, in the order they were written. */
+  static ImmutableList<Path> segments(Path directory) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return ImmutableList.of();
+    }
+
+    try (Stream<Path> files = Files.list(directory)) {
+      return ImmutableList.copyOf(
+          files
+              .filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+              .sorted()
+              .collect(Collectors.toList()));
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.github.princesslana.eriscasper.journal;
+
+import io.reactivex.Observable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import okio.ByteString;
+
+/**
+ * Reads the records written to a {@link Journal}.
+ *
+ * <p>Segments are read through memory maps, and a record's data is left in its segment until asked
+ * for. So holding on to the records of a large journal, as replaying does, holds only their
+ * headers on the heap.
+ */
+public class JournalReader {
+
+  private JournalReader() {}
+
+  /** All records in the journal in the given directory, in the order they were written. */
+  public static Observable<JournalRecord> read(Path directory) {
+    return Observable.defer(() -> Observable.fromIterable(Journal.segments(directory)))
+        .concatMap(JournalReader::readSegment);
+  }
+
+  private static Observable<JournalRecord> readSegment(Path segment) {
+    return Observable.generate(
+        () -> map(segment),
+        (buffer, em) -> {
+          if (buffer.remaining() < Journal.HEADER_SIZE || buffer.get(buffer.position()) == 0) {
+            em.onComplete();
+            return buffer;
+          }
+
+          JournalRecord.Kind kind = JournalRecord.Kind.fromCode(buffer.get());
+          long shardId = buffer.getLong();
+          long nanos = buffer.getLong();
+          int length = buffer.getInt();
+
+          em.onNext(new MappedRecord(kind, shardId, nanos, buffer, buffer.position(), length));
+
+          buffer.position(buffer.position() + length);
+          return buffer;
+        });
+  }
+
+  private static ByteBuffer map(Path segment) throws Exception {
+    try (FileChannel fc = FileChannel.open(segment, StandardOpenOption.READ)) {
+      return fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+    }
+  }
+
+  /** A record whose data is copied out of its mapped segment each time it is asked for. */
+  private static class MappedRecord implements JournalRecord {
+    private final Kind kind;
+    private final long shardId;
+    private final long nanos;
+
+    private final ByteBuffer segment;
+    private final int offset;
+    private final int length;
+
+    private MappedRecord(
+        Kind kind, long shardId, long nanos, ByteBuffer segment, int offset, int length) {
+      this.kind = kind;
+      this.shardId = shardId;
+      this.nanos = nanos;
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    public Kind getKind() {
+      return kind;
+    }
+
+    @Override
+    public long getShardId() {
+      return shardId;
+    }
+
+    @Override
+    public long getNanos() {
+      return nanos;
+    }
+
+    @Override
+    public ByteString getData() {
+      ByteBuffer data = segment.duplicate();
+      data.limit(offset + length);
+      data.position(offset);
+      return ByteString.of(data);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "JournalRecord{kind=%s, shardId=%d, nanos=%d, length=%d}", kind, shardId, nanos, length);
+    }
+  }
+}
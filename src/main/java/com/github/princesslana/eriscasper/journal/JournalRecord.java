@@ -0,0 +1,49 @@
+package com.github.princesslana.eriscasper.journal;
+
+import com.github.princesslana.eriscasper.immutable.Tuple;
+import java.util.Arrays;
+import okio.ByteString;
+import org.immutables.value.Value;
+
+/** Something received by a shard's websocket, as written to a {@link Journal}. */
+@Value.Immutable
+@Tuple
+public interface JournalRecord {
+
+  Kind getKind();
+
+  long getShardId();
+
+  /** When this was received, from {@link System#nanoTime()}. */
+  long getNanos();
+
+  /**
+   * The message received, or for {@link Kind#OPEN} the url connected to. For records read by
+   * {@link JournalReader} this is read from the journal each time it is called.
+   */
+  ByteString getData();
+
+  enum Kind {
+    /** The start of a new connection. */
+    OPEN(1),
+    TEXT(2),
+    BYTES(3);
+
+    private final byte code;
+
+    private Kind(int code) {
+      this.code = (byte) code;
+    }
+
+    public byte getCode() {
+      return code;
+    }
+
+    public static Kind fromCode(byte code) {
+      return Arrays.stream(Kind.values())
+          .filter(k -> k.code == code)
+          .findFirst()
+          .orElseThrow(() -> new IllegalArgumentException("Unknown record kind: " + code));
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.github.princesslana.eriscasper.journal;
+
+import com.github.princesslana.eriscasper.rx.websocket.RxWebSocket;
+import com.github.princesslana.eriscasper.rx.websocket.RxWebSocketEvent;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+import java.io.IOException;
+import okhttp3.OkHttpClient;
+import okio.ByteString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** A websocket that appends every connection and message it receives to a {@link Journal}. */
+public class RecordingWebSocket extends RxWebSocket {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RecordingWebSocket.class);
+
+  private final Journal journal;
+
+  private final long shardId;
+
+  public RecordingWebSocket(OkHttpClient http, Journal journal, long shardId) {
+    this(http, Schedulers.computation(), journal, shardId);
+  }
+
+  /** @param scheduler used to wait for the outgoing queue to drain */
+  public RecordingWebSocket(OkHttpClient http, Scheduler scheduler, Journal journal, long shardId) {
+    super(http, scheduler);
+    this.journal = journal;
+    this.shardId = shardId;
+  }
+
+  @Override
+  public Observable<RxWebSocketEvent> connect(String url, int closeCode) {
+    return Observable.defer(
+        () -> {
+          append(JournalRecord.Kind.OPEN, ByteString.encodeUtf8(url));
+          return super.connect(url, closeCode).doOnNext(this::record);
+        });
+  }
+
+  private void record(RxWebSocketEvent evt) {
+    if (evt instanceof RxWebSocketEvent.StringMessage) {
+      String text = ((RxWebSocketEvent.StringMessage) evt).getText();
+      append(JournalRecord.Kind.TEXT, ByteString.encodeUtf8(text));
+    } else if (evt instanceof RxWebSocketEvent.ByteStringMessage) {
+      append(JournalRecord.Kind.BYTES, ((RxWebSocketEvent.ByteStringMessage) evt).getBytes());
+    }
+  }
+
+  // Failing to record should not affect the connection itself
+  private void append(JournalRecord.Kind kind, ByteString data) {
+    try {
+      journal.append(JournalRecordTuple.of(kind, shardId, System.nanoTime(), data));
+    } catch (IOException e) {
+      LOG.warn("Error recording to journal: shard={}, kind={}.", shardId, kind, e);
+    }
+  }
+}
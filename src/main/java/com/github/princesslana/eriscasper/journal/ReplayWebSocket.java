@@ -0,0 +1,191 @@
+package com.github.princesslana.eriscasper.journal;
+
+import com.github.princesslana.eriscasper.rx.websocket.ByteStringMessageTuple;
+import com.github.princesslana.eriscasper.rx.websocket.RxWebSocket;
+import com.github.princesslana.eriscasper.rx.websocket.RxWebSocketEvent;
+import com.github.princesslana.eriscasper.rx.websocket.StringMessageTuple;
+import com.google.common.collect.ImmutableList;
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.subjects.CompletableSubject;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Request;
+import okhttp3.WebSocket;
+import okio.ByteString;
+
+/**
+ * A websocket that replays the connections of one shard from a {@link Journal}.
+ *
+ * <p>Each call to {@link #connect(String, int)} replays the next recorded connection, whatever url
+ * is given. Once all have been replayed, {@link #finished()} completes and further connections
+ * never receive anything. Anything sent is discarded.
+ */
+public class ReplayWebSocket extends RxWebSocket {
+
+  /** How fast to replay messages. */
+  public enum Pacing {
+    /** With the same gaps between messages as when they were recorded. */
+    ORIGINAL,
+
+    /** As soon as each is handled. */
+    AS_FAST_AS_POSSIBLE
+  }
+
+  private final ImmutableList<ImmutableList<JournalRecord>> connections;
+
+  private final Pacing pacing;
+
+  private final long recordedStartNanos;
+  private final long replayStartNanos;
+
+  private final Scheduler scheduler;
+
+  private final AtomicInteger next = new AtomicInteger();
+
+  private final CompletableSubject finished = CompletableSubject.create();
+
+  /**
+   * @param connections the records of each connection, each starting with its {@link
+   *     JournalRecord.Kind#OPEN} record
+   * @param recordedStartNanos when recording started. Shared by all shards so they stay in step.
+   * @param replayStartNanos when replaying started, from the scheduler's clock
+   */
+  public ReplayWebSocket(
+      List<ImmutableList<JournalRecord>> connections,
+      Pacing pacing,
+      long recordedStartNanos,
+      long replayStartNanos,
+      Scheduler scheduler) {
+    super(null, scheduler);
+    this.connections = ImmutableList.copyOf(connections);
+    this.pacing = pacing;
+    this.recordedStartNanos = recordedStartNanos;
+    this.replayStartNanos = replayStartNanos;
+    this.scheduler = scheduler;
+
+    if (connections.isEmpty()) {
+      finished.onComplete();
+    }
+  }
+
+  /** Completes once every recorded connection has been replayed. */
+  public Completable finished() {
+    return finished;
+  }
+
+  @Override
+  public Observable<RxWebSocketEvent> connect(String url, int closeCode) {
+    return Observable.defer(
+        () -> {
+          int index = next.getAndIncrement();
+
+          if (index >= connections.size()) {
+            return Observable.never();
+          }
+
+          ImmutableList<JournalRecord> records = connections.get(index);
+          WebSocket socket = new ReplayedSocket(records.get(0).getData().utf8());
+
+          Observable<RxWebSocketEvent> events =
+              Observable.fromIterable(records.subList(1, records.size()))
+                  .concatMap(r -> paced(r).map(rec -> toEvent(socket, rec)));
+
+          return index == connections.size() - 1
+              ? events.doOnComplete(finished::onComplete)
+              : events;
+        });
+  }
+
+  private Observable<JournalRecord> paced(JournalRecord record) {
+    if (pacing == Pacing.AS_FAST_AS_POSSIBLE) {
+      return Observable.just(record);
+    }
+
+    long recordedAt = record.getNanos() - recordedStartNanos;
+    long delay = recordedAt - (scheduler.now(TimeUnit.NANOSECONDS) - replayStartNanos);
+
+    return delay <= 0
+        ? Observable.just(record)
+        : Observable.timer(delay, TimeUnit.NANOSECONDS, scheduler).map(t -> record);
+  }
+
+  private static RxWebSocketEvent toEvent(WebSocket socket, JournalRecord record) {
+    return record.getKind() == JournalRecord.Kind.TEXT
+        ? StringMessageTuple.of(socket, record.getData().utf8())
+        : ByteStringMessageTuple.of(socket, record.getData());
+  }
+
+  @Override
+  public Completable send(String text) {
+    return Completable.complete();
+  }
+
+  @Override
+  public Completable send(ByteString bytes) {
+    return Completable.complete();
+  }
+
+  @Override
+  public long queueSize() {
+    return 0;
+  }
+
+  @Override
+  public Completable sendWhenQueueBelow(long bytes, String text) {
+    return Completable.complete();
+  }
+
+  @Override
+  public Completable sendWhenQueueBelow(long bytes, ByteString data) {
+    return Completable.complete();
+  }
+
+  @Override
+  public Completable awaitQueueBelow(long bytes) {
+    return Completable.complete();
+  }
+
+  @Override
+  public void cancel() {
+    // The recorded connection carries on as it did when recorded
+  }
+
+  private static class ReplayedSocket implements WebSocket {
+    private final Request request;
+
+    private ReplayedSocket(String url) {
+      this.request = new Request.Builder().url(url).build();
+    }
+
+    @Override
+    public Request request() {
+      return request;
+    }
+
+    @Override
+    public long queueSize() {
+      return 0;
+    }
+
+    @Override
+    public boolean send(String text) {
+      return true;
+    }
+
+    @Override
+    public boolean send(ByteString bytes) {
+      return true;
+    }
+
+    @Override
+    public boolean close(int code, String reason) {
+      return true;
+    }
+
+    @Override
+    public void cancel() {}
+  }
+}
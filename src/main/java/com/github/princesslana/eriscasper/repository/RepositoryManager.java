@@ -1,6 +1,7 @@
 package com.github.princesslana.eriscasper.repository;
 
 import com.github.princesslana.eriscasper.data.event.Event;
+import com.github.princesslana.eriscasper.gateway.EventSubscriptions;
 import com.github.princesslana.eriscasper.repository.event.ChannelsFromEvents;
 import com.github.princesslana.eriscasper.repository.event.GuildsFromEvents;
 import com.github.princesslana.eriscasper.repository.event.UsersFromEvents;
@@ -32,10 +33,16 @@ public class RepositoryManager {
   }
 
   public static RepositoryManager create(Observable<Event> events) {
+    return create(events, new EventSubscriptions());
+  }
+
+  /** Create the repositories, subscribing to the events they are built from. */
+  public static RepositoryManager create(
+      Observable<Event> events, EventSubscriptions subscriptions) {
     RepositoryManager rm = new RepositoryManager();
-    rm.put(RepositoryDefinition.USER, new UsersFromEvents(events));
-    rm.put(RepositoryDefinition.GUILD, new GuildsFromEvents(events));
-    rm.put(RepositoryDefinition.CHANNEL, new ChannelsFromEvents(events));
+    rm.put(RepositoryDefinition.USER, new UsersFromEvents(events, subscriptions));
+    rm.put(RepositoryDefinition.GUILD, new GuildsFromEvents(events, subscriptions));
+    rm.put(RepositoryDefinition.CHANNEL, new ChannelsFromEvents(events, subscriptions));
     return rm;
   }
 }
@@ -14,6 +14,7 @@ import com.github.princesslana.eriscasper.data.resource.Channel;
 import com.github.princesslana.eriscasper.data.resource.Guild;
 import com.github.princesslana.eriscasper.data.resource.ImmutableChannel;
 import com.github.princesslana.eriscasper.data.resource.UnavailableGuild;
+import com.github.princesslana.eriscasper.gateway.EventSubscriptions;
 import com.github.princesslana.eriscasper.repository.ChannelRepository;
 import com.github.princesslana.eriscasper.repository.FunctionData;
 import com.github.princesslana.eriscasper.rx.Maybes;
@@ -96,8 +97,16 @@ public class ChannelsFromEvents implements ChannelRepository {
 
   private final ConnectableObservable<ImmutableMap<Snowflake, Channel>> channelWatcher;
 
-  @SuppressWarnings("unchecked")
+  private final EventSubscriptions subscriptions;
+
   public ChannelsFromEvents(Observable<Event> events) {
+    this(events, new EventSubscriptions());
+  }
+
+  @SuppressWarnings("unchecked")
+  public ChannelsFromEvents(Observable<Event> events, EventSubscriptions subscriptions) {
+    this.subscriptions = subscriptions;
+
     // Merge all events which are meant to modify the channel by any means
     channelWatcher =
         Observable.mergeArray(
@@ -115,6 +124,7 @@ public class ChannelsFromEvents implements ChannelRepository {
   private <X, Z extends Wrapper<X> & Event>
       Observable<Function<Map<Snowflake, Channel>, ImmutableMap<Snowflake, Channel>>> process(
           Class<Z> event, ChannelFunctionData<X> data, Observable<Event> eventObservable) {
+    subscriptions.add(event);
     return eventObservable.ofType(event).map(Wrapper::unwrap).map(data);
   }
 
@@ -28,7 +28,7 @@ import com.github.princesslana.eriscasper.data.resource.ImmutableGuild;
 import com.github.princesslana.eriscasper.data.resource.ImmutableGuildMember;
 import com.github.princesslana.eriscasper.data.resource.Role;
 import com.github.princesslana.eriscasper.data.resource.UnavailableGuild;
-import com.github.princesslana.eriscasper.data.resource.User;
+import com.github.princesslana.eriscasper.gateway.EventSubscriptions;
 import com.github.princesslana.eriscasper.repository.FunctionData;
 import com.github.princesslana.eriscasper.repository.GuildRepository;
 import com.github.princesslana.eriscasper.rx.Maybes;
@@ -39,12 +39,10 @@ import io.reactivex.Observable;
 import io.reactivex.functions.Function;
 import io.reactivex.observables.ConnectableObservable;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.Stack;
 import java.util.function.BiFunction;
-import java.util.stream.Collectors;
 
 public class GuildsFromEvents implements GuildRepository {
 
@@ -93,27 +91,25 @@ public class GuildsFromEvents implements GuildRepository {
                 guild.getId(), ImmutableGuild.builder().from(guild).members(members).build());
             return ImmutableMap.copyOf(map);
           });
+  // Keyed by user so that merging a chunk in to a large guild is linear rather than quadratic
   private static final GuildFunctionData<GuildMembersChunkEventData> MEMBERS_CHUNK_GUILD_FUNCTION =
       GuildFunctionData.of(
           (map, data) -> {
             Guild guild = map.get(data.getGuildId());
-            Stack<GuildMember> toRemove = new Stack<>();
-            List<GuildMember> members =
-                new ArrayList<>(guild.getMembers().orElse(ImmutableList.of()));
-            Set<Snowflake> container =
-                data.getMembers()
-                    .stream()
-                    .map(GuildMember::getUser)
-                    .map(User::getId)
-                    .collect(Collectors.toSet());
-            members
-                .stream()
-                .filter(member -> container.contains(member.getUser().getId()))
-                .forEach(toRemove::push);
-            toRemove.forEach(members::remove);
-            members.addAll(data.getMembers());
+            Map<Snowflake, GuildMember> members = new LinkedHashMap<>();
+            for (GuildMember member : guild.getMembers().orElse(ImmutableList.of())) {
+              members.put(member.getUser().getId(), member);
+            }
+            for (GuildMember member : data.getMembers()) {
+              members.remove(member.getUser().getId());
+              members.put(member.getUser().getId(), member);
+            }
             map.replace(
-                guild.getId(), ImmutableGuild.builder().from(guild).members(members).build());
+                guild.getId(),
+                ImmutableGuild.builder()
+                    .from(guild)
+                    .members(new ArrayList<>(members.values()))
+                    .build());
             return ImmutableMap.copyOf(map);
           });
   private static final GuildFunctionData<GuildMemberUpdateEventData> MEMBER_UPDATE_GUILD_FUNCTION =
@@ -192,8 +188,16 @@ public class GuildsFromEvents implements GuildRepository {
 
   private final ConnectableObservable<ImmutableMap<Snowflake, Guild>> guildWatcher;
 
-  @SuppressWarnings("unchecked")
+  private final EventSubscriptions subscriptions;
+
   public GuildsFromEvents(Observable<Event> events) {
+    this(events, new EventSubscriptions());
+  }
+
+  @SuppressWarnings("unchecked")
+  public GuildsFromEvents(Observable<Event> events, EventSubscriptions subscriptions) {
+    this.subscriptions = subscriptions;
+
     // Merge all events which are meant to modify the guild by any means
     this.guildWatcher =
         Observable.mergeArray(
@@ -216,6 +220,7 @@ public class GuildsFromEvents implements GuildRepository {
   private <X, Z extends Wrapper<X> & Event>
       Observable<Function<Map<Snowflake, Guild>, ImmutableMap<Snowflake, Guild>>> process(
           Class<Z> event, GuildFunctionData<X> data, Observable<Event> eventObservable) {
+    subscriptions.add(event);
     return eventObservable.ofType(event).map(Wrapper::unwrap).map(data);
   }
 
@@ -4,6 +4,7 @@ import com.github.princesslana.eriscasper.data.event.Event;
 import com.github.princesslana.eriscasper.data.event.ReadyEvent;
 import com.github.princesslana.eriscasper.data.event.ReadyEventData;
 import com.github.princesslana.eriscasper.data.resource.User;
+import com.github.princesslana.eriscasper.gateway.EventSubscriptions;
 import com.github.princesslana.eriscasper.repository.UserRepository;
 import io.reactivex.Observable;
 import io.reactivex.Single;
@@ -14,6 +15,11 @@ public class UsersFromEvents implements UserRepository {
   private ConnectableObservable<User> self;
 
   public UsersFromEvents(Observable<Event> events) {
+    this(events, new EventSubscriptions());
+  }
+
+  public UsersFromEvents(Observable<Event> events, EventSubscriptions subscriptions) {
+    subscriptions.add(ReadyEvent.class);
     self =
         events
             .ofType(ReadyEvent.class)
@@ -10,6 +10,7 @@ import com.github.princesslana.eriscasper.data.resource.Channel;
 import com.github.princesslana.eriscasper.data.resource.Message;
 import com.github.princesslana.eriscasper.data.resource.User;
 import com.google.common.collect.ImmutableList;
+import io.reactivex.Flowable;
 import java.util.Arrays;
 
 public class ChannelRoute {
@@ -52,6 +53,14 @@ public class ChannelRoute {
     return Route.get(path("/"), Route.queryString(), Route.jsonArrayResponse(Message.class));
   }
 
+  /**
+   * As {@link #getChannelMessages()}, but emitting each message as it is read. To be made with
+   * {@link Routes#stream(Route, Object)}.
+   */
+  public Route<GetChannelMessagesRequest, Flowable<Message>> streamChannelMessages() {
+    return Route.get(path("/"), Route.queryString(), Route.jsonArrayElements(Message.class));
+  }
+
   /**
    * @see <a href="https://discordapp.com/developers/docs/resources/channel#get-channel-message">
    *     https://discordapp.com/developers/docs/resources/channel#get-channel-message</a>
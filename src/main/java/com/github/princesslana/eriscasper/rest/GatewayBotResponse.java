@@ -0,0 +1,21 @@
+package com.github.princesslana.eriscasper.rest;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import org.immutables.value.Value;
+
+/**
+ * @see <a href="https://discordapp.com/developers/docs/topics/gateway#get-gateway-bot">
+ *     https://discordapp.com/developers/docs/topics/gateway#get-gateway-bot</a>
+ */
+@Value.Immutable
+@JsonDeserialize(as = ImmutableGatewayBotResponse.class)
+public interface GatewayBotResponse {
+  String getUrl();
+
+  /** The recommended number of shards to connect with. */
+  long getShards();
+
+  @JsonProperty("session_start_limit")
+  SessionStartLimit getSessionStartLimit();
+}
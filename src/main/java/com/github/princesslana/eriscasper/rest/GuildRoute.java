@@ -30,6 +30,7 @@ import com.github.princesslana.eriscasper.data.resource.Role;
 import com.github.princesslana.eriscasper.data.resource.VoiceRegion;
 import com.github.princesslana.eriscasper.util.Pruned;
 import com.google.common.collect.ImmutableList;
+import io.reactivex.Flowable;
 import java.util.Arrays;
 import java.util.Optional;
 
@@ -106,6 +107,15 @@ public class GuildRoute {
         path("/members"), Route.queryString(), Route.jsonArrayResponse(GuildMember.class));
   }
 
+  /**
+   * As {@link #listGuildMembers()}, but emitting each member as it is read. To be made with {@link
+   * Routes#stream(Route, Object)}.
+   */
+  public Route<ListGuildMembersRequest, Flowable<GuildMember>> streamGuildMembers() {
+    return Route.get(
+        path("/members"), Route.queryString(), Route.jsonArrayElements(GuildMember.class));
+  }
+
   /**
    * @see <a href="https://discordapp.com/developers/docs/resources/guild#add-guild-member">
    *     https://discordapp.com/developers/docs/resources/guild#add-guild-member</a>
@@ -0,0 +1,57 @@
+package com.github.princesslana.eriscasper.rest;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Counters for the times we have been rate limited by Discord, i.e., responded to with a 429. */
+public class RateLimitMetrics {
+
+  private final LongAdder globalHits = new LongAdder();
+
+  private final Map<String, LongAdder> routeHits = new ConcurrentHashMap<>();
+
+  private final LongAdder retries = new LongAdder();
+
+  void globalHit() {
+    globalHits.increment();
+  }
+
+  void routeHit(String routeKey) {
+    routeHits.computeIfAbsent(routeKey, k -> new LongAdder()).increment();
+  }
+
+  void retried() {
+    retries.increment();
+  }
+
+  /** The number of times the global rate limit was hit. */
+  public long getGlobalHits() {
+    return globalHits.sum();
+  }
+
+  /** The number of times the rate limit of any route was hit. */
+  public long getRouteHits() {
+    return routeHits.values().stream().mapToLong(LongAdder::sum).sum();
+  }
+
+  /** The number of rate limit hits by route, e.g., {@code POST /channels/123/messages}. */
+  public ImmutableMap<String, Long> getRouteHitsByRoute() {
+    ImmutableMap.Builder<String, Long> builder = ImmutableMap.builder();
+    routeHits.forEach((route, count) -> builder.put(route, count.sum()));
+    return builder.build();
+  }
+
+  /** The number of requests retried after being rate limited. */
+  public long getRetries() {
+    return retries.sum();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "RateLimitMetrics{globalHits=%d, routeHits=%s, retries=%d}",
+        getGlobalHits(), getRouteHitsByRoute(), getRetries());
+  }
+}
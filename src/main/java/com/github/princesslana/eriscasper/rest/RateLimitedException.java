@@ -0,0 +1,24 @@
+package com.github.princesslana.eriscasper.rest;
+
+/** Discord responded with a 429, as we made a request while rate limited. */
+public class RateLimitedException extends RuntimeException {
+
+  private final boolean global;
+
+  private final long retryAfterMillis;
+
+  public RateLimitedException(String msg, boolean global, long retryAfterMillis) {
+    super(msg);
+    this.global = global;
+    this.retryAfterMillis = retryAfterMillis;
+  }
+
+  /** Whether it was the global rate limit, rather than that of a route, we hit. */
+  public boolean isGlobal() {
+    return global;
+  }
+
+  public long getRetryAfterMillis() {
+    return retryAfterMillis;
+  }
+}
@@ -0,0 +1,350 @@
+package com.github.princesslana.eriscasper.rest;
+
+import com.github.princesslana.eriscasper.rx.ScheduledDrain;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Discord's REST rate limits, tracked per bucket.
+ *
+ * <p>Discord groups routes in to buckets, naming a route's bucket in the {@code X-RateLimit-Bucket}
+ * header of its responses. A bucket's limit applies separately to each major parameter, i.e., to
+ * each channel, guild, or webhook. Until we have seen a response for a route we do not know its
+ * bucket, so the route is given a bucket of its own, and requests for it are made one at a time
+ * until its limits are known.
+ *
+ * <p>Requests wait in a queue per bucket until the bucket has a request remaining. Buckets that
+ * have not been used for a while are forgotten.
+ *
+ * <p>Responses may arrive out of order, and may not count requests that were granted after they
+ * were sent. So within the one reset window, a response may lower the requests remaining but never
+ * raise them. Only a response for a later window can refill the bucket.
+ *
+ * <p>Waiting never blocks a thread. A bucket with requests waiting schedules a drain of its queue
+ * for when its limit resets, and requests are granted in the order they were made.
+ *
+ * <p>There is also a global rate limit across all routes. When we hit it every bucket is paused
+ * until Discord tells us to retry, so that requests already waiting do not keep hitting it.
+ *
+ * @see <a href="https://discordapp.com/developers/docs/topics/rate-limits">
+ *     https://discordapp.com/developers/docs/topics/rate-limits</a>
+ */
+public class RateLimits {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RateLimits.class);
+
+  private static final long IDLE_MINUTES = 10;
+
+  // Used if a 429 does not tell us when to retry
+  private static final long DEFAULT_RETRY_AFTER_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+  private static final ImmutableSet<String> MAJOR_PARAMETERS =
+      ImmutableSet.of("channels", "guilds", "webhooks");
+
+  private static final Splitter PATH = Splitter.on('/');
+
+  private static final CharMatcher DIGITS = CharMatcher.inRange('0', '9');
+
+  private final Scheduler scheduler;
+
+  private final RateLimitMetrics metrics = new RateLimitMetrics();
+
+  // when the global rate limit ends, on the scheduler's clock
+  private volatile long globalResetAt = 0;
+
+  // the X-RateLimit-Bucket of each route, by route key
+  private final Cache<String, String> bucketIds =
+      CacheBuilder.newBuilder().expireAfterAccess(IDLE_MINUTES, TimeUnit.MINUTES).build();
+
+  // by route key until the bucket is known, then by bucket and major parameter
+  private final Cache<String, Bucket> buckets =
+      CacheBuilder.newBuilder().expireAfterAccess(IDLE_MINUTES, TimeUnit.MINUTES).build();
+
+  /** @param scheduler the scheduler whose clock is used, and which waiting requests resume on */
+  public RateLimits(Scheduler scheduler) {
+    this.scheduler = scheduler;
+  }
+
+  public RateLimitMetrics getMetrics() {
+    return metrics;
+  }
+
+  /** The number of buckets currently being tracked. */
+  public long getBucketCount() {
+    return buckets.size();
+  }
+
+  /**
+   * Wait until the route's bucket has a request remaining. Once a response is received the bucket
+   * must be updated with {@link #update(Route, Bucket, Response)}, or released if none is.
+   */
+  Single<Bucket> acquire(Route<?, ?> route) {
+    String routeKey = routeKey(route);
+
+    String bucketKey =
+        Optional.ofNullable(bucketIds.getIfPresent(routeKey))
+            .map(id -> bucketKey(id, route))
+            .orElse(routeKey);
+
+    Bucket bucket = buckets.asMap().computeIfAbsent(bucketKey, k -> new Bucket());
+
+    return Single.create(bucket::enqueue);
+  }
+
+  /**
+   * Update the limits of the route's bucket from the headers of a response.
+   *
+   * @throws RateLimitedException if the response is a 429, after pausing the bucket, or all buckets
+   *     if the global rate limit was hit, for as long as Discord asks
+   */
+  void update(Route<?, ?> route, Bucket bucket, Response response) {
+    updateLimits(route, bucket, response);
+
+    if (response.code() == 429) {
+      rateLimited(route, bucket, response);
+    }
+  }
+
+  private void rateLimited(Route<?, ?> route, Bucket bucket, Response response) {
+    boolean global =
+        header(response, "X-RateLimit-Global").map(Boolean::parseBoolean).orElse(false);
+
+    long retryAfter = DEFAULT_RETRY_AFTER_MILLIS;
+    try {
+      retryAfter =
+          header(response, "Retry-After")
+              .map(RateLimits::parseSeconds)
+              .orElse(DEFAULT_RETRY_AFTER_MILLIS);
+    } catch (NumberFormatException e) {
+      LOG.debug("Could not read Retry-After from {} ({})", response, e.getMessage());
+    }
+
+    if (global) {
+      LOG.warn("Global rate limit hit by {}. Pausing all requests for {}ms.", route, retryAfter);
+      metrics.globalHit();
+      globalResetAt = Math.max(globalResetAt, scheduler.now(TimeUnit.MILLISECONDS) + retryAfter);
+    } else {
+      LOG.info("Rate limit hit by {}. Pausing its bucket for {}ms.", route, retryAfter);
+      metrics.routeHit(routeKey(route));
+      bucket.pause(retryAfter);
+    }
+
+    throw new RateLimitedException("Rate limited: " + response, global, retryAfter);
+  }
+
+  private void updateLimits(Route<?, ?> route, Bucket bucket, Response response) {
+    try {
+      Optional<Integer> limit = header(response, "X-RateLimit-Limit").map(Integer::parseInt);
+      Optional<Integer> remaining =
+          header(response, "X-RateLimit-Remaining").map(Integer::parseInt);
+      Optional<Long> resetAfter =
+          header(response, "X-RateLimit-Reset-After").map(RateLimits::parseSeconds);
+      Optional<Long> reset = header(response, "X-RateLimit-Reset").map(RateLimits::parseSeconds);
+
+      if (!limit.isPresent() || !remaining.isPresent() || !resetAfter.isPresent()) {
+        if (response.code() == 429) {
+          bucket.release();
+        } else {
+          // no headers, so there is no limit for this route
+          bucket.update(Integer.MAX_VALUE, Integer.MAX_VALUE, 0, Optional.empty());
+        }
+        return;
+      }
+
+      bucket.update(limit.get(), remaining.get(), resetAfter.get(), reset);
+
+      Optional<String> id = header(response, "X-RateLimit-Bucket");
+
+      if (id.isPresent()) {
+        bucketIds.put(routeKey(route), id.get());
+
+        Bucket shared = buckets.asMap().putIfAbsent(bucketKey(id.get(), route), bucket);
+
+        if (shared != null && shared != bucket) {
+          shared.update(limit.get(), remaining.get(), resetAfter.get(), reset);
+        }
+      }
+    } catch (NumberFormatException e) {
+      LOG.debug("Could not read rate limit from {} ({})", response, e.getMessage());
+      bucket.release();
+    }
+  }
+
+  private static Optional<String> header(Response response, String name) {
+    return Optional.ofNullable(response.header(name));
+  }
+
+  private static long parseSeconds(String seconds) {
+    return (long) Math.ceil(Double.parseDouble(seconds) * TimeUnit.SECONDS.toMillis(1));
+  }
+
+  private static String bucketKey(String bucketId, Route<?, ?> route) {
+    return bucketId + " " + majorParameter(route.getPath()).orElse("");
+  }
+
+  /** The channel, guild, or webhook a path is for, if any. */
+  static Optional<String> majorParameter(String path) {
+    List<String> segments = PATH.splitToList(path);
+
+    return segments.size() > 2 && MAJOR_PARAMETERS.contains(segments.get(1))
+        ? Optional.of(segments.get(2))
+        : Optional.empty();
+  }
+
+  /**
+   * The method and route template of a route, keeping its major parameter. For example, a GET of
+   * {@code /channels/123/messages/456} becomes {@code GET /channels/123/messages/:id}.
+   */
+  static String routeKey(Route<?, ?> route) {
+    List<String> segments = new ArrayList<>(PATH.splitToList(route.getPath()));
+
+    boolean major = segments.size() > 2 && MAJOR_PARAMETERS.contains(segments.get(1));
+
+    for (int i = major ? 3 : 1; i < segments.size(); i++) {
+      String segment = segments.get(i);
+
+      if (segments.get(i - 1).equals("reactions") && !segment.isEmpty()) {
+        // all emoji share a bucket
+        segments.set(i, ":emoji");
+      } else if (!segment.isEmpty() && DIGITS.matchesAllOf(segment)) {
+        segments.set(i, ":id");
+      }
+    }
+
+    return route.getMethod().get() + " " + Joiner.on('/').join(segments);
+  }
+
+  /** A rate limit bucket, and the requests waiting for it. */
+  class Bucket {
+
+    private final ScheduledDrain scheduledDrain = new ScheduledDrain(this::drain, scheduler);
+
+    // all guarded by this
+    private final Deque<SingleEmitter<Bucket>> waiting = new ArrayDeque<>();
+
+    // 0 until known
+    private int limit = 0;
+    private int remaining = 0;
+    private long resetAt = 0;
+
+    // identifies the reset window we last had a response for. This is Discord's X-RateLimit-Reset
+    // when given, as it is the same for every response in the window, or else our resetAt
+    private long window = 0;
+
+    // whether remaining was refilled when resetAt passed, before any response for the new window
+    private boolean refilled = false;
+
+    private boolean discovering = false;
+
+    private void enqueue(SingleEmitter<Bucket> em) {
+      synchronized (this) {
+        waiting.addLast(em);
+      }
+      drain();
+    }
+
+    /**
+     * Update the limits from a response. The response's remaining is taken only if it is for a
+     * later reset window. Within the same window the lower of it and our own remaining is kept, as
+     * requests granted since the response was sent will not have been counted by it.
+     */
+    void update(int limit, int remaining, long resetAfterMillis, Optional<Long> reset) {
+      synchronized (this) {
+        long resetAt = scheduler.now(TimeUnit.MILLISECONDS) + resetAfterMillis;
+        long window = reset.orElse(resetAt);
+
+        if (this.limit == 0 || window > this.window) {
+          // if we refilled when the last window ended, we have granted requests in this one
+          this.remaining = refilled ? Math.min(this.remaining, remaining) : remaining;
+          this.resetAt = resetAt;
+          this.window = window;
+          this.refilled = false;
+        } else if (window == this.window) {
+          this.remaining = Math.min(this.remaining, remaining);
+        }
+        // otherwise it is a late response for an earlier window, so tells us nothing new
+
+        this.limit = Math.max(limit, 1);
+        this.discovering = false;
+      }
+      drain();
+    }
+
+    /** Allow no more requests until the given time has passed. */
+    private void pause(long millis) {
+      synchronized (this) {
+        limit = Math.max(limit, 1);
+        remaining = 0;
+        resetAt = Math.max(resetAt, scheduler.now(TimeUnit.MILLISECONDS) + millis);
+      }
+      drain();
+    }
+
+    /** Allow another request while the limits are unknown, as the last one has no response. */
+    void release() {
+      synchronized (this) {
+        discovering = false;
+      }
+      drain();
+    }
+
+    private void drain() {
+      List<SingleEmitter<Bucket>> granted = new ArrayList<>();
+
+      synchronized (this) {
+        while (!waiting.isEmpty()) {
+          if (waiting.peekFirst().isDisposed()) {
+            waiting.pollFirst();
+            continue;
+          }
+
+          long now = scheduler.now(TimeUnit.MILLISECONDS);
+
+          if (now < globalResetAt) {
+            scheduledDrain.schedule(globalResetAt - now, TimeUnit.MILLISECONDS);
+            break;
+          }
+
+          if (limit == 0) {
+            if (discovering) {
+              break;
+            }
+            discovering = true;
+          } else {
+            if (remaining <= 0 && now >= resetAt) {
+              remaining = limit;
+              refilled = true;
+            }
+
+            if (remaining <= 0) {
+              scheduledDrain.schedule(resetAt - now, TimeUnit.MILLISECONDS);
+              break;
+            }
+
+            remaining--;
+          }
+
+          granted.add(waiting.pollFirst());
+        }
+      }
+
+      granted.forEach(em -> em.onSuccess(this));
+    }
+  }
+}
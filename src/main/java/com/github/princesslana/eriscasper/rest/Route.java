@@ -1,12 +1,19 @@
 package com.github.princesslana.eriscasper.rest;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.github.princesslana.eriscasper.data.Data;
 import com.github.princesslana.eriscasper.data.util.Jackson;
 import com.google.common.collect.ImmutableList;
+import io.reactivex.Flowable;
 import io.reactivex.functions.Function;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import okhttp3.MediaType;
 import okhttp3.Request;
 import okhttp3.RequestBody;
@@ -21,6 +28,10 @@ public class Route<Rq, Rs> {
 
   private static final ObjectMapper JACKSON = Jackson.newObjectMapper();
 
+  // ObjectReaders are immutable and thread safe, so are built once for each response type, when
+  // first used
+  private static final ConcurrentMap<JavaType, ObjectReader> READERS = new ConcurrentHashMap<>();
+
   private HttpMethod method;
   private String path;
   private Function<Rq, RequestContent> requestHandler;
@@ -113,17 +124,55 @@ public class Route<Rq, Rs> {
     return rs -> null;
   }
 
+  /** Read the response body as JSON, decoding it as it is read rather than buffering it first. */
   public static <Rs> Function<Response, Rs> jsonResponse(Class<Rs> rs) {
-    return r -> Data.fromJson(r.body().string(), rs);
+    JavaType type = JACKSON.constructType(rs);
+    return r -> reader(type).readValue(r.body().byteStream());
   }
 
-  @SuppressWarnings("unchecked")
   public static <Rs> Function<Response, ImmutableList<Rs>> jsonArrayResponse(Class<Rs> rs) {
+    JavaType type = JACKSON.getTypeFactory().constructCollectionType(ImmutableList.class, rs);
+    return r -> reader(type).readValue(r.body().byteStream());
+  }
+
+  /**
+   * Read the response body as a JSON array, emitting each element as soon as it has been read. The
+   * response is closed once the array has been read, or if the {@link Flowable} is cancelled.
+   *
+   * <p>Routes using this should be made with {@link Routes#stream(Route, Object)}.
+   */
+  public static <Rs> Function<Response, Flowable<Rs>> jsonArrayElements(Class<Rs> rs) {
+    JavaType type = JACKSON.constructType(rs);
     return r ->
-        (ImmutableList<Rs>)
-            JACKSON.readValue(
-                r.body().string(),
-                TypeFactory.defaultInstance().constructCollectionType(ImmutableList.class, rs));
+        Flowable.using(
+            () -> r,
+            rsp ->
+                Flowable.<Rs, JsonParser>generate(
+                    () -> startArray(rsp),
+                    (parser, emitter) -> {
+                      if (parser.nextToken() == JsonToken.END_ARRAY) {
+                        emitter.onComplete();
+                      } else {
+                        emitter.onNext(reader(type).readValue(parser));
+                      }
+                    },
+                    JsonParser::close),
+            Response::close);
+  }
+
+  private static JsonParser startArray(Response r) throws Exception {
+    JsonParser parser = JACKSON.getFactory().createParser(r.body().byteStream());
+
+    if (parser.nextToken() != JsonToken.START_ARRAY) {
+      parser.close();
+      throw new JsonMappingException(parser, "Expected JSON array in response: " + r);
+    }
+
+    return parser;
+  }
+
+  private static ObjectReader reader(JavaType type) {
+    return READERS.computeIfAbsent(type, JACKSON::readerFor);
   }
 
   public static <Rs> Route<Void, Rs> delete(String path, Class<Rs> rsClass) {
@@ -7,4 +7,8 @@ public final class RouteCatalog {
   public static Route<Void, GatewayResponse> getGateway() {
     return Route.get("/gateway", GatewayResponse.class);
   }
+
+  public static Route<Void, GatewayBotResponse> getGatewayBot() {
+    return Route.get("/gateway/bot", GatewayBotResponse.class);
+  }
 }
@@ -2,17 +2,14 @@ package com.github.princesslana.eriscasper.rest;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.princesslana.eriscasper.BotToken;
-import io.github.resilience4j.ratelimiter.RateLimiter;
-import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
-import io.github.resilience4j.ratelimiter.operator.RateLimiterOperator;
-import io.reactivex.Observable;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
-import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
 import io.reactivex.schedulers.Schedulers;
-import java.time.Duration;
-import java.time.Instant;
-import java.util.concurrent.Callable;
+import java.io.IOException;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -24,19 +21,37 @@ public class Routes {
 
   private static final Logger LOG = LoggerFactory.getLogger(Routes.class);
 
-  private static final MediaType MEDIA_TYPE_JSON = MediaType.parse("application/json");
+  // Requests that are rate limited more often than this fail with a RateLimitedException
+  private static final int MAX_RATE_LIMITED_RETRIES = 5;
 
-  private final RateLimiterRegistry rateLimiterRegistry = RateLimiterRegistry.ofDefaults();
+  private static final MediaType MEDIA_TYPE_JSON = MediaType.parse("application/json");
 
   private final BotToken token;
 
   private final OkHttpClient client;
   private final ObjectMapper jackson;
 
+  private final RateLimits rateLimits;
+
   public Routes(BotToken token, OkHttpClient client, ObjectMapper jackson) {
+    this(token, client, jackson, Schedulers.io());
+  }
+
+  /**
+   * Requests are made on the threads of the client's {@link okhttp3.Dispatcher}, which limits how
+   * many are in flight at once.
+   *
+   * @param scheduler the scheduler that requests waiting for a rate limit resume on
+   */
+  public Routes(BotToken token, OkHttpClient client, ObjectMapper jackson, Scheduler scheduler) {
     this.token = token;
     this.client = client;
     this.jackson = jackson;
+    this.rateLimits = new RateLimits(scheduler);
+  }
+
+  public RateLimits getRateLimits() {
+    return rateLimits;
   }
 
   public <O> Single<O> execute(Route<Void, O> route) {
@@ -44,76 +59,120 @@ public class Routes {
   }
 
   public <I, O> Single<O> execute(Route<I, O> route, I data) {
+    return newRequest(route, data).flatMap(rq -> executeRateLimited(route, rq, false));
+  }
+
+  public <O> Flowable<O> stream(Route<Void, Flowable<O>> route) {
+    return stream(route, null);
+  }
+
+  /**
+   * Execute a route whose response is streamed, such as one using {@link
+   * Route#jsonArrayElements(Class)}. The response is left open for the {@link Flowable} to read
+   * from, and is closed once it terminates or is cancelled.
+   */
+  public <I, O> Flowable<O> stream(Route<I, Flowable<O>> route, I data) {
+    return newRequest(route, data)
+        .flatMap(rq -> executeRateLimited(route, rq, true))
+        .flatMapPublisher(f -> f);
+  }
+
+  private <I> Single<Request> newRequest(Route<I, ?> route, I data) {
     Function<Request.Builder, Request.Builder> addAuthorizationHeader =
         b -> b.header("Authorization", "Bot " + token.unwrap());
 
     return Single.just(route)
         .map(r -> r.newRequestBuilder(data))
         .map(addAuthorizationHeader)
-        .map(Request.Builder::build)
-        .flatMap(rq -> executeRequest(route, rq))
-        .lift(RateLimiterOperator.of(getRateLimiter(route)));
+        .map(Request.Builder::build);
+  }
+
+  /**
+   * Execute the request once its bucket allows. If rate limited anyway, it is retried once the
+   * bucket, or the global rate limit, allows again.
+   */
+  private <O> Single<O> executeRateLimited(Route<?, O> route, Request rq, boolean streamed) {
+    return Single.defer(
+            () ->
+                rateLimits
+                    .acquire(route)
+                    .flatMap(
+                        bucket ->
+                            executeRequest(route, rq, bucket, streamed)
+                                .doFinally(bucket::release)))
+        .retry(
+            (attempts, t) -> {
+              boolean retry =
+                  t instanceof RateLimitedException && attempts <= MAX_RATE_LIMITED_RETRIES;
+              if (retry) {
+                rateLimits.getMetrics().retried();
+              }
+              return retry;
+            });
+  }
+
+  /** @param streamed if true, the response is only closed here if it could not be handled */
+  private <O> Single<O> executeRequest(
+      Route<?, O> route, Request rq, RateLimits.Bucket bucket, boolean streamed) {
+    return call(route, rq)
+        .doOnSuccess(r -> LOG.debug("Done: {} -> {}.", route, r))
+        .flatMap(
+            r -> {
+              Single<O> handled = Single.fromCallable(() -> handleResponse(route, bucket, r));
+              return streamed
+                  ? handled.doOnError(e -> close(r))
+                  : handled.doFinally(() -> close(r));
+            })
+        .doOnError(e -> LOG.warn("Error: {} - {}.", route, e));
   }
 
-  private <O> Single<O> executeRequest(Route<?, O> route, Request rq) {
-    Callable<Response> execute =
-        () -> {
+  private static void close(Response r) {
+    r.close();
+    LOG.debug("Closed: {}.", r);
+  }
+
+  /**
+   * Enqueue the request with OkHttp, so that no thread is blocked while waiting for it to be made.
+   * Disposing cancels the call.
+   */
+  private Single<Response> call(Route<?, ?> route, Request rq) {
+    return Single.create(
+        em -> {
           LOG.debug("Executing: {}...", route);
-          return client.newCall(rq).execute();
-        };
-
-    Consumer<Response> close =
-        r -> {
-          r.close();
-          LOG.debug("Closed: {}.", r);
-        };
-
-    Consumer<Response> updateRateLimit =
-        r -> {
-          String remainingHeader = r.header("X-RateLimit-Remaining");
-          String resetHeader = r.header("X-RateLimit-Reset");
-
-          try {
-            int remaining = Integer.parseInt(remainingHeader, 10);
-            Instant until = Instant.ofEpochSecond(Long.parseLong(resetHeader));
-
-            RateLimiter rl = getRateLimiter(route);
-
-            rl.changeLimitForPeriod(remaining);
-            rl.changeTimeoutDuration(Duration.between(Instant.now(), until));
-          } catch (IllegalArgumentException e) {
-            // we use a little EAFP here (https://docs.python.org/3/glossary.html#term-eafp)
-            // If the headers are absent or not numeric or the values passed into the rate limiter
-            // are invalid we may end up here
-            LOG.debug(
-                "Could not update rate limit to {}/{} ({})",
-                remainingHeader,
-                resetHeader,
-                e.getMessage());
-          }
-        };
-
-    // Single#using does not work here, as it performs the close operation immediately upon emitting
-    // the response, because once it's received the response it knows it can receive no more.
-    //
-    // Observable#using closes the response at a more appropriate time. My feeling is that this is
-    // wrong - we're tricking rxjava into thinking there is something coming next so as to delay the
-    // close.
-    return Observable.using(execute, Observable::just, close)
-        .subscribeOn(Schedulers.io())
-        .doOnNext(r -> LOG.debug("Done: {} -> {}.", route, r))
-        .doOnNext(updateRateLimit)
-        .flatMapSingle(
-            r ->
-                r.isSuccessful()
-                    ? Single.just(r)
-                    : Single.error(new IllegalStateException("Unexpected response: " + r)))
-        .doOnError(e -> LOG.warn("Error: {} - {}.", route, e))
-        .map(route.getResponseHandler())
-        .firstOrError();
+
+          Call call = client.newCall(rq);
+          em.setCancellable(call::cancel);
+
+          call.enqueue(
+              new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                  // we expect a failure if cancelled, but nothing is listening for it
+                  if (!em.isDisposed()) {
+                    em.onError(e);
+                  }
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                  if (em.isDisposed()) {
+                    response.close();
+                  } else {
+                    em.onSuccess(response);
+                  }
+                }
+              });
+        });
   }
 
-  private RateLimiter getRateLimiter(Route<?, ?> r) {
-    return rateLimiterRegistry.rateLimiter(r.getPath());
+  private <O> O handleResponse(Route<?, O> route, RateLimits.Bucket bucket, Response r)
+      throws Exception {
+    rateLimits.update(route, bucket, r);
+
+    if (!r.isSuccessful()) {
+      throw new IllegalStateException("Unexpected response: " + r);
+    }
+
+    return route.getResponseHandler().apply(r);
   }
 }
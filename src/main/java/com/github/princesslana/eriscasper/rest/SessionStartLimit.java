@@ -0,0 +1,33 @@
+package com.github.princesslana.eriscasper.rest;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import org.immutables.value.Value;
+
+/**
+ * How many sessions may be started (i.e., identifies sent) before the limit resets.
+ *
+ * @see <a href="https://discordapp.com/developers/docs/topics/gateway#session-start-limit-object">
+ *     https://discordapp.com/developers/docs/topics/gateway#session-start-limit-object</a>
+ */
+@Value.Immutable
+@JsonDeserialize(as = ImmutableSessionStartLimit.class)
+public interface SessionStartLimit {
+  long getTotal();
+
+  long getRemaining();
+
+  /** Milliseconds until the limit resets. */
+  @JsonProperty("reset_after")
+  long getResetAfter();
+
+  /**
+   * The number of identify requests allowed every 5 seconds. Shards identify in buckets of {@code
+   * shard_id % max_concurrency}, with each bucket allowed one identify every 5 seconds.
+   */
+  @JsonProperty("max_concurrency")
+  @Value.Default
+  default long getMaxConcurrency() {
+    return 1;
+  }
+}
@@ -0,0 +1,232 @@
+package com.github.princesslana.eriscasper.rx;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A timer for the many delays that are waited on while rate limited, without a thread, or a slot
+ * in a shared heap, for each of them.
+ *
+ * <p>Timeouts are kept in a wheel of buckets, each a tick long. A single thread moves round the
+ * wheel one bucket each tick, running the timeouts that have expired. Scheduling and cancelling a
+ * timeout are both constant time, at the cost of timeouts running up to a tick late.
+ *
+ * <p>Timeouts run on the timer's thread, so should only hand work on to somewhere else, as {@link
+ * #on(Scheduler)} does.
+ */
+public class HashedWheelTimer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+  private static final HashedWheelTimer SHARED =
+      new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 512, "ec-timer");
+
+  private final long tickNanos;
+
+  private final Deque<Timeout>[] wheel;
+
+  private final long startNanos = System.nanoTime();
+
+  // timeouts not yet placed in the wheel, as only the timer's thread touches the wheel
+  private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+
+  // only touched by the timer's thread
+  private long tick = 0;
+
+  /**
+   * @param tick the length of each tick
+   * @param ticksPerWheel the number of buckets in the wheel, which must be a power of 2
+   */
+  @SuppressWarnings("unchecked")
+  public HashedWheelTimer(long tick, TimeUnit unit, int ticksPerWheel, String threadName) {
+    if (tick <= 0 || Integer.bitCount(ticksPerWheel) != 1) {
+      throw new IllegalArgumentException("Invalid timer wheel: " + tick + "x" + ticksPerWheel);
+    }
+
+    this.tickNanos = unit.toNanos(tick);
+    this.wheel = new Deque[ticksPerWheel];
+
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = new ArrayDeque<>();
+    }
+
+    Thread thread = new Thread(this::run, threadName);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** The timer shared throughout ErisCasper. */
+  public static HashedWheelTimer shared() {
+    return SHARED;
+  }
+
+  /** Run the task once the delay has passed. Disposing cancels it. */
+  public Disposable schedule(Runnable task, long delay, TimeUnit unit) {
+    Timeout timeout = new Timeout(task, System.nanoTime() + unit.toNanos(Math.max(delay, 0)));
+    added.add(timeout);
+    return timeout;
+  }
+
+  /**
+   * A scheduler that runs tasks on the given scheduler, waiting on this timer for any delay before
+   * they do.
+   */
+  public Scheduler on(Scheduler scheduler) {
+    return new TimerScheduler(this, scheduler);
+  }
+
+  private void run() {
+    while (true) {
+      long deadline = startNanos + (tick + 1) * tickNanos;
+
+      for (long now = System.nanoTime(); now < deadline; now = System.nanoTime()) {
+        LockSupport.parkNanos(this, deadline - now);
+      }
+
+      placeAdded();
+      expire(wheel[(int) (tick & (wheel.length - 1))]);
+
+      tick++;
+    }
+  }
+
+  private void placeAdded() {
+    for (Timeout timeout = added.poll(); timeout != null; timeout = added.poll()) {
+      if (timeout.isDisposed()) {
+        continue;
+      }
+
+      // ticks that have already passed go in to the current tick
+      long expiresAt = Math.max((timeout.deadline - startNanos) / tickNanos, tick);
+
+      timeout.rounds = (expiresAt - tick) / wheel.length;
+      wheel[(int) (expiresAt & (wheel.length - 1))].addLast(timeout);
+    }
+  }
+
+  private void expire(Deque<Timeout> bucket) {
+    for (Iterator<Timeout> it = bucket.iterator(); it.hasNext(); ) {
+      Timeout timeout = it.next();
+
+      if (timeout.isDisposed()) {
+        it.remove();
+      } else if (timeout.rounds <= 0) {
+        it.remove();
+        timeout.expire();
+      } else {
+        timeout.rounds--;
+      }
+    }
+  }
+
+  private static class Timeout implements Disposable {
+    private final Runnable task;
+    private final long deadline;
+
+    // the number of times round the wheel until this expires, only touched by the timer's thread
+    private long rounds;
+
+    private volatile boolean disposed = false;
+
+    private Timeout(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    private void expire() {
+      try {
+        task.run();
+      } catch (Exception e) {
+        LOG.warn("Timer task failed.", e);
+      }
+    }
+
+    @Override
+    public void dispose() {
+      disposed = true;
+    }
+
+    @Override
+    public boolean isDisposed() {
+      return disposed;
+    }
+  }
+
+  private static class TimerScheduler extends Scheduler {
+    private final HashedWheelTimer timer;
+    private final Scheduler scheduler;
+
+    private TimerScheduler(HashedWheelTimer timer, Scheduler scheduler) {
+      this.timer = timer;
+      this.scheduler = scheduler;
+    }
+
+    @Override
+    public long now(TimeUnit unit) {
+      return scheduler.now(unit);
+    }
+
+    @Override
+    public Disposable scheduleDirect(Runnable run, long delay, TimeUnit unit) {
+      if (delay <= 0) {
+        return scheduler.scheduleDirect(run);
+      }
+
+      CompositeDisposable task = new CompositeDisposable();
+      task.add(timer.schedule(() -> task.add(scheduler.scheduleDirect(run)), delay, unit));
+      return task;
+    }
+
+    @Override
+    public Worker createWorker() {
+      return new TimerWorker(timer, scheduler.createWorker());
+    }
+  }
+
+  private static class TimerWorker extends Scheduler.Worker {
+    private final HashedWheelTimer timer;
+    private final Scheduler.Worker worker;
+
+    private TimerWorker(HashedWheelTimer timer, Scheduler.Worker worker) {
+      this.timer = timer;
+      this.worker = worker;
+    }
+
+    @Override
+    public long now(TimeUnit unit) {
+      return worker.now(unit);
+    }
+
+    // A timeout that fires after the worker is disposed schedules nothing, as the worker refuses it
+    @Override
+    public Disposable schedule(Runnable run, long delay, TimeUnit unit) {
+      if (delay <= 0) {
+        return worker.schedule(run);
+      }
+
+      CompositeDisposable task = new CompositeDisposable();
+      task.add(timer.schedule(() -> task.add(worker.schedule(run)), delay, unit));
+      return task;
+    }
+
+    @Override
+    public void dispose() {
+      worker.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+      return worker.isDisposed();
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.github.princesslana.eriscasper.rx;
+
+import com.google.common.hash.Hashing;
+import io.reactivex.Completable;
+import io.reactivex.CompletableSource;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.ObservableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Function;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+
+public class Observables {
+
+  private Observables() {}
+
+  /**
+   * Subscribe to up to {@code parallelism} of the upstream {@link Maybe}s at once on the given
+   * scheduler, emitting their results in the order the {@link Maybe}s were received.
+   *
+   * <p>Once {@code parallelism} results are outstanding, the thread emitting upstream blocks until
+   * the oldest has been handled downstream. This keeps the backpressure a blocking upstream relies
+   * on (e.g., a websocket reader thread), rather than buffering without limit.
+   */
+  public static <T> ObservableTransformer<Maybe<T>, T> parallelOrdered(
+      int parallelism, Scheduler scheduler) {
+    return upstream ->
+        Observable.defer(
+            () -> {
+              Semaphore outstanding = new Semaphore(parallelism);
+
+              return upstream
+                  .doOnNext(m -> outstanding.acquire())
+                  .concatMapEager(
+                      m ->
+                          m.map(Optional::of)
+                              .toSingle(Optional.empty())
+                              .subscribeOn(scheduler)
+                              .toObservable(),
+                      parallelism,
+                      1)
+                  .doAfterNext(o -> outstanding.release())
+                  // unblock upstream if it is waiting when we are disposed
+                  .doFinally(() -> outstanding.release(parallelism))
+                  .filter(Optional::isPresent)
+                  .map(Optional::get);
+            });
+  }
+
+  /**
+   * Handle items in {@code lanes} lanes, each on its own worker of the given scheduler. Items with
+   * equal keys always go to the same lane, where they are handled one at a time in the order they
+   * were received, each once the handling of the one before has completed. Items in different lanes
+   * are handled in parallel.
+   *
+   * <p>A lane that falls behind queues its items without limit, without holding up other lanes.
+   */
+  public static <T> Completable partitioned(
+      Observable<T> source,
+      int lanes,
+      Function<? super T, ?> key,
+      Function<? super T, ? extends CompletableSource> handler,
+      Scheduler scheduler) {
+    return source
+        .groupBy(t -> laneOf(key.apply(t), lanes))
+        .flatMapCompletable(lane -> lane.observeOn(scheduler).concatMapCompletable(handler));
+  }
+
+  private static int laneOf(Object key, int lanes) {
+    // spread keys whose hash codes differ only in their high bits
+    return Math.floorMod(Hashing.murmur3_32().hashInt(key.hashCode()).asInt(), lanes);
+  }
+}
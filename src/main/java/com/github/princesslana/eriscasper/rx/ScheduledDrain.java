@@ -0,0 +1,61 @@
+package com.github.princesslana.eriscasper.rx;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains a rate limited queue again once the limit allows, without a thread waiting until then.
+ *
+ * <p>At most one drain is scheduled at a time. Asking for a drain sooner than the one scheduled
+ * reschedules it, and asking for one later does nothing, as the earlier drain can ask again.
+ *
+ * <p>The drain is run on the given scheduler, which may wait on a {@link HashedWheelTimer} (see
+ * {@link HashedWheelTimer#on(Scheduler)}).
+ */
+public class ScheduledDrain {
+
+  private final Runnable drain;
+
+  private final Scheduler scheduler;
+
+  // all guarded by this
+  private boolean pending = false;
+  private long pendingAt = 0;
+  private Disposable scheduled = Disposables.disposed();
+
+  public ScheduledDrain(Runnable drain, Scheduler scheduler) {
+    this.drain = drain;
+    this.scheduler = scheduler;
+  }
+
+  /** Drain once the delay has passed, unless a drain is already scheduled by then. */
+  public synchronized void schedule(long delay, TimeUnit unit) {
+    long at = scheduler.now(TimeUnit.NANOSECONDS) + unit.toNanos(delay);
+
+    if (pending && pendingAt <= at) {
+      return;
+    }
+
+    scheduled.dispose();
+
+    pending = true;
+    pendingAt = at;
+
+    Disposable task = scheduler.scheduleDirect(this::run, Math.max(delay, 0), unit);
+
+    // unless it has already run
+    if (pending) {
+      scheduled = task;
+    }
+  }
+
+  private void run() {
+    synchronized (this) {
+      pending = false;
+      scheduled = Disposables.disposed();
+    }
+    drain.run();
+  }
+}
@@ -3,12 +3,16 @@ package com.github.princesslana.eriscasper.rx.websocket;
 import io.reactivex.Completable;
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.WebSocket;
 import okhttp3.WebSocketListener;
+import okio.ByteString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,31 +23,177 @@ public class RxWebSocket {
 
   private static final Logger LOG = LoggerFactory.getLogger(RxWebSocket.class);
 
+  // OkHttp has no callback for the queue draining, so we check it this often
+  private static final long DRAIN_POLL_MILLIS = 50;
+
   private final OkHttpClient http;
 
-  private WebSocket ws;
+  private final Scheduler scheduler;
+
+  private volatile WebSocket ws;
+
+  private volatile boolean open = false;
 
   public RxWebSocket(OkHttpClient http) {
+    this(http, Schedulers.computation());
+  }
+
+  /** @param scheduler used to wait for the outgoing queue to drain */
+  public RxWebSocket(OkHttpClient http, Scheduler scheduler) {
     this.http = http;
+    this.scheduler = scheduler;
   }
 
   public Observable<RxWebSocketEvent> connect(String url) {
+    return connect(url, NORMAL_CLOSURE);
+  }
+
+  /**
+   * Connect to the given url. When disposed, the connection is closed with the given close code.
+   */
+  public Observable<RxWebSocketEvent> connect(String url, int closeCode) {
     return Observable.<RxWebSocketEvent>create(
             em -> {
               Request rq = new Request.Builder().url(url).build();
 
-              ws = http.newWebSocket(rq, new Listener(em));
+              WebSocket socket = http.newWebSocket(rq, new Listener(em));
+              ws = socket;
+
+              em.setCancellable(() -> socket.close(closeCode, null));
             })
         .doOnNext(e -> LOG.trace("Received: {}.", e))
         .doOnError(e -> LOG.warn("Error: {}.", e));
   }
 
+  /**
+   * Queue the text to be sent. Errors if the websocket rejects it, which happens when it is closing
+   * or too much data is already queued.
+   */
   public Completable send(String text) {
-    return Completable.fromAction(() -> ws.send(text))
+    return Completable.fromAction(() -> checkSent(ws.send(text), text.length()))
+        .doOnComplete(() -> LOG.trace("Sent: {}.", text));
+  }
+
+  /**
+   * Queue the bytes to be sent. Errors if the websocket rejects them, which happens when it is
+   * closing or too much data is already queued.
+   */
+  public Completable send(ByteString bytes) {
+    return Completable.fromAction(() -> checkSent(ws.send(bytes), bytes.size()))
+        .doOnComplete(() -> LOG.trace("Sent: {}.", bytes));
+  }
+
+  private void checkSent(boolean sent, long size) {
+    if (!sent) {
+      throw new IllegalStateException(
+          String.format(
+              "WebSocket rejected %d bytes with %d bytes queued. Closing: %s.",
+              size, ws.queueSize(), !open));
+    }
+  }
+
+  /**
+   * The number of bytes waiting to be sent.
+   *
+   * <p>OkHttp closes the connection if this would go over 16MiB.
+   */
+  public long queueSize() {
+    return ws.queueSize();
+  }
+
+  /**
+   * Queue the text to be sent once fewer than the given number of bytes are waiting to be sent.
+   * Errors without sending if the connection is replaced while waiting, so the text is never sent
+   * on a connection other than the one it was meant for.
+   */
+  public Completable sendWhenQueueBelow(long bytes, String text) {
+    return Completable.defer(
+            () -> {
+              WebSocket socket = ws;
+              return awaitQueueBelow(socket, bytes)
+                  .andThen(
+                      Completable.fromAction(
+                          () -> {
+                            checkNotReplaced(socket);
+                            checkSent(socket.send(text), text.length());
+                          }));
+            })
         .doOnComplete(() -> LOG.trace("Sent: {}.", text));
   }
 
-  private static class Listener extends WebSocketListener {
+  /**
+   * Queue the bytes to be sent once fewer than the given number of bytes are waiting to be sent.
+   * Errors without sending if the connection is replaced while waiting, so the bytes are never
+   * sent on a connection other than the one they were meant for.
+   */
+  public Completable sendWhenQueueBelow(long bytes, ByteString data) {
+    return Completable.defer(
+            () -> {
+              WebSocket socket = ws;
+              return awaitQueueBelow(socket, bytes)
+                  .andThen(
+                      Completable.fromAction(
+                          () -> {
+                            checkNotReplaced(socket);
+                            checkSent(socket.send(data), data.size());
+                          }));
+            })
+        .doOnComplete(() -> LOG.trace("Sent: {}.", data));
+  }
+
+  /**
+   * Complete once fewer than the given number of bytes are waiting to be sent, or the connection is
+   * closed. Errors if the connection is replaced while waiting.
+   *
+   * <p>Waiting for this before sending frames that are not urgent leaves room in the queue for
+   * those that are.
+   */
+  public Completable awaitQueueBelow(long bytes) {
+    return Completable.defer(() -> awaitQueueBelow(ws, bytes));
+  }
+
+  private Completable awaitQueueBelow(WebSocket socket, long bytes) {
+    if (isDrainedBelow(socket, bytes)) {
+      return Completable.fromAction(() -> checkNotReplaced(socket));
+    }
+
+    LOG.debug("Waiting for queue of {} bytes to drain below {} bytes.", socket.queueSize(), bytes);
+
+    return Observable.interval(DRAIN_POLL_MILLIS, TimeUnit.MILLISECONDS, scheduler)
+        .filter(i -> isDrainedBelow(socket, bytes))
+        .firstElement()
+        .ignoreElement()
+        .doOnComplete(() -> checkNotReplaced(socket));
+  }
+
+  // A replaced or closed connection counts as drained, as sending will not add to its queue
+  private boolean isDrainedBelow(WebSocket socket, long bytes) {
+    return socket != ws || !open || socket.queueSize() < bytes;
+  }
+
+  private void checkNotReplaced(WebSocket socket) {
+    if (socket != ws) {
+      throw new IllegalStateException("WebSocket was replaced by a new connection.");
+    }
+  }
+
+  /**
+   * Immediately close the connection, without waiting for the server to acknowledge the close.
+   *
+   * <p>This is for use when the connection is unresponsive, and results in a failure.
+   */
+  public void cancel() {
+    open = false;
+    ws.cancel();
+  }
+
+  private void setOpen(WebSocket socket, boolean isOpen) {
+    if (socket == ws) {
+      open = isOpen;
+    }
+  }
+
+  private class Listener extends WebSocketListener {
     private final ObservableEmitter<RxWebSocketEvent> em;
 
     private Listener(ObservableEmitter<RxWebSocketEvent> em) {
@@ -52,24 +202,27 @@ public class RxWebSocket {
 
     @Override
     public void onClosed(WebSocket ws, int code, String reason) {
+      setOpen(ws, false);
       em.onNext(ClosedTuple.of(ws, code, reason));
       em.onComplete();
     }
 
     @Override
     public void onClosing(WebSocket ws, int code, String reason) {
+      setOpen(ws, false);
       em.onNext(ClosingTuple.of(ws, code, reason));
       ws.close(NORMAL_CLOSURE, null);
     }
 
     @Override
     public void onFailure(WebSocket ws, Throwable t, Response response) {
+      setOpen(ws, false);
       em.onNext(FailureTuple.of(ws, t, Optional.ofNullable(response)));
       em.onError(t);
     }
 
     @Override
-    public void onMessage(WebSocket ws, okio.ByteString bytes) {
+    public void onMessage(WebSocket ws, ByteString bytes) {
       em.onNext(ByteStringMessageTuple.of(ws, bytes));
     }
 
@@ -80,6 +233,7 @@ public class RxWebSocket {
 
     @Override
     public void onOpen(WebSocket ws, Response response) {
+      setOpen(ws, true);
       em.onNext(OpenTuple.of(ws, response));
     }
   }
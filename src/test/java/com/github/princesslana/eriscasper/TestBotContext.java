@@ -1,15 +1,26 @@
 package com.github.princesslana.eriscasper;
 
 import com.github.princesslana.eriscasper.data.event.Event;
+import com.github.princesslana.eriscasper.data.event.GuildCreateEvent;
 import com.github.princesslana.eriscasper.data.event.MessageCreateEvent;
+import com.github.princesslana.eriscasper.data.resource.Channel;
+import com.github.princesslana.eriscasper.data.resource.Guild;
+import com.github.princesslana.eriscasper.data.resource.ImmutableGuild;
+import com.github.princesslana.eriscasper.data.resource.ImmutableMessage;
 import com.github.princesslana.eriscasper.data.resource.Message;
 import com.github.princesslana.eriscasper.faker.DataFaker;
+import com.github.princesslana.eriscasper.gateway.EventSubscriptions;
 import com.github.princesslana.eriscasper.gateway.Gateway;
+import com.github.princesslana.eriscasper.repository.RepositoryManager;
 import com.github.princesslana.eriscasper.rest.Routes;
 import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.CompletableSubject;
 import io.reactivex.subjects.PublishSubject;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.assertj.core.api.Assertions;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
@@ -43,4 +54,108 @@ public class TestBotContext {
 
     Assertions.assertThat(received).hasSize(1).containsOnly(message);
   }
+
+  @Test
+  public void on_whenMessageCreateEvent_shouldSubscribeToMessageCreate() {
+    EventSubscriptions subscriptions = new EventSubscriptions();
+
+    BotContext bctx = new BotContext(PublishSubject.create(), routes, gateway, null, subscriptions);
+
+    bctx.on(MessageCreateEvent.class, m -> Completable.complete()).test();
+
+    Assertions.assertThat(subscriptions.isSubscribed("MESSAGE_CREATE")).isTrue();
+    Assertions.assertThat(subscriptions.isSubscribed("TYPING_START")).isFalse();
+  }
+
+  @Test
+  public void ofType_whenNotSubscribed_shouldNotSubscribeToType() {
+    EventSubscriptions subscriptions = new EventSubscriptions();
+
+    BotContext bctx = new BotContext(PublishSubject.create(), routes, gateway, null, subscriptions);
+
+    Observable<MessageCreateEvent> events = bctx.ofType(MessageCreateEvent.class);
+
+    Assertions.assertThat(subscriptions.isSubscribed("MESSAGE_CREATE")).isFalse();
+
+    events.test();
+
+    Assertions.assertThat(subscriptions.isSubscribed("MESSAGE_CREATE")).isTrue();
+  }
+
+  @Test
+  public void getEvents_shouldSubscribeToAll() {
+    EventSubscriptions subscriptions = new EventSubscriptions();
+
+    BotContext bctx = new BotContext(PublishSubject.create(), routes, gateway, null, subscriptions);
+
+    bctx.getEvents();
+
+    Assertions.assertThat(subscriptions.isSubscribed("TYPING_START")).isTrue();
+  }
+
+  @Test
+  public void getShardEvents_whenNotSharded_shouldBeFromShardZero() {
+    Message message = DataFaker.message();
+
+    PublishSubject<Event> publisher = PublishSubject.create();
+
+    BotContext bctx = new BotContext(publisher, routes, gateway, null);
+
+    TestObserver<ShardEvent> subscriber = bctx.getShardEvents().test();
+
+    publisher.onNext(MessageCreateEvent.of(message));
+
+    subscriber.assertValue(ShardEventTuple.of(0, MessageCreateEvent.of(message)));
+  }
+
+  @Test
+  public void onPartitioned_whenMessagesInOneGuild_shouldHandleInOrder()
+      throws InterruptedException {
+    Guild guild =
+        ImmutableGuild.builder().from(DataFaker.guild()).addChannels(DataFaker.channel()).build();
+    Message first = messageIn(guild.getChannels().get().get(0));
+    Message second = messageIn(guild.getChannels().get().get(1));
+
+    PublishSubject<Event> publisher = PublishSubject.create();
+
+    BotContext bctx =
+        new BotContext(publisher, routes, gateway, RepositoryManager.create(publisher));
+
+    CompletableSubject firstHandled = CompletableSubject.create();
+    List<Message> received = new CopyOnWriteArrayList<>();
+
+    bctx.onPartitioned(
+            MessageCreateEvent.class,
+            PartitionKey.GUILD,
+            64,
+            m -> {
+              received.add(m);
+              return m == first ? firstHandled : Completable.complete();
+            })
+        .test();
+
+    publisher.onNext(GuildCreateEvent.of(guild));
+    publisher.onNext(MessageCreateEvent.of(first));
+    publisher.onNext(MessageCreateEvent.of(second));
+
+    while (received.isEmpty()) {
+      Thread.sleep(10);
+    }
+    Thread.sleep(100);
+
+    // the second message is in another channel, but the same guild, so waits for the first
+    Assertions.assertThat(received).containsExactly(first);
+
+    firstHandled.onComplete();
+
+    while (received.size() < 2) {
+      Thread.sleep(10);
+    }
+
+    Assertions.assertThat(received).containsExactly(first, second);
+  }
+
+  private static Message messageIn(Channel channel) {
+    return ImmutableMessage.builder().from(DataFaker.message()).channelId(channel.getId()).build();
+  }
 }
@@ -0,0 +1,128 @@
+package com.github.princesslana.eriscasper;
+
+import com.github.princesslana.eriscasper.data.event.GuildCreateEvent;
+import com.github.princesslana.eriscasper.data.event.MessageCreateEvent;
+import com.github.princesslana.eriscasper.faker.DataFaker;
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.Test;
+
+public class TestEventBuffer {
+
+  @Test
+  public void getEvents_whenUnderCapacity_shouldEmitAllInOrder() {
+    EventBuffer subject = newEventBuffer(4, OverflowPolicy.BLOCK);
+
+    ShardEvent first = messageCreate();
+    ShardEvent second = guildCreate();
+
+    subject.offer(first);
+    subject.offer(second);
+    subject.complete();
+
+    subject.getEvents().test().awaitDone(5, TimeUnit.SECONDS).assertResult(first, second);
+    Assertions.assertThat(subject.getMetrics().getDelivered()).isEqualTo(2);
+    Assertions.assertThat(subject.getMetrics().getDepth()).isEqualTo(0);
+  }
+
+  @Test
+  public void offer_whenFullAndDrop_shouldDropTheNewEvent() {
+    EventBuffer subject = newEventBuffer(1, OverflowPolicy.DROP);
+
+    ShardEvent first = messageCreate();
+
+    subject.offer(first);
+    subject.offer(messageCreate());
+    subject.complete();
+
+    subject.getEvents().test().awaitDone(5, TimeUnit.SECONDS).assertResult(first);
+    Assertions.assertThat(subject.getMetrics().getDropped("MESSAGE_CREATE")).isEqualTo(1);
+  }
+
+  @Test
+  public void offer_whenFullAndDropOldest_shouldDropTheOldestOfTheSameType() {
+    EventBuffer subject = newEventBuffer(2, OverflowPolicy.DROP_OLDEST);
+
+    ShardEvent guild = guildCreate();
+    ShardEvent latest = messageCreate();
+
+    subject.offer(guild);
+    subject.offer(messageCreate());
+    subject.offer(latest);
+    subject.complete();
+
+    subject.getEvents().test().awaitDone(5, TimeUnit.SECONDS).assertResult(guild, latest);
+    Assertions.assertThat(subject.getMetrics().getDropped("MESSAGE_CREATE")).isEqualTo(1);
+    Assertions.assertThat(subject.getMetrics().getDropped("GUILD_CREATE")).isEqualTo(0);
+  }
+
+  @Test
+  public void offer_whenFullAndDropOldestWithNoneOfTheSameType_shouldDropTheNewEvent() {
+    EventBuffer subject = newEventBuffer(1, OverflowPolicy.DROP_OLDEST);
+
+    ShardEvent guild = guildCreate();
+
+    subject.offer(guild);
+    subject.offer(messageCreate());
+    subject.complete();
+
+    subject.getEvents().test().awaitDone(5, TimeUnit.SECONDS).assertResult(guild);
+    Assertions.assertThat(subject.getMetrics().getDropped()).isEqualTo(1);
+  }
+
+  @Test
+  public void offer_whenFullAndBlock_shouldWaitForSpace() throws Exception {
+    EventBuffer subject = newEventBuffer(1, OverflowPolicy.BLOCK);
+
+    ShardEvent first = messageCreate();
+    ShardEvent second = messageCreate();
+
+    subject.offer(first);
+
+    Thread reader = new Thread(() -> subject.offer(second));
+    reader.start();
+
+    while (subject.getMetrics().getBlocked() == 0) {
+      Thread.sleep(10);
+    }
+
+    Assertions.assertThat(reader.isAlive()).isTrue();
+
+    subject.getEvents().test().awaitCount(2).assertValues(first, second);
+
+    reader.join(5000);
+    Assertions.assertThat(reader.isAlive()).isFalse();
+    Assertions.assertThat(subject.getMetrics().getDropped()).isEqualTo(0);
+  }
+
+  @Test
+  public void error_shouldErrorAfterBufferedEvents() {
+    EventBuffer subject = newEventBuffer(4, OverflowPolicy.BLOCK);
+
+    ShardEvent event = messageCreate();
+    ErisCasperFatalException error = new ErisCasperFatalException("test");
+
+    subject.offer(event);
+    subject.error(error);
+
+    subject
+        .getEvents()
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertValues(event)
+        .assertError(error);
+  }
+
+  private static EventBuffer newEventBuffer(int capacity, OverflowPolicy policy) {
+    return new EventBuffer(
+        ImmutableEventBufferConfig.builder().capacity(capacity).defaultPolicy(policy).build());
+  }
+
+  private static ShardEvent messageCreate() {
+    return ShardEventTuple.of(0, MessageCreateEvent.of(DataFaker.message()));
+  }
+
+  private static ShardEvent guildCreate() {
+    return ShardEventTuple.of(0, GuildCreateEvent.of(DataFaker.guild()));
+  }
+}
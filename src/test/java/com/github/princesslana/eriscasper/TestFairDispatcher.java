@@ -0,0 +1,261 @@
+package com.github.princesslana.eriscasper;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.CompletableSubject;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.Test;
+
+public class TestFairDispatcher {
+
+  @Test
+  public void dispatch_whenOneKeyFloods_shouldNotHoldUpOtherKeys() {
+    FairDispatcher subject = newFairDispatcher(1, 1);
+    List<String> handled = new CopyOnWriteArrayList<>();
+
+    subject
+        .dispatch(
+            Observable.just("a1", "a2", "a3", "a4", "a5", "a6", "b1"),
+            s -> s.charAt(0),
+            s -> Completable.timer(10, TimeUnit.MILLISECONDS).doOnComplete(() -> handled.add(s)))
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertComplete();
+
+    Assertions.assertThat(handled).hasSize(7);
+    Assertions.assertThat(handled.indexOf("b1")).isLessThanOrEqualTo(2);
+  }
+
+  @Test
+  public void dispatch_whenManyForOneKey_shouldLimitInFlightForThatKey() {
+    FairDispatcher subject = newFairDispatcher(2, 8);
+    AtomicInteger active = new AtomicInteger();
+    AtomicInteger maxActive = new AtomicInteger();
+
+    subject
+        .dispatch(
+            Observable.range(0, 10),
+            i -> "same",
+            i ->
+                Completable.fromAction(
+                    () -> {
+                      maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                      Thread.sleep(10);
+                      active.decrementAndGet();
+                    }))
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertComplete();
+
+    Assertions.assertThat(maxActive.get()).isLessThanOrEqualTo(2);
+  }
+
+  @Test
+  public void getMetrics_whenWaiting_shouldHaveQueueDepthForKey() {
+    FairDispatcher subject = newFairDispatcher(1, 8);
+
+    subject
+        .dispatch(Observable.just("a", "a", "a", "b"), s -> s, s -> Completable.never())
+        .test()
+        .assertNotComplete();
+
+    Assertions.assertThat(subject.getMetrics().getQueueDepth("a")).isEqualTo(2);
+    Assertions.assertThat(subject.getMetrics().getQueueDepth("b")).isEqualTo(0);
+    Assertions.assertThat(subject.getMetrics().getDeepest(1)).containsExactly("a");
+  }
+
+  @Test
+  public void dispatch_whenHandlerErrors_shouldError() {
+    FairDispatcher subject = newFairDispatcher(1, 1);
+
+    subject
+        .dispatch(
+            Observable.just(1, 2),
+            i -> i,
+            i -> i == 2 ? Completable.error(new IllegalStateException()) : Completable.complete())
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertError(IllegalStateException.class);
+  }
+
+  @Test
+  public void dispatch_whenTooManyQueuedForKey_shouldDropOldest() {
+    FairDispatcher subject = newFairDispatcher(1, 8, 2, 8, Schedulers.trampoline());
+    CompletableSubject gate = CompletableSubject.create();
+    List<Integer> handled = new CopyOnWriteArrayList<>();
+
+    TestObserver<Void> dispatched =
+        subject
+            .dispatch(
+                Observable.range(0, 10),
+                i -> "same",
+                i -> gate.doOnComplete(() -> handled.add(i)))
+            .test();
+
+    // one in flight and the newest two queued, without ever blocking the source
+    Assertions.assertThat(subject.getMetrics().getQueueDepth("same")).isEqualTo(2);
+    Assertions.assertThat(subject.getMetrics().getDropped()).isEqualTo(7);
+    Assertions.assertThat(subject.getMetrics().getBlocked()).isZero();
+
+    gate.onComplete();
+
+    dispatched.assertComplete();
+    Assertions.assertThat(handled).containsExactly(0, 8, 9);
+  }
+
+  @Test
+  public void dispatch_whenTooManyQueuedForKeyAndDropping_shouldDropNewest() {
+    FairDispatcher subject =
+        newFairDispatcher(1, 8, 2, 8, OverflowPolicy.DROP, Schedulers.trampoline());
+    CompletableSubject gate = CompletableSubject.create();
+    List<Integer> handled = new CopyOnWriteArrayList<>();
+
+    TestObserver<Void> dispatched =
+        subject
+            .dispatch(
+                Observable.range(0, 10),
+                i -> "same",
+                i -> gate.doOnComplete(() -> handled.add(i)))
+            .test();
+
+    Assertions.assertThat(subject.getMetrics().getDropped()).isEqualTo(7);
+
+    gate.onComplete();
+
+    dispatched.assertComplete();
+    Assertions.assertThat(handled).containsExactly(0, 1, 2);
+  }
+
+  @Test
+  public void dispatch_whenOneKeyAtItsCap_shouldNotDelayOtherKeys() {
+    FairDispatcher subject = newFairDispatcher(1, 8, 2, 8, Schedulers.newThread());
+    CompletableSubject otherHandled = CompletableSubject.create();
+
+    subject
+        .dispatch(
+            Observable.just("a", "a", "a", "a", "a", "a", "b").subscribeOn(Schedulers.newThread()),
+            s -> s,
+            s ->
+                s.equals("a")
+                    ? Completable.never()
+                    : Completable.fromAction(otherHandled::onComplete))
+        .test();
+
+    otherHandled.test().awaitDone(5, TimeUnit.SECONDS).assertComplete();
+    Assertions.assertThat(subject.getMetrics().getQueueDepth("b")).isZero();
+    Assertions.assertThat(subject.getMetrics().getBlocked()).isZero();
+  }
+
+  @Test
+  public void dispatch_whenTooManyQueuedInTotal_shouldBlockSource() throws Exception {
+    FairDispatcher subject = newFairDispatcher(1, 1, 8, 2, Schedulers.newThread());
+    AtomicInteger emitted = new AtomicInteger();
+
+    subject
+        .dispatch(
+            Observable.just("a", "b", "c", "d", "e")
+                .doOnNext(s -> emitted.incrementAndGet())
+                .subscribeOn(Schedulers.newThread()),
+            s -> s,
+            s -> Completable.never())
+        .test();
+
+    while (subject.getMetrics().getBlocked() == 0) {
+      Thread.sleep(10);
+    }
+
+    // one in flight, two queued, and one waiting for room
+    Assertions.assertThat(emitted.get()).isEqualTo(4);
+    Assertions.assertThat(subject.getMetrics().getQueueDepths()).containsOnlyKeys("b", "c");
+  }
+
+  @Test
+  public void dispatch_whenDisposedWhileSourceBlocked_shouldReleaseSource() throws Exception {
+    FairDispatcher subject = newFairDispatcher(1, 8, 8, 1, Schedulers.newThread());
+    AtomicInteger returned = new AtomicInteger();
+
+    TestObserver<Void> dispatched =
+        subject
+            .dispatch(
+                Observable.range(0, 10)
+                    .doAfterNext(i -> returned.incrementAndGet())
+                    .subscribeOn(Schedulers.newThread()),
+                i -> "same",
+                i -> Completable.never())
+            .test();
+
+    while (subject.getMetrics().getBlocked() == 0) {
+      Thread.sleep(10);
+    }
+    Assertions.assertThat(returned.get()).isEqualTo(2);
+
+    dispatched.dispose();
+
+    while (returned.get() < 3) {
+      Thread.sleep(10);
+    }
+
+    Assertions.assertThat(subject.getMetrics().getQueueDepth("same")).isLessThanOrEqualTo(1);
+  }
+
+  @Test
+  public void getMetrics_whenKeyIdle_shouldForgetIt() {
+    FairDispatcher subject = newFairDispatcher(1, 8, 8, 8, Schedulers.trampoline());
+    CompletableSubject gate = CompletableSubject.create();
+
+    TestObserver<Void> dispatched =
+        subject.dispatch(Observable.just("a"), s -> s, s -> gate).test();
+
+    Assertions.assertThat(subject.getMetrics().getMaxWait("a", TimeUnit.NANOSECONDS)).isPositive();
+
+    gate.onComplete();
+
+    dispatched.assertComplete();
+    Assertions.assertThat(subject.getMetrics().getMaxWait("a", TimeUnit.NANOSECONDS)).isZero();
+  }
+
+  private static FairDispatcher newFairDispatcher(int maxInFlightPerKey, int maxInFlight) {
+    return newFairDispatcher(maxInFlightPerKey, maxInFlight, 1024, 8192, Schedulers.newThread());
+  }
+
+  private static FairDispatcher newFairDispatcher(
+      int maxInFlightPerKey,
+      int maxInFlight,
+      int maxQueuedPerKey,
+      int maxQueued,
+      Scheduler scheduler) {
+    return newFairDispatcher(
+        maxInFlightPerKey,
+        maxInFlight,
+        maxQueuedPerKey,
+        maxQueued,
+        OverflowPolicy.DROP_OLDEST,
+        scheduler);
+  }
+
+  private static FairDispatcher newFairDispatcher(
+      int maxInFlightPerKey,
+      int maxInFlight,
+      int maxQueuedPerKey,
+      int maxQueued,
+      OverflowPolicy overflowPolicy,
+      Scheduler scheduler) {
+    return new FairDispatcher(
+        ImmutableFairDispatchConfig.builder()
+            .quantumMillis(1)
+            .maxInFlightPerKey(maxInFlightPerKey)
+            .maxInFlight(maxInFlight)
+            .maxQueuedPerKey(maxQueuedPerKey)
+            .maxQueued(maxQueued)
+            .overflowPolicy(overflowPolicy)
+            .build(),
+        scheduler);
+  }
+}
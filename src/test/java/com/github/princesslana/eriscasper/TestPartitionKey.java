@@ -0,0 +1,242 @@
+package com.github.princesslana.eriscasper;
+
+import com.github.princesslana.eriscasper.data.Snowflake;
+import com.github.princesslana.eriscasper.data.event.ChannelCreateEvent;
+import com.github.princesslana.eriscasper.data.event.ChannelPinsUpdateEvent;
+import com.github.princesslana.eriscasper.data.event.Event;
+import com.github.princesslana.eriscasper.data.event.GuildCreateEvent;
+import com.github.princesslana.eriscasper.data.event.GuildDeleteEvent;
+import com.github.princesslana.eriscasper.data.event.GuildEmojisUpdateEvent;
+import com.github.princesslana.eriscasper.data.event.GuildMemberAddEvent;
+import com.github.princesslana.eriscasper.data.event.GuildMemberRemoveEvent;
+import com.github.princesslana.eriscasper.data.event.GuildMemberUpdateEvent;
+import com.github.princesslana.eriscasper.data.event.GuildMembersChunkEvent;
+import com.github.princesslana.eriscasper.data.event.GuildRoleCreateEvent;
+import com.github.princesslana.eriscasper.data.event.GuildRoleDeleteEvent;
+import com.github.princesslana.eriscasper.data.event.GuildRoleUpdateEvent;
+import com.github.princesslana.eriscasper.data.event.ImmutableChannelPinsUpdateEventData;
+import com.github.princesslana.eriscasper.data.event.ImmutableGuildEmojisUpdateEventData;
+import com.github.princesslana.eriscasper.data.event.ImmutableGuildMemberRemoveEventData;
+import com.github.princesslana.eriscasper.data.event.ImmutableGuildMemberUpdateEventData;
+import com.github.princesslana.eriscasper.data.event.ImmutableGuildMembersChunkEventData;
+import com.github.princesslana.eriscasper.data.event.ImmutableGuildRoleCreateEventData;
+import com.github.princesslana.eriscasper.data.event.ImmutableGuildRoleDeleteEventData;
+import com.github.princesslana.eriscasper.data.event.ImmutableGuildRoleUpdateEventData;
+import com.github.princesslana.eriscasper.data.event.MessageCreateEvent;
+import com.github.princesslana.eriscasper.data.event.ReadyEvent;
+import com.github.princesslana.eriscasper.data.resource.Channel;
+import com.github.princesslana.eriscasper.data.resource.Guild;
+import com.github.princesslana.eriscasper.data.resource.GuildMemberWithGuildId;
+import com.github.princesslana.eriscasper.data.resource.ImmutableChannel;
+import com.github.princesslana.eriscasper.data.resource.ImmutableMessage;
+import com.github.princesslana.eriscasper.data.resource.Message;
+import com.github.princesslana.eriscasper.faker.DataFaker;
+import com.github.princesslana.eriscasper.faker.DiscordFaker;
+import com.github.princesslana.eriscasper.repository.event.ChannelsFromEvents;
+import io.reactivex.subjects.PublishSubject;
+import java.time.OffsetDateTime;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestPartitionKey {
+
+  private Snowflake guildId;
+
+  private PublishSubject<Event> events;
+
+  private ChannelsFromEvents channels;
+
+  @BeforeMethod
+  public void subject() {
+    guildId = DiscordFaker.snowflake();
+    events = PublishSubject.create();
+    channels = new ChannelsFromEvents(events);
+  }
+
+  @Test
+  public void of_whenGuild_shouldBeGuild() {
+    Guild guild = DataFaker.guild();
+
+    assertGuildKey(GuildCreateEvent.of(guild), guild.getId());
+  }
+
+  @Test
+  public void of_whenUnavailableGuild_shouldBeGuild() {
+    assertGuildKey(GuildDeleteEvent.of(DataFaker.unavailableGuildFromGuild(guildId)), guildId);
+  }
+
+  @Test
+  public void of_whenGuildChannel_shouldBeGuildOrChannel() {
+    Channel channel = ImmutableChannel.builder().from(DataFaker.channel()).guildId(guildId).build();
+
+    Assertions.assertThat(PartitionKey.GUILD.of(ChannelCreateEvent.of(channel))).hasValue(guildId);
+    Assertions.assertThat(PartitionKey.CHANNEL.of(ChannelCreateEvent.of(channel)))
+        .hasValue(channel.getId());
+  }
+
+  @Test
+  public void of_whenDirectMessageChannel_shouldBeChannel() {
+    Channel channel = DataFaker.channel();
+
+    Assertions.assertThat(PartitionKey.GUILD.of(ChannelCreateEvent.of(channel)))
+        .hasValue(channel.getId());
+  }
+
+  @Test
+  public void of_whenGuildEmojisUpdate_shouldBeGuild() {
+    assertGuildKey(
+        GuildEmojisUpdateEvent.of(
+            ImmutableGuildEmojisUpdateEventData.builder()
+                .guildId(guildId)
+                .addEmojis(DataFaker.emoji())
+                .build()),
+        guildId);
+  }
+
+  @Test
+  public void of_whenGuildMemberAdd_shouldBeGuild() {
+    assertGuildKey(
+        GuildMemberAddEvent.of(new GuildMemberWithGuildId(guildId, DataFaker.guildMember())),
+        guildId);
+  }
+
+  @Test
+  public void of_whenGuildMemberRemove_shouldBeGuild() {
+    assertGuildKey(
+        GuildMemberRemoveEvent.of(
+            ImmutableGuildMemberRemoveEventData.builder()
+                .guildId(guildId)
+                .user(DataFaker.user())
+                .build()),
+        guildId);
+  }
+
+  @Test
+  public void of_whenGuildMemberUpdate_shouldBeGuild() {
+    assertGuildKey(
+        GuildMemberUpdateEvent.of(
+            ImmutableGuildMemberUpdateEventData.builder()
+                .guildId(guildId)
+                .user(DataFaker.user())
+                .nick(DataFaker.username())
+                .build()),
+        guildId);
+  }
+
+  @Test
+  public void of_whenGuildMembersChunk_shouldBeGuild() {
+    assertGuildKey(
+        GuildMembersChunkEvent.of(
+            ImmutableGuildMembersChunkEventData.builder().guildId(guildId).build()),
+        guildId);
+  }
+
+  @Test
+  public void of_whenGuildRoleCreate_shouldBeGuild() {
+    assertGuildKey(
+        GuildRoleCreateEvent.of(
+            ImmutableGuildRoleCreateEventData.builder()
+                .guildId(guildId)
+                .role(DataFaker.role())
+                .build()),
+        guildId);
+  }
+
+  @Test
+  public void of_whenGuildRoleUpdate_shouldBeGuild() {
+    assertGuildKey(
+        GuildRoleUpdateEvent.of(
+            ImmutableGuildRoleUpdateEventData.builder()
+                .guildId(guildId)
+                .role(DataFaker.role())
+                .build()),
+        guildId);
+  }
+
+  @Test
+  public void of_whenGuildRoleDelete_shouldBeGuild() {
+    assertGuildKey(
+        GuildRoleDeleteEvent.of(
+            ImmutableGuildRoleDeleteEventData.builder()
+                .guildId(guildId)
+                .roleId(DiscordFaker.snowflake())
+                .build()),
+        guildId);
+  }
+
+  @Test
+  public void of_whenMessageInKnownGuildChannel_shouldBeGuildOrChannel() {
+    Guild guild = DataFaker.guild();
+    Channel channel = guild.getChannels().get().get(0);
+    events.onNext(GuildCreateEvent.of(guild));
+
+    Event event = MessageCreateEvent.of(messageIn(channel));
+
+    Assertions.assertThat(PartitionKey.GUILD.of(event, channels)).hasValue(guild.getId());
+    Assertions.assertThat(PartitionKey.CHANNEL.of(event, channels)).hasValue(channel.getId());
+  }
+
+  @Test
+  public void of_whenMessageInUnknownChannel_shouldBeChannel() {
+    Channel channel = DataFaker.channel();
+
+    Event event = MessageCreateEvent.of(messageIn(channel));
+
+    Assertions.assertThat(PartitionKey.GUILD.of(event, channels)).hasValue(channel.getId());
+  }
+
+  @Test
+  public void of_whenMessageWithoutChannels_shouldBeChannel() {
+    Message message = DataFaker.message();
+
+    Assertions.assertThat(PartitionKey.GUILD.of(MessageCreateEvent.of(message)))
+        .hasValue(message.getChannelId());
+  }
+
+  @Test
+  public void of_whenPinsUpdateInKnownGuildChannel_shouldBeGuild() {
+    Guild guild = DataFaker.guild();
+    Channel channel = guild.getChannels().get().get(0);
+    events.onNext(GuildCreateEvent.of(guild));
+
+    Event event =
+        ChannelPinsUpdateEvent.of(
+            ImmutableChannelPinsUpdateEventData.builder()
+                .channelId(channel.getId())
+                .lastPinTimestamp(OffsetDateTime.now())
+                .build());
+
+    Assertions.assertThat(PartitionKey.GUILD.of(event, channels)).hasValue(guild.getId());
+    Assertions.assertThat(PartitionKey.GUILD.of(event)).hasValue(channel.getId());
+  }
+
+  @Test
+  public void of_whenNoGuildOrChannel_shouldBeEmpty() {
+    Event event = ReadyEvent.of(DataFaker.ready());
+
+    Assertions.assertThat(PartitionKey.GUILD.of(event, channels)).isEmpty();
+    Assertions.assertThat(PartitionKey.CHANNEL.of(event, channels)).isEmpty();
+  }
+
+  @Test
+  public void of_whenNone_shouldBeEmpty() {
+    Guild guild = DataFaker.guild();
+    events.onNext(GuildCreateEvent.of(guild));
+
+    Event event = MessageCreateEvent.of(messageIn(guild.getChannels().get().get(0)));
+
+    Assertions.assertThat(PartitionKey.NONE.of(GuildCreateEvent.of(guild))).isEmpty();
+    Assertions.assertThat(PartitionKey.NONE.of(event, channels)).isEmpty();
+  }
+
+  private void assertGuildKey(Event event, Snowflake expected) {
+    Assertions.assertThat(PartitionKey.GUILD.of(event)).hasValue(expected);
+    Assertions.assertThat(PartitionKey.CHANNEL.of(event)).hasValue(expected);
+    Assertions.assertThat(PartitionKey.GUILD.of(event, channels)).hasValue(expected);
+  }
+
+  private static Message messageIn(Channel channel) {
+    return ImmutableMessage.builder().from(DataFaker.message()).channelId(channel.getId()).build();
+  }
+}
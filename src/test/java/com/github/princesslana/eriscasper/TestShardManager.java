@@ -0,0 +1,304 @@
+package com.github.princesslana.eriscasper;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+
+import com.github.princesslana.eriscasper.data.Snowflake;
+import com.github.princesslana.eriscasper.data.event.Event;
+import com.github.princesslana.eriscasper.data.event.MessageCreateEvent;
+import com.github.princesslana.eriscasper.data.gateway.ShardPayload;
+import com.github.princesslana.eriscasper.data.util.Jackson;
+import com.github.princesslana.eriscasper.faker.DataFaker;
+import com.github.princesslana.eriscasper.faker.DiscordFaker;
+import com.github.princesslana.eriscasper.gateway.Gateway;
+import com.github.princesslana.eriscasper.gateway.IdentifyCoordinator;
+import com.github.princesslana.eriscasper.rest.ImmutableGatewayBotResponse;
+import com.github.princesslana.eriscasper.rest.ImmutableGatewayResponse;
+import com.github.princesslana.eriscasper.rest.ImmutableSessionStartLimit;
+import com.github.princesslana.eriscasper.rest.RouteCatalog;
+import com.github.princesslana.eriscasper.rest.Routes;
+import com.google.common.collect.ImmutableList;
+import io.reactivex.Single;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.subjects.PublishSubject;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestShardManager {
+
+  private static final String URL = "wss://gateway.discord.gg";
+
+  private BotToken token;
+
+  private Routes routes;
+
+  private ThreadPools threads;
+
+  private Map<Long, Gateway> gateways;
+
+  private Map<Long, PublishSubject<Event>> connections;
+
+  @BeforeMethod
+  public void mocks() {
+    token = DiscordFaker.botToken();
+    routes = mock(Routes.class);
+    threads = new ThreadPools(ThreadConfig.defaults());
+    gateways = new ConcurrentHashMap<>();
+    connections = new ConcurrentHashMap<>();
+
+    given(routes.execute(RouteCatalog.getGateway()))
+        .willReturn(Single.just(ImmutableGatewayResponse.builder().url(URL).build()));
+    given(routes.execute(RouteCatalog.getGatewayBot()))
+        .willReturn(
+            Single.just(
+                ImmutableGatewayBotResponse.builder()
+                    .url(URL)
+                    .shards(2)
+                    .sessionStartLimit(
+                        ImmutableSessionStartLimit.builder()
+                            .total(1000)
+                            .remaining(1000)
+                            .resetAfter(0)
+                            .maxConcurrency(2)
+                            .build())
+                    .build()));
+  }
+
+  @AfterMethod
+  public void shutdown() {
+    threads.shutdown();
+  }
+
+  @Test
+  public void waves_whenMaxConcurrencyOne_shouldStartOneAtATime() {
+    Assertions.assertThat(ShardManager.waves(ImmutableList.of(0L, 1L, 2L), 1))
+        .containsExactly(ImmutableList.of(0L), ImmutableList.of(1L), ImmutableList.of(2L));
+  }
+
+  @Test
+  public void waves_whenMaxConcurrency_shouldStartOneFromEachBucket() {
+    Assertions.assertThat(ShardManager.waves(ImmutableList.of(0L, 1L, 2L, 3L, 4L), 2))
+        .containsExactly(
+            ImmutableList.of(0L, 1L), ImmutableList.of(2L, 3L), ImmutableList.of(4L));
+  }
+
+  @Test
+  public void waves_whenShardsShareBucket_shouldStartInDifferentWaves() {
+    Assertions.assertThat(ShardManager.waves(ImmutableList.of(0L, 4L, 5L), 4))
+        .containsExactly(ImmutableList.of(0L, 5L), ImmutableList.of(4L));
+  }
+
+  @Test
+  public void waves_whenNoShards_shouldBeEmpty() {
+    Assertions.assertThat(ShardManager.waves(ImmutableList.of(), 16)).isEmpty();
+  }
+
+  @Test
+  public void start_shouldConnectOnlyThatShard() throws Exception {
+    ShardManager subject = newShardManager(Shards.all(2));
+
+    subject.start(1);
+    awaitConnected(1);
+
+    then(gateways.get(1L)).should().connect(URL, token, Optional.of(ShardPayload.of(1, 2)));
+    then(gateways.get(0L)).shouldHaveZeroInteractions();
+    Assertions.assertThat(subject.isRunning(1)).isTrue();
+    Assertions.assertThat(subject.isRunning(0)).isFalse();
+  }
+
+  @Test
+  public void start_whenRunning_shouldNotConnectAgain() throws Exception {
+    ShardManager subject = newShardManager(Shards.all(1));
+
+    subject.start(0);
+    subject.start(0);
+    awaitConnected(0);
+
+    then(gateways.get(0L)).should(times(1)).connect(any(), any(), any());
+  }
+
+  @Test
+  public void stop_shouldDisconnectShard() throws Exception {
+    ShardManager subject = newShardManager(Shards.all(2));
+    subject.start(0);
+    subject.start(1);
+    awaitConnected(0);
+    awaitConnected(1);
+
+    subject.stop(0);
+
+    Assertions.assertThat(connections.get(0L).hasObservers()).isFalse();
+    Assertions.assertThat(connections.get(1L).hasObservers()).isTrue();
+    Assertions.assertThat(subject.isRunning(0)).isFalse();
+  }
+
+  @Test
+  public void restart_shouldReconnectShard() throws Exception {
+    ShardManager subject = newShardManager(Shards.all(1));
+    subject.start(0);
+    awaitConnected(0);
+
+    subject.restart(0);
+    awaitConnected(0);
+
+    then(gateways.get(0L)).should(times(2)).connect(any(), any(), any());
+    Assertions.assertThat(subject.isRunning(0)).isTrue();
+  }
+
+  @Test
+  public void getEvents_shouldMergeEventsTaggedWithShard() throws Exception {
+    ShardManager subject = newShardManager(Shards.all(2));
+    TestObserver<ShardEvent> observer = subject.getEvents().test();
+    subject.start(0);
+    subject.start(1);
+    awaitConnected(0);
+    awaitConnected(1);
+
+    Event first = MessageCreateEvent.of(DataFaker.message());
+    Event second = MessageCreateEvent.of(DataFaker.message());
+    connections.get(1L).onNext(first);
+    connections.get(0L).onNext(second);
+
+    observer.awaitCount(2);
+    observer.assertValues(ShardEventTuple.of(1, first), ShardEventTuple.of(0, second));
+  }
+
+  @Test
+  public void run_shouldStartAllShards() throws Exception {
+    ShardManager subject = newShardManager(Shards.all(2));
+
+    TestObserver<Void> observer = subject.run().test();
+    awaitConnected(0);
+    awaitConnected(1);
+
+    observer.assertNotTerminated();
+    observer.dispose();
+  }
+
+  @Test
+  public void run_whenEveryShardEnded_shouldComplete() throws Exception {
+    ShardManager subject = newShardManager(Shards.all(2));
+    TestObserver<Void> observer = subject.run().test();
+    awaitConnected(0);
+    awaitConnected(1);
+
+    connections.get(0L).onComplete();
+    observer.await(100, TimeUnit.MILLISECONDS);
+    observer.assertNotTerminated();
+
+    connections.get(1L).onComplete();
+    observer.await(5, TimeUnit.SECONDS);
+    observer.assertComplete();
+  }
+
+  @Test
+  public void run_whenFatalErrorOnShard_shouldError() throws Exception {
+    ShardManager subject = newShardManager(Shards.all(2));
+    TestObserver<Void> observer = subject.run().test();
+    awaitConnected(0);
+    awaitConnected(1);
+
+    connections.get(1L).onError(new ErisCasperFatalException("Authentication failed."));
+
+    observer.await(5, TimeUnit.SECONDS);
+    observer.assertError(ErisCasperFatalException.class);
+  }
+
+  @Test
+  public void run_whenOtherErrorOnShard_shouldNotError() throws Exception {
+    ShardManager subject = newShardManager(Shards.all(2));
+    TestObserver<Void> observer = subject.run().test();
+    awaitConnected(0);
+    awaitConnected(1);
+
+    connections.get(1L).onError(new RuntimeException());
+
+    observer.await(100, TimeUnit.MILLISECONDS);
+    observer.assertNotTerminated();
+    observer.dispose();
+  }
+
+  @Test
+  public void run_whenDisposed_shouldStopAllShards() throws Exception {
+    ShardManager subject = newShardManager(Shards.all(2));
+    TestObserver<Void> observer = subject.run().test();
+    awaitConnected(0);
+    awaitConnected(1);
+
+    observer.dispose();
+
+    Assertions.assertThat(connections.get(0L).hasObservers()).isFalse();
+    Assertions.assertThat(connections.get(1L).hasObservers()).isFalse();
+  }
+
+  @Test
+  public void getGateway_whenGuild_shouldBeShardOfGuild() {
+    ShardManager subject = newShardManager(Shards.all(4));
+
+    // shard = (guild_id >> 22) % total
+    Assertions.assertThat(subject.getGateway(Snowflake.of(Long.toString(6L << 22))))
+        .isSameAs(gateways.get(2L));
+    Assertions.assertThat(subject.getGateway(Snowflake.of(Long.toString(7L << 22))))
+        .isSameAs(gateways.get(3L));
+  }
+
+  @Test
+  public void getGateway_whenGuildOnShardNotRunHere_shouldThrow() {
+    ShardManager subject = newShardManager(Shards.range(0, 2, 4));
+
+    Assertions.assertThatThrownBy(() -> subject.getGateway(Snowflake.of(Long.toString(3L << 22))))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void getGateway_whenUnsharded_shouldBeOnlyGateway() {
+    ShardManager subject = newShardManager(ImmutableList.of());
+
+    Assertions.assertThat(subject.getGateway(DiscordFaker.snowflake())).isSameAs(gateways.get(0L));
+    Assertions.assertThat(subject.getGateways()).containsExactly(gateways.get(0L));
+  }
+
+  private ShardManager newShardManager(Collection<ShardPayload> shards) {
+    return new ShardManager(
+        ImmutableShardManagerOptions.builder()
+            .token(token)
+            .httpClient(new OkHttpClient())
+            .jackson(Jackson.newObjectMapper())
+            .routes(routes)
+            .threads(threads)
+            .shards(shards)
+            .identifyCoordinator(IdentifyCoordinator.NONE)
+            .build(),
+        this::newGateway);
+  }
+
+  private Gateway newGateway(long shardId) {
+    Gateway gateway = mock(Gateway.class);
+    given(gateway.connect(any(), any(), any()))
+        .willAnswer(
+            i -> {
+              PublishSubject<Event> connection = PublishSubject.create();
+              connections.put(shardId, connection);
+              return connection;
+            });
+    gateways.put(shardId, gateway);
+    return gateway;
+  }
+
+  private void awaitConnected(long shardId) throws InterruptedException {
+    while (!connections.containsKey(shardId) || !connections.get(shardId).hasObservers()) {
+      Thread.sleep(10);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.github.princesslana.eriscasper;
+
+import io.reactivex.Single;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class TestThreadPools {
+
+  private ThreadPools subject;
+
+  @AfterMethod
+  public void shutdown() {
+    subject.shutdown();
+  }
+
+  @Test
+  public void getShardScheduler_whenDefaults_shouldHaveLoopPerShard() {
+    subject = new ThreadPools(ThreadConfig.defaults());
+
+    Assertions.assertThat(subject.getShardScheduler(0)).isSameAs(subject.getShardScheduler(0));
+    Assertions.assertThat(subject.getShardScheduler(0)).isNotSameAs(subject.getShardScheduler(1));
+  }
+
+  @Test
+  public void getShardScheduler_whenFewerThreads_shouldShareLoops() {
+    subject = new ThreadPools(ImmutableThreadConfig.builder().shardThreads(2).build());
+
+    Assertions.assertThat(subject.getShardScheduler(0)).isSameAs(subject.getShardScheduler(2));
+    Assertions.assertThat(subject.getShardScheduler(1)).isNotSameAs(subject.getShardScheduler(2));
+  }
+
+  @Test
+  public void getShardScheduler_shouldRunOnNamedThread() {
+    subject = new ThreadPools(ThreadConfig.defaults());
+
+    String thread =
+        Single.fromCallable(() -> Thread.currentThread().getName())
+            .subscribeOn(subject.getShardScheduler(3))
+            .blockingGet();
+
+    Assertions.assertThat(thread).isEqualTo("ec-shard-3");
+  }
+
+  @Test
+  public void getComputeScheduler_shouldRunOnComputeThread() {
+    subject = new ThreadPools(ImmutableThreadConfig.builder().computeThreads(2).build());
+
+    String thread =
+        Single.fromCallable(() -> Thread.currentThread().getName())
+            .subscribeOn(subject.getComputeScheduler())
+            .blockingGet();
+
+    Assertions.assertThat(thread).startsWith("ec-compute-");
+  }
+
+  @Test
+  public void getRestScheduler_shouldNotRunOnRestThreads() {
+    subject = new ThreadPools(ThreadConfig.defaults());
+
+    String thread =
+        Single.fromCallable(() -> Thread.currentThread().getName())
+            .subscribeOn(subject.getRestScheduler())
+            .blockingGet();
+
+    Assertions.assertThat(thread).isEqualTo("ec-rest-limits");
+  }
+
+  @Test
+  public void getEventScheduler_shouldRunOnEventThread() {
+    subject = new ThreadPools(ThreadConfig.defaults());
+
+    String thread =
+        Single.fromCallable(() -> Thread.currentThread().getName())
+            .subscribeOn(subject.getEventScheduler())
+            .blockingGet();
+
+    Assertions.assertThat(thread).isEqualTo("ec-events");
+  }
+
+  @Test
+  public void getRestDispatcher_shouldLimitRequestsToRestThreads() {
+    subject =
+        new ThreadPools(
+            ImmutableThreadConfig.builder().restThreads(8).restRequestsPerHost(4).build());
+
+    Assertions.assertThat(subject.getRestDispatcher().getMaxRequests()).isEqualTo(8);
+    Assertions.assertThat(subject.getRestDispatcher().getMaxRequestsPerHost()).isEqualTo(4);
+  }
+}
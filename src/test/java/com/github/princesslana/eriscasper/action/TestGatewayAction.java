@@ -0,0 +1,125 @@
+package com.github.princesslana.eriscasper.action;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.never;
+
+import com.github.princesslana.eriscasper.data.Snowflake;
+import com.github.princesslana.eriscasper.faker.DiscordFaker;
+import com.github.princesslana.eriscasper.gateway.Gateway;
+import com.github.princesslana.eriscasper.gateway.OpCode;
+import com.github.princesslana.eriscasper.rest.Routes;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.reactivex.Completable;
+import java.util.Map;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestGatewayAction {
+
+  @Mock private Routes routes;
+
+  @Mock private Gateway lowest;
+
+  @Mock private Gateway other;
+
+  @Mock private GatewayRouter router;
+
+  private ActionContext context;
+
+  @BeforeMethod
+  public void subject() {
+    MockitoAnnotations.initMocks(this);
+
+    given(lowest.execute(any(), any())).willReturn(Completable.complete());
+    given(other.execute(any(), any())).willReturn(Completable.complete());
+
+    given(router.getGateway()).willReturn(lowest);
+    given(router.getGateways()).willReturn(ImmutableList.of(lowest, other));
+
+    context =
+        ImmutableActionContext.builder()
+            .routes(routes)
+            .gateway(lowest)
+            .gatewayRouter(router)
+            .build();
+  }
+
+  @Test
+  public void apply_whenRequestGuildMembers_shouldSendOnShardOfGuild() {
+    Snowflake guildId = DiscordFaker.snowflake();
+    Map<String, Object> data = ImmutableMap.of("guild_id", guildId, "query", "", "limit", 0);
+    given(router.getGateway(guildId)).willReturn(other);
+
+    GatewayAction.of(OpCode.REQUEST_GUILD_MEMBERS, data).apply(context).test().assertComplete();
+
+    then(other).should().execute(OpCode.REQUEST_GUILD_MEMBERS, data);
+    then(lowest).should(never()).execute(any(), any());
+  }
+
+  @Test
+  public void apply_whenVoiceStateUpdateWithGuildId_shouldSendOnShardOfGuild() {
+    Snowflake guildId = DiscordFaker.snowflake();
+    Map<String, Object> data = ImmutableMap.of("self_mute", true);
+    given(router.getGateway(guildId)).willReturn(other);
+
+    ImmutableGatewayAction.builder()
+        .code(OpCode.VOICE_STATE_UPDATE)
+        .data(data)
+        .guildId(guildId)
+        .build()
+        .apply(context)
+        .test()
+        .assertComplete();
+
+    then(other).should().execute(OpCode.VOICE_STATE_UPDATE, data);
+  }
+
+  @Test
+  public void apply_whenGuildNotRunHere_shouldError() {
+    Snowflake guildId = DiscordFaker.snowflake();
+    given(router.getGateway(guildId)).willThrow(new IllegalArgumentException());
+
+    GatewayAction.of(OpCode.REQUEST_GUILD_MEMBERS, ImmutableMap.of("guild_id", guildId))
+        .apply(context)
+        .test()
+        .assertError(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void apply_whenStatusUpdate_shouldSendOnEveryShard() {
+    Map<String, Object> data = ImmutableMap.of("status", "idle");
+
+    GatewayAction.of(OpCode.STATUS_UPDATE, data).apply(context).test().assertComplete();
+
+    then(lowest).should().execute(OpCode.STATUS_UPDATE, data);
+    then(other).should().execute(OpCode.STATUS_UPDATE, data);
+  }
+
+  @Test
+  public void apply_whenNotForAGuild_shouldSendOnLowestShard() {
+    Map<String, Object> data = ImmutableMap.of("guild_id", DiscordFaker.snowflake());
+
+    GatewayAction.of(OpCode.HEARTBEAT, data).apply(context).test().assertComplete();
+
+    then(lowest).should().execute(OpCode.HEARTBEAT, data);
+    then(router).should(never()).getGateway(any(Snowflake.class));
+  }
+
+  @Test
+  public void apply_whenUnsharded_shouldSendOnGateway() {
+    ActionContext unsharded =
+        ImmutableActionContext.builder().routes(routes).gateway(other).build();
+    Map<String, Object> data = ImmutableMap.of("guild_id", DiscordFaker.snowflake());
+
+    GatewayAction.of(OpCode.REQUEST_GUILD_MEMBERS, data).apply(unsharded).test().assertComplete();
+    GatewayAction.of(OpCode.STATUS_UPDATE, data).apply(unsharded).test().assertComplete();
+
+    then(other).should().execute(OpCode.REQUEST_GUILD_MEMBERS, data);
+    then(other).should().execute(OpCode.STATUS_UPDATE, data);
+  }
+}
@@ -0,0 +1,89 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.princesslana.eriscasper.data.util.Jackson;
+import com.github.princesslana.eriscasper.faker.DataFaker;
+import com.github.princesslana.eriscasper.rx.Observables;
+import com.google.common.base.Charsets;
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the throughput of decoding a burst of GUILD_CREATE heavy traffic, as received when a
+ * shard connects, on the websocket reader thread against decoding it in parallel.
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *   -Dexec.args="-cp %classpath org.openjdk.jmh.Main DecodeBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodeBenchmark {
+
+  private static final int FRAMES = 1000;
+
+  // one in this many frames is a GUILD_CREATE, the rest are MESSAGE_CREATEs
+  private static final int GUILD_CREATE_EVERY = 4;
+
+  @Param({"1", "2", "4", "8"})
+  private int parallelism;
+
+  private Payloads payloads;
+
+  private List<byte[]> frames;
+
+  @Setup
+  public void frames() {
+    ObjectMapper jackson = Jackson.newObjectMapper();
+    payloads = new Payloads(jackson);
+    frames = new ArrayList<>();
+
+    for (int i = 0; i < FRAMES; i++) {
+      boolean isGuildCreate = i % GUILD_CREATE_EVERY == 0;
+
+      Payload payload =
+          ImmutablePayload.builder()
+              .op(OpCode.DISPATCH)
+              .s(SequenceNumber.of((long) i))
+              .t(isGuildCreate ? "GUILD_CREATE" : "MESSAGE_CREATE")
+              .d(jackson.valueToTree(isGuildCreate ? DataFaker.guild() : DataFaker.message()))
+              .build();
+
+      frames.add(payloads.writeToString(payload).blockingGet().getBytes(Charsets.UTF_8));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(FRAMES)
+  public Payload decode() {
+    Observable<Payload> decoded =
+        parallelism == 1
+            ? Observable.fromIterable(frames)
+                .flatMapMaybe(f -> payloads.read(f).flatMap(payloads::withEvent).toMaybe())
+            : Observable.fromIterable(frames)
+                .map(f -> payloads.read(f).flatMap(payloads::withEvent).toMaybe())
+                .compose(Observables.parallelOrdered(parallelism, Schedulers.computation()));
+
+    return decoded.blockingLast();
+  }
+}
@@ -0,0 +1,128 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.princesslana.eriscasper.data.event.Event;
+import com.github.princesslana.eriscasper.data.event.EventFactory;
+import com.github.princesslana.eriscasper.data.util.Jackson;
+import com.github.princesslana.eriscasper.faker.DataFaker;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Charsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares decoding a dispatch received with the json encoding against the same dispatch received
+ * with the etf encoding, and against reading the json through a {@link JsonNode} tree.
+ *
+ * <p>As Discord does, the json encodes snowflakes as strings and the etf encodes them as integers.
+ *
+ * <p>Run with the gc profiler to see the bytes allocated per frame, as gc.alloc.rate.norm:
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *   -Dexec.args="-cp %classpath org.openjdk.jmh.Main PayloadsBenchmark -prof gc"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayloadsBenchmark {
+
+  private static final CharMatcher DIGITS = CharMatcher.inRange('0', '9');
+
+  @Param({"MESSAGE_CREATE", "GUILD_CREATE"})
+  private String type;
+
+  private ObjectMapper jackson;
+
+  private Payloads payloads;
+
+  private byte[] json;
+
+  private byte[] etf;
+
+  @Setup
+  public void payloads() {
+    jackson = Jackson.newObjectMapper();
+    payloads = new Payloads(jackson);
+
+    Object data = type.equals("GUILD_CREATE") ? DataFaker.guild() : DataFaker.message();
+
+    JsonNode d = jackson.valueToTree(data);
+
+    json = payloads.writeToString(dispatch(d)).blockingGet().getBytes(Charsets.UTF_8);
+    etf =
+        payloads
+            .writeToEtf(dispatch(snowflakesAsIntegers(d.deepCopy())))
+            .blockingGet()
+            .toByteArray();
+
+    // the first of each type is read via a tree, after which the event class is known
+    payloads.read(json).flatMapMaybe(payloads::toEvent).blockingGet();
+  }
+
+  private Payload dispatch(JsonNode d) {
+    return ImmutablePayload.builder()
+        .op(OpCode.DISPATCH)
+        .s(SequenceNumber.of(42L))
+        .t(type)
+        .d(d)
+        .build();
+  }
+
+  /** Replace snowflakes, i.e., ids that are strings of digits, with integers. */
+  private static JsonNode snowflakesAsIntegers(JsonNode node) {
+    if (node.isObject()) {
+      for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+        Map.Entry<String, JsonNode> field = it.next();
+        JsonNode value = field.getValue();
+
+        boolean isId = field.getKey().equals("id") || field.getKey().endsWith("_id");
+        boolean isDigits = !value.asText().isEmpty() && DIGITS.matchesAllOf(value.asText());
+
+        if (isId && value.isTextual() && isDigits) {
+          ((ObjectNode) node).set(field.getKey(), LongNode.valueOf(Long.parseLong(value.asText())));
+        } else {
+          snowflakesAsIntegers(value);
+        }
+      }
+    } else if (node.isArray()) {
+      node.forEach(PayloadsBenchmark::snowflakesAsIntegers);
+    }
+    return node;
+  }
+
+  @Benchmark
+  public Event tree() throws Exception {
+    JsonNode node = jackson.readTree(json);
+    return EventFactory.forType(node.get("t").asText()).create(node.get("d"));
+  }
+
+  @Benchmark
+  public Event json() {
+    return payloads.read(json).flatMapMaybe(payloads::toEvent).blockingGet();
+  }
+
+  @Benchmark
+  public Event etf() {
+    return payloads.readEtf(etf).flatMapMaybe(payloads::toEvent).blockingGet();
+  }
+}
@@ -0,0 +1,56 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.Test;
+
+public class TestBackoff {
+
+  @Test
+  public void next_whenFirstAttempt_shouldBeWithinInitial() {
+    Backoff subject = new Backoff(1, 60, TimeUnit.SECONDS);
+
+    Assertions.assertThat(subject.next()).isBetween(500L, 1000L);
+  }
+
+  @Test
+  public void next_whenRepeated_shouldDoubleUpToMax() {
+    Backoff subject = new Backoff(1, 4, TimeUnit.SECONDS);
+
+    subject.next();
+    Assertions.assertThat(subject.next()).isBetween(1000L, 2000L);
+    Assertions.assertThat(subject.next()).isBetween(2000L, 4000L);
+    Assertions.assertThat(subject.next()).isBetween(2000L, 4000L);
+  }
+
+  @Test
+  public void next_whenManyAttempts_shouldNotOverflow() {
+    Backoff subject = new Backoff(1, 60, TimeUnit.SECONDS);
+
+    for (int i = 0; i < 100; i++) {
+      subject.next();
+    }
+
+    Assertions.assertThat(subject.next()).isBetween(30000L, 60000L);
+  }
+
+  @Test
+  public void next_whenNoDelay_shouldBeZero() {
+    Backoff subject = new Backoff(0, 0, TimeUnit.SECONDS);
+
+    subject.next();
+    Assertions.assertThat(subject.next()).isEqualTo(0);
+  }
+
+  @Test
+  public void reset_shouldStartFromInitial() {
+    Backoff subject = new Backoff(1, 60, TimeUnit.SECONDS);
+
+    subject.next();
+    subject.next();
+    subject.next();
+    subject.reset();
+
+    Assertions.assertThat(subject.next()).isBetween(500L, 1000L);
+  }
+}
@@ -0,0 +1,80 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import java.io.IOException;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.Test;
+
+public class TestEtf {
+
+  private final ObjectMapper jackson = new ObjectMapper();
+
+  @Test
+  public void read_whenMapWithAtomKey_shouldReadObject() throws IOException {
+    // {op => 11}
+    JsonNode node = read(131, 116, 0, 0, 0, 1, 100, 0, 2, 'o', 'p', 97, 11);
+
+    Assertions.assertThat(node.get("op").asInt()).isEqualTo(11);
+  }
+
+  @Test
+  public void read_whenSmallBig_shouldReadLong() throws IOException {
+    // 80351110224678912, as sent for snowflakes
+    JsonNode node = read(131, 110, 8, 0, 0x00, 0x10, 0x40, 0xb6, 0xe8, 0x76, 0x1d, 0x01);
+
+    Assertions.assertThat(node.asLong()).isEqualTo(80351110224678912L);
+  }
+
+  @Test
+  public void read_whenNilAtom_shouldReadNull() throws IOException {
+    JsonNode node = read(131, 119, 3, 'n', 'i', 'l');
+
+    Assertions.assertThat(node.isNull()).isTrue();
+  }
+
+  @Test
+  public void read_whenBinary_shouldReadString() throws IOException {
+    JsonNode node = read(131, 109, 0, 0, 0, 5, 'R', 'E', 'A', 'D', 'Y');
+
+    Assertions.assertThat(node.asText()).isEqualTo("READY");
+  }
+
+  @Test
+  public void read_whenBadVersion_shouldThrowException() {
+    Assertions.assertThatThrownBy(() -> read(130, 97, 1)).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  public void read_whenTruncated_shouldThrowException() {
+    Assertions.assertThatThrownBy(() -> read(131, 98, 0, 0)).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  public void write_whenRead_shouldRoundTrip() throws IOException {
+    JsonNode node =
+        jackson.readTree(
+            "{\"op\":2,\"d\":{\"token\":\"abc\",\"compress\":false,\"large_threshold\":250,"
+                + "\"shard\":[0,1],\"presence\":null,\"since\":1.5,\"id\":80351110224678912,"
+                + "\"negative\":-100000,\"empty\":[],\"nested\":{\"a\":\"\u00e9\"}}}");
+
+    byte[] etf = Etf.write(jackson.treeAsTokens(node));
+
+    Assertions.assertThat(read(etf)).isEqualTo(node);
+  }
+
+  private JsonNode read(int... bytes) throws IOException {
+    byte[] b = new byte[bytes.length];
+    for (int i = 0; i < bytes.length; i++) {
+      b[i] = (byte) bytes[i];
+    }
+    return read(b);
+  }
+
+  private JsonNode read(byte[] bytes) throws IOException {
+    TokenBuffer tokens = new TokenBuffer(jackson, false);
+    Etf.read(bytes, tokens);
+    return jackson.readTree(tokens.asParser());
+  }
+}
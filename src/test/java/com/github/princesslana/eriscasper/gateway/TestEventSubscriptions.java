@@ -0,0 +1,47 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.github.princesslana.eriscasper.data.event.Event;
+import com.github.princesslana.eriscasper.data.event.GuildMembersChunkEvent;
+import com.github.princesslana.eriscasper.data.event.MessageCreateEvent;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestEventSubscriptions {
+
+  private EventSubscriptions subject;
+
+  @BeforeMethod
+  public void subject() {
+    subject = new EventSubscriptions();
+  }
+
+  @Test
+  public void isSubscribed_whenNew_shouldOnlyBeReadyAndResumed() {
+    Assertions.assertThat(subject.isSubscribed("READY")).isTrue();
+    Assertions.assertThat(subject.isSubscribed("RESUMED")).isTrue();
+    Assertions.assertThat(subject.isSubscribed("MESSAGE_CREATE")).isFalse();
+  }
+
+  @Test
+  public void add_whenEventClass_shouldSubscribeToItsType() {
+    subject.add(MessageCreateEvent.class);
+    subject.add(GuildMembersChunkEvent.class);
+
+    Assertions.assertThat(subject.isSubscribed("MESSAGE_CREATE")).isTrue();
+    Assertions.assertThat(subject.isSubscribed("GUILD_MEMBERS_CHUNK")).isTrue();
+    Assertions.assertThat(subject.isSubscribed("TYPING_START")).isFalse();
+  }
+
+  @Test
+  public void add_whenEvent_shouldSubscribeToAll() {
+    subject.add(Event.class);
+
+    Assertions.assertThat(subject.isSubscribed("TYPING_START")).isTrue();
+  }
+
+  @Test
+  public void all_shouldSubscribeToAll() {
+    Assertions.assertThat(EventSubscriptions.all().isSubscribed("PRESENCE_UPDATE")).isTrue();
+  }
+}
@@ -0,0 +1,47 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestFileLockIdentifyCoordinator {
+
+  private Path directory;
+
+  @BeforeMethod
+  public void directory() throws IOException {
+    directory = Files.createTempDirectory("eriscasper-identify");
+  }
+
+  @Test
+  public void reserve_whenSameBucket_shouldBeFiveSecondsApart() throws IOException {
+    FileLockIdentifyCoordinator subject = new FileLockIdentifyCoordinator(directory);
+
+    long first = subject.reserve(0);
+    long second = subject.reserve(0);
+
+    Assertions.assertThat(second - first).isEqualTo(5000);
+  }
+
+  @Test
+  public void reserve_whenSharingDirectory_shouldBeFiveSecondsApart() throws IOException {
+    long first = new FileLockIdentifyCoordinator(directory).reserve(3);
+    long second = new FileLockIdentifyCoordinator(directory).reserve(3);
+
+    Assertions.assertThat(second - first).isEqualTo(5000);
+  }
+
+  @Test
+  public void reserve_whenDifferentBuckets_shouldNotWait() throws IOException {
+    FileLockIdentifyCoordinator subject = new FileLockIdentifyCoordinator(directory);
+    long before = System.currentTimeMillis();
+
+    subject.reserve(0);
+    long other = subject.reserve(1);
+
+    Assertions.assertThat(other).isLessThan(before + 5000);
+  }
+}
@@ -0,0 +1,45 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestFileSessionStore {
+
+  private static final StoredSession SESSION =
+      StoredSessionTuple.of(SessionId.of("abc"), SequenceNumber.of(42L));
+
+  private Path directory;
+
+  private FileSessionStore subject;
+
+  @BeforeMethod
+  public void subject() throws IOException {
+    directory = Files.createTempDirectory("eriscasper-session");
+    subject = new FileSessionStore(directory);
+  }
+
+  @Test
+  public void load_whenNothingSaved_shouldBeEmpty() {
+    Assertions.assertThat(subject.load(0)).isEmpty();
+  }
+
+  @Test
+  public void load_whenSaved_shouldReturnSession() {
+    subject.save(1, SESSION);
+
+    Assertions.assertThat(new FileSessionStore(directory).load(1)).contains(SESSION);
+    Assertions.assertThat(subject.load(0)).isEmpty();
+  }
+
+  @Test
+  public void load_whenCleared_shouldBeEmpty() {
+    subject.save(1, SESSION);
+    subject.clear(1);
+
+    Assertions.assertThat(subject.load(1)).isEmpty();
+  }
+}
@@ -1,12 +1,18 @@
 package com.github.princesslana.eriscasper.gateway;
 
-import static org.mockito.BDDMockito.any;
+import static org.mockito.BDDMockito.anyInt;
+import static org.mockito.BDDMockito.anyLong;
+import static org.mockito.BDDMockito.anyString;
+import static org.mockito.BDDMockito.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.notNull;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.timeout;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.princesslana.eriscasper.BotToken;
+import com.github.princesslana.eriscasper.ErisCasperFatalException;
 import com.github.princesslana.eriscasper.data.event.Event;
 import com.github.princesslana.eriscasper.data.event.HelloEvent;
 import com.github.princesslana.eriscasper.data.event.ImmutableHelloEventData;
@@ -16,14 +22,17 @@ import com.github.princesslana.eriscasper.data.gateway.IdentifyPayload;
 import com.github.princesslana.eriscasper.data.util.Jackson;
 import com.github.princesslana.eriscasper.faker.DataFaker;
 import com.github.princesslana.eriscasper.faker.DiscordFaker;
+import com.github.princesslana.eriscasper.rx.websocket.ClosedTuple;
 import com.github.princesslana.eriscasper.rx.websocket.RxWebSocket;
 import com.github.princesslana.eriscasper.rx.websocket.RxWebSocketEvent;
 import com.github.princesslana.eriscasper.rx.websocket.StringMessageTuple;
 import io.reactivex.Completable;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
 import io.reactivex.subjects.PublishSubject;
 import java.io.IOException;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import okhttp3.WebSocket;
 import org.assertj.core.api.Assertions;
 import org.mockito.ArgumentCaptor;
@@ -36,6 +45,7 @@ public class TestGateway {
 
   @Mock private RxWebSocket mockRxWebSocket;
   @Mock private WebSocket mockWebSocket;
+  @Mock private SessionStore mockSessionStore;
 
   private PublishSubject<RxWebSocketEvent> wsEvents;
 
@@ -55,13 +65,15 @@ public class TestGateway {
 
     subject = new Gateway(mockRxWebSocket, payloads);
 
-    given(mockRxWebSocket.connect(notNull())).willReturn(wsEvents);
+    given(mockRxWebSocket.connect(notNull(), anyInt())).willReturn(wsEvents);
+    given(mockRxWebSocket.sendWhenQueueBelow(anyLong(), anyString()))
+        .willAnswer(i -> mockRxWebSocket.send(i.<String>getArgument(1)));
   }
 
   @Test
   public void connect_shouldConnectWithVersionAndJsonEncoding() {
     ArgumentCaptor<String> urlCapture = ArgumentCaptor.forClass(String.class);
-    given(mockRxWebSocket.connect(urlCapture.capture())).willReturn(wsEvents);
+    given(mockRxWebSocket.connect(urlCapture.capture(), anyInt())).willReturn(wsEvents);
 
     connect();
 
@@ -69,7 +81,34 @@ public class TestGateway {
   }
 
   @Test
-  public void connect_whenWebSocketCompletes_shouldComplete() {
+  public void connect_whenCompressionEnabled_shouldConnectWithZlibStream() {
+    subject = newGateway(ImmutableGatewayConfig.builder().useCompression(true).build());
+
+    ArgumentCaptor<String> urlCapture = ArgumentCaptor.forClass(String.class);
+    given(mockRxWebSocket.connect(urlCapture.capture(), anyInt())).willReturn(wsEvents);
+
+    connect();
+
+    Assertions.assertThat(urlCapture.getValue())
+        .isEqualTo("wss://localhost?v=6&encoding=json&compress=zlib-stream");
+  }
+
+  @Test
+  public void connect_whenEtfEncoding_shouldConnectWithEtfEncoding() {
+    subject = newGateway(ImmutableGatewayConfig.builder().encoding(Encoding.ETF).build());
+
+    ArgumentCaptor<String> urlCapture = ArgumentCaptor.forClass(String.class);
+    given(mockRxWebSocket.connect(urlCapture.capture(), anyInt())).willReturn(wsEvents);
+
+    connect();
+
+    Assertions.assertThat(urlCapture.getValue()).isEqualTo("wss://localhost?v=6&encoding=etf");
+  }
+
+  @Test
+  public void connect_whenWebSocketCompletesAndNotReconnecting_shouldComplete() {
+    subject = newGateway(ImmutableGatewayConfig.builder().shouldReconnect(false).build());
+
     TestObserver<Event> subscriber = connect();
 
     wsEvents.onComplete();
@@ -78,10 +117,12 @@ public class TestGateway {
   }
 
   @Test
-  public void connect_whenAfterHelloAndWebSocketCompletes_shouldComplete() {
+  public void connect_whenAfterHelloAndWebSocketCompletesAndNotReconnecting_shouldComplete() {
+    subject = newGateway(ImmutableGatewayConfig.builder().shouldReconnect(false).build());
+
     TestObserver<Event> subscriber = connect();
 
-    given(mockRxWebSocket.send(any())).willReturn(Completable.complete());
+    given(mockRxWebSocket.send(anyString())).willReturn(Completable.complete());
 
     JsonNode d =
         jackson.valueToTree(
@@ -94,6 +135,26 @@ public class TestGateway {
     subscriber.assertComplete();
   }
 
+  @Test
+  public void connect_whenWebSocketCompletes_shouldReconnect() {
+    TestObserver<Event> subscriber = connect();
+
+    wsEvents.onComplete();
+
+    then(mockRxWebSocket).should(timeout(5000).times(2)).connect(anyString(), anyInt());
+    subscriber.assertNotComplete();
+    Assertions.assertThat(subject.getSessionMetrics().getConnects()).isEqualTo(2);
+  }
+
+  @Test
+  public void connect_whenFatalCloseCode_shouldError() {
+    TestObserver<Event> subscriber = connect();
+
+    wsEvents.onNext(ClosedTuple.of(mockWebSocket, 4004, "Authentication failed"));
+
+    subscriber.assertError(ErisCasperFatalException.class);
+  }
+
   @Test
   public void connect_whenInvalidPayload_shouldNotComplete() {
     TestObserver<Event> subscriber = connect();
@@ -133,6 +194,52 @@ public class TestGateway {
         .hasFieldOrPropertyWithValue("properties", payloads.getDefaultConnectionProperties());
   }
 
+  @Test
+  public void connect_whenHeartbeatRequested_shouldSendHeartbeat() throws IOException {
+    ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+
+    given(mockRxWebSocket.send(message.capture())).willReturn(Completable.complete());
+
+    connect();
+
+    wsEvents.onNext(stringMessageOf(ImmutablePayload.builder().op(OpCode.HEARTBEAT).build()));
+
+    Payload p = jackson.readValue(message.getValue(), Payload.class);
+    Assertions.assertThat(p).hasFieldOrPropertyWithValue("op", OpCode.HEARTBEAT);
+    Assertions.assertThat(subject.getHeartbeatMetrics().getSent()).isEqualTo(1);
+  }
+
+  @Test
+  public void connect_whenHeartbeatAcked_shouldRecordLatency() {
+    given(mockRxWebSocket.send(anyString())).willReturn(Completable.complete());
+
+    connect();
+
+    wsEvents.onNext(stringMessageOf(ImmutablePayload.builder().op(OpCode.HEARTBEAT).build()));
+    wsEvents.onNext(stringMessageOf(ImmutablePayload.builder().op(OpCode.HEARTBEAT_ACK).build()));
+
+    Assertions.assertThat(subject.getHeartbeatMetrics().getAcked()).isEqualTo(1);
+    Assertions.assertThat(subject.getHeartbeatMetrics().getLatency(TimeUnit.NANOSECONDS))
+        .isNotNegative();
+  }
+
+  @Test
+  public void connect_whenHeartbeatAckedBeforeSendReturns_shouldRecordAck() {
+    given(mockRxWebSocket.send(anyString()))
+        .willReturn(
+            Completable.fromAction(
+                () ->
+                    wsEvents.onNext(
+                        stringMessageOf(
+                            ImmutablePayload.builder().op(OpCode.HEARTBEAT_ACK).build()))));
+
+    connect();
+
+    wsEvents.onNext(stringMessageOf(ImmutablePayload.builder().op(OpCode.HEARTBEAT).build()));
+
+    Assertions.assertThat(subject.getHeartbeatMetrics().getAcked()).isEqualTo(1);
+  }
+
   @Test
   public void connect_whenReadyPayload_shouldEmitReadyEvent() {
     TestObserver<Event> subscriber = connect();
@@ -173,6 +280,91 @@ public class TestGateway {
     subscriber.assertNoValues();
   }
 
+  @Test
+  public void connect_whenSessionStored_shouldResumeIt() throws IOException {
+    ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+
+    given(mockRxWebSocket.send(message.capture())).willReturn(Completable.complete());
+    given(mockSessionStore.load(0L)).willReturn(Optional.of(storedSession()));
+
+    subject = newGatewayWithSessionStore();
+
+    connect();
+
+    wsEvents.onNext(stringMessageOf(hello()));
+
+    Payload p = jackson.readValue(message.getValue(), Payload.class);
+    Assertions.assertThat(p).hasFieldOrPropertyWithValue("op", OpCode.RESUME);
+    Assertions.assertThat(p.d().get().get("session_id").asText()).isEqualTo("abc");
+    Assertions.assertThat(p.d().get().get("seq").asLong()).isEqualTo(42L);
+  }
+
+  @Test
+  public void connect_whenSessionStoreGiven_shouldCloseWithResumableCode() {
+    subject = newGatewayWithSessionStore();
+
+    connect().dispose();
+
+    then(mockRxWebSocket).should().connect(notNull(), eq(4000));
+  }
+
+  @Test
+  public void connect_whenNoSessionStore_shouldCloseNormally() {
+    connect().dispose();
+
+    then(mockRxWebSocket).should().connect(notNull(), eq(1000));
+  }
+
+  @Test
+  public void connect_whenInvalidSessionNotResumable_shouldClearStoredSession() {
+    given(mockRxWebSocket.send(anyString())).willReturn(Completable.complete());
+    given(mockSessionStore.load(0L)).willReturn(Optional.of(storedSession()));
+
+    subject = newGatewayWithSessionStore();
+
+    connect();
+
+    wsEvents.onNext(stringMessageOf(hello()));
+    wsEvents.onNext(
+        stringMessageOf(
+            ImmutablePayload.builder()
+                .op(OpCode.INVALID_SESSION)
+                .d(jackson.getNodeFactory().booleanNode(false))
+                .build()));
+
+    then(mockSessionStore).should().clear(0L);
+    Assertions.assertThat(subject.getSessionMetrics().getResumeFailures()).isEqualTo(1);
+  }
+
+  private Gateway newGateway(GatewayConfig config) {
+    return new Gateway(
+        mockRxWebSocket, payloads, ImmutableGatewayOptions.builder().config(config).build());
+  }
+
+  private Gateway newGatewayWithSessionStore() {
+    return new Gateway(
+        mockRxWebSocket,
+        payloads,
+        ImmutableGatewayOptions.builder()
+            .identifyCoordinator(IdentifyCoordinator.NONE)
+            .sessionStore(mockSessionStore)
+            .scheduler(new TestScheduler())
+            .build());
+  }
+
+  private static StoredSession storedSession() {
+    return StoredSessionTuple.of(SessionId.of("abc"), SequenceNumber.of(42L));
+  }
+
+  private Payload hello() {
+    JsonNode d =
+        jackson.valueToTree(
+            HelloEvent.of(
+                ImmutableHelloEventData.builder().heartbeatInterval(Long.MAX_VALUE).build()));
+
+    return ImmutablePayload.builder().op(OpCode.HELLO).d(d).build();
+  }
+
   private TestObserver<Event> connect() {
     return connect(DiscordFaker.botToken());
   }
@@ -0,0 +1,97 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestHeartbeat {
+
+  private HeartbeatMetrics metrics;
+
+  private Heartbeat subject;
+
+  @BeforeMethod
+  public void subject() {
+    metrics = new HeartbeatMetrics();
+    subject = new Heartbeat(metrics);
+  }
+
+  @Test
+  public void isAcked_whenNoneSent_shouldBeTrue() {
+    Assertions.assertThat(subject.isAcked()).isTrue();
+  }
+
+  @Test
+  public void isAcked_whenSentAndNotAcked_shouldBeFalse() {
+    subject.sent();
+
+    Assertions.assertThat(subject.isAcked()).isFalse();
+  }
+
+  @Test
+  public void isAcked_whenSentAndAcked_shouldBeTrue() {
+    subject.sent();
+    subject.acked();
+
+    Assertions.assertThat(subject.isAcked()).isTrue();
+    Assertions.assertThat(metrics.getSent()).isEqualTo(1);
+    Assertions.assertThat(metrics.getAcked()).isEqualTo(1);
+    Assertions.assertThat(metrics.getLatencies(TimeUnit.NANOSECONDS)).hasSize(1);
+  }
+
+  @Test
+  public void isZombie_whenSentAndNotAcked_shouldBeTrue() {
+    subject.sent();
+
+    Assertions.assertThat(subject.isZombie()).isTrue();
+  }
+
+  @Test
+  public void isZombie_whenDelivering_shouldBeFalse() {
+    subject.sent();
+    subject.delivering();
+
+    Assertions.assertThat(subject.isZombie()).isFalse();
+
+    subject.delivered();
+
+    Assertions.assertThat(subject.isZombie()).isTrue();
+  }
+
+  @Test
+  public void isZombie_whenDeliveringPastGrace_shouldBeTrue() {
+    subject = new Heartbeat(metrics, 2);
+    subject.delivering();
+
+    subject.sent();
+    subject.sent();
+
+    Assertions.assertThat(subject.isZombie()).isFalse();
+
+    subject.sent();
+
+    Assertions.assertThat(subject.isZombie()).isTrue();
+  }
+
+  @Test
+  public void isZombie_whenAckedDuringGrace_shouldRestartGrace() {
+    subject = new Heartbeat(metrics, 1);
+    subject.delivering();
+
+    subject.sent();
+    subject.sent();
+    subject.acked();
+    subject.sent();
+
+    Assertions.assertThat(subject.isZombie()).isFalse();
+  }
+
+  @Test
+  public void acked_whenNoneSent_shouldNotRecordLatency() {
+    subject.acked();
+
+    Assertions.assertThat(metrics.getAcked()).isEqualTo(0);
+    Assertions.assertThat(metrics.getLatency(TimeUnit.MILLISECONDS)).isEqualTo(-1);
+  }
+}
@@ -0,0 +1,48 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestHeartbeatMetrics {
+
+  private HeartbeatMetrics subject;
+
+  @BeforeMethod
+  public void subject() {
+    subject = new HeartbeatMetrics();
+  }
+
+  @Test
+  public void getLatency_whenAcked_shouldBeMostRecent() {
+    subject.acked(TimeUnit.MILLISECONDS.toNanos(10));
+    subject.acked(TimeUnit.MILLISECONDS.toNanos(20));
+
+    Assertions.assertThat(subject.getLatency(TimeUnit.MILLISECONDS)).isEqualTo(20);
+  }
+
+  @Test
+  public void getLatency_whenPercentile_shouldBeFromRecentLatencies() {
+    for (int i = 1; i <= 100; i++) {
+      subject.acked(TimeUnit.MILLISECONDS.toNanos(i));
+    }
+
+    Assertions.assertThat(subject.getLatency(50, TimeUnit.MILLISECONDS)).isEqualTo(50);
+    Assertions.assertThat(subject.getLatency(99, TimeUnit.MILLISECONDS)).isEqualTo(99);
+    Assertions.assertThat(subject.getLatency(100, TimeUnit.MILLISECONDS)).isEqualTo(100);
+  }
+
+  @Test
+  public void getLatencies_whenMoreThanWindow_shouldKeepMostRecent() {
+    for (int i = 1; i <= 200; i++) {
+      subject.acked(i);
+    }
+
+    long[] latencies = subject.getLatencies(TimeUnit.NANOSECONDS);
+
+    Assertions.assertThat(latencies).hasSize(128);
+    Assertions.assertThat(latencies[0]).isEqualTo(73);
+    Assertions.assertThat(latencies[127]).isEqualTo(200);
+  }
+}
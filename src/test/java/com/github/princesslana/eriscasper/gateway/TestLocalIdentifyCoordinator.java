@@ -0,0 +1,42 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestLocalIdentifyCoordinator {
+
+  private LocalIdentifyCoordinator subject;
+
+  @BeforeMethod
+  public void subject() {
+    subject = new LocalIdentifyCoordinator();
+  }
+
+  @Test
+  public void reserve_whenSameBucket_shouldBeFiveSecondsApart() {
+    long first = subject.reserve(0);
+    long second = subject.reserve(0);
+
+    Assertions.assertThat(second - first).isEqualTo(5000);
+  }
+
+  @Test
+  public void reserve_whenDifferentBuckets_shouldNotWait() {
+    long before = System.currentTimeMillis();
+
+    subject.reserve(0);
+    long other = subject.reserve(1);
+
+    Assertions.assertThat(other).isLessThan(before + 5000);
+  }
+
+  @Test
+  public void acquire_whenMaxConcurrency_shouldNotWaitForOtherBuckets() {
+    subject.setMaxConcurrency(2);
+
+    subject.acquire(0).test().assertComplete();
+    subject.acquire(1).test().assertComplete();
+    subject.acquire(2).test().assertNotComplete();
+  }
+}
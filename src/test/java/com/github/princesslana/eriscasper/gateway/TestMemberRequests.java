@@ -0,0 +1,189 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.princesslana.eriscasper.data.Snowflake;
+import com.github.princesslana.eriscasper.data.resource.GuildMember;
+import io.reactivex.Completable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestMemberRequests {
+
+  private static final Snowflake GUILD = Snowflake.of("123");
+
+  private final JsonNodeFactory json = JsonNodeFactory.instance;
+
+  private List<Payload> sent;
+
+  private MemberRequests subject;
+
+  @BeforeMethod
+  public void subject() {
+    sent = new ArrayList<>();
+    subject =
+        new MemberRequests(
+            new Payloads(new ObjectMapper()),
+            p -> Completable.fromAction(() -> sent.add(p)));
+  }
+
+  @Test
+  public void request_shouldRequestAllMembers() {
+    subject.request(GUILD).test();
+
+    Assertions.assertThat(sent).hasSize(1);
+    Assertions.assertThat(sent.get(0).op()).isEqualTo(OpCode.REQUEST_GUILD_MEMBERS);
+    Assertions.assertThat(dataOf(sent.get(0)).get("guild_id").asText()).isEqualTo("123");
+    Assertions.assertThat(dataOf(sent.get(0)).get("query").asText()).isEmpty();
+    Assertions.assertThat(dataOf(sent.get(0)).get("limit").asInt()).isEqualTo(0);
+  }
+
+  @Test
+  public void request_whenAllChunksReceived_shouldComplete() {
+    TestObserver<Void> request = subject.request(GUILD).test();
+    TestObserver<Snowflake> ready = subject.getReady().test();
+
+    subject.chunk(chunk("123", 1, 2));
+    request.assertNotComplete();
+
+    subject.chunk(chunk("123", 0, 2));
+    request.assertComplete();
+    ready.assertValue(GUILD);
+  }
+
+  @Test
+  public void request_whenAlreadyRequested_shouldShareRequest() {
+    TestObserver<Void> first = subject.request(GUILD).test();
+    TestObserver<Void> second = subject.request(GUILD).test();
+
+    subject.chunk(chunk("123", 0, 1));
+
+    Assertions.assertThat(sent).hasSize(1);
+    first.assertComplete();
+    second.assertComplete();
+  }
+
+  @Test
+  public void query_whenChunkReceived_shouldReturnMembers() {
+    TestObserver<List<GuildMember>> query = subject.query(GUILD, "ab", 10).test();
+
+    Assertions.assertThat(dataOf(sent.get(0)).get("query").asText()).isEqualTo("ab");
+    Assertions.assertThat(dataOf(sent.get(0)).get("limit").asInt()).isEqualTo(10);
+
+    subject.chunk(chunk("123", 0, 1));
+
+    query.assertValueCount(1);
+  }
+
+  @Test
+  public void query_whenGuildBeingDownloaded_shouldSendOnceDownloaded() {
+    TestObserver<Void> request = subject.request(GUILD).test();
+    subject.chunk(chunk("123", 0, 2));
+
+    TestObserver<List<GuildMember>> query = subject.query(GUILD, "ab", 10).test();
+    Assertions.assertThat(sent).hasSize(1);
+
+    subject.chunk(chunk("123", 1, 2));
+    request.assertComplete();
+    query.assertNoValues();
+    Assertions.assertThat(sent).hasSize(2);
+    Assertions.assertThat(dataOf(sent.get(1)).get("query").asText()).isEqualTo("ab");
+
+    subject.chunk(chunk("123", 0, 1));
+    query.assertValueCount(1);
+  }
+
+  @Test
+  public void query_whenNotAnswered_shouldTimeout() {
+    TestScheduler scheduler = new TestScheduler();
+    subject =
+        new MemberRequests(
+            new Payloads(new ObjectMapper()),
+            p -> Completable.fromAction(() -> sent.add(p)),
+            1000,
+            scheduler);
+
+    TestObserver<List<GuildMember>> first = subject.query(GUILD, "ab", 10).test();
+    scheduler.advanceTimeBy(1000, TimeUnit.MILLISECONDS);
+    first.assertError(TimeoutException.class);
+
+    TestObserver<List<GuildMember>> second = subject.query(GUILD, "cd", 10).test();
+    subject.chunk(chunk("123", 0, 1));
+    second.assertValueCount(1);
+  }
+
+  @Test
+  public void prefetch_whenLargeNotGiven_shouldBeReady() {
+    TestObserver<Snowflake> ready = subject.getReady().test();
+
+    subject.prefetch(json.objectNode().put("id", "123")).test();
+
+    Assertions.assertThat(sent).isEmpty();
+    ready.assertValue(GUILD);
+  }
+
+  @Test
+  public void prefetch_whenUnavailable_shouldDoNothing() {
+    TestObserver<Snowflake> ready = subject.getReady().test();
+
+    subject.prefetch(json.objectNode().put("id", "123").put("unavailable", true)).test();
+
+    Assertions.assertThat(sent).isEmpty();
+    ready.assertNoValues();
+  }
+
+  @Test
+  public void prefetch_whenNotLarge_shouldBeReady() {
+    TestObserver<Snowflake> ready = subject.getReady().test();
+
+    subject.prefetch(json.objectNode().put("id", "123").put("large", false)).test();
+
+    Assertions.assertThat(sent).isEmpty();
+    ready.assertValue(GUILD);
+  }
+
+  @Test
+  public void prefetch_whenLarge_shouldRequestMembers() {
+    subject.prefetch(json.objectNode().put("id", "123").put("large", true)).test();
+
+    Assertions.assertThat(sent).hasSize(1);
+  }
+
+  @Test
+  public void resend_whenChunksOutstanding_shouldRequestAgain() {
+    TestObserver<Void> request = subject.request(GUILD).test();
+    subject.chunk(chunk("123", 0, 2));
+
+    subject.resend().test().assertComplete();
+    subject.chunk(chunk("123", 1, 2));
+
+    Assertions.assertThat(sent).hasSize(2);
+    request.assertNotComplete();
+
+    subject.chunk(chunk("123", 0, 2));
+    request.assertComplete();
+  }
+
+  private Payload chunk(String guildId, int index, int count) {
+    ObjectNode d =
+        json.objectNode()
+            .put("guild_id", guildId)
+            .put("chunk_index", index)
+            .put("chunk_count", count);
+    d.putArray("members");
+    return ImmutablePayload.builder().op(OpCode.DISPATCH).t("GUILD_MEMBERS_CHUNK").d(d).build();
+  }
+
+  private static JsonNode dataOf(Payload p) {
+    return p.d().get();
+  }
+}
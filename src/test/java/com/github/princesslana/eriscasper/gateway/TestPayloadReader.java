@@ -0,0 +1,214 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import static org.mockito.Mockito.mock;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.princesslana.eriscasper.data.event.Event;
+import com.github.princesslana.eriscasper.data.event.TypingStartEvent;
+import java.io.IOException;
+import java.util.Objects;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestPayloadReader {
+
+  private final ObjectMapper jackson = new ObjectMapper();
+
+  private PayloadReader subject;
+
+  @BeforeMethod
+  public void subject() {
+    subject = new PayloadReader(jackson);
+  }
+
+  @Test
+  public void read_whenDispatch_shouldReadHeader() throws IOException {
+    Payload p = read("{\"t\":\"TYPING_START\",\"s\":42,\"op\":0,\"d\":{\"user_id\":\"1\"}}");
+
+    Assertions.assertThat(p.op()).isEqualTo(OpCode.DISPATCH);
+    Assertions.assertThat(p.s()).contains(SequenceNumber.of(42L));
+    Assertions.assertThat(p.t()).contains("TYPING_START");
+  }
+
+  @Test
+  public void read_whenEventTypeNotLearned_shouldReadTree() throws IOException {
+    Payload p = read("{\"t\":\"TYPING_START\",\"s\":42,\"op\":0,\"d\":{\"user_id\":\"1\"}}");
+
+    Assertions.assertThat(p.event()).isEmpty();
+    Assertions.assertThat(p.d().get().get("user_id").asText()).isEqualTo("1");
+  }
+
+  @Test
+  public void read_whenDataBeforeOp_shouldReadData() throws IOException {
+    Payload p = read("{\"d\":{\"heartbeat_interval\":41250},\"op\":10}");
+
+    Assertions.assertThat(p.op()).isEqualTo(OpCode.HELLO);
+    Assertions.assertThat(p.d().get().get("heartbeat_interval").asInt()).isEqualTo(41250);
+  }
+
+  @Test
+  public void read_whenNulls_shouldBeEmpty() throws IOException {
+    Payload p = read("{\"t\":null,\"s\":null,\"op\":11,\"d\":null}");
+
+    Assertions.assertThat(p.op()).isEqualTo(OpCode.HEARTBEAT_ACK);
+    Assertions.assertThat(p.s()).isEmpty();
+    Assertions.assertThat(p.t()).isEmpty();
+    Assertions.assertThat(p.d()).isEmpty();
+  }
+
+  @Test
+  public void read_whenUnknownField_shouldSkipIt() throws IOException {
+    Payload p = read("{\"op\":11,\"_trace\":[\"gateway-prd-main-wv81\",{\"a\":1}],\"s\":3}");
+
+    Assertions.assertThat(p.op()).isEqualTo(OpCode.HEARTBEAT_ACK);
+    Assertions.assertThat(p.s()).contains(SequenceNumber.of(3L));
+  }
+
+  @Test
+  public void read_whenNoOp_shouldThrowException() {
+    Assertions.assertThatThrownBy(() -> read("{\"s\":3}"))
+        .isInstanceOf(JsonMappingException.class);
+  }
+
+  @Test
+  public void read_whenNotObject_shouldThrowException() {
+    Assertions.assertThatThrownBy(() -> read("[11]")).isInstanceOf(JsonMappingException.class);
+  }
+
+  @Test
+  public void read_whenNotSubscribed_shouldSkipData() throws IOException {
+    EventSubscriptions subscriptions = new EventSubscriptions();
+    subject = new PayloadReader(jackson, subscriptions);
+
+    Payload p = read("{\"t\":\"TYPING_START\",\"op\":0,\"d\":{\"user_id\":\"1\"},\"s\":42}");
+
+    Assertions.assertThat(p.d()).isEmpty();
+    Assertions.assertThat(p.s()).contains(SequenceNumber.of(42L));
+    Assertions.assertThat(subject.isSkipped(p)).isTrue();
+  }
+
+  @Test
+  public void read_whenSubscribed_shouldReadData() throws IOException {
+    EventSubscriptions subscriptions = new EventSubscriptions();
+    subscriptions.add(TypingStartEvent.class);
+    subject = new PayloadReader(jackson, subscriptions);
+
+    Payload p = read("{\"t\":\"TYPING_START\",\"op\":0,\"d\":{\"user_id\":\"1\"},\"s\":42}");
+
+    Assertions.assertThat(p.d()).isPresent();
+    Assertions.assertThat(subject.isSkipped(p)).isFalse();
+  }
+
+  @Test
+  public void learn_whenEventCanNotBeBound_shouldContinueToReadTree() throws IOException {
+    String json = "{\"t\":\"TYPING_START\",\"s\":42,\"op\":0,\"d\":{\"user_id\":\"1\"}}";
+    Payload first = read(json);
+
+    subject.learn("TYPING_START", first.d().get(), mock(Event.class));
+
+    Assertions.assertThat(read(json).d()).isPresent();
+  }
+
+  @Test
+  public void learn_whenEventCanBeBound_shouldBindLaterEvents() throws IOException {
+    String json = "{\"t\":\"TYPING_START\",\"s\":42,\"op\":0,\"d\":{\"user_id\":\"1\"}}";
+    Payload first = read(json);
+
+    subject.learn("TYPING_START", first.d().get(), new BindableEvent("1"));
+
+    Payload p = read(json);
+
+    Assertions.assertThat(p.event()).contains(new BindableEvent("1"));
+    Assertions.assertThat(p.d()).isEmpty();
+  }
+
+  @Test
+  public void read_whenBindingFails_shouldReadTree() throws IOException {
+    String json = "{\"t\":\"TYPING_START\",\"s\":42,\"op\":0,\"d\":{\"user_id\":\"1\"}}";
+    subject.learn("TYPING_START", read(json).d().get(), new BindableEvent("1"));
+
+    Payload p = read("{\"t\":\"TYPING_START\",\"s\":43,\"op\":0,\"d\":{\"user_id\":[1]}}");
+
+    Assertions.assertThat(p.event()).isEmpty();
+    Assertions.assertThat(p.d().get().get("user_id").isArray()).isTrue();
+    Assertions.assertThat(p.s()).contains(SequenceNumber.of(43L));
+
+    Assertions.assertThat(read(json).event()).isEmpty();
+  }
+
+  @Test
+  public void read_whenBindingFailsOnParser_shouldThrowAndReadTreeAfter() throws IOException {
+    String json = "{\"t\":\"TYPING_START\",\"s\":42,\"op\":0,\"d\":{\"user_id\":\"1\"}}";
+    subject.learn("TYPING_START", read(json).d().get(), new BindableEvent("1"));
+
+    Assertions.assertThatThrownBy(
+            () ->
+                subject.read(
+                    jackson
+                        .getFactory()
+                        .createParser(
+                            "{\"t\":\"TYPING_START\",\"op\":0,\"d\":{\"user_id\":[1]}}")))
+        .isInstanceOf(PayloadReader.BindingFailedException.class);
+
+    Assertions.assertThat(read(json).d()).isPresent();
+  }
+
+  @Test
+  public void read_whenBindingFailsWithDataBeforeType_shouldReadTree() throws IOException {
+    String json = "{\"t\":\"TYPING_START\",\"s\":42,\"op\":0,\"d\":{\"user_id\":\"1\"}}";
+    subject.learn("TYPING_START", read(json).d().get(), new BindableEvent("1"));
+
+    Payload p =
+        subject.read(
+            jackson
+                .getFactory()
+                .createParser("{\"d\":{\"user_id\":[1]},\"t\":\"TYPING_START\",\"op\":0}"));
+
+    Assertions.assertThat(p.event()).isEmpty();
+    Assertions.assertThat(p.d().get().get("user_id").isArray()).isTrue();
+  }
+
+  @Test
+  public void read_whenGuildCreateBound_shouldKeepSummary() throws IOException {
+    String json =
+        "{\"t\":\"GUILD_CREATE\",\"s\":42,\"op\":0,\"d\":"
+            + "{\"id\":\"123\",\"user_id\":\"1\",\"large\":true,\"members\":[{\"id\":\"9\"}]}}";
+    subject.learn("GUILD_CREATE", read(json).d().get(), new BindableEvent("1"));
+
+    Payload p = read(json);
+
+    Assertions.assertThat(p.event()).contains(new BindableEvent("1"));
+    Assertions.assertThat(p.summary().get().get("id").asText()).isEqualTo("123");
+    Assertions.assertThat(p.summary().get().get("large").asBoolean()).isTrue();
+    Assertions.assertThat(p.summary().get().has("members")).isFalse();
+  }
+
+  private Payload read(String json) throws IOException {
+    return subject.read(() -> jackson.getFactory().createParser(json));
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  public static class BindableEvent implements Event {
+    private final String userId;
+
+    @JsonCreator
+    public BindableEvent(@JsonProperty("user_id") String userId) {
+      this.userId = userId;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof BindableEvent && Objects.equals(userId, ((BindableEvent) obj).userId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(userId);
+    }
+  }
+}
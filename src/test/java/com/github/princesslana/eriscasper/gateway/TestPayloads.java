@@ -4,7 +4,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.princesslana.eriscasper.BotToken;
 import com.github.princesslana.eriscasper.data.event.HelloEventData;
 import com.github.princesslana.eriscasper.data.util.Jackson;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 import org.assertj.core.api.Assertions;
 import org.testng.annotations.BeforeMethod;
@@ -30,6 +32,15 @@ public class TestPayloads {
     Assertions.assertThat(p.d().get().get("token").asText()).isEqualTo("TEST_TOKEN");
   }
 
+  @Test
+  public void identify_whenLargeThreshold_shouldIncludeIt() {
+    Payload p = subject.identify(BotToken.of("TEST_TOKEN"), Optional.empty(), 250);
+
+    Assertions.assertThat(p.op()).isEqualTo(OpCode.IDENTIFY);
+    Assertions.assertThat(p.d().get().get("token").asText()).isEqualTo("TEST_TOKEN");
+    Assertions.assertThat(p.d().get().get("large_threshold").asInt()).isEqualTo(250);
+  }
+
   @Test
   public void heartbeat_whenValidPayload_shouldDeserialize() throws IOException {
     String payload = "{\"heartbeat_interval\":41250,\"_trace\":[\"gateway-prd-main-wv81\"]}}";
@@ -58,4 +69,27 @@ public class TestPayloads {
     Assertions.assertThat(p.op()).isEqualTo(OpCode.HEARTBEAT);
     Assertions.assertThat(p.d().isPresent()).isFalse();
   }
+
+  @Test
+  public void read_whenNotSubscribed_shouldCountSkipped() {
+    subject = new Payloads(jackson, new EventSubscriptions());
+    String json = "{\"t\":\"TYPING_START\",\"s\":42,\"op\":0,\"d\":{\"user_id\":\"1\"}}";
+
+    subject.read(json).flatMapMaybe(subject::toEvent).test().assertNoValues().assertComplete();
+
+    Assertions.assertThat(subject.getDecodeMetrics().getSkippedFrames()).isEqualTo(1);
+    Assertions.assertThat(subject.getDecodeMetrics().getSkippedBytes()).isEqualTo(json.length());
+  }
+
+  @Test
+  public void read_whenStream_shouldReadAndCountPayload() {
+    String json = "{\"op\":11,\"d\":null}";
+
+    subject
+        .read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)))
+        .test()
+        .assertValue(p -> p.op() == OpCode.HEARTBEAT_ACK);
+
+    Assertions.assertThat(subject.getDecodeMetrics().getBytes()).isEqualTo(json.length());
+  }
 }
@@ -0,0 +1,326 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.Strings;
+import io.reactivex.Completable;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subjects.CompletableSubject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okio.ByteString;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestSendQueue {
+
+  private final ObjectMapper jackson = new ObjectMapper();
+
+  private final JsonNodeFactory json = JsonNodeFactory.instance;
+
+  private TestScheduler scheduler;
+
+  private SendMetrics metrics;
+
+  private List<JsonNode> sent;
+
+  private SendQueue subject;
+
+  @BeforeMethod
+  public void subject() {
+    scheduler = new TestScheduler();
+    metrics = new SendMetrics();
+    sent = new ArrayList<>();
+
+    subject = newSendQueue(2);
+  }
+
+  private SendQueue newSendQueue(int limit) {
+    return new SendQueue(
+        limit,
+        p -> ByteString.of(jackson.writeValueAsBytes(toJson(p))),
+        b -> Completable.fromAction(() -> sent.add(jackson.readTree(b.utf8()))),
+        metrics,
+        scheduler);
+  }
+
+  @Test
+  public void send_whenUnderLimit_shouldSendImmediately() {
+    subject.send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode("a"))).test().assertComplete();
+
+    Assertions.assertThat(sent)
+        .extracting(TestSendQueue::opOf)
+        .containsExactly(OpCode.VOICE_STATE_UPDATE);
+  }
+
+  @Test
+  public void send_whenLimitReached_shouldWaitForNextWindow() {
+    subject.send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode("a"))).test();
+    subject.send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode("b"))).test();
+    TestObserver<Void> third =
+        subject.send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode("c"))).test();
+
+    third.assertNotComplete();
+    Assertions.assertThat(sent).hasSize(2);
+    Assertions.assertThat(metrics.getDepth()).isEqualTo(1);
+
+    scheduler.advanceTimeBy(60, TimeUnit.SECONDS);
+
+    third.assertComplete();
+    Assertions.assertThat(sent).hasSize(3);
+    Assertions.assertThat(metrics.getDepth()).isEqualTo(0);
+    Assertions.assertThat(metrics.getMaxWait(TimeUnit.SECONDS)).isEqualTo(60);
+  }
+
+  @Test
+  public void send_whenIdentifyQueued_shouldSendItFirst() {
+    fillWindow();
+
+    subject.send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode("a"))).test();
+    subject.send(payload(OpCode.IDENTIFY, json.textNode("b"))).test();
+
+    scheduler.advanceTimeBy(60, TimeUnit.SECONDS);
+
+    Assertions.assertThat(sent)
+        .extracting(TestSendQueue::opOf)
+        .containsExactly(OpCode.IDENTIFY, OpCode.VOICE_STATE_UPDATE);
+  }
+
+  @Test
+  public void send_whenStatusUpdatesQueued_shouldSendOnlyTheLatest() {
+    fillWindow();
+
+    TestObserver<Void> first =
+        subject.send(payload(OpCode.STATUS_UPDATE, json.textNode("a"))).test();
+    TestObserver<Void> second =
+        subject.send(payload(OpCode.STATUS_UPDATE, json.textNode("b"))).test();
+
+    scheduler.advanceTimeBy(60, TimeUnit.SECONDS);
+
+    first.assertComplete();
+    second.assertComplete();
+    Assertions.assertThat(sent).hasSize(1);
+    Assertions.assertThat(dataOf(sent.get(0)).asText()).isEqualTo("b");
+    Assertions.assertThat(metrics.getCoalesced()).isEqualTo(1);
+  }
+
+  @Test
+  public void send_whenGuildMemberRequestsQueued_shouldBatchThem() {
+    fillWindow();
+
+    TestObserver<Void> first = subject.send(requestGuildMembers("1")).test();
+    TestObserver<Void> second = subject.send(requestGuildMembers("2")).test();
+
+    scheduler.advanceTimeBy(60, TimeUnit.SECONDS);
+
+    first.assertComplete();
+    second.assertComplete();
+    Assertions.assertThat(sent).hasSize(1);
+    Assertions.assertThat(dataOf(sent.get(0)).get("guild_id"))
+        .containsExactly(json.textNode("1"), json.textNode("2"));
+    Assertions.assertThat(dataOf(sent.get(0)).get("query").asText()).isEmpty();
+    Assertions.assertThat(metrics.getBatched()).isEqualTo(1);
+  }
+
+  @Test
+  public void send_whenGuildMemberRequestsDiffer_shouldNotBatchThem() {
+    fillWindow();
+
+    subject.send(requestGuildMembers("1")).test();
+    subject
+        .send(
+            payload(
+                OpCode.REQUEST_GUILD_MEMBERS,
+                json.objectNode().put("guild_id", "2").put("query", "a").put("limit", 0)))
+        .test();
+
+    scheduler.advanceTimeBy(60, TimeUnit.SECONDS);
+
+    Assertions.assertThat(sent).hasSize(2);
+  }
+
+  @Test
+  public void send_whenTooLarge_shouldRejectIt() {
+    subject
+        .send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode(Strings.repeat("a", 5000))))
+        .test()
+        .assertError(IllegalArgumentException.class)
+        .assertErrorMessage("Payload of 5015 bytes is over the maximum of 4096 bytes.");
+
+    Assertions.assertThat(sent).isEmpty();
+    Assertions.assertThat(metrics.getRejected()).isEqualTo(1);
+  }
+
+  @Test
+  public void send_whenPreviousSendInProgress_shouldWaitForIt() {
+    CompletableSubject inProgress = CompletableSubject.create();
+    List<ByteString> attempted = new ArrayList<>();
+
+    subject =
+        new SendQueue(
+            2,
+            p -> ByteString.of(jackson.writeValueAsBytes(toJson(p))),
+            b -> {
+              attempted.add(b);
+              return attempted.size() == 1 ? inProgress : Completable.complete();
+            },
+            metrics,
+            scheduler);
+
+    TestObserver<Void> first =
+        subject.send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode("a"))).test();
+    TestObserver<Void> second =
+        subject.send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode("b"))).test();
+
+    Assertions.assertThat(attempted).hasSize(1);
+    second.assertNotComplete();
+
+    inProgress.onComplete();
+
+    first.assertComplete();
+    second.assertComplete();
+    Assertions.assertThat(attempted).hasSize(2);
+  }
+
+  @Test
+  public void send_whenSendFails_shouldErrorAndContinue() {
+    IllegalStateException error = new IllegalStateException("rejected");
+    List<ByteString> attempted = new ArrayList<>();
+
+    subject =
+        new SendQueue(
+            2,
+            p -> ByteString.of(jackson.writeValueAsBytes(toJson(p))),
+            b -> {
+              attempted.add(b);
+              return attempted.size() == 1 ? Completable.error(error) : Completable.complete();
+            },
+            metrics,
+            scheduler);
+
+    subject.send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode("a"))).test().assertError(error);
+    subject.send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode("b"))).test().assertComplete();
+
+    Assertions.assertThat(metrics.getFailed()).isEqualTo(1);
+  }
+
+  @Test
+  public void send_whenReset_shouldSendOnlyIdentifies() {
+    subject.reset();
+
+    TestObserver<Void> update =
+        subject.send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode("a"))).test();
+    subject.send(payload(OpCode.IDENTIFY, json.textNode("b"))).test().assertComplete();
+
+    update.assertNotComplete();
+    Assertions.assertThat(sent).extracting(TestSendQueue::opOf).containsExactly(OpCode.IDENTIFY);
+
+    subject.resume();
+
+    update.assertComplete();
+    Assertions.assertThat(sent)
+        .extracting(TestSendQueue::opOf)
+        .containsExactly(OpCode.IDENTIFY, OpCode.VOICE_STATE_UPDATE);
+  }
+
+  @Test
+  public void send_whenQueuedAcrossReconnect_shouldSendOnceReady() {
+    subject.pause();
+
+    TestObserver<Void> update =
+        subject.send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode("a"))).test();
+    TestObserver<Void> staleIdentify =
+        subject.send(payload(OpCode.IDENTIFY, json.textNode("b"))).test();
+
+    Assertions.assertThat(sent).isEmpty();
+
+    subject.reset();
+
+    staleIdentify.assertError(IllegalStateException.class);
+    update.assertNotComplete();
+    Assertions.assertThat(sent).isEmpty();
+
+    subject.resume();
+
+    update.assertComplete();
+    Assertions.assertThat(sent)
+        .extracting(TestSendQueue::opOf)
+        .containsExactly(OpCode.VOICE_STATE_UPDATE);
+  }
+
+  @Test
+  public void send_whenConnectionLostWhileSending_shouldSendAgainOnceReady() {
+    CompletableSubject inProgress = CompletableSubject.create();
+    List<ByteString> attempted = new ArrayList<>();
+
+    subject =
+        new SendQueue(
+            2,
+            p -> ByteString.of(jackson.writeValueAsBytes(toJson(p))),
+            b -> {
+              attempted.add(b);
+              return attempted.size() == 1 ? inProgress : Completable.complete();
+            },
+            metrics,
+            scheduler);
+
+    TestObserver<Void> update =
+        subject.send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode("a"))).test();
+
+    subject.pause();
+    subject.reset();
+    inProgress.onError(new IllegalStateException("WebSocket was replaced by a new connection."));
+
+    update.assertNotTerminated();
+    Assertions.assertThat(attempted).hasSize(1);
+
+    subject.resume();
+
+    update.assertComplete();
+    Assertions.assertThat(attempted).hasSize(2);
+  }
+
+  @Test
+  public void sendNow_whenLimitReached_shouldSendImmediately() {
+    fillWindow();
+
+    subject.sendNow(payload(OpCode.HEARTBEAT, json.numberNode(1))).test().assertComplete();
+
+    Assertions.assertThat(sent).extracting(TestSendQueue::opOf).contains(OpCode.HEARTBEAT);
+  }
+
+  private void fillWindow() {
+    subject.send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode("x"))).test();
+    subject.send(payload(OpCode.VOICE_STATE_UPDATE, json.textNode("y"))).test();
+    sent.clear();
+  }
+
+  private JsonNode toJson(Payload p) {
+    ObjectNode json = jackson.createObjectNode().put("op", p.op().getCode());
+    json.set("d", p.d().orElse(null));
+    return json;
+  }
+
+  private static OpCode opOf(JsonNode frame) {
+    return OpCode.fromCode(frame.get("op").asInt());
+  }
+
+  private static JsonNode dataOf(JsonNode frame) {
+    return frame.get("d");
+  }
+
+  private static Payload payload(OpCode op, JsonNode d) {
+    return ImmutablePayload.builder().op(op).d(d).build();
+  }
+
+  private Payload requestGuildMembers(String guildId) {
+    return payload(
+        OpCode.REQUEST_GUILD_MEMBERS,
+        json.objectNode().put("guild_id", guildId).put("query", "").put("limit", 0));
+  }
+}
@@ -0,0 +1,35 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.ufoscout.properlty.Properlty;
+import com.ufoscout.properlty.reader.Properties;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.Test;
+
+public class TestSessionStore {
+
+  @Test
+  public void fromConfig_whenNoDirectory_shouldBeNone() {
+    Assertions.assertThat(SessionStore.fromConfig(Properlty.builder().build()))
+        .isSameAs(SessionStore.NONE);
+  }
+
+  @Test
+  public void fromConfig_whenEmptyCachesNotAccepted_shouldBeNone() {
+    Properlty config =
+        Properlty.builder().add(Properties.add("ec.gateway.session.store", "sessions")).build();
+
+    Assertions.assertThat(SessionStore.fromConfig(config)).isSameAs(SessionStore.NONE);
+  }
+
+  @Test
+  public void fromConfig_whenEmptyCachesAccepted_shouldStoreInFiles() {
+    Properlty config =
+        Properlty.builder()
+            .add(
+                Properties.add("ec.gateway.session.store", "sessions")
+                    .add("ec.gateway.session.store.empty_caches", "true"))
+            .build();
+
+    Assertions.assertThat(SessionStore.fromConfig(config)).isInstanceOf(FileSessionStore.class);
+  }
+}
@@ -0,0 +1,137 @@
+package com.github.princesslana.eriscasper.gateway;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import okio.ByteString;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestZlibStreamInflater {
+
+  private Deflater deflater;
+
+  private CompressionMetrics metrics;
+
+  private ZlibStreamInflater subject;
+
+  @BeforeMethod
+  public void subject() {
+    deflater = new Deflater();
+    metrics = new CompressionMetrics();
+    subject = new ZlibStreamInflater(metrics);
+  }
+
+  @AfterMethod
+  public void close() {
+    subject.close();
+    deflater.end();
+  }
+
+  @Test
+  public void inflate_whenCompletePayload_shouldEmitInflated() {
+    subject.inflate(deflate("{\"op\":11}")).test().assertValue(b -> is(b, "{\"op\":11}"));
+  }
+
+  @Test
+  public void inflate_whenPayloadSplit_shouldEmitOnlyWhenComplete() {
+    ByteString compressed = deflate("{\"op\":10,\"d\":{\"heartbeat_interval\":41250}}");
+    int split = compressed.size() / 2;
+
+    subject.inflate(compressed.substring(0, split)).test().assertNoValues().assertComplete();
+    subject
+        .inflate(compressed.substring(split))
+        .test()
+        .assertValue(b -> is(b, "{\"op\":10,\"d\":{\"heartbeat_interval\":41250}}"));
+  }
+
+  @Test
+  public void inflate_whenSeveralPayloads_shouldShareContext() {
+    subject.inflate(deflate("{\"op\":11}")).test().assertValue(b -> is(b, "{\"op\":11}"));
+    subject.inflate(deflate("{\"op\":11}")).test().assertValue(b -> is(b, "{\"op\":11}"));
+  }
+
+  @Test
+  public void inflate_whenLargerThanBuffer_shouldEmitInflated() {
+    char[] chars = new char[100 * 1024];
+    Arrays.fill(chars, 'x');
+    String large = new String(chars);
+
+    subject.inflate(deflate(large)).test().assertValue(b -> is(b, large));
+  }
+
+  @Test
+  public void inflate_whenPayload_shouldCountBytes() {
+    ByteString compressed = deflate("{\"op\":11}");
+
+    subject.inflate(compressed).test();
+
+    Assertions.assertThat(metrics.getPayloads()).isEqualTo(1);
+    Assertions.assertThat(metrics.getCompressedBytes()).isEqualTo(compressed.size());
+    Assertions.assertThat(metrics.getInflatedBytes()).isEqualTo("{\"op\":11}".length());
+  }
+
+  @Test
+  public void inflateStream_whenCompletePayload_shouldReadInflated() {
+    char[] chars = new char[100 * 1024];
+    Arrays.fill(chars, 'x');
+    String large = new String(chars);
+
+    subject.inflate(deflate(large), TestZlibStreamInflater::readFully).test().assertValue(large);
+  }
+
+  @Test
+  public void inflateStream_whenPayloadSplit_shouldReadOnlyWhenComplete() {
+    ByteString compressed = deflate("{\"op\":11}");
+    int split = compressed.size() / 2;
+
+    subject
+        .inflate(compressed.substring(0, split), TestZlibStreamInflater::readFully)
+        .test()
+        .assertNoValues()
+        .assertComplete();
+    subject
+        .inflate(compressed.substring(split), TestZlibStreamInflater::readFully)
+        .test()
+        .assertValue("{\"op\":11}");
+  }
+
+  @Test
+  public void inflateStream_whenNotFullyRead_shouldStillShareContext() {
+    subject.inflate(deflate("{\"op\":11}"), in -> in.read()).test().assertValue((int) '{');
+    subject
+        .inflate(deflate("{\"op\":1}"), TestZlibStreamInflater::readFully)
+        .test()
+        .assertValue("{\"op\":1}");
+  }
+
+  @Test
+  public void inflateStream_whenPayload_shouldCountBytes() {
+    subject.inflate(deflate("{\"op\":11}"), in -> in.read()).test();
+
+    Assertions.assertThat(metrics.getPayloads()).isEqualTo(1);
+    Assertions.assertThat(metrics.getInflatedBytes()).isEqualTo("{\"op\":11}".length());
+  }
+
+  private ByteString deflate(String text) {
+    deflater.setInput(text.getBytes(Charsets.UTF_8));
+
+    byte[] buffer = new byte[text.length() + 64];
+    int length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+
+    return ByteString.of(buffer, 0, length);
+  }
+
+  private static String readFully(InputStream in) throws IOException {
+    return new String(ByteStreams.toByteArray(in), Charsets.UTF_8);
+  }
+
+  private static boolean is(byte[] bytes, String expected) {
+    return new String(bytes, Charsets.UTF_8).equals(expected);
+  }
+}
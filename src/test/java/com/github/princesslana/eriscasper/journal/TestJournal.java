@@ -0,0 +1,104 @@
+package com.github.princesslana.eriscasper.journal;
+
+import io.reactivex.Observable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import okio.ByteString;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestJournal {
+
+  private Path directory;
+
+  @BeforeMethod
+  public void directory() throws IOException {
+    directory = Files.createTempDirectory("eriscasper-journal");
+  }
+
+  @Test
+  public void read_whenAppended_shouldReadRecordsInOrder() throws IOException {
+    JournalRecord open = record(JournalRecord.Kind.OPEN, 1, "wss://gateway.discord.gg");
+    JournalRecord text = record(JournalRecord.Kind.TEXT, 1, "{\"op\":10}");
+    JournalRecord bytes = record(JournalRecord.Kind.BYTES, 2, "\u0000\u0001");
+
+    try (Journal subject = new Journal(directory)) {
+      subject.append(open);
+      subject.append(text);
+      subject.append(bytes);
+    }
+
+    read(directory).test().assertResult(open, text, bytes);
+  }
+
+  @Test
+  public void append_whenSegmentFull_shouldStartNewSegment() throws IOException {
+    // each record is 30 bytes, so two fit in each segment
+    try (Journal subject = new Journal(directory, 64)) {
+      for (int i = 0; i < 5; i++) {
+        subject.append(record(JournalRecord.Kind.TEXT, 0, "message " + i));
+      }
+    }
+
+    Assertions.assertThat(Journal.segments(directory)).hasSize(3);
+    read(directory).test().assertValueCount(5);
+  }
+
+  @Test
+  public void append_whenRecordLargerThanSegment_shouldFitItInOwnSegment() throws IOException {
+    JournalRecord large = record(JournalRecord.Kind.TEXT, 0, new String(new char[1000]));
+
+    try (Journal subject = new Journal(directory, 64)) {
+      subject.append(large);
+    }
+
+    read(directory).test().assertResult(large);
+  }
+
+  @Test
+  public void append_whenReopened_shouldAddToExistingRecords() throws IOException {
+    JournalRecord first = record(JournalRecord.Kind.TEXT, 0, "first");
+    JournalRecord second = record(JournalRecord.Kind.TEXT, 0, "second");
+
+    try (Journal subject = new Journal(directory)) {
+      subject.append(first);
+    }
+
+    try (Journal subject = new Journal(directory)) {
+      subject.append(second);
+    }
+
+    read(directory).test().assertResult(first, second);
+  }
+
+  @Test
+  public void read_whenNoJournal_shouldBeEmpty() {
+    read(directory.resolve("missing")).test().assertResult();
+  }
+
+  @Test
+  public void read_shouldReadDataEachTimeAskedFor() throws IOException {
+    JournalRecord text = record(JournalRecord.Kind.TEXT, 0, "{\"op\":11}");
+
+    try (Journal subject = new Journal(directory)) {
+      subject.append(text);
+      subject.append(record(JournalRecord.Kind.TEXT, 0, "{\"op\":1}"));
+    }
+
+    JournalRecord read = JournalReader.read(directory).blockingFirst();
+
+    Assertions.assertThat(read.getData()).isEqualTo(text.getData());
+    Assertions.assertThat(read.getData()).isEqualTo(text.getData());
+  }
+
+  // Records are read lazily, so are compared by value as immutable records
+  private static Observable<JournalRecord> read(Path directory) {
+    return JournalReader.read(directory).map(JournalRecordTuple::copyOf);
+  }
+
+  private static JournalRecord record(JournalRecord.Kind kind, long shardId, String data) {
+    return JournalRecordTuple.of(kind, shardId, System.nanoTime(), ByteString.encodeUtf8(data));
+  }
+}
@@ -0,0 +1,92 @@
+package com.github.princesslana.eriscasper.journal;
+
+import com.github.princesslana.eriscasper.rx.websocket.RxWebSocketEvent;
+import com.google.common.collect.ImmutableList;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import java.util.concurrent.TimeUnit;
+import okio.ByteString;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestReplayWebSocket {
+
+  private static final String URL = "wss://gateway.discord.gg/?v=6&encoding=json";
+
+  private TestScheduler scheduler;
+
+  @BeforeMethod
+  public void scheduler() {
+    scheduler = new TestScheduler();
+  }
+
+  @Test
+  public void connect_whenFastPacing_shouldReplayImmediately() {
+    ReplayWebSocket subject =
+        newReplayWebSocket(
+            ReplayWebSocket.Pacing.AS_FAST_AS_POSSIBLE,
+            ImmutableList.of(open(0), text(0, "a"), text(TimeUnit.SECONDS.toNanos(10), "b")));
+
+    subject.connect(URL).map(TestReplayWebSocket::textOf).test().assertResult("a", "b");
+  }
+
+  @Test
+  public void connect_whenOriginalPacing_shouldReplayWithRecordedGaps() {
+    ReplayWebSocket subject =
+        newReplayWebSocket(
+            ReplayWebSocket.Pacing.ORIGINAL,
+            ImmutableList.of(open(0), text(0, "a"), text(TimeUnit.SECONDS.toNanos(10), "b")));
+
+    TestObserver<String> replayed = subject.connect(URL).map(TestReplayWebSocket::textOf).test();
+
+    replayed.assertValues("a");
+
+    scheduler.advanceTimeBy(10, TimeUnit.SECONDS);
+
+    replayed.assertResult("a", "b");
+  }
+
+  @Test
+  public void connect_whenCalledAgain_shouldReplayNextConnection() {
+    ReplayWebSocket subject =
+        newReplayWebSocket(
+            ReplayWebSocket.Pacing.AS_FAST_AS_POSSIBLE,
+            ImmutableList.of(open(0), text(0, "a")),
+            ImmutableList.of(open(1), text(1, "b")));
+
+    subject.connect(URL).map(TestReplayWebSocket::textOf).test().assertResult("a");
+    subject.finished().test().assertNotComplete();
+
+    subject.connect(URL).map(TestReplayWebSocket::textOf).test().assertResult("b");
+    subject.finished().test().assertComplete();
+  }
+
+  @Test
+  public void connect_whenAllReplayed_shouldReceiveNothing() {
+    ReplayWebSocket subject =
+        newReplayWebSocket(
+            ReplayWebSocket.Pacing.AS_FAST_AS_POSSIBLE, ImmutableList.of(open(0), text(0, "a")));
+
+    subject.connect(URL).test();
+
+    subject.connect(URL).test().assertEmpty();
+  }
+
+  @SafeVarargs
+  private final ReplayWebSocket newReplayWebSocket(
+      ReplayWebSocket.Pacing pacing, ImmutableList<JournalRecord>... connections) {
+    return new ReplayWebSocket(ImmutableList.copyOf(connections), pacing, 0, 0, scheduler);
+  }
+
+  private static JournalRecord open(long nanos) {
+    return JournalRecordTuple.of(JournalRecord.Kind.OPEN, 0, nanos, ByteString.encodeUtf8(URL));
+  }
+
+  private static JournalRecord text(long nanos, String text) {
+    return JournalRecordTuple.of(JournalRecord.Kind.TEXT, 0, nanos, ByteString.encodeUtf8(text));
+  }
+
+  private static String textOf(RxWebSocketEvent evt) {
+    return ((RxWebSocketEvent.StringMessage) evt).getText();
+  }
+}
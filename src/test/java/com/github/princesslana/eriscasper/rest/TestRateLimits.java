@@ -0,0 +1,238 @@
+package com.github.princesslana.eriscasper.rest;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestRateLimits {
+
+  private TestScheduler scheduler;
+
+  private RateLimits subject;
+
+  @BeforeMethod
+  public void subject() {
+    scheduler = new TestScheduler();
+    subject = new RateLimits(scheduler);
+  }
+
+  @Test
+  public void routeKey_whenIds_shouldKeepOnlyMajorParameter() {
+    Route<Void, Void> route = Route.get("/channels/123/messages/456", Void.class);
+
+    Assertions.assertThat(RateLimits.routeKey(route)).isEqualTo("GET /channels/123/messages/:id");
+  }
+
+  @Test
+  public void routeKey_whenReaction_shouldNotIncludeEmoji() {
+    Route<Void, Void> route =
+        Route.delete("/channels/1/messages/2/reactions/%F0%9F%91%8D/3", Void.class);
+
+    Assertions.assertThat(RateLimits.routeKey(route))
+        .isEqualTo("DELETE /channels/1/messages/:id/reactions/:emoji/:id");
+  }
+
+  @Test
+  public void acquire_whenLimitUnknown_shouldAllowOneAtATime() {
+    Route<Void, Void> route = Route.get("/channels/1/messages", Void.class);
+
+    TestObserver<RateLimits.Bucket> first = subject.acquire(route).test();
+    TestObserver<RateLimits.Bucket> second = subject.acquire(route).test();
+
+    first.assertValueCount(1);
+    second.assertNoValues();
+
+    subject.update(route, first.values().get(0), response(route, "abc", 5, 4));
+
+    second.assertValueCount(1);
+  }
+
+  @Test
+  public void acquire_whenNoneRemaining_shouldWaitForReset() {
+    Route<Void, Void> route = Route.get("/channels/1/messages", Void.class);
+
+    RateLimits.Bucket bucket = subject.acquire(route).blockingGet();
+    subject.update(route, bucket, response(route, "abc", 1, 0));
+
+    TestObserver<RateLimits.Bucket> next = subject.acquire(route).test();
+
+    next.assertNoValues();
+
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+    next.assertValueCount(1);
+  }
+
+  @Test
+  public void acquire_whenSameBucketAndMajorParameter_shouldShareLimit() {
+    Route<Void, Void> message = Route.get("/channels/1/messages/2", Void.class);
+
+    RateLimits.Bucket bucket = subject.acquire(message).blockingGet();
+    subject.update(message, bucket, response(message, "abc", 1, 0));
+
+    subject.acquire(Route.get("/channels/1/messages/3", Void.class)).test().assertNoValues();
+    subject.acquire(Route.get("/channels/9/messages/2", Void.class)).test().assertValueCount(1);
+  }
+
+  @Test
+  public void update_whenResponsesOutOfOrderInSameWindow_shouldKeepLowestRemaining() {
+    Route<Void, Void> route = Route.get("/channels/1/messages", Void.class);
+
+    RateLimits.Bucket first = subject.acquire(route).blockingGet();
+    subject.update(route, first, response(route, "abc", 5, 4, "1000.000"));
+
+    // granted at once, before any of their responses
+    List<RateLimits.Bucket> granted = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      granted.add(subject.acquire(route).blockingGet());
+    }
+
+    subject.update(route, granted.get(3), response(route, "abc", 5, 0, "1000.000"));
+    subject.update(route, granted.get(0), response(route, "abc", 5, 3, "1000.000"));
+    subject.update(route, granted.get(1), response(route, "abc", 5, 2, "1000.000"));
+
+    TestObserver<RateLimits.Bucket> next = subject.acquire(route).test();
+
+    next.assertNoValues();
+
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+    next.assertValueCount(1);
+  }
+
+  @Test
+  public void update_whenLateResponseForEarlierWindow_shouldIgnoreIt() {
+    Route<Void, Void> route = Route.get("/channels/1/messages", Void.class);
+
+    RateLimits.Bucket first = subject.acquire(route).blockingGet();
+    subject.update(route, first, response(route, "abc", 2, 1, "1000.000"));
+    RateLimits.Bucket second = subject.acquire(route).blockingGet();
+
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+    RateLimits.Bucket third = subject.acquire(route).blockingGet();
+    subject.update(route, third, response(route, "abc", 2, 1, "1001.000"));
+
+    // the response to the second request arrives after the window it was counted in has ended
+    subject.update(route, second, response(route, "abc", 2, 0, "1000.000"));
+
+    subject.acquire(route).test().assertValueCount(1);
+    subject.acquire(route).test().assertNoValues();
+  }
+
+  @Test
+  public void update_whenConcurrentGrantsAfterRefill_shouldNotTakeHigherRemaining() {
+    Route<Void, Void> route = Route.get("/channels/1/messages", Void.class);
+
+    RateLimits.Bucket first = subject.acquire(route).blockingGet();
+    subject.update(route, first, response(route, "abc", 3, 0, "1000.000"));
+
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+    // refilled on reset, and all granted before Discord has counted more than the first
+    RateLimits.Bucket second = subject.acquire(route).blockingGet();
+    subject.acquire(route).blockingGet();
+    subject.acquire(route).blockingGet();
+
+    subject.update(route, second, response(route, "abc", 3, 2, "1001.000"));
+
+    subject.acquire(route).test().assertNoValues();
+  }
+
+  @Test
+  public void update_whenNoHeaders_shouldNotLimit() {
+    Route<Void, Void> route = Route.get("/gateway", Void.class);
+
+    RateLimits.Bucket bucket = subject.acquire(route).blockingGet();
+    subject.update(route, bucket, response(route).build());
+
+    subject.acquire(route).test().assertValueCount(1);
+    subject.acquire(route).test().assertValueCount(1);
+  }
+
+  @Test
+  public void update_whenGlobal429_shouldPauseAllBuckets() {
+    Route<Void, Void> route = Route.get("/channels/1/messages", Void.class);
+    Route<Void, Void> other = Route.get("/guilds/2", Void.class);
+
+    RateLimits.Bucket bucket = subject.acquire(route).blockingGet();
+    subject.update(other, subject.acquire(other).blockingGet(), response(other).build());
+
+    Assertions.assertThatThrownBy(
+            () ->
+                subject.update(
+                    route,
+                    bucket,
+                    tooManyRequests(route).header("X-RateLimit-Global", "true").build()))
+        .isInstanceOf(RateLimitedException.class)
+        .hasFieldOrPropertyWithValue("global", true);
+
+    TestObserver<RateLimits.Bucket> next = subject.acquire(other).test();
+
+    next.assertNoValues();
+
+    scheduler.advanceTimeBy(2, TimeUnit.SECONDS);
+
+    next.assertValueCount(1);
+    Assertions.assertThat(subject.getMetrics().getGlobalHits()).isEqualTo(1);
+    Assertions.assertThat(subject.getMetrics().getRouteHits()).isEqualTo(0);
+  }
+
+  @Test
+  public void update_when429_shouldPauseOnlyItsBucket() {
+    Route<Void, Void> route = Route.get("/channels/1/messages", Void.class);
+    Route<Void, Void> other = Route.get("/guilds/2", Void.class);
+
+    RateLimits.Bucket bucket = subject.acquire(route).blockingGet();
+
+    Assertions.assertThatThrownBy(
+            () -> subject.update(route, bucket, tooManyRequests(route).build()))
+        .isInstanceOf(RateLimitedException.class)
+        .hasFieldOrPropertyWithValue("global", false);
+
+    subject.acquire(route).test().assertNoValues();
+    subject.acquire(other).test().assertValueCount(1);
+    Assertions.assertThat(subject.getMetrics().getRouteHitsByRoute())
+        .containsEntry("GET /channels/1/messages", 1L);
+  }
+
+  private static Response.Builder tooManyRequests(Route<?, ?> route) {
+    return response(route).code(429).message("Too Many Requests").header("Retry-After", "2");
+  }
+
+  private static Response response(
+      Route<?, ?> route, String bucket, int limit, int remaining, String reset) {
+    return response(route)
+        .header("X-RateLimit-Bucket", bucket)
+        .header("X-RateLimit-Limit", Integer.toString(limit))
+        .header("X-RateLimit-Remaining", Integer.toString(remaining))
+        .header("X-RateLimit-Reset", reset)
+        .header("X-RateLimit-Reset-After", "1.000")
+        .build();
+  }
+
+  private static Response response(Route<?, ?> route, String bucket, int limit, int remaining) {
+    return response(route)
+        .header("X-RateLimit-Bucket", bucket)
+        .header("X-RateLimit-Limit", Integer.toString(limit))
+        .header("X-RateLimit-Remaining", Integer.toString(remaining))
+        .header("X-RateLimit-Reset-After", "1.000")
+        .build();
+  }
+
+  private static Response.Builder response(Route<?, ?> route) {
+    return new Response.Builder()
+        .protocol(Protocol.HTTP_1_1)
+        .request(new Request.Builder().url("https://discordapp.com/api" + route.getPath()).build())
+        .code(200)
+        .message("OK");
+  }
+}
@@ -0,0 +1,101 @@
+package com.github.princesslana.eriscasper.rest;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.google.common.collect.ImmutableList;
+import io.reactivex.Flowable;
+import io.reactivex.subscribers.TestSubscriber;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class TestRoute {
+
+  private AtomicBoolean closed;
+
+  @BeforeMethod
+  public void closed() {
+    closed = new AtomicBoolean(false);
+  }
+
+  @Test
+  public void jsonResponse_shouldReadBody() throws Exception {
+    Assertions.assertThat(Route.jsonResponse(String.class).apply(response("\"abc\"")))
+        .isEqualTo("abc");
+  }
+
+  @Test
+  public void jsonArrayResponse_shouldReadBody() throws Exception {
+    Assertions.assertThat(Route.jsonArrayResponse(String.class).apply(response("[\"a\",\"b\"]")))
+        .isEqualTo(ImmutableList.of("a", "b"));
+  }
+
+  @Test
+  public void jsonArrayElements_shouldEmitEachElementAndClose() throws Exception {
+    Flowable<String> elements =
+        Route.jsonArrayElements(String.class).apply(response("[\"a\",\"b\",\"c\"]"));
+
+    elements.test().assertValues("a", "b", "c").assertComplete();
+
+    Assertions.assertThat(closed.get()).isTrue();
+  }
+
+  @Test
+  public void jsonArrayElements_whenEmpty_shouldComplete() throws Exception {
+    Route.jsonArrayElements(String.class).apply(response("[]")).test().assertNoValues();
+
+    Assertions.assertThat(closed.get()).isTrue();
+  }
+
+  @Test
+  public void jsonArrayElements_whenCancelled_shouldClose() throws Exception {
+    TestSubscriber<String> subscriber =
+        Route.jsonArrayElements(String.class).apply(response("[\"a\",\"b\"]")).test(1);
+
+    subscriber.assertValues("a");
+    Assertions.assertThat(closed.get()).isFalse();
+
+    subscriber.cancel();
+
+    Assertions.assertThat(closed.get()).isTrue();
+  }
+
+  @Test
+  public void jsonArrayElements_whenNotArray_shouldError() throws Exception {
+    Route.jsonArrayElements(String.class)
+        .apply(response("{}"))
+        .test()
+        .assertError(JsonMappingException.class);
+
+    Assertions.assertThat(closed.get()).isTrue();
+  }
+
+  private Response response(String json) {
+    Buffer content = new Buffer().writeUtf8(json);
+
+    ForwardingSource source =
+        new ForwardingSource(content) {
+          @Override
+          public void close() throws IOException {
+            closed.set(true);
+            super.close();
+          }
+        };
+
+    return new Response.Builder()
+        .protocol(Protocol.HTTP_1_1)
+        .request(new Request.Builder().url("https://discordapp.com/api/test").build())
+        .code(200)
+        .message("OK")
+        .body(ResponseBody.create(null, content.size(), Okio.buffer(source)))
+        .build();
+  }
+}
@@ -1,16 +1,24 @@
 package com.github.princesslana.eriscasper.rest;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willDoNothing;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.princesslana.eriscasper.BotToken;
 import com.github.princesslana.eriscasper.data.util.Jackson;
 import com.github.princesslana.eriscasper.faker.DiscordFaker;
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.Closer;
+import io.reactivex.Flowable;
 import io.reactivex.observers.TestObserver;
+import io.reactivex.subscribers.TestSubscriber;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.OkHttpClient;
 import okhttp3.Protocol;
 import okhttp3.Request;
@@ -48,6 +56,14 @@ public class TestRoutes {
     subject = new Routes(token, mockHttpClient, jackson);
 
     given(mockHttpClient.newCall(request.capture())).willReturn(mockCall);
+
+    willAnswer(
+            a -> {
+              a.<Callback>getArgument(0).onFailure(mockCall, new IOException("No response"));
+              return null;
+            })
+        .given(mockCall)
+        .enqueue(any(Callback.class));
   }
 
   @AfterMethod
@@ -89,6 +105,31 @@ public class TestRoutes {
     subscriber.assertValues("test_response");
   }
 
+  @Test
+  public void stream_whenGet_shouldEmitElements() throws IOException {
+    Route<Void, Flowable<String>> route =
+        Route.get("/test/path", Route.jsonArrayElements(String.class));
+
+    givenRespondsWith(ImmutableList.of("a", "b"));
+
+    TestSubscriber<String> subscriber = subject.stream(route).test();
+
+    subscriber.awaitTerminalEvent(5, TimeUnit.SECONDS);
+    subscriber.assertValues("a", "b");
+    subscriber.assertComplete();
+  }
+
+  @Test
+  public void execute_whenDisposed_shouldCancelCall() {
+    Route<Void, String> route = Route.get("/test/path", String.class);
+
+    willDoNothing().given(mockCall).enqueue(any(Callback.class));
+
+    subject.execute(route).test().dispose();
+
+    then(mockCall).should().cancel();
+  }
+
   private <O> TestObserver<O> execute(Route<Void, O> route) {
     try {
       TestObserver<O> subscriber = subject.execute(route).test();
@@ -105,15 +146,21 @@ public class TestRoutes {
     ResponseBody rsBody = new RealResponseBody(null, b.size(), b);
 
     // we have to use answer here so that request.getValue() is not evaluated immediately
-    given(mockCall.execute())
-        .willAnswer(
-            a ->
-                new Response.Builder()
-                    .protocol(Protocol.HTTP_1_1)
-                    .request(request.getValue())
-                    .code(200)
-                    .message("OK")
-                    .body(rsBody)
-                    .build());
+    willAnswer(
+            a -> {
+              a.<Callback>getArgument(0)
+                  .onResponse(
+                      mockCall,
+                      new Response.Builder()
+                          .protocol(Protocol.HTTP_1_1)
+                          .request(request.getValue())
+                          .code(200)
+                          .message("OK")
+                          .body(rsBody)
+                          .build());
+              return null;
+            })
+        .given(mockCall)
+        .enqueue(any(Callback.class));
   }
 }
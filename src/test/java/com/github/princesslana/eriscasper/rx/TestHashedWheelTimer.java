@@ -0,0 +1,63 @@
+package com.github.princesslana.eriscasper.rx;
+
+import io.reactivex.Completable;
+import io.reactivex.Single;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.Test;
+
+public class TestHashedWheelTimer {
+
+  private final HashedWheelTimer subject =
+      new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 8, "test-timer");
+
+  @Test
+  public void schedule_shouldRunNoSoonerThanDelay() throws InterruptedException {
+    CountDownLatch ran = new CountDownLatch(1);
+    long start = System.nanoTime();
+
+    // longer than once round the wheel
+    subject.schedule(ran::countDown, 20, TimeUnit.MILLISECONDS);
+
+    Assertions.assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+    Assertions.assertThat(System.nanoTime() - start)
+        .isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(20));
+  }
+
+  @Test
+  public void schedule_whenDisposed_shouldNotRun() throws InterruptedException {
+    AtomicBoolean ran = new AtomicBoolean(false);
+
+    Disposable d = subject.schedule(() -> ran.set(true), 10, TimeUnit.MILLISECONDS);
+    d.dispose();
+
+    Thread.sleep(50);
+
+    Assertions.assertThat(ran.get()).isFalse();
+  }
+
+  @Test
+  public void on_whenDelayed_shouldRunOnScheduler() {
+    String thread =
+        Completable.timer(10, TimeUnit.MILLISECONDS, subject.on(namedScheduler()))
+            .andThen(Single.fromCallable(() -> Thread.currentThread().getName()))
+            .blockingGet();
+
+    Assertions.assertThat(thread).isEqualTo("test-scheduler");
+  }
+
+  private static io.reactivex.Scheduler namedScheduler() {
+    return Schedulers.from(
+        Executors.newSingleThreadExecutor(
+            r -> {
+              Thread t = new Thread(r, "test-scheduler");
+              t.setDaemon(true);
+              return t;
+            }));
+  }
+}
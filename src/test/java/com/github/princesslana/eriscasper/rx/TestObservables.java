@@ -0,0 +1,104 @@
+package com.github.princesslana.eriscasper.rx;
+
+import io.reactivex.Completable;
+import io.reactivex.Maybe;
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.assertj.core.api.Assertions;
+import org.testng.annotations.Test;
+
+public class TestObservables {
+
+  @Test
+  public void parallelOrdered_whenEarlierIsSlower_shouldEmitInOrder() {
+    Observable.just(
+            Maybe.just(1).delay(100, TimeUnit.MILLISECONDS),
+            Maybe.just(2),
+            Maybe.just(3).delay(50, TimeUnit.MILLISECONDS),
+            Maybe.just(4))
+        .compose(Observables.parallelOrdered(4, Schedulers.computation()))
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertResult(1, 2, 3, 4);
+  }
+
+  @Test
+  public void parallelOrdered_whenEmpty_shouldSkipIt() {
+    Observable.just(Maybe.just(1), Maybe.<Integer>empty(), Maybe.just(3))
+        .compose(Observables.parallelOrdered(2, Schedulers.computation()))
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertResult(1, 3);
+  }
+
+  @Test
+  public void parallelOrdered_shouldSubscribeToAtMostParallelismAtOnce() {
+    AtomicInteger active = new AtomicInteger();
+    AtomicInteger maxActive = new AtomicInteger();
+
+    Observable.range(0, 20)
+        .map(
+            i ->
+                Maybe.fromCallable(
+                    () -> {
+                      maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                      Thread.sleep(5);
+                      active.decrementAndGet();
+                      return i;
+                    }))
+        .compose(Observables.parallelOrdered(3, Schedulers.computation()))
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertValueCount(20)
+        .assertComplete();
+
+    Assertions.assertThat(maxActive.get()).isLessThanOrEqualTo(3);
+  }
+
+  @Test
+  public void partitioned_whenSameKey_shouldHandleInOrder() {
+    List<Integer> handled = new CopyOnWriteArrayList<>();
+
+    Observables.partitioned(
+            Observable.just(1, 2, 3, 4),
+            4,
+            i -> "same",
+            i ->
+                Completable.timer(i == 1 ? 100 : 0, TimeUnit.MILLISECONDS)
+                    .doOnComplete(() -> handled.add(i)),
+            Schedulers.computation())
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertComplete();
+
+    Assertions.assertThat(handled).containsExactly(1, 2, 3, 4);
+  }
+
+  @Test
+  public void partitioned_whenDifferentKeys_shouldHandleInParallel() {
+    AtomicInteger active = new AtomicInteger();
+    AtomicInteger maxActive = new AtomicInteger();
+
+    Observables.partitioned(
+            Observable.range(0, 20),
+            4,
+            i -> i,
+            i ->
+                Completable.fromAction(
+                    () -> {
+                      maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                      Thread.sleep(20);
+                      active.decrementAndGet();
+                    }),
+            Schedulers.newThread())
+        .test()
+        .awaitDone(5, TimeUnit.SECONDS)
+        .assertComplete();
+
+    Assertions.assertThat(maxActive.get()).isGreaterThan(1).isLessThanOrEqualTo(4);
+  }
+}
@@ -1,13 +1,18 @@
 package com.github.princesslana.eriscasper.rx.websocket;
 
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.never;
 import static org.mockito.BDDMockito.notNull;
 import static org.mockito.BDDMockito.then;
 
 import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
+import okhttp3.Response;
 import okhttp3.WebSocket;
 import okhttp3.WebSocketListener;
 import okio.ByteString;
@@ -27,8 +32,12 @@ public class TestRxWebSocket {
 
   @Mock private WebSocket mockWebSocket;
 
+  @Mock private WebSocket mockReplacement;
+
   private ArgumentCaptor<WebSocketListener> listenerCaptor;
 
+  private TestScheduler scheduler;
+
   private RxWebSocket subject;
 
   @BeforeMethod
@@ -40,7 +49,9 @@ public class TestRxWebSocket {
   public void setupSubject() {
     MockitoAnnotations.initMocks(this);
 
-    subject = new RxWebSocket(mockClient);
+    scheduler = new TestScheduler();
+
+    subject = new RxWebSocket(mockClient, scheduler);
 
     listenerCaptor = ArgumentCaptor.forClass(WebSocketListener.class);
 
@@ -109,6 +120,8 @@ public class TestRxWebSocket {
 
   @Test
   public void send_whenStringMessage_shouldSendToWebSocket() {
+    given(mockWebSocket.send(TEST_MESSAGE)).willReturn(true);
+
     subject.connect(TEST_WS_URL).subscribe();
     TestObserver<Void> subscriber = subject.send(TEST_MESSAGE).test();
 
@@ -116,7 +129,124 @@ public class TestRxWebSocket {
     then(mockWebSocket).should().send(TEST_MESSAGE);
   }
 
+  @Test
+  public void send_whenRejectedByWebSocket_shouldError() {
+    given(mockWebSocket.send(TEST_MESSAGE)).willReturn(false);
+
+    subject.connect(TEST_WS_URL).subscribe();
+
+    subject.send(TEST_MESSAGE).test().assertError(IllegalStateException.class);
+  }
+
+  @Test
+  public void awaitQueueBelow_whenQueueIsBelow_shouldComplete() {
+    given(mockWebSocket.queueSize()).willReturn(10L);
+
+    connect();
+    open();
+
+    subject.awaitQueueBelow(100).test().assertComplete();
+  }
+
+  @Test
+  public void awaitQueueBelow_whenQueueIsAbove_shouldWaitForItToDrain() {
+    given(mockWebSocket.queueSize()).willReturn(1000L);
+
+    connect();
+    open();
+
+    TestObserver<Void> subscriber = subject.awaitQueueBelow(100).test();
+
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+    subscriber.assertNotComplete();
+
+    given(mockWebSocket.queueSize()).willReturn(10L);
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+    subscriber.assertComplete();
+  }
+
+  @Test
+  public void awaitQueueBelow_whenClosed_shouldComplete() {
+    given(mockWebSocket.queueSize()).willReturn(1000L);
+
+    connect();
+    open();
+
+    TestObserver<Void> subscriber = subject.awaitQueueBelow(100).test();
+
+    getListener().onClosing(mockWebSocket, 1000, "Closing...");
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+    subscriber.assertComplete();
+  }
+
+  @Test
+  public void awaitQueueBelow_whenReplaced_shouldError() {
+    given(mockWebSocket.queueSize()).willReturn(1000L);
+
+    connect();
+    open();
+
+    TestObserver<Void> subscriber = subject.awaitQueueBelow(100).test();
+
+    given(mockClient.newWebSocket(notNull(), notNull())).willReturn(mockReplacement);
+    connect();
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+    subscriber.assertError(IllegalStateException.class);
+  }
+
+  @Test
+  public void sendWhenQueueBelow_whenQueueIsAbove_shouldSendOnceDrained() {
+    given(mockWebSocket.queueSize()).willReturn(1000L);
+    given(mockWebSocket.send(TEST_MESSAGE)).willReturn(true);
+
+    connect();
+    open();
+
+    TestObserver<Void> subscriber = subject.sendWhenQueueBelow(100, TEST_MESSAGE).test();
+
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+    then(mockWebSocket).should(never()).send(TEST_MESSAGE);
+
+    given(mockWebSocket.queueSize()).willReturn(10L);
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+    subscriber.assertComplete();
+    then(mockWebSocket).should().send(TEST_MESSAGE);
+  }
+
+  @Test
+  public void sendWhenQueueBelow_whenReplacedWhileWaiting_shouldErrorWithoutSending() {
+    given(mockWebSocket.queueSize()).willReturn(1000L);
+
+    connect();
+    open();
+
+    TestObserver<Void> subscriber = subject.sendWhenQueueBelow(100, TEST_MESSAGE).test();
+
+    given(mockClient.newWebSocket(notNull(), notNull())).willReturn(mockReplacement);
+    connect();
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+    subscriber.assertError(IllegalStateException.class);
+    then(mockWebSocket).should(never()).send(TEST_MESSAGE);
+    then(mockReplacement).should(never()).send(TEST_MESSAGE);
+  }
+
   private TestObserver<RxWebSocketEvent> connect() {
     return subject.connect(TEST_WS_URL).test();
   }
+
+  private void open() {
+    getListener()
+        .onOpen(
+            mockWebSocket,
+            new Response.Builder()
+                .protocol(Protocol.HTTP_1_1)
+                .request(new Request.Builder().url(TEST_WS_URL).build())
+                .code(101)
+                .message("Switching Protocols")
+                .build());
+  }
 }
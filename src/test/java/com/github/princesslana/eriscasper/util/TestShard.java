@@ -72,6 +72,34 @@ public class TestShard {
         .hasMessage("Shard number must be less than the shard total.");
   }
 
+  @Test
+  public void range_shouldIncludeFirstAndExcludeLast() {
+    Assertions.assertThat(Shards.range(2, 4, 6))
+        .extracting(ShardPayload::toArray)
+        .containsExactly(ImmutableList.of(2L, 6L), ImmutableList.of(3L, 6L));
+  }
+
+  @Test
+  public void range_whenLastBeyondTotal_shouldThrowError() {
+    Assertions.assertThatThrownBy(() -> Shards.range(0, 3, 2))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("Shard number must be less than the shard total.");
+  }
+
+  @Test
+  public void range_whenEmpty_shouldThrowError() {
+    Assertions.assertThatThrownBy(() -> Shards.range(2, 2, 4))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("First shard must be less than the last shard.");
+  }
+
+  @Test
+  public void all_shouldIncludeEveryShard() {
+    Assertions.assertThat(Shards.all(3))
+        .extracting(ShardPayload::getShardId)
+        .containsExactly(0L, 1L, 2L);
+  }
+
   private Properlty properlty() {
     return Properlty.builder().build();
   }